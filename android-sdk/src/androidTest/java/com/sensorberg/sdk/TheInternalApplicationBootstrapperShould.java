@@ -8,6 +8,7 @@ import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.resolver.BeaconEvent;
 import com.sensorberg.sdk.resolver.ResolverConfiguration;
 import com.sensorberg.sdk.scanner.BeaconActionHistoryPublisher;
+import com.sensorberg.sdk.storage.HistoryStore;
 import com.sensorberg.sdk.testUtils.DumbSucessTransport;
 import com.sensorberg.sdk.testUtils.TestHandlerManager;
 import com.sensorberg.sdk.testUtils.TestServiceScheduler;
@@ -52,6 +53,9 @@ public class TheInternalApplicationBootstrapperShould {
     @Inject
     SharedPreferences sharedPreferences;
 
+    @Inject
+    HistoryStore historyStore;
+
     BeaconActionHistoryPublisher beaconActionHistoryPublisher;
 
     InternalApplicationBootstrapper tested;
@@ -67,7 +71,7 @@ public class TheInternalApplicationBootstrapperShould {
     public void setUp() throws Exception {
         ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
 
-        beaconActionHistoryPublisher = new BeaconActionHistoryPublisher(mock(Transport.class),testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson);
+        beaconActionHistoryPublisher = new BeaconActionHistoryPublisher(mock(Transport.class),testHandlerManager.getCustomClock(), testHandlerManager, historyStore, sharedPreferences, gson);
         beaconActionHistoryPublisher.deleteAllData();
 
         tested = new InternalApplicationBootstrapper(new DumbSucessTransport(), testServiceScheduler, testHandlerManager,
@@ -23,6 +23,7 @@ import com.sensorberg.sdk.resolver.ResolverConfiguration;
 import com.sensorberg.sdk.scanner.BeaconActionHistoryPublisher;
 import com.sensorberg.sdk.scanner.ScanEvent;
 import com.sensorberg.sdk.scanner.ScanEventType;
+import com.sensorberg.sdk.storage.LayoutSnapshotStore;
 import com.sensorberg.sdk.test.TestGenericBroadcastReceiver;
 import com.sensorberg.sdk.test.TestGenericBroadcastReceiver2;
 import com.sensorberg.sdk.testUtils.TestHandlerManager;
@@ -69,6 +70,9 @@ public class TheInternalBootstrapperIntegration {
     @Inject
     Gson gson;
 
+    @Inject
+    LayoutSnapshotStore layoutSnapshotStore;
+
     @Inject
     SharedPreferences prefs;
 
@@ -124,7 +128,7 @@ public class TheInternalBootstrapperIntegration {
         ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
         beaconActionHistoryPublisher.deleteAllData();
 
-        spiedTransportWithMockService = Mockito.spy(new RetrofitApiTransport(mockRetrofitApiService, testHandlerManager.getCustomClock(), prefs, gson));
+        spiedTransportWithMockService = Mockito.spy(new RetrofitApiTransport(mockRetrofitApiService, testHandlerManager.getCustomClock(), prefs, gson, layoutSnapshotStore));
         spiedInternalApplicationBootstrapper = Mockito.spy(new InternalApplicationBootstrapper(spiedTransportWithMockService, testServiceScheduler,
                 testHandlerManager, testHandlerManager.getCustomClock(), bluetoothPlatform, new ResolverConfiguration()));
 
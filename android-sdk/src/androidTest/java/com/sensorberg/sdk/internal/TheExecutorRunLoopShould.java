@@ -0,0 +1,134 @@
+package com.sensorberg.sdk.internal;
+
+import android.os.Message;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.internal.interfaces.RunLoop;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(AndroidJUnit4.class)
+public class TheExecutorRunLoopShould {
+
+    private static final int MESSAGES = 200;
+
+    private ExecutorHandlerManager handlerManager;
+
+    @Before
+    public void setUp() throws Exception {
+        handlerManager = new ExecutorHandlerManager(2);
+    }
+
+    @Test
+    public void handle_the_messages_of_one_run_loop_in_order_and_one_at_a_time() throws Exception {
+        final List<Integer> handled = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(MESSAGES);
+        RunLoop tested = handlerManager.getScannerRunLoop(new RunLoop.MessageHandlerCallback() {
+            @Override
+            public void handleMessage(Message queueEvent) {
+                maxConcurrent.set(Math.max(maxConcurrent.get(), concurrent.incrementAndGet()));
+                handled.add(queueEvent.what);
+                concurrent.decrementAndGet();
+                latch.countDown();
+            }
+        });
+        RunLoop other = handlerManager.getResolverRunLoop(RunLoop.MessageHandlerCallback.NONE);
+
+        for (int i = 0; i < MESSAGES; i++) {
+            tested.sendMessage(i);
+            other.sendMessage(i);
+        }
+
+        Assertions.assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        Assertions.assertThat(maxConcurrent.get()).isEqualTo(1);
+        for (int i = 0; i < MESSAGES; i++) {
+            Assertions.assertThat(handled.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void unschedule_a_runnable() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        RunLoop tested = handlerManager.getScannerRunLoop(RunLoop.MessageHandlerCallback.NONE);
+
+        tested.scheduleExecution(countDown(latch), 100);
+        tested.clearScheduledExecutions();
+
+        Assertions.assertThat(latch.await(300, TimeUnit.MILLISECONDS)).isFalse();
+    }
+
+    @Test
+    public void keep_the_timer_when_clearing_the_scheduled_executions() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        RunLoop tested = handlerManager.getScannerRunLoop(RunLoop.MessageHandlerCallback.NONE);
+
+        tested.scheduleTimer(countDown(latch), 100);
+        tested.clearScheduledExecutions();
+
+        Assertions.assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void only_run_the_last_timer() throws Exception {
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(1);
+        RunLoop tested = handlerManager.getScannerRunLoop(RunLoop.MessageHandlerCallback.NONE);
+
+        tested.scheduleTimer(countDown(first), 50);
+        tested.scheduleTimer(countDown(second), 100);
+
+        Assertions.assertThat(second.await(1, TimeUnit.SECONDS)).isTrue();
+        Assertions.assertThat(first.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void report_a_failing_message_and_handle_the_next_one() throws Exception {
+        Logger.Log log = Logger.log;
+        Logger.log = Mockito.mock(Logger.Log.class);
+        try {
+            final IllegalStateException failure = new IllegalStateException("failing handler");
+            final CountDownLatch latch = new CountDownLatch(1);
+            RunLoop tested = handlerManager.getScannerRunLoop(new RunLoop.MessageHandlerCallback() {
+                @Override
+                public void handleMessage(Message queueEvent) {
+                    if (queueEvent.what == 0) {
+                        throw failure;
+                    }
+                    latch.countDown();
+                }
+            });
+
+            tested.sendMessage(0);
+            tested.sendMessage(1);
+
+            Assertions.assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+            Mockito.verify(Logger.log).logError(Matchers.anyString(), Matchers.eq(failure));
+        } finally {
+            Logger.log = log;
+        }
+    }
+
+    private static Runnable countDown(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+    }
+}
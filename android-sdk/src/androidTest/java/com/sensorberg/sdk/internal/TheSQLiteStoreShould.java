@@ -14,6 +14,8 @@ import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 @RunWith(AndroidJUnit4.class)
@@ -92,6 +94,47 @@ public class TheSQLiteStoreShould {
         Assertions.assertThat(tested.size()).isEqualTo(1);
     }
 
+    @Test
+    public void test_should_replace_the_entries_with_the_same_identifier() throws Exception {
+        tested.put(new SQLiteStore.Entry(1, TIMESTAMP_OF_EVENT, 7, bundle));
+        tested.put(new SQLiteStore.Entry(2, TIMESTAMP_OF_EVENT, 8, bundle));
+
+        tested.replace(new SQLiteStore.Entry(3, TIMESTAMP_OF_EVENT, 7, bundle));
+
+        Assertions.assertThat(tested.loadIndices()).containsOnly(2, 3);
+    }
+
+    @Test
+    public void test_should_replace_and_delete_many_entries_at_once() throws Exception {
+        tested.put(new SQLiteStore.Entry(1, TIMESTAMP_OF_EVENT, 7, bundle));
+        tested.put(new SQLiteStore.Entry(2, TIMESTAMP_OF_EVENT, 8, bundle));
+
+        tested.replaceAll(Arrays.asList(
+                new SQLiteStore.Entry(3, TIMESTAMP_OF_EVENT, 7, bundle),
+                new SQLiteStore.Entry(4, TIMESTAMP_OF_EVENT, 9, bundle),
+                new SQLiteStore.Entry(5, TIMESTAMP_OF_EVENT, 10, bundle)));
+        tested.deleteAll(Arrays.asList(2, 4));
+
+        Assertions.assertThat(tested.loadIndices()).containsOnly(3, 5);
+    }
+
+    @Test
+    public void test_should_visit_the_entries_by_timestamp() throws Exception {
+        tested.put(new SQLiteStore.Entry(1, TIMESTAMP_OF_EVENT + 2, IRRELEVANT, bundle));
+        tested.put(new SQLiteStore.Entry(2, TIMESTAMP_OF_EVENT, IRRELEVANT, bundle));
+        tested.put(new SQLiteStore.Entry(3, TIMESTAMP_OF_EVENT + 1, IRRELEVANT, bundle));
+
+        final List<Integer> visited = new ArrayList<>();
+        tested.forEach(new SQLiteStore.Visitor() {
+            @Override
+            public void visit(SQLiteStore.Entry entry) {
+                visited.add(entry.index);
+            }
+        });
+
+        Assertions.assertThat(visited).containsExactly(2, 3, 1);
+    }
+
     @Test
     public void test_clear_all_entries() throws Exception {
         tested.put(new SQLiteStore.Entry(1, TIMESTAMP_OF_EVENT, IRRELEVANT, bundle));
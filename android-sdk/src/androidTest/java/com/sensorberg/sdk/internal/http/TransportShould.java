@@ -18,8 +18,10 @@ import com.sensorberg.sdk.model.persistence.BeaconAction;
 import com.sensorberg.sdk.model.persistence.BeaconScan;
 import com.sensorberg.sdk.model.server.ResolveResponse;
 import com.sensorberg.sdk.resolver.BeaconEvent;
+import com.sensorberg.sdk.scanner.ScanEvent;
 import com.sensorberg.sdk.settings.Settings;
 import com.sensorberg.sdk.settings.TimeConstants;
+import com.sensorberg.sdk.storage.LayoutSnapshotStore;
 import com.sensorberg.sdk.testUtils.TestClock;
 
 import junit.framework.Assert;
@@ -29,6 +31,7 @@ import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 
@@ -44,8 +47,11 @@ import java.util.TreeMap;
 import javax.inject.Inject;
 
 import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
+import retrofit2.Response;
 import retrofit2.mock.Calls;
 import util.TestConstants;
 import util.Utils;
@@ -53,6 +59,7 @@ import util.Utils;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static util.Verfier.hasSize;
 import static org.mockito.internal.verification.VerificationModeFactory.times;
 
 @RunWith(AndroidJUnit4.class)
@@ -61,6 +68,9 @@ public class TransportShould {
     @Inject
     Gson gson;
 
+    @Inject
+    LayoutSnapshotStore layoutSnapshotStore;
+
     @Inject
     SharedPreferences prefs;
 
@@ -78,7 +88,7 @@ public class TransportShould {
         clock.setNowInMillis(new DateTime(2015, 7, 10, 1, 1, 1).getMillis());
 
         mockRetrofitApiService = mock(RetrofitApiServiceImpl.class);
-        tested = new RetrofitApiTransport(mockRetrofitApiService, clock, prefs, gson);
+        tested = new RetrofitApiTransport(mockRetrofitApiService, clock, prefs, gson, layoutSnapshotStore);
         tested.setApiToken(TestConstants.API_TOKEN);
     }
 
@@ -210,5 +220,126 @@ public class TransportShould {
         Mockito.verify(spiedTransport, times(1)).enqueueWithRetry(any(Call.class), any(retrofit2.Callback.class));
     }
 
+    @Test
+    public void merge_concurrent_layout_requests_into_one_call() throws Exception {
+        ResolveResponse response = gson.fromJson(
+                Utils.getRawResourceAsString(com.sensorberg.sdk.test.R.raw.resolve_response_005, InstrumentationRegistry.getContext()),
+                ResolveResponse.class);
+        Call<ResolveResponse> pendingCall = mock(Call.class);
+        Mockito.when(mockRetrofitApiService.getBeacon(anyString(), anyString(), Matchers.<TreeMap<String, String>>any())).thenReturn(pendingCall);
+
+        List<BeaconResponseHandler> handlers = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            BeaconResponseHandler handler = mock(BeaconResponseHandler.class);
+            handlers.add(handler);
+            tested.getBeacon(TestConstants.BEACON_SCAN_ENTRY_EVENT(clock.now()), null, handler);
+        }
+
+        ArgumentCaptor<retrofit2.Callback> callback = ArgumentCaptor.forClass(retrofit2.Callback.class);
+        Mockito.verify(mockRetrofitApiService, times(1)).getBeacon(anyString(), anyString(), Matchers.<TreeMap<String, String>>any());
+        Mockito.verify(pendingCall, times(1)).enqueue(callback.capture());
+
+        callback.getValue().onResponse(pendingCall, Response.success(response));
+
+        for (BeaconResponseHandler handler : handlers) {
+            Mockito.verify(handler).onSuccess(hasSize(1));
+        }
+    }
+
+    @Test
+    public void resolve_a_not_modified_layout_against_the_last_one() throws Exception {
+        ResolveResponse response = gson.fromJson(
+                Utils.getRawResourceAsString(com.sensorberg.sdk.test.R.raw.resolve_response_005, InstrumentationRegistry.getContext()),
+                ResolveResponse.class);
+        okhttp3.Response notModified = new okhttp3.Response.Builder()
+                .code(304)
+                .message("Not Modified")
+                .protocol(Protocol.HTTP_1_1)
+                .request(new Request.Builder().url("http://localhost/").build())
+                .build();
+        Mockito.when(mockRetrofitApiService.getBeacon(anyString(), anyString(), Matchers.<TreeMap<String, String>>any()))
+                .thenReturn(Calls.response(response))
+                .thenReturn(Calls.response(Response.<ResolveResponse>error(ResponseBody.create(null, ""), notModified)));
+        Transport.ProximityUUIDUpdateHandler proximityUUIDUpdateHandler = mock(Transport.ProximityUUIDUpdateHandler.class);
+        tested.setProximityUUIDUpdateHandler(proximityUUIDUpdateHandler);
+        BeaconResponseHandler handler = mock(BeaconResponseHandler.class);
+
+        tested.getBeacon(TestConstants.BEACON_SCAN_ENTRY_EVENT(clock.now()), null, handler);
+        tested.getBeacon(TestConstants.BEACON_SCAN_ENTRY_EVENT(clock.now()), null, handler);
+
+        Mockito.verify(handler, times(2)).onSuccess(hasSize(1));
+        Mockito.verify(proximityUUIDUpdateHandler, times(1)).proximityUUIDListUpdated(Matchers.<List<String>>any(), Matchers.eq(true));
+        Mockito.verifyNoMoreInteractions(proximityUUIDUpdateHandler);
+    }
+
+    @Test
+    public void fail_when_the_server_keeps_answering_not_modified_without_a_layout() throws Exception {
+        layoutSnapshotStore.clear();
+        prefs.edit().clear().commit();
+        okhttp3.Response notModified = new okhttp3.Response.Builder()
+                .code(304)
+                .message("Not Modified")
+                .protocol(Protocol.HTTP_1_1)
+                .request(new Request.Builder().url("http://localhost/").build())
+                .build();
+        Mockito.when(mockRetrofitApiService.getBeacon(anyString(), anyString(), Matchers.<TreeMap<String, String>>any()))
+                .thenReturn(Calls.response(Response.<ResolveResponse>error(ResponseBody.create(null, ""), notModified)));
+        BeaconResponseHandler handler = mock(BeaconResponseHandler.class);
+
+        tested.getBeacon(TestConstants.BEACON_SCAN_ENTRY_EVENT(clock.now()), null, handler);
+
+        //sent once more without validators, then given up
+        Mockito.verify(mockRetrofitApiService, times(1)).forgetConditionalRequest(Matchers.anyString());
+        Mockito.verify(handler, times(1)).onFailure(any(Throwable.class));
+        Mockito.verify(handler, Mockito.never()).onSuccess(Matchers.<List<BeaconEvent>>any());
+    }
+
+    @Test
+    public void resolve_another_beacon_against_the_cached_layout() throws Exception {
+        ResolveResponse response = gson.fromJson(
+                Utils.getRawResourceAsString(com.sensorberg.sdk.test.R.raw.resolve_response_005, InstrumentationRegistry.getContext()),
+                ResolveResponse.class);
+        Mockito.when(mockRetrofitApiService.getBeacon(anyString(), anyString(), Matchers.<TreeMap<String, String>>any()))
+                .thenReturn(Calls.response(response));
+        tested.getBeacon(TestConstants.BEACON_SCAN_ENTRY_EVENT(clock.now()), null, BeaconResponseHandler.NONE);
+        BeaconResponseHandler handler = mock(BeaconResponseHandler.class);
+
+        boolean resolved = tested.resolveFromCachedLayout(otherBeaconEntry(), TimeConstants.ONE_MINUTE, handler);
+
+        Assertions.assertThat(resolved).isTrue();
+        Mockito.verify(handler).onSuccess(Matchers.<List<BeaconEvent>>any());
+    }
+
+    @Test
+    public void not_resolve_another_beacon_against_the_cached_layout_of_a_backend_before_v2() throws Exception {
+        int backendVersion = RetrofitApiTransport.BACKEND_VERSION;
+        RetrofitApiTransport.BACKEND_VERSION = 1;
+        try {
+            ResolveResponse response = gson.fromJson(
+                    Utils.getRawResourceAsString(com.sensorberg.sdk.test.R.raw.resolve_response_005, InstrumentationRegistry.getContext()),
+                    ResolveResponse.class);
+            Mockito.when(mockRetrofitApiService.getBeacon(anyString(), anyString(), Matchers.<TreeMap<String, String>>any()))
+                    .thenReturn(Calls.response(response));
+            tested.getBeacon(TestConstants.BEACON_SCAN_ENTRY_EVENT(clock.now()), null, BeaconResponseHandler.NONE);
+            BeaconResponseHandler handler = mock(BeaconResponseHandler.class);
+
+            //the layout is fresh, but it is the layout of the pid of the first beacon
+            boolean resolved = tested.resolveFromCachedLayout(otherBeaconEntry(), TimeConstants.ONE_MINUTE, handler);
+
+            Assertions.assertThat(resolved).isFalse();
+            Mockito.verifyZeroInteractions(handler);
+        } finally {
+            RetrofitApiTransport.BACKEND_VERSION = backendVersion;
+        }
+    }
+
+    private ScanEvent otherBeaconEntry() {
+        return new ScanEvent.Builder()
+                .withBeaconId(TestConstants.ANY_OTHER_BEACON_ID)
+                .withEntry(true)
+                .withEventTime(clock.now())
+                .build();
+    }
+
     private static final ResponseBody PUBLISH_HISTORY_RESPONSE = ResponseBody.create(MediaType.parse("application/json"), "");
 }
\ No newline at end of file
@@ -32,6 +32,7 @@ import javax.inject.Named;
 
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import retrofit2.Call;
 import retrofit2.Response;
 import util.TestConstants;
@@ -181,4 +182,40 @@ public class ApiServiceShould {
         String url = call.request().url().query();
         assertEquals("User params are not appended or not in order", url, "a_param=value_2&b_param=value_3&param_A=value_1&param_B=value_4");
     }
+
+    @Test
+    public void apiservice_should_make_layout_requests_conditional() throws Exception {
+        realRetrofitApiService.setConditionalRequestsEnabled(true);
+        server.enqueue(RawJSONMockResponse.fromRawResource(
+                InstrumentationRegistry.getContext().getResources().openRawResource(com.sensorberg.sdk.test.R.raw.response_raw_layout_etag_001)));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        Response<ResolveResponse> response1 = realRetrofitApiService.getBeacon("", "", null).execute();
+        Response<ResolveResponse> response2 = realRetrofitApiService.getBeacon("", "", null).execute();
+
+        Assertions.assertThat(response1.code()).isEqualTo(200);
+        Assertions.assertThat(server.takeRequest().getHeader("If-None-Match")).isNull();
+        Assertions.assertThat(response2.code()).isEqualTo(304);
+        Assertions.assertThat(response2.body()).isNull();
+        RecordedRequest request2 = server.takeRequest();
+        Assertions.assertThat(request2.getHeader("If-None-Match")).isEqualTo("1416996436511");
+        Assertions.assertThat(request2.getHeader(ConditionalRequestInterceptor.HEADER_RESOURCE)).isNull();
+    }
+
+    @Test
+    public void apiservice_should_not_make_requests_for_other_attributes_conditional() throws Exception {
+        realRetrofitApiService.setConditionalRequestsEnabled(true);
+        server.enqueue(RawJSONMockResponse.fromRawResource(
+                InstrumentationRegistry.getContext().getResources().openRawResource(com.sensorberg.sdk.test.R.raw.response_raw_layout_etag_001)));
+        server.enqueue(RawJSONMockResponse.fromRawResource(
+                InstrumentationRegistry.getContext().getResources().openRawResource(com.sensorberg.sdk.test.R.raw.response_raw_layout_etag_001)));
+        SortedMap<String, String> attributes = new TreeMap<>();
+        attributes.put("param_A", "value_1");
+
+        realRetrofitApiService.getBeacon("", "", null).execute();
+        realRetrofitApiService.getBeacon("", "", attributes).execute();
+
+        server.takeRequest();
+        Assertions.assertThat(server.takeRequest().getHeader("If-None-Match")).isNull();
+    }
 }
@@ -21,6 +21,8 @@ import javax.inject.Named;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -86,4 +88,51 @@ public class LocationHelperTest {
 
     }
 
+    @Test
+    public void location_helper_reuse_the_snapshot() throws Exception {
+
+        l0.setAccuracy(1);
+        l0.setTime(System.currentTimeMillis());
+
+        String first = tested.getGeohash();
+        String second = tested.getGeohash();
+
+        assertEquals(first, second);
+        verify(mockedManager, times(1)).getProviders(true);
+
+    }
+
+    @Test
+    public void location_helper_ask_again_after_providers_changed() throws Exception {
+
+        l0.setAccuracy(1);
+        l0.setTime(System.currentTimeMillis());
+
+        tested.getGeohash();
+        LocationHelper.onProvidersChanged();
+        tested.getGeohash();
+
+        verify(mockedManager, times(2)).getProviders(true);
+
+    }
+
+    @Test
+    public void location_helper_use_delivered_location() throws Exception {
+
+        l0.setAccuracy(1);
+        l0.setTime(System.currentTimeMillis() - 1000);
+        tested.getGeohash();
+
+        Location delivered = new Location("fused");
+        delivered.setLatitude(52.52);
+        delivered.setLongitude(13.40);
+        delivered.setAccuracy(1);
+        delivered.setTime(System.currentTimeMillis());
+        tested.onLocationChanged(delivered);
+
+        assertEquals(new GeoHashLocation(delivered).getGeohash(), tested.getGeohash());
+        verify(mockedManager, times(1)).getProviders(true);
+
+    }
+
 }
\ No newline at end of file
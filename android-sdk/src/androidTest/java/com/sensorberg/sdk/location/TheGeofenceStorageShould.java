@@ -0,0 +1,91 @@
+package com.sensorberg.sdk.location;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Location;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.google.android.gms.location.Geofence;
+import com.sensorberg.sdk.settings.SettingsManager;
+import com.sensorberg.sdk.testUtils.DumbSucessTransport;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import ch.hsr.geohash.GeoHash;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(AndroidJUnit4.class)
+public class TheGeofenceStorageShould {
+
+    private GeofenceStorage tested;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getContext();
+        SharedPreferences preferences = context.getSharedPreferences(Long.toString(System.currentTimeMillis()), Context.MODE_PRIVATE);
+        tested = new GeofenceStorage(context, new SettingsManager(new DumbSucessTransport(), preferences), preferences);
+        tested.updateFences(new ArrayList<String>());
+    }
+
+    @Test
+    public void only_report_a_change_if_fences_were_added_or_removed() throws Exception {
+        assertThat(tested.updateFences(Arrays.asList(fence(52.5, 13.4), fence(48.1, 11.6)))).isTrue();
+        assertThat(tested.updateFences(Arrays.asList(fence(48.1, 11.6), fence(52.5, 13.4)))).isFalse();
+        assertThat(tested.updateFences(Arrays.asList(fence(48.1, 11.6), fence(53.6, 10.0)))).isTrue();
+
+        assertThat(tested.getCount()).isEqualTo(2);
+        assertThat(tested.getGeofences(null).keySet()).containsOnly(fence(48.1, 11.6), fence(53.6, 10.0));
+    }
+
+    @Test
+    public void select_the_closest_fences_when_there_are_too_many() throws Exception {
+        List<String> fences = new ArrayList<>();
+        for (int i = 0; i < 3 * GeofenceStorage.HIGH; i++) {
+            //a line of fences going north from the equator, about 1.1 km apart
+            fences.add(fence(i * 0.01, 0));
+        }
+        tested.updateFences(fences);
+
+        HashMap<String, Geofence> closest = tested.getGeofences(location(0, 0));
+
+        assertThat(closest).hasSize(GeofenceStorage.HIGH);
+        assertThat(closest.keySet()).containsOnly(fences.subList(0, GeofenceStorage.HIGH).toArray(new String[GeofenceStorage.HIGH]));
+        assertThat(tested.getRadius()).isGreaterThan(100000).isLessThan(115000);
+    }
+
+    @Test
+    public void select_again_after_the_fences_changed() throws Exception {
+        List<String> fences = new ArrayList<>();
+        for (int i = 0; i < 2 * GeofenceStorage.HIGH; i++) {
+            fences.add(fence(i * 0.01, 0));
+        }
+        tested.updateFences(fences);
+        tested.getGeofences(location(0, 0));
+        String closeBy = fence(0.001, 0.001);
+        fences.add(closeBy);
+
+        tested.updateFences(fences);
+
+        assertThat(tested.getGeofences(location(0, 0))).containsKey(closeBy);
+    }
+
+    private static String fence(double latitude, double longitude) {
+        return GeoHash.withCharacterPrecision(latitude, longitude, 8).toBase32() + "000100";
+    }
+
+    private static Location location(double latitude, double longitude) {
+        Location location = new Location("test");
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        return location;
+    }
+}
@@ -0,0 +1,60 @@
+package com.sensorberg.sdk.model;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class BeaconIdRegistryTest {
+
+    private static final UUID PROXIMITY_UUID = UUID.fromString("73676723-7400-0000-ffff-0000ffff0001");
+
+    BeaconIdRegistry tested = new BeaconIdRegistry();
+
+    @Test
+    public void return_the_same_instance_for_the_same_beacon() {
+        BeaconId first = tested.intern(PROXIMITY_UUID.getMostSignificantBits(), PROXIMITY_UUID.getLeastSignificantBits(), 1, 2);
+        BeaconId second = tested.intern(PROXIMITY_UUID.getMostSignificantBits(), PROXIMITY_UUID.getLeastSignificantBits(), 1, 2);
+
+        assertThat(second).isSameAs(first);
+        assertThat(tested.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void return_ids_equal_to_regular_ones() {
+        BeaconId interned = tested.intern(PROXIMITY_UUID.getMostSignificantBits(), PROXIMITY_UUID.getLeastSignificantBits(), 65535, 1);
+
+        assertThat(interned).isEqualTo(new BeaconId(PROXIMITY_UUID, 65535, 1));
+    }
+
+    @Test
+    public void distinguish_major_and_minor() {
+        BeaconId first = tested.intern(PROXIMITY_UUID.getMostSignificantBits(), PROXIMITY_UUID.getLeastSignificantBits(), 1, 2);
+        BeaconId second = tested.intern(PROXIMITY_UUID.getMostSignificantBits(), PROXIMITY_UUID.getLeastSignificantBits(), 2, 1);
+
+        assertThat(second).isNotEqualTo(first);
+        assertThat(tested.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void keep_all_instances_when_growing() {
+        BeaconId[] first = new BeaconId[1000];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = tested.intern(PROXIMITY_UUID.getMostSignificantBits(), i, i, i);
+        }
+        for (int i = 0; i < first.length; i++) {
+            assertThat(tested.intern(PROXIMITY_UUID.getMostSignificantBits(), i, i, i)).isSameAs(first[i]);
+        }
+        assertThat(tested.size()).isEqualTo(1000);
+    }
+
+    @Test
+    public void start_over_when_full() {
+        BeaconIdRegistry small = new BeaconIdRegistry(10);
+        for (int i = 0; i < 25; i++) {
+            small.intern(0, 0, i, i);
+        }
+        assertThat(small.size()).isLessThan(11);
+    }
+}
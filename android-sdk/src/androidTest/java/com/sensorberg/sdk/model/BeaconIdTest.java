@@ -39,6 +39,23 @@ public class BeaconIdTest {
         assertThat(beacon1_from_byte_array).isEqualTo(id);
     }
 
+    @Test
+    public void beacon1_primitive_constructor_equals_beacon1_from_array() {
+        BeaconId id = new BeaconId(beacon1_from_byte_array.getUuid().getMostSignificantBits(),
+                beacon1_from_byte_array.getUuid().getLeastSignificantBits(),
+                beacon1_from_byte_array.getMajorId(), beacon1_from_byte_array.getMinorId());
+        assertThat(beacon1_from_byte_array).isEqualTo(id);
+    }
+
+    @Test
+    public void beacon_primitive_constructor_keeps_unsigned_major_and_minor() {
+        BeaconId id = new BeaconId(-1L, Long.MIN_VALUE, 65535, 32768);
+        assertThat(id.getMajorId()).isEqualTo(65535);
+        assertThat(id.getMinorId()).isEqualTo(32768);
+        assertThat(id.getUuid().getMostSignificantBits()).isEqualTo(-1L);
+        assertThat(id.getUuid().getLeastSignificantBits()).isEqualTo(Long.MIN_VALUE);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void beacon_array_constructor_too_short() {
         BeaconId id = new BeaconId(new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18});
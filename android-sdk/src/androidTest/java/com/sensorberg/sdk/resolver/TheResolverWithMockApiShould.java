@@ -9,6 +9,8 @@ import com.sensorberg.sdk.internal.transport.RetrofitApiTransport;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.model.server.ResolveResponse;
 import com.sensorberg.sdk.scanner.ScanEvent;
+import com.sensorberg.sdk.settings.TimeConstants;
+import com.sensorberg.sdk.storage.LayoutSnapshotStore;
 import com.sensorberg.sdk.testUtils.TestHandlerManager;
 
 import org.fest.assertions.api.Assertions;
@@ -38,7 +40,9 @@ import util.Utils;
 import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static util.Verfier.hasSize;
 
 @RunWith(AndroidJUnit4.class)
 public class TheResolverWithMockApiShould {
@@ -46,6 +50,9 @@ public class TheResolverWithMockApiShould {
     @Inject
     Gson gson;
 
+    @Inject
+    LayoutSnapshotStore layoutSnapshotStore;
+
     @Inject
     SharedPreferences prefs;
 
@@ -60,9 +67,10 @@ public class TheResolverWithMockApiShould {
 
         ResolverConfiguration resolverConfiguration = new ResolverConfiguration();
         testHandlerManager.getCustomClock().setNowInMillis(new DateTime(2015, 7, 7, 1, 1, 1).getMillis());
-        Transport testTransportWithMockService = new RetrofitApiTransport(mockRetrofitApiService, testHandlerManager.getCustomClock(), prefs, gson);
+        Transport testTransportWithMockService = new RetrofitApiTransport(mockRetrofitApiService, testHandlerManager.getCustomClock(), prefs, gson, layoutSnapshotStore);
 
-        tested = new Resolver(resolverConfiguration, testHandlerManager, testTransportWithMockService, null);
+        tested = new Resolver(resolverConfiguration, testHandlerManager, testTransportWithMockService,
+                testHandlerManager.getCustomClock(), null);
     }
 
     @Test
@@ -89,6 +97,27 @@ public class TheResolverWithMockApiShould {
         tested.resolve(TestConstants.RESOLVABLE_ENTRY_EVENT_WITH_ID_3);
     }
 
+    @Test
+    public void resolve_against_the_cached_layout_while_it_is_fresh() throws Exception {
+        ResolveResponse resolveResponse = gson
+                .fromJson(Utils.getRawResourceAsString(com.sensorberg.sdk.test.R.raw.resolve_response_enter_exit_action, InstrumentationRegistry
+                        .getContext()), ResolveResponse.class);
+        Mockito.when(mockRetrofitApiService.getBeacon(Mockito.anyString(), Mockito.anyString(), Matchers.<TreeMap<String, String>>any()))
+                .thenReturn(Calls.response(resolveResponse), Calls.response(resolveResponse));
+        ResolverListener mockListener = mock(ResolverListener.class);
+        tested.setListener(mockListener);
+        tested.setCachedLayoutMaxAge(TimeConstants.ONE_HOUR);
+
+        tested.resolve(TestConstants.RESOLVABLE_ENTRY_EVENT_WITH_ID_3);
+        tested.resolve(TestConstants.RESOLVABLE_ENTRY_EVENT_WITH_ID_3);
+        verify(mockRetrofitApiService, times(1)).getBeacon(Mockito.anyString(), Mockito.anyString(), Matchers.<TreeMap<String, String>>any());
+        verify(mockListener, times(2)).onResolutionsFinished(hasSize(1));
+
+        testHandlerManager.getCustomClock().increaseTimeInMillis(TimeConstants.ONE_HOUR + 1);
+        tested.resolve(TestConstants.RESOLVABLE_ENTRY_EVENT_WITH_ID_3);
+        verify(mockRetrofitApiService, times(2)).getBeacon(Mockito.anyString(), Mockito.anyString(), Matchers.<TreeMap<String, String>>any());
+    }
+
     @Test
     public void test_resolve_in_app_function() throws Exception {
         ResolveResponse resolveResponse = gson
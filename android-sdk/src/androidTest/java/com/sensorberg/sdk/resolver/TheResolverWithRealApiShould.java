@@ -12,6 +12,7 @@ import com.sensorberg.sdk.internal.interfaces.PlatformIdentifier;
 import com.sensorberg.sdk.internal.transport.RetrofitApiServiceImpl;
 import com.sensorberg.sdk.internal.transport.RetrofitApiTransport;
 import com.sensorberg.sdk.scanner.ScanEvent;
+import com.sensorberg.sdk.storage.LayoutSnapshotStore;
 import com.sensorberg.sdk.test.BuildConfig;
 import com.sensorberg.sdk.testUtils.TestHandlerManager;
 
@@ -47,6 +48,9 @@ public class TheResolverWithRealApiShould {
     @Inject
     Gson gson;
 
+    @Inject
+    LayoutSnapshotStore layoutSnapshotStore;
+
     @Inject
     SharedPreferences prefs;
 
@@ -69,8 +73,8 @@ public class TheResolverWithRealApiShould {
 
         String baseUrl = BuildConfig.RESOLVER_URL != null ? BuildConfig.RESOLVER_URL : RetrofitApiTransport.RESOLVER_BASE_URL;
         RetrofitApiServiceImpl retrofitServiceWithOutCache = new RetrofitApiServiceImpl(null, gson, platformIdentifier, baseUrl);
-        transport = new RetrofitApiTransport(retrofitServiceWithOutCache, clock, prefs, gson);
-        tested = new Resolver(configuration, testHandlerManager, transport, null);
+        transport = new RetrofitApiTransport(retrofitServiceWithOutCache, clock, prefs, gson, layoutSnapshotStore);
+        tested = new Resolver(configuration, testHandlerManager, transport, clock, null);
 
     }
 
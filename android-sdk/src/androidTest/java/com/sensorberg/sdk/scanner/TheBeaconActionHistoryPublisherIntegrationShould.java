@@ -11,6 +11,8 @@ import com.sensorberg.sdk.internal.transport.RetrofitApiTransport;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.internal.transport.model.HistoryBody;
 import com.sensorberg.sdk.settings.SettingsManager;
+import com.sensorberg.sdk.storage.HistoryStore;
+import com.sensorberg.sdk.storage.LayoutSnapshotStore;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -52,9 +54,15 @@ public class TheBeaconActionHistoryPublisherIntegrationShould {
     @Inject
     SharedPreferences sharedPreferences;
 
+    @Inject
+    HistoryStore historyStore;
+
     @Inject
     Gson gson;
 
+    @Inject
+    LayoutSnapshotStore layoutSnapshotStore;
+
     private RetrofitApiServiceImpl mockRetrofitApiService = mock(RetrofitApiServiceImpl.class);
 
     private Transport transport = mock(Transport.class);
@@ -67,9 +75,9 @@ public class TheBeaconActionHistoryPublisherIntegrationShould {
     public void setUp() throws Exception {
         ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
 
-        testTransportWithMockService = new RetrofitApiTransport(mockRetrofitApiService, clock, sharedPreferences, gson);
+        testTransportWithMockService = new RetrofitApiTransport(mockRetrofitApiService, clock, sharedPreferences, gson, layoutSnapshotStore);
         tested = new BeaconActionHistoryPublisher(testTransportWithMockService, clock,
-                testHandlerManager, sharedPreferences, gson);
+                testHandlerManager, historyStore, sharedPreferences, gson);
     }
 
     @Test
@@ -11,6 +11,7 @@ import com.sensorberg.sdk.internal.transport.interfaces.TransportHistoryCallback
 import com.sensorberg.sdk.model.persistence.ActionConversion;
 import com.sensorberg.sdk.settings.SettingsManager;
 import com.sensorberg.sdk.testUtils.TestHandlerManager;
+import com.sensorberg.sdk.storage.HistoryStore;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -41,6 +42,9 @@ public class TheBeaconActionHistoryPublisherShould {
     @Inject
     SharedPreferences sharedPreferences;
 
+    @Inject
+    HistoryStore historyStore;
+
     @Inject
     Gson gson;
 
@@ -53,7 +57,7 @@ public class TheBeaconActionHistoryPublisherShould {
         ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
 
         testHandlerManager.getCustomClock().setNowInMillis(System.currentTimeMillis());
-        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson);
+        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, historyStore, sharedPreferences, gson);
         tested.deleteAllData();
         tested = Mockito.spy(tested);
     }
@@ -80,7 +84,7 @@ public class TheBeaconActionHistoryPublisherShould {
         //  nullify and make new instance
 
         tested = null;
-        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson);
+        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, historyStore, sharedPreferences, gson);
 
         //Make sure the object returned is not null.
         assertThat(tested);
@@ -102,7 +106,7 @@ public class TheBeaconActionHistoryPublisherShould {
         // nullify and make new instance
 
         tested = null;
-        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson);
+        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, historyStore, sharedPreferences, gson);
 
         //Make sure the object returned is not null.
         assertThat(tested);
@@ -124,7 +128,7 @@ public class TheBeaconActionHistoryPublisherShould {
         // nullify and make new instance
 
         tested = null;
-        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson);
+        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, historyStore, sharedPreferences, gson);
 
         //Make sure the object returned is not null.
         assertThat(tested);
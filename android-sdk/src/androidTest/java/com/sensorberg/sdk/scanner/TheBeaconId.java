@@ -38,4 +38,16 @@ public class TheBeaconId{
         Assertions.assertThat(BEACON_ID_1.getProximityUUIDWithoutDashes()).isEqualTo("7367672374000000ffff0000ffff0001");
         Assertions.assertThat(BEACON_ID_2.getProximityUUIDWithoutDashes()).isEqualTo("7367672374000000ffff0000ffff0001");
     }
+
+    @Test
+    public void test_bid_generation_with_large_major_and_minor(){
+        BeaconId beaconId = new BeaconId(UUID.fromString("73676723-7400-0000-ffff-0000ffff0001"), 65535, 9);
+        Assertions.assertThat(beaconId.getPid()).isEqualTo("7367672374000000ffff0000ffff00016553500009");
+        Assertions.assertThat(beaconId.getPid()).isSameAs(beaconId.getPid());
+    }
+
+    @Test
+    public void test_traditional_string(){
+        Assertions.assertThat(BEACON_ID_1.toTraditionalString()).isEqualTo("73676723-7400-0000-ffff-0000ffff0001:1:1");
+    }
 }
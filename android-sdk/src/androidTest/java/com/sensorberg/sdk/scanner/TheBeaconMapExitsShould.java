@@ -0,0 +1,98 @@
+package com.sensorberg.sdk.scanner;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@RunWith(AndroidJUnit4.class)
+public class TheBeaconMapExitsShould {
+
+    private static final long EXIT_TIMEOUT = 40000;
+
+    private BeaconMap tested;
+
+    private final List<BeaconId> exited = new ArrayList<>();
+
+    private final BeaconMap.ExpiryListener listener = new BeaconMap.ExpiryListener() {
+        @Override
+        public void onExpired(BeaconId beaconId, String pairingId, long timeSinceSeen) {
+            exited.add(beaconId);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        tested = new BeaconMap(null, null);
+        exited.clear();
+    }
+
+    @Test
+    public void exit_beacons_only_after_the_timeout() {
+        tested.put(getBeaconId(1), new EventEntry(0, 0, ScanEventType.ENTRY.getMask(), null));
+        tested.put(getBeaconId(2), new EventEntry(1000, 0, ScanEventType.ENTRY.getMask(), null));
+
+        tested.removeExpired(EXIT_TIMEOUT, EXIT_TIMEOUT, listener);
+        Assertions.assertThat(exited).isEmpty();
+
+        tested.removeExpired(EXIT_TIMEOUT + 1, EXIT_TIMEOUT, listener);
+        Assertions.assertThat(exited).containsExactly(getBeaconId(1));
+        Assertions.assertThat(tested.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void keep_beacons_that_were_seen_again() {
+        tested.put(getBeaconId(1), new EventEntry(0, 0, ScanEventType.ENTRY.getMask(), null));
+        tested.refresh(getBeaconId(1), 30000);
+
+        tested.removeExpired(EXIT_TIMEOUT + 1, EXIT_TIMEOUT, listener);
+        Assertions.assertThat(exited).isEmpty();
+        Assertions.assertThat(tested.getTimeUntilNextExit(EXIT_TIMEOUT + 1, EXIT_TIMEOUT)).isEqualTo(30000);
+
+        tested.removeExpired(30000 + EXIT_TIMEOUT + 1, EXIT_TIMEOUT, listener);
+        Assertions.assertThat(exited).containsExactly(getBeaconId(1));
+    }
+
+    @Test
+    public void not_count_scan_pauses() {
+        tested.put(getBeaconId(1), new EventEntry(0, 0, ScanEventType.ENTRY.getMask(), null));
+        tested.addScanPauseTime(10000);
+
+        Assertions.assertThat(tested.getTimeUntilNextExit(0, EXIT_TIMEOUT)).isEqualTo(10000 + EXIT_TIMEOUT + 1);
+        tested.removeExpired(EXIT_TIMEOUT + 1, EXIT_TIMEOUT, listener);
+        Assertions.assertThat(exited).isEmpty();
+
+        tested.removeExpired(10000 + EXIT_TIMEOUT + 1, EXIT_TIMEOUT, listener);
+        Assertions.assertThat(exited).containsExactly(getBeaconId(1));
+    }
+
+    @Test
+    public void not_exit_beacons_that_were_removed_or_cleared() {
+        tested.put(getBeaconId(1), new EventEntry(0, 0, ScanEventType.ENTRY.getMask(), null));
+        tested.filter(new BeaconMap.Filter() {
+            @Override
+            public boolean filter(EventEntry beaconEntry, BeaconId beaconId) {
+                return true;
+            }
+        });
+        tested.put(getBeaconId(2), new EventEntry(0, 0, ScanEventType.ENTRY.getMask(), null));
+        tested.clear();
+
+        tested.removeExpired(EXIT_TIMEOUT + 1, EXIT_TIMEOUT, listener);
+
+        Assertions.assertThat(exited).isEmpty();
+        Assertions.assertThat(tested.getTimeUntilNextExit(EXIT_TIMEOUT + 1, EXIT_TIMEOUT)).isEqualTo(-1);
+    }
+
+    private BeaconId getBeaconId(int minor) {
+        return new BeaconId(UUID.fromString("D57092AC-DFAA-446C-8EF3-C81AA22815B5"), 1, minor);
+    }
+}
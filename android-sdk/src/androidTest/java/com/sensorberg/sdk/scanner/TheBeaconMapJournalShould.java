@@ -0,0 +1,152 @@
+package com.sensorberg.sdk.scanner;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+@RunWith(AndroidJUnit4.class)
+public class TheBeaconMapJournalShould {
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File file;
+
+    private String pairingId;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("journal" + System.currentTimeMillis(), null);
+        pairingId = UUID.randomUUID().toString();
+    }
+
+    @Test
+    public void not_write_anything_before_flush() throws IOException {
+        BeaconMap tested = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+
+        tested.put(getBeaconId(1), new EventEntry(1000, 0, ScanEventType.ENTRY.getMask(), pairingId));
+
+        Assertions.assertThat(file.length()).isEqualTo(0);
+    }
+
+    @Test
+    public void be_restored_after_flush() throws IOException {
+        BeaconMap first = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+        first.put(getBeaconId(1), new EventEntry(1000, 20, ScanEventType.ENTRY.getMask(), pairingId));
+        first.put(getBeaconId(2), new EventEntry(2000, 0, ScanEventType.ENTRY.getMask(), null));
+        first.flush();
+
+        BeaconMap tested = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+
+        Assertions.assertThat(tested.size()).isEqualTo(2);
+        EventEntry restored = tested.get(getBeaconId(1));
+        Assertions.assertThat(restored.getLastBeaconTime()).isEqualTo(1000);
+        Assertions.assertThat(restored.getScanPauseTime()).isEqualTo(20);
+        Assertions.assertThat(restored.getPairingId()).isEqualTo(pairingId);
+        Assertions.assertThat(tested.get(getBeaconId(2)).getPairingId()).isNull();
+    }
+
+    @Test
+    public void replay_removals() throws IOException {
+        BeaconMap first = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+        first.put(getBeaconId(1), new EventEntry(1000, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        first.flush();
+        first.filter(new BeaconMap.Filter() {
+            @Override
+            public boolean filter(EventEntry beaconEntry, BeaconId beaconId) {
+                return true;
+            }
+        });
+        first.flush();
+
+        BeaconMap tested = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+
+        Assertions.assertThat(tested.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void replay_scan_pauses_and_refreshes() throws IOException {
+        BeaconMap first = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+        first.put(getBeaconId(1), new EventEntry(1000, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        first.put(getBeaconId(2), new EventEntry(1000, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        first.flush();
+        first.addScanPauseTime(500);
+        first.refresh(getBeaconId(2), 3000);
+        first.flush();
+
+        BeaconMap tested = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+
+        Assertions.assertThat(tested.get(getBeaconId(1)).getScanPauseTime()).isEqualTo(500);
+        Assertions.assertThat(tested.get(getBeaconId(2)).getScanPauseTime()).isEqualTo(0);
+        Assertions.assertThat(tested.get(getBeaconId(2)).getLastBeaconTime()).isEqualTo(3000);
+        Assertions.assertThat(tested.get(getBeaconId(2)).getPairingId()).isEqualTo(pairingId);
+    }
+
+    @Test
+    public void ignore_a_partially_written_record() throws IOException {
+        BeaconMap first = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+        first.put(getBeaconId(1), new EventEntry(1000, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        first.flush();
+        long validLength = file.length();
+        first.put(getBeaconId(2), new EventEntry(1000, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        first.flush();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(file.length() - 3);
+        raf.close();
+
+        BeaconMap tested = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+
+        Assertions.assertThat(tested.size()).isEqualTo(1);
+        Assertions.assertThat(tested.get(getBeaconId(1))).isNotNull();
+        Assertions.assertThat(file.length()).isEqualTo(validLength);
+    }
+
+    @Test
+    public void compact_the_journal_when_it_grows() throws IOException {
+        BeaconMap tested = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+        BeaconId beaconId = getBeaconId(1);
+        tested.put(beaconId, new EventEntry(0, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        tested.flush();
+        long singleRecordLength = file.length();
+
+        for (int i = 1; i < 1000; i++) {
+            tested.put(beaconId, new EventEntry(i, 0, ScanEventType.ENTRY.getMask(), pairingId));
+            tested.flush();
+        }
+
+        Assertions.assertThat(file.length()).isLessThan(singleRecordLength * 100);
+        BeaconMap restored = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+        Assertions.assertThat(restored.get(beaconId).getLastBeaconTime()).isEqualTo(999);
+    }
+
+    @Test
+    public void delete_the_journal_on_clear() throws IOException {
+        BeaconMap tested = new BeaconMap(new BeaconMapJournal(file, SAME_THREAD));
+        tested.put(getBeaconId(1), new EventEntry(1000, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        tested.flush();
+
+        tested.clear();
+
+        Assertions.assertThat(file.exists()).isFalse();
+    }
+
+    private BeaconId getBeaconId(int minor) {
+        return new BeaconId(UUID.fromString("D57092AC-DFAA-446C-8EF3-C81AA22815B5"), 1, minor);
+    }
+}
@@ -86,10 +86,9 @@ public class TheBluetoothChangesShould {
         verify(mockScannerListener, never()).onScanEventDetected(isExitEvent());
 
         long start = testHandlerManager.getCustomClock().now();
-        while (testHandlerManager.getCustomClock().now() < start + Utils.GRACE_TIME - Utils.ONE_ADVERTISEMENT_INTERVAL) {
+        while (testHandlerManager.getCustomClock().now() < start + tested.exitGraceTime + Utils.ONE_ADVERTISEMENT_INTERVAL) {
             testHandlerManager.getCustomClock().increaseTimeInMillis(Utils.ONE_ADVERTISEMENT_INTERVAL);
         }
-        //Actually, it triggers before the above loop, due to lacking method for testing delay in NonThreadedRunLoopForTesting.scheduleAtFixedRate()
         verify(mockScannerListener).onScanEventDetected(isExitEvent());
     }
 
@@ -0,0 +1,108 @@
+package com.sensorberg.sdk.scanner;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.UUID;
+
+@RunWith(AndroidJUnit4.class)
+public class TheEnteredBeaconTableShould {
+
+    private EnteredBeaconTable tested;
+
+    @Before
+    public void setUp() {
+        tested = new EnteredBeaconTable();
+    }
+
+    @Test
+    public void find_an_equal_beacon_id() {
+        tested.put(getBeaconId(1), 1000, 20, ScanEventType.ENTRY.getMask(), "pairing");
+
+        int index = tested.indexOf(getBeaconId(1));
+
+        Assertions.assertThat(index).isGreaterThanOrEqualTo(0);
+        Assertions.assertThat(tested.lastBeaconTimeAt(index)).isEqualTo(1000);
+        Assertions.assertThat(tested.scanPauseTimeAt(index)).isEqualTo(20);
+        Assertions.assertThat(tested.pairingIdAt(index)).isEqualTo("pairing");
+        Assertions.assertThat(tested.indexOf(getBeaconId(2))).isEqualTo(-1);
+    }
+
+    @Test
+    public void add_scan_pauses_only_to_existing_entries() {
+        tested.put(getBeaconId(1), 1000, 0, ScanEventType.ENTRY.getMask(), null);
+        tested.addPause(300);
+        tested.put(getBeaconId(2), 2000, 0, ScanEventType.ENTRY.getMask(), null);
+        tested.addPause(200);
+
+        Assertions.assertThat(tested.scanPauseTimeAt(tested.indexOf(getBeaconId(1)))).isEqualTo(500);
+        Assertions.assertThat(tested.scanPauseTimeAt(tested.indexOf(getBeaconId(2)))).isEqualTo(200);
+    }
+
+    @Test
+    public void reset_the_scan_pause_on_touch() {
+        int index = tested.put(getBeaconId(1), 1000, 0, ScanEventType.ENTRY.getMask(), "pairing");
+        tested.addPause(300);
+
+        tested.touch(index, 5000);
+
+        Assertions.assertThat(tested.lastBeaconTimeAt(index)).isEqualTo(5000);
+        Assertions.assertThat(tested.scanPauseTimeAt(index)).isEqualTo(0);
+        Assertions.assertThat(tested.eventMaskAt(index)).isEqualTo(ScanEventType.ENTRY.getMask());
+        Assertions.assertThat(tested.pairingIdAt(index)).isEqualTo("pairing");
+    }
+
+    @Test
+    public void keep_all_entries_when_growing_and_removing() {
+        for (int i = 0; i < 1000; i++) {
+            tested.put(getBeaconId(i), i, 0, 0, null);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            Assertions.assertThat(tested.remove(getBeaconId(i))).isTrue();
+        }
+
+        Assertions.assertThat(tested.size()).isEqualTo(500);
+        for (int i = 0; i < 1000; i++) {
+            int index = tested.indexOf(getBeaconId(i));
+            if (i % 2 == 0) {
+                Assertions.assertThat(index).isEqualTo(-1);
+            } else {
+                Assertions.assertThat(tested.lastBeaconTimeAt(index)).isEqualTo(i);
+            }
+        }
+    }
+
+    @Test
+    public void visit_every_entry_once_while_removing() {
+        for (int i = 0; i < 200; i++) {
+            tested.put(getBeaconId(i), i, 0, 0, null);
+        }
+        final int[] visits = new int[200];
+
+        tested.removeIf(new EnteredBeaconTable.Visitor() {
+            @Override
+            public boolean visit(EnteredBeaconTable table, int index) {
+                int minor = table.keyAt(index).getMinorId();
+                visits[minor]++;
+                return minor % 3 != 0;
+            }
+        });
+
+        for (int visit : visits) {
+            Assertions.assertThat(visit).isEqualTo(1);
+        }
+        Assertions.assertThat(tested.size()).isEqualTo(67);
+        Assertions.assertThat(tested.indexOf(getBeaconId(99))).isGreaterThanOrEqualTo(0);
+        Assertions.assertThat(tested.indexOf(getBeaconId(100))).isEqualTo(-1);
+    }
+
+    private BeaconId getBeaconId(int minor) {
+        return new BeaconId(UUID.fromString("D57092AC-DFAA-446C-8EF3-C81AA22815B5"), 1, minor);
+    }
+}
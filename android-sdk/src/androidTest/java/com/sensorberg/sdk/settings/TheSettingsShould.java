@@ -10,6 +10,7 @@ import com.sensorberg.sdk.internal.transport.RetrofitApiServiceImpl;
 import com.sensorberg.sdk.internal.transport.RetrofitApiTransport;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.internal.transport.model.SettingsResponse;
+import com.sensorberg.sdk.storage.LayoutSnapshotStore;
 
 import junit.framework.Assert;
 
@@ -44,6 +45,9 @@ public class TheSettingsShould {
     @Inject
     Gson gson;
 
+    @Inject
+    LayoutSnapshotStore layoutSnapshotStore;
+
     @Inject
     SharedPreferences prefs;
 
@@ -57,7 +61,7 @@ public class TheSettingsShould {
     public void setUp() throws Exception {
         ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
 
-        Transport transport = new RetrofitApiTransport(mockRetrofitApiService, clock, prefs, gson);
+        Transport transport = new RetrofitApiTransport(mockRetrofitApiService, clock, prefs, gson, layoutSnapshotStore);
         testedSharedPreferences = InstrumentationRegistry.getContext().getSharedPreferences(Long.toString(System.currentTimeMillis()),
                 Context.MODE_PRIVATE);
         tested = new SettingsManager(transport, testedSharedPreferences);
@@ -0,0 +1,105 @@
+package com.sensorberg.sdk.storage;
+
+import com.sensorberg.sdk.model.persistence.ActionConversion;
+import com.sensorberg.sdk.model.persistence.BeaconScan;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import java.util.UUID;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(AndroidJUnit4.class)
+public class TheHistoryStoreShould {
+
+    private HistoryStore tested;
+
+    @Before
+    public void setUp() throws Exception {
+        tested = new HistoryStore(InstrumentationRegistry.getContext());
+        tested.clear();
+    }
+
+    @Test
+    public void load_scans_in_insertion_order_up_to_the_limit() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            tested.addScan(scan(i));
+        }
+
+        HistoryStore.Batch batch = tested.loadBatch(3);
+
+        assertThat(batch.getScans()).containsExactly(scan(0), scan(1), scan(2));
+    }
+
+    @Test
+    public void delete_only_the_rows_of_an_uploaded_batch() throws Exception {
+        tested.addScan(scan(0));
+        HistoryStore.Batch batch = tested.loadBatch(10);
+        tested.addScan(scan(1));
+
+        tested.deleteBatch(batch);
+
+        assertThat(tested.loadBatch(10).getScans()).containsExactly(scan(1));
+    }
+
+    @Test
+    public void keep_a_conversion_whose_type_was_raised_during_the_upload() throws Exception {
+        String action = UUID.randomUUID().toString();
+        tested.putConversion(new ActionConversion(action, ActionConversion.TYPE_IGNORED));
+        HistoryStore.Batch batch = tested.loadBatch(10);
+        tested.putConversion(new ActionConversion(action, ActionConversion.TYPE_SUCCESS));
+
+        tested.deleteBatch(batch);
+
+        assertThat(tested.loadBatch(10).getConversions()).hasSize(1);
+        assertThat(tested.loadBatch(10).getConversions().get(0).getType()).isEqualTo(ActionConversion.TYPE_SUCCESS);
+    }
+
+    @Test
+    public void reject_a_conversion_with_a_lower_type() throws Exception {
+        String action = UUID.randomUUID().toString();
+        assertThat(tested.putConversion(new ActionConversion(action, ActionConversion.TYPE_SUCCESS))).isTrue();
+        assertThat(tested.putConversion(new ActionConversion(action, ActionConversion.TYPE_IGNORED))).isFalse();
+
+        assertThat(tested.loadBatch(10).getConversions().get(0).getType()).isEqualTo(ActionConversion.TYPE_SUCCESS);
+    }
+
+    @Test
+    public void keep_the_backlog_up_to_date_on_inserts_and_deletes() throws Exception {
+        String action = UUID.randomUUID().toString();
+        tested.addScan(scan(0));
+        tested.addScan(scan(1));
+        tested.putConversion(new ActionConversion(action, ActionConversion.TYPE_IGNORED));
+        tested.putConversion(new ActionConversion(action, ActionConversion.TYPE_SUCCESS));
+        assertThat(tested.getBacklog()).isEqualTo(3);
+
+        HistoryStore.Batch batch = tested.loadBatch(10);
+        tested.addScan(scan(2));
+        tested.deleteBatch(batch);
+
+        assertThat(tested.getScanCount()).isEqualTo(1);
+        assertThat(tested.getConversionCount()).isEqualTo(0);
+        assertThat(new HistoryStore(InstrumentationRegistry.getContext()).getBacklog()).isEqualTo(1);
+    }
+
+    @Test
+    public void drop_old_suppression_times_on_load() throws Exception {
+        tested.putSuppressionTime("old", 1000);
+        tested.putSuppressionTime("recent", 5000);
+
+        assertThat(tested.loadSuppressionTimes(1000)).containsKey("recent").hasSize(1);
+    }
+
+    private static BeaconScan scan(int index) {
+        BeaconScan scan = new BeaconScan();
+        scan.setPid("7367672374000000ffff0000ffff00010000100001");
+        scan.setTrigger(1);
+        scan.setCreatedAt(1000 + index);
+        return scan;
+    }
+}
@@ -40,6 +40,11 @@ public class DumbSucessTransport implements Transport {
         beaconResponseHandler.onFailure(new IllegalArgumentException("this transport is dumb"));
     }
 
+    @Override
+    public boolean resolveFromCachedLayout(ScanEvent scanEvent, long maxAge, BeaconResponseHandler beaconResponseHandler) {
+        return false;
+    }
+
     @Override
     public boolean setApiToken(String apiToken) {
         return false;
@@ -3,20 +3,19 @@ package com.sensorberg.sdk.testUtils;
 import android.os.Message;
 import android.util.Pair;
 
-import com.sensorberg.sdk.Logger;
 import com.sensorberg.sdk.internal.interfaces.Clock;
 import com.sensorberg.sdk.internal.interfaces.RunLoop;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.TimerTask;
 
 public class NonThreadedRunLoopForTesting implements RunLoop {
 
     private final MessageHandlerCallback messageCallback;
     private Clock clock;
     private final List<Pair<Long, Runnable>> scheduledEvents;
-    private TimerTask timerTask;
+    private Runnable timer;
+    private long timerDue;
 
     public NonThreadedRunLoopForTesting(MessageHandlerCallback messageMessageHandlerCallback, Clock clock) {
         this.messageCallback = messageMessageHandlerCallback;
@@ -46,13 +45,14 @@ public class NonThreadedRunLoopForTesting implements RunLoop {
     }
 
     @Override
-    public void scheduleAtFixedRate(TimerTask timerTask, long when, long interval) {
-        this.timerTask = timerTask;
+    public void scheduleTimer(Runnable runnable, long delay) {
+        this.timer = runnable;
+        this.timerDue = clock.now() + delay;
     }
 
     @Override
-    public void cancelFixedRateExecution() {
-        this.timerTask = null;
+    public void cancelTimer() {
+        this.timer = null;
     }
 
     @Override
@@ -90,10 +90,10 @@ public class NonThreadedRunLoopForTesting implements RunLoop {
     }
 
     public void loop() {
-        if (this.timerTask != null) {
-            timerTask.run();
-        } else {
-            Logger.log.logError("Timertask was null");
+        if (this.timer != null && timerDue <= clock.now()) {
+            Runnable runnable = timer;
+            timer = null;
+            runnable.run();
         }
         scheduledEvents();
     }
@@ -20,6 +20,7 @@ import com.sensorberg.sdk.SensorbergServiceMessage;
 import com.sensorberg.sdk.internal.interfaces.BluetoothPlatform;
 import com.sensorberg.sdk.internal.interfaces.Platform;
 import com.sensorberg.sdk.location.GeofenceReceiver;
+import com.sensorberg.sdk.metrics.MetricsSnapshot;
 import com.sensorberg.sdk.receivers.GenericBroadcastReceiver;
 import com.sensorberg.sdk.receivers.NetworkInfoBroadcastReceiver;
 import com.sensorberg.sdk.receivers.PermissionBroadcastReceiver;
@@ -31,6 +32,7 @@ import com.sensorberg.utils.AttributeValidator;
 
 import net.danlew.android.joda.JodaTimeAndroid;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -62,6 +64,11 @@ public class SensorbergSdk implements Platform.ForegroundStateListener {
 
     protected static final Set<SensorbergSdkEventListener> listeners = new HashSet<>();
 
+    /**
+     * listeners that wait for the reply to {@link #requestMetrics(SensorbergSdkMetricsListener)}
+     */
+    protected static final Set<SensorbergSdkMetricsListener> metricsListeners = new HashSet<>();
+
     @Setter
     private static Component component;
 
@@ -79,6 +86,11 @@ public class SensorbergSdk implements Platform.ForegroundStateListener {
                     BeaconEvent beaconEvent = bundle.getParcelable(SensorbergServiceMessage.MSG_PRESENT_ACTION_BEACONEVENT);
                     notifyEventListeners(beaconEvent);
                     break;
+                case SensorbergServiceMessage.MSG_METRICS:
+                    Bundle metrics = msg.getData();
+                    metrics.setClassLoader(MetricsSnapshot.class.getClassLoader());
+                    notifyMetricsListeners((MetricsSnapshot) metrics.getSerializable(SensorbergServiceMessage.EXTRA_METRICS));
+                    break;
                 default:
                     super.handleMessage(msg);
             }
@@ -182,6 +194,32 @@ public class SensorbergSdk implements Platform.ForegroundStateListener {
         }
     }
 
+    protected static void notifyMetricsListeners(MetricsSnapshot snapshot) {
+        List<SensorbergSdkMetricsListener> waiting = new ArrayList<>(metricsListeners);
+        metricsListeners.clear();
+        for (SensorbergSdkMetricsListener listener : waiting) {
+            listener.onMetrics(snapshot);
+        }
+    }
+
+    /**
+     * Asks the Sensorberg service for its metrics: advertisements received, filtered and dropped by the scanner,
+     * entries and exits, resolver latency, network requests and bytes per endpoint and more. The listener is called
+     * once on the main thread, {@link MetricsSnapshot#toJson()} exports the snapshot.
+     *
+     * @param listener {@code SensorbergSdkMetricsListener} the listener to call with the snapshot.
+     */
+    public void requestMetrics(SensorbergSdkMetricsListener listener) {
+
+        if (blocked()) return;
+
+        if (listener != null) {
+            metricsListeners.add(listener);
+            context.startService(SensorbergServiceIntents.getIntentWithReplyToMessenger(context,
+                    SensorbergServiceMessage.MSG_REQUEST_METRICS, messenger));
+        }
+    }
+
     protected void activateService(String apiKey) {
         if (bluetoothPlatform.isBluetoothLowEnergySupported()) {
             context.startService(SensorbergServiceIntents.getStartServiceIntent(context, apiKey));
@@ -0,0 +1,18 @@
+package com.sensorberg;
+
+import com.sensorberg.sdk.metrics.MetricsSnapshot;
+
+/**
+ * {@code SensorbergSdkMetricsListener} receives the metrics of the scanner, the resolver and the network requests of
+ * the SDK, see {@link SensorbergSdk#requestMetrics(SensorbergSdkMetricsListener)}.
+ */
+public interface SensorbergSdkMetricsListener {
+
+    /**
+     * Called on the main thread with the metrics of the Sensorberg service.
+     *
+     * @param snapshot {@code MetricsSnapshot} the current values of all metrics.
+     */
+    void onMetrics(MetricsSnapshot snapshot);
+
+}
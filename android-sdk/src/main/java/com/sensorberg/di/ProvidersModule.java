@@ -17,6 +17,7 @@ import com.sensorberg.sdk.internal.AndroidHandlerManager;
 import com.sensorberg.sdk.internal.AndroidPlatform;
 import com.sensorberg.sdk.internal.AndroidPlatformIdentifier;
 import com.sensorberg.sdk.internal.AndroidServiceScheduler;
+import com.sensorberg.sdk.internal.ExecutorHandlerManager;
 import com.sensorberg.sdk.internal.PermissionChecker;
 import com.sensorberg.sdk.internal.PersistentIntegerCounter;
 import com.sensorberg.sdk.internal.interfaces.BluetoothPlatform;
@@ -36,6 +37,8 @@ import com.sensorberg.sdk.model.ISO8601TypeAdapter;
 import com.sensorberg.sdk.scanner.BeaconActionHistoryPublisher;
 import com.sensorberg.sdk.settings.DefaultSettings;
 import com.sensorberg.sdk.settings.SettingsManager;
+import com.sensorberg.sdk.storage.HistoryStore;
+import com.sensorberg.sdk.storage.LayoutSnapshotStore;
 import com.sensorberg.utils.PlayServicesUtils;
 
 import java.util.Date;
@@ -53,8 +56,18 @@ public class ProvidersModule {
 
     private final Application application;
 
+    /**
+     * run the scanner, resolver and history publisher on a shared pool of threads instead of a looper thread each
+     */
+    private final boolean sharedExecutorRunLoops;
+
     public ProvidersModule(Application app) {
+        this(app, false);
+    }
+
+    public ProvidersModule(Application app, boolean sharedExecutorRunLoops) {
         application = app;
+        this.sharedExecutorRunLoops = sharedExecutorRunLoops;
     }
 
     @Provides
@@ -140,6 +153,9 @@ public class ProvidersModule {
     @Named("realHandlerManager")
     @Singleton
     public HandlerManager provideAndroidHandlerManager() {
+        if (sharedExecutorRunLoops) {
+            return new ExecutorHandlerManager();
+        }
         return new AndroidHandlerManager();
     }
 
@@ -160,8 +176,9 @@ public class ProvidersModule {
     @Provides
     @Named("realTransport")
     @Singleton
-    public Transport provideRealTransport(@Named("realRetrofitApiService") RetrofitApiServiceImpl retrofitApiService, Clock clock, SharedPreferences sharedPreferences, Gson gson) {
-        return new RetrofitApiTransport(retrofitApiService, clock, sharedPreferences, gson);
+    public Transport provideRealTransport(@Named("realRetrofitApiService") RetrofitApiServiceImpl retrofitApiService, Clock clock, SharedPreferences sharedPreferences, Gson gson,
+            LayoutSnapshotStore layoutSnapshotStore) {
+        return new RetrofitApiTransport(retrofitApiService, clock, sharedPreferences, gson, layoutSnapshotStore);
     }
 
     @Provides
@@ -181,8 +198,20 @@ public class ProvidersModule {
             @Named("realTransport") Transport transport,
             Clock clock,
             @Named("realHandlerManager") HandlerManager handlerManager,
-            SharedPreferences sharedPreferences, Gson gson) {
-        return new BeaconActionHistoryPublisher(transport, clock, handlerManager, sharedPreferences, gson);
+            HistoryStore historyStore, SharedPreferences sharedPreferences, Gson gson) {
+        return new BeaconActionHistoryPublisher(transport, clock, handlerManager, historyStore, sharedPreferences, gson);
+    }
+
+    @Provides
+    @Singleton
+    public HistoryStore provideHistoryStore(Context context) {
+        return new HistoryStore(context);
+    }
+
+    @Provides
+    @Singleton
+    public LayoutSnapshotStore provideLayoutSnapshotStore(Context context) {
+        return new LayoutSnapshotStore(context);
     }
 
     @Provides
@@ -24,6 +24,7 @@ import com.sensorberg.sdk.internal.interfaces.ServiceScheduler;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.location.GeofenceData;
 import com.sensorberg.sdk.location.GeofenceListener;
+import com.sensorberg.sdk.location.GeofenceCodec;
 import com.sensorberg.sdk.location.GeofenceManager;
 import com.sensorberg.sdk.location.LocationHelper;
 import com.sensorberg.sdk.model.BeaconId;
@@ -140,7 +141,7 @@ public class InternalApplicationBootstrapper extends MinimalBootstrapper impleme
 
         scanner = new Scanner(settingsManager, settingsManager.isShouldRestoreBeaconStates(), clock, fileManager, scheduler, handlerManager,
                 btPlatform);
-        resolver = new Resolver(resolverConfiguration, handlerManager, transport, attributes);
+        resolver = new Resolver(resolverConfiguration, handlerManager, transport, clock, attributes);
         resolver.setListener(resolverListener);
 
         scanner.addScannerListener(this);
@@ -202,6 +203,7 @@ public class InternalApplicationBootstrapper extends MinimalBootstrapper impleme
             if (reportLevel == Settings.BEACON_REPORT_LEVEL_ONLY_CONTAINED) {
                 beaconActionHistoryPublisher.onScanEventDetected(scanEvent);
             }
+            resolver.setCachedLayoutMaxAge(settingsManager.getCachedLayoutMaxAge());
             resolver.resolve(scanEvent);
         }
     }
@@ -322,10 +324,6 @@ public class InternalApplicationBootstrapper extends MinimalBootstrapper impleme
         }
     }
 
-    public void saveAllDataBeforeDestroy() {
-        beaconActionHistoryPublisher.saveAllData();
-    }
-
     public void hostApplicationInForeground() {
         scanner.hostApplicationInForeground();
         updateSettings();
@@ -406,9 +404,10 @@ public class InternalApplicationBootstrapper extends MinimalBootstrapper impleme
             for (String proximityUUID : proximityUUIDs) {
                 if (proximityUUID.length() == 32) {
                     this.proximityUUIDs.add(proximityUUID.toLowerCase());
-                } else if (proximityUUID.length() == 14) {
+                } else if (proximityUUID.length() == GeofenceCodec.LENGTH) {
+                    //fences are parsed case insensitive by the GeofenceStorage
                     if (doFences) {
-                        fences.add(proximityUUID.toLowerCase());
+                        fences.add(proximityUUID);
                     }
                 } else {
                     Logger.log.logError("Invalid proximityUUID: " + proximityUUID);
@@ -0,0 +1,193 @@
+package com.sensorberg.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded buffer of log lines that are written by a background thread, so logging never waits for logcat. When the
+ * writer falls behind the oldest lines are overwritten and the writer reports how many it missed. The last
+ * {@code capacity} lines stay in the buffer, so they can be read back with {@link #recent()}.
+ * <p>
+ * Any thread may {@link #append(int, String, Throwable)} and {@link #drain()}, draining threads take turns.
+ */
+final class LogRingBuffer {
+
+    interface Writer {
+
+        /**
+         * @param priority the priority of the line, as in {@link android.util.Log}
+         * @param message the line
+         * @param cause the throwable logged with the line, or null
+         */
+        void write(int priority, String message, Throwable cause);
+    }
+
+    private final int capacity;
+
+    private final Writer writer;
+
+    private final long[] times;
+
+    private final int[] priorities;
+
+    private final String[] messages;
+
+    private final Throwable[] causes;
+
+    /**
+     * lines appended so far, the next line goes to {@code appended % capacity}
+     */
+    private long appended;
+
+    /**
+     * lines handed to the {@link #writer} or overwritten before that
+     */
+    private long written;
+
+    private boolean writerWaiting;
+
+    /**
+     * held while draining, so the lines are written in order
+     */
+    private final Object drainLock = new Object();
+
+    /**
+     * only used while holding the {@link #drainLock}
+     */
+    private final int[] drainPriorities;
+
+    private final String[] drainMessages;
+
+    private final Throwable[] drainCauses;
+
+    LogRingBuffer(int capacity, Writer writer) {
+        this.capacity = capacity;
+        this.writer = writer;
+        times = new long[capacity];
+        priorities = new int[capacity];
+        messages = new String[capacity];
+        causes = new Throwable[capacity];
+        drainPriorities = new int[capacity];
+        drainMessages = new String[capacity];
+        drainCauses = new Throwable[capacity];
+    }
+
+    /**
+     * Starts a daemon thread that writes the lines as they are appended.
+     *
+     * @param name the name of the thread
+     */
+    void start(String name) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        awaitLines();
+                        drain();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    void append(int priority, String message, Throwable cause) {
+        synchronized (this) {
+            int slot = (int) (appended % capacity);
+            times[slot] = System.currentTimeMillis();
+            priorities[slot] = priority;
+            messages[slot] = message;
+            causes[slot] = cause;
+            appended++;
+            if (writerWaiting) {
+                writerWaiting = false;
+                notify();
+            }
+        }
+    }
+
+    /**
+     * Appends the line and writes it, and every line before it, on the calling thread. For lines that must not be
+     * lost when the process dies right after them, like errors.
+     */
+    void appendAndDrain(int priority, String message, Throwable cause) {
+        append(priority, message, cause);
+        drain();
+    }
+
+    private synchronized void awaitLines() throws InterruptedException {
+        while (written == appended) {
+            writerWaiting = true;
+            wait();
+        }
+    }
+
+    /**
+     * Hands every line that was not written yet to the writer, without holding the lock while writing.
+     *
+     * @return the number of lines written, not counting the lines that were overwritten
+     */
+    int drain() {
+        synchronized (drainLock) {
+            long missed;
+            int count;
+            synchronized (this) {
+                long first = Math.max(written, appended - capacity);
+                missed = first - written;
+                count = (int) (appended - first);
+                for (int i = 0; i < count; i++) {
+                    int slot = (int) ((first + i) % capacity);
+                    drainPriorities[i] = priorities[slot];
+                    drainMessages[i] = messages[slot];
+                    drainCauses[i] = causes[slot];
+                }
+                written = appended;
+            }
+            if (missed > 0) {
+                writer.write(android.util.Log.WARN, missed + " log lines were dropped, logging could not keep up", null);
+            }
+            for (int i = 0; i < count; i++) {
+                writer.write(drainPriorities[i], drainMessages[i], drainCauses[i]);
+                drainMessages[i] = null;
+                drainCauses[i] = null;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * @return the last lines that were appended, oldest first, each prefixed with its time in millis and its priority
+     */
+    synchronized List<String> recent() {
+        long first = Math.max(0, appended - capacity);
+        List<String> lines = new ArrayList<>((int) (appended - first));
+        for (long i = first; i < appended; i++) {
+            int slot = (int) (i % capacity);
+            lines.add(times[slot] + " " + priorityLetter(priorities[slot]) + " " + messages[slot]
+                    + (causes[slot] != null ? " " + causes[slot] : ""));
+        }
+        return lines;
+    }
+
+    private static char priorityLetter(int priority) {
+        switch (priority) {
+            case android.util.Log.VERBOSE:
+                return 'V';
+            case android.util.Log.DEBUG:
+                return 'D';
+            case android.util.Log.INFO:
+                return 'I';
+            case android.util.Log.WARN:
+                return 'W';
+            case android.util.Log.ERROR:
+                return 'E';
+            default:
+                return '?';
+        }
+    }
+}
@@ -6,7 +6,9 @@ import com.sensorberg.sdk.model.BeaconId;
 import com.sensorberg.sdk.resolver.BeaconEvent;
 import com.sensorberg.sdk.scanner.ScanEvent;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.sensorberg.SensorbergSdk.blocked;
@@ -18,10 +20,91 @@ public class Logger {
 
     private static final String TAG = "Sensorberg";
 
+    /**
+     * lines kept for {@link #getRecentLines()} and for logcat to catch up
+     */
+    private static final int LOG_BUFFER_CAPACITY = 512;
+
+    /**
+     * Guards call sites that build their message, so a quiet logger costs one branch and no allocations:
+     * <pre>
+     * if (Logger.isVerboseLoggingEnabled()) {
+     *     Logger.log.scannerStateChange("sleeping for " + waitTime + " millis");
+     * }
+     * </pre>
+     */
     public static boolean isVerboseLoggingEnabled() {
         return log != QUIET_LOG;
     }
 
+    /**
+     * Logs a debug message, replacing each {@code {}} in the template with the next argument. The message is only
+     * built if verbose logging is enabled.
+     */
+    public static void debug(String template, Object arg) {
+        if (isVerboseLoggingEnabled()) {
+            log.debug(format(template, arg, null, null));
+        }
+    }
+
+    public static void debug(String template, Object arg1, Object arg2) {
+        if (isVerboseLoggingEnabled()) {
+            log.debug(format(template, arg1, arg2, null));
+        }
+    }
+
+    public static void debug(String template, Object arg1, Object arg2, Object arg3) {
+        if (isVerboseLoggingEnabled()) {
+            log.debug(format(template, arg1, arg2, arg3));
+        }
+    }
+
+    /**
+     * Logs a verbose message, replacing each {@code {}} in the template with the next argument. The message is only
+     * built if verbose logging is enabled.
+     */
+    public static void verbose(String template, Object arg) {
+        if (isVerboseLoggingEnabled()) {
+            log.verbose(format(template, arg, null, null));
+        }
+    }
+
+    public static void verbose(String template, Object arg1, Object arg2) {
+        if (isVerboseLoggingEnabled()) {
+            log.verbose(format(template, arg1, arg2, null));
+        }
+    }
+
+    public static void verbose(String template, Object arg1, Object arg2, Object arg3) {
+        if (isVerboseLoggingEnabled()) {
+            log.verbose(format(template, arg1, arg2, arg3));
+        }
+    }
+
+    static String format(String template, Object arg1, Object arg2, Object arg3) {
+        StringBuilder message = new StringBuilder(template.length() + 32);
+        int start = 0;
+        int argument = 0;
+        int placeholder;
+        while ((placeholder = template.indexOf("{}", start)) >= 0 && argument < 3) {
+            message.append(template, start, placeholder);
+            message.append(argument == 0 ? arg1 : (argument == 1 ? arg2 : arg3));
+            argument++;
+            start = placeholder + 2;
+        }
+        return message.append(template, start, template.length()).toString();
+    }
+
+    /**
+     * @return the last lines logged by the verbose logger, oldest first, or an empty list if it was never enabled
+     */
+    public static List<String> getRecentLines() {
+        if (log instanceof VerboseLogger) {
+            return VerboseLogger.BUFFER.recent();
+        }
+        return Collections.emptyList();
+    }
+
     public interface Log {
 
         void beaconResolveState(ScanEvent event, String state);
@@ -171,31 +254,64 @@ public class Logger {
 
     static class VerboseLogger implements Log {
 
+        /**
+         * written to logcat by a background thread, shared by all verbose loggers
+         */
+        private static final LogRingBuffer BUFFER = new LogRingBuffer(LOG_BUFFER_CAPACITY, new LogRingBuffer.Writer() {
+            @Override
+            public void write(int priority, String message, Throwable cause) {
+                if (cause != null) {
+                    android.util.Log.println(priority, TAG, message + '\n' + android.util.Log.getStackTraceString(cause));
+                } else {
+                    android.util.Log.println(priority, TAG, message);
+                }
+            }
+        });
+
+        static {
+            BUFFER.start("SensorbergLog");
+        }
+
         VerboseLogger() {
         }
 
+        static void write(int priority, String message) {
+            BUFFER.append(priority, message, null);
+        }
+
+        static void write(int priority, String message, Throwable cause) {
+            BUFFER.append(priority, message, cause);
+        }
+
+        /**
+         * errors are written right away, the process may be about to die
+         */
+        static void writeError(String message, Throwable cause) {
+            BUFFER.appendAndDrain(android.util.Log.ERROR, message, cause);
+        }
+
         public void beaconResolveState(ScanEvent event, String state) {
-            android.util.Log.d(TAG, event.getBeaconId().toTraditionalString() + " has switched to state " + state);
+            write(android.util.Log.DEBUG, event.getBeaconId().toTraditionalString() + " has switched to state " + state);
         }
 
         @Override
         public void beaconResolveState(BeaconEvent event, String state) {
-            android.util.Log.d(TAG, "showing an action for a beacon scanevent " + event.getBeaconId().toTraditionalString() + " state " + state);
+            write(android.util.Log.DEBUG, "showing an action for a beacon scanevent " + event.getBeaconId().toTraditionalString() + " state " + state);
         }
 
         @Override
         public void beaconSeenAgain(BeaconId beaconId) {
-            android.util.Log.d(TAG, beaconId.toTraditionalString() + " was seen again ");
+            write(android.util.Log.DEBUG, beaconId.toTraditionalString() + " was seen again ");
         }
 
         @Override
         public void scannerStateChange(String state) {
-            android.util.Log.d(TAG, "scanner has changed state:" + state);
+            write(android.util.Log.DEBUG, "scanner has changed state:" + state);
         }
 
         @Override
         public void serviceHandlesMessage(String message) {
-            android.util.Log.d(TAG, "service is handling message:" + message);
+            write(android.util.Log.DEBUG, "service is handling message:" + message);
         }
 
         @Override
@@ -209,75 +325,75 @@ public class Logger {
 
         @Override
         public void logError(String s) {
-            android.util.Log.e(TAG, s);
+            writeError(s, null);
         }
 
         @Override
         public void logServiceState(String state) {
-            android.util.Log.d(TAG, "service state:" + state);
+            write(android.util.Log.DEBUG, "service state:" + state);
         }
 
         @Override
         public void logSettingsUpdateState(String state) {
-            android.util.Log.d(TAG, "settings update finished message:\"" + state + "\"");
+            write(android.util.Log.DEBUG, "settings update finished message:\"" + state + "\"");
         }
 
         @Override
         public void verbose(String message) {
-            android.util.Log.v(TAG, message);
+            write(android.util.Log.VERBOSE, message);
         }
 
         @Override
         public void debug(String message) {
-            android.util.Log.d(TAG, message);
+            write(android.util.Log.DEBUG, message);
         }
 
         @Override
         public void logBeaconHistoryPublisherState(String state) {
-            android.util.Log.d(TAG, "beaconHistoryPublisher state:" + state);
+            write(android.util.Log.DEBUG, "beaconHistoryPublisher state:" + state);
         }
 
         @Override
         public void geofence(String s) {
-            android.util.Log.d(TAG, "Geofences: "+s);
+            write(android.util.Log.DEBUG, "Geofences: " + s);
         }
 
         @Override
         public void geofenceError(String s, Throwable cause) {
-            android.util.Log.e(TAG, "Geofences: "+s, cause);
+            writeError("Geofences: " + s, cause);
         }
 
         @Override
         public void logBluetoothState(int state) {
             switch (state) {
                 case BluetoothAdapter.STATE_OFF:
-                    android.util.Log.d(TAG, "Bluetooth off");
+                    write(android.util.Log.DEBUG, "Bluetooth off");
                     break;
                 case BluetoothAdapter.STATE_TURNING_OFF:
-                    android.util.Log.d(TAG, "Turning Bluetooth off... stopping scans");
+                    write(android.util.Log.DEBUG, "Turning Bluetooth off... stopping scans");
                     break;
                 case BluetoothAdapter.STATE_ON:
-                    android.util.Log.d(TAG, "Bluetooth on");
+                    write(android.util.Log.DEBUG, "Bluetooth on");
                     break;
                 case BluetoothAdapter.STATE_TURNING_ON:
-                    android.util.Log.d(TAG, "Turning Bluetooth on... restarting scans");
+                    write(android.util.Log.DEBUG, "Turning Bluetooth on... restarting scans");
                     break;
             }
         }
 
         @Override
         public void userPresent() {
-            android.util.Log.d(TAG, "User present");
+            write(android.util.Log.DEBUG, "User present");
         }
 
         @Override
         public void applicationStateChanged(String message) {
-            android.util.Log.d(TAG, "application has changed state:" + message);
+            write(android.util.Log.DEBUG, "application has changed state:" + message);
         }
 
         @Override
         public void logAttributes(String s) {
-            android.util.Log.d(TAG, "Attributes: " + s);
+            write(android.util.Log.DEBUG, "Attributes: " + s);
         }
     }
 
@@ -299,7 +415,7 @@ public class Logger {
             }
             counter.put(beaconId, value);
             if (counter.get(beaconId) % countNeeded == 0) {
-                android.util.Log.d(TAG, beaconId.toTraditionalString() + " was seen again ");
+                write(android.util.Log.DEBUG, beaconId.toTraditionalString() + " was seen again ");
             }
 
         }
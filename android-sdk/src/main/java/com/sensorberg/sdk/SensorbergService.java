@@ -26,6 +26,7 @@ import com.sensorberg.sdk.internal.interfaces.PlatformIdentifier;
 import com.sensorberg.sdk.internal.interfaces.ServiceScheduler;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.location.GeofenceData;
+import com.sensorberg.sdk.metrics.Metrics;
 import com.sensorberg.sdk.model.persistence.ActionConversion;
 import com.sensorberg.sdk.receivers.GenericBroadcastReceiver;
 import com.sensorberg.sdk.receivers.ScannerBroadcastReceiver;
@@ -406,6 +407,10 @@ public class SensorbergService extends Service {
                 onGeofenceNotAvailable(intent);
                 break;
             }
+            case SensorbergServiceMessage.MSG_REQUEST_METRICS: {
+                sendMetrics(intent);
+                break;
+            }
         }
         return START_STICKY;
     }
@@ -419,6 +424,10 @@ public class SensorbergService extends Service {
     }
 
     protected void onLocationChanged(Intent intent) {
+        Location location = intent.getParcelableExtra(SensorbergServiceMessage.EXTRA_LOCATION);
+        if (location != null) {
+            bootstrapper.locationHelper.onLocationChanged(location);
+        }
         if (!bootstrapper.geofenceAvailable) return;
         if (intent.hasExtra(SensorbergServiceMessage.EXTRA_LOCATION_AVAILABILITY)) {
             boolean available = intent.getBooleanExtra(
@@ -428,7 +437,6 @@ public class SensorbergService extends Service {
                 //bootstrapper.geofenceManager.ping();
             }
         }
-        Location location = intent.getParcelableExtra(SensorbergServiceMessage.EXTRA_LOCATION);
         if (location != null) {
             bootstrapper.geofenceManager.onLocationChanged(location);
         }
@@ -510,6 +518,21 @@ public class SensorbergService extends Service {
         }
     }
 
+    protected void sendMetrics(Intent intent) {
+        if (intent.hasExtra(SensorbergServiceMessage.EXTRA_MESSENGER)) {
+            Messenger messenger = intent.getParcelableExtra(SensorbergServiceMessage.EXTRA_MESSENGER);
+            try {
+                Message message = Message.obtain(null, SensorbergServiceMessage.MSG_METRICS);
+                Bundle bundle = new Bundle();
+                bundle.putSerializable(SensorbergServiceMessage.EXTRA_METRICS, Metrics.snapshot());
+                message.setData(bundle);
+                messenger.send(message);
+            } catch (RemoteException e) {
+                logError("could not send the metrics through the Messenger", e);
+            }
+        }
+    }
+
     protected void processBluetoothStateMessage(Intent intent) {
         if (intent.hasExtra(SensorbergServiceMessage.EXTRA_BLUETOOTH_STATE)) {
             boolean bluetoothOn = intent.getBooleanExtra(SensorbergServiceMessage.EXTRA_BLUETOOTH_STATE, true);
@@ -542,7 +565,6 @@ public class SensorbergService extends Service {
         Logger.log.logServiceState("onDestroy");
         if (bootstrapper != null) {
             bootstrapper.stopScanning();
-            bootstrapper.saveAllDataBeforeDestroy();
         }
         super.onDestroy();
     }
@@ -554,9 +576,6 @@ public class SensorbergService extends Service {
             super.onTaskRemoved(rootIntent);
             return;
         }
-        if (bootstrapper != null) {
-            bootstrapper.saveAllDataBeforeDestroy();
-        }
         Logger.log.logServiceState("onTaskRemoved");
         super.onTaskRemoved(rootIntent);
     }
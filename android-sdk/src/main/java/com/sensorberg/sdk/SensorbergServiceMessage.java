@@ -54,6 +54,10 @@ public class SensorbergServiceMessage {
 
     public static final int MSG_LOCATION_ENABLED = 601;
 
+    public static final int MSG_REQUEST_METRICS = 700;
+
+    public static final int MSG_METRICS = 701;
+
     public static final String MSG_SET_API_TOKEN_TOKEN = "com.sensorberg.android.sdk.message.setApiToken.apiTokenString";
 
     public static final String MSG_PRESENT_ACTION_BEACONEVENT = "com.sensorberg.android.sdk.message.presentBeaconEvent.beaconEvent";
@@ -91,6 +95,8 @@ public class SensorbergServiceMessage {
 
     public static final String EXTRA_GEOFENCE_ENTRY = "com.sensorberg.android.sdk.intent.geofence.entry";
 
+    public static final String EXTRA_METRICS = "com.sensorberg.android.sdk.intent.metrics";
+
     private SensorbergServiceMessage() {
         throw new IllegalAccessError("Utility class");
     }
@@ -146,6 +152,10 @@ public class SensorbergServiceMessage {
                 return "MSG_LOCATION_UPDATED";
             case MSG_LOCATION_ENABLED:
                 return "MSG_LOCATION_ENABLED";
+            case MSG_REQUEST_METRICS:
+                return "MSG_REQUEST_METRICS";
+            case MSG_METRICS:
+                return "MSG_METRICS";
             default:
                 return "unknown message" + what;
         }
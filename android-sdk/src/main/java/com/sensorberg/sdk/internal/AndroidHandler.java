@@ -3,18 +3,32 @@ package com.sensorberg.sdk.internal;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 
 import com.sensorberg.sdk.Logger;
 import com.sensorberg.sdk.internal.interfaces.RunLoop;
 import com.sensorberg.sdk.settings.TimeConstants;
 
 import java.lang.ref.WeakReference;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class AndroidHandler implements RunLoop {
     private final LooperThread looper;
-    private Timer timer;
+    private final Object timerMonitor = new Object();
+    private Runnable timer;
+    private long timerUptime;
+    private final Runnable timerCallback = new Runnable() {
+        @Override
+        public void run() {
+            Runnable runnable;
+            synchronized (timerMonitor) {
+                runnable = timer;
+                timer = null;
+            }
+            if (runnable != null) {
+                runnable.run();
+            }
+        }
+    };
 
     public AndroidHandler(MessageHandlerCallback messageHandlerCallback) {
         looper = new LooperThread(messageHandlerCallback);
@@ -29,7 +43,12 @@ public class AndroidHandler implements RunLoop {
     @Override
     public void clearScheduledExecutions() {
         if (looper.handler != null) {
-            looper.handler.removeCallbacksAndMessages(null);
+            synchronized (timerMonitor) {
+                looper.handler.removeCallbacksAndMessages(null);
+                if (timer != null) {
+                    looper.handler.postAtTime(timerCallback, timerUptime);
+                }
+            }
         }
     }
 
@@ -61,20 +80,22 @@ public class AndroidHandler implements RunLoop {
     }
 
     @Override
-    public void scheduleAtFixedRate(TimerTask timerTask, long when, long interval) {
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
-            Logger.log.logError("There is already an execution scheduled");
+    public void scheduleTimer(Runnable runnable, long delay) {
+        Handler handler = getHandler();
+        synchronized (timerMonitor) {
+            handler.removeCallbacks(timerCallback);
+            timer = runnable;
+            timerUptime = SystemClock.uptimeMillis() + Math.max(0, delay);
+            handler.postAtTime(timerCallback, timerUptime);
         }
-        timer = new Timer();
-        timer.scheduleAtFixedRate(timerTask, when, interval);
     }
 
     @Override
-    public void cancelFixedRateExecution() {
-        if (timer != null) {
-            timer.cancel();
+    public void cancelTimer() {
+        synchronized (timerMonitor) {
+            if (looper.handler != null) {
+                looper.handler.removeCallbacks(timerCallback);
+            }
             timer = null;
         }
     }
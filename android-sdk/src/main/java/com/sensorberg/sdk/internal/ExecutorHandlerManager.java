@@ -0,0 +1,58 @@
+package com.sensorberg.sdk.internal;
+
+import com.sensorberg.sdk.internal.interfaces.HandlerManager;
+import com.sensorberg.sdk.internal.interfaces.RunLoop;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link HandlerManager} whose run loops share one small pool of threads instead of starting a looper thread each.
+ * Every run loop is a serial queue on the pool, see {@link ExecutorRunLoop}, so the messages of one component are
+ * still handled one at a time and in order. Idle threads time out, and no run loop waits for a thread to start.
+ */
+public class ExecutorHandlerManager implements HandlerManager {
+
+    private static final int POOL_SIZE = 2;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    public ExecutorHandlerManager() {
+        this(POOL_SIZE);
+    }
+
+    public ExecutorHandlerManager(int poolSize) {
+        executor = new ScheduledThreadPoolExecutor(poolSize, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "sensorberg-runloop-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public RunLoop getScannerRunLoop(RunLoop.MessageHandlerCallback callback) {
+        return new ExecutorRunLoop(executor, callback);
+    }
+
+    @Override
+    public RunLoop getResolverRunLoop(RunLoop.MessageHandlerCallback callback) {
+        return new ExecutorRunLoop(executor, callback);
+    }
+
+    @Override
+    public RunLoop getBeaconPublisherRunLoop(RunLoop.MessageHandlerCallback callback) {
+        return new ExecutorRunLoop(executor, callback);
+    }
+}
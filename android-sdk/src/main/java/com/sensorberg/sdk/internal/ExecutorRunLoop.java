@@ -0,0 +1,240 @@
+package com.sensorberg.sdk.internal;
+
+import android.os.Message;
+
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.internal.interfaces.RunLoop;
+import com.sensorberg.sdk.settings.TimeConstants;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RunLoop} on a shared executor. Messages and due runnables go into a queue of their own, of which at most one
+ * entry is handed to the executor at a time, so they run one after the other in the order they were added, like on
+ * the thread of an {@link AndroidHandler}, but not always on the same thread. Each entry is submitted separately,
+ * so a busy run loop does not keep the other run loops of the executor waiting. An entry that throws is logged as an
+ * error, the entries after it still run.
+ */
+public class ExecutorRunLoop implements RunLoop {
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final MessageHandlerCallback messageHandlerCallback;
+
+    private final Object monitor = new Object();
+
+    /**
+     * entries that are due, in order
+     */
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+    /**
+     * whether an entry of the {@link #queue} was handed to the executor and has not finished yet
+     */
+    private boolean running;
+
+    private final Set<ScheduledFuture<?>> scheduledExecutions = new HashSet<>();
+
+    private Runnable timer;
+
+    private ScheduledFuture<?> timerFuture;
+
+    /**
+     * incremented whenever the timer is replaced, so a timer that fires while it is replaced does not run the new one
+     */
+    private int timerGeneration;
+
+    private final Runnable step = new Runnable() {
+        @Override
+        public void run() {
+            Runnable next;
+            synchronized (monitor) {
+                next = queue.poll();
+                if (next == null) {
+                    running = false;
+                    return;
+                }
+            }
+            try {
+                next.run();
+            } catch (RuntimeException e) {
+                //the executor keeps it in a future that nobody reads
+                Logger.log.logError("run loop task failed: ", e);
+                throw e;
+            } catch (Error e) {
+                Logger.log.logError("run loop task failed: ", e);
+                throw e;
+            } finally {
+                synchronized (monitor) {
+                    if (queue.isEmpty()) {
+                        running = false;
+                    } else {
+                        executor.execute(step);
+                    }
+                }
+            }
+        }
+    };
+
+    private final Runnable timerCallback = new Runnable() {
+        @Override
+        public void run() {
+            Runnable runnable;
+            synchronized (monitor) {
+                runnable = timer;
+                timer = null;
+                timerFuture = null;
+            }
+            if (runnable != null) {
+                runnable.run();
+            }
+        }
+    };
+
+    public ExecutorRunLoop(ScheduledThreadPoolExecutor executor, MessageHandlerCallback messageHandlerCallback) {
+        this.executor = executor;
+        this.messageHandlerCallback = messageHandlerCallback;
+    }
+
+    private void enqueue(Runnable runnable) {
+        synchronized (monitor) {
+            queue.add(runnable);
+            if (!running) {
+                running = true;
+                executor.execute(step);
+            }
+        }
+    }
+
+    @Override
+    public void add(final Message event) {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                messageHandlerCallback.handleMessage(event);
+            }
+        });
+    }
+
+    @Override
+    public void clearScheduledExecutions() {
+        synchronized (monitor) {
+            for (ScheduledFuture<?> future : scheduledExecutions) {
+                future.cancel(false);
+            }
+            scheduledExecutions.clear();
+            //like removeCallbacksAndMessages(null) on the handler, except that a due timer survives
+            boolean timerDue = queue.contains(timerCallback);
+            queue.clear();
+            if (timerDue) {
+                queue.add(timerCallback);
+            }
+        }
+        executor.purge();
+    }
+
+    @Override
+    public void scheduleExecution(Runnable runnable, long wait_time) {
+        if (wait_time > 0) {
+            if (wait_time > TimeConstants.ONE_HOUR * 24) {
+                wait_time = TimeConstants.ONE_HOUR * 24;
+            }
+            synchronized (monitor) {
+                ScheduledExecution execution = new ScheduledExecution(runnable);
+                execution.future = executor.schedule(execution, wait_time, TimeUnit.MILLISECONDS);
+                scheduledExecutions.add(execution.future);
+            }
+        } else {
+            runnable.run();
+        }
+    }
+
+    @Override
+    public void scheduleTimer(Runnable runnable, long delay) {
+        synchronized (monitor) {
+            removeTimer();
+            timer = runnable;
+            final int generation = timerGeneration;
+            timerFuture = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (monitor) {
+                        if (generation == timerGeneration) {
+                            enqueue(timerCallback);
+                        }
+                    }
+                }
+            }, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void cancelTimer() {
+        synchronized (monitor) {
+            removeTimer();
+            timer = null;
+        }
+    }
+
+    private void removeTimer() {
+        timerGeneration++;
+        if (timerFuture != null) {
+            timerFuture.cancel(false);
+            timerFuture = null;
+        }
+        queue.remove(timerCallback);
+    }
+
+    @Override
+    public Message obtainMessage(int what) {
+        return obtainMessage(what, null);
+    }
+
+    @Override
+    public Message obtainMessage(int what, Object obj) {
+        Message message = Message.obtain();
+        message.what = what;
+        message.obj = obj;
+        return message;
+    }
+
+    @Override
+    public void sendMessage(int what) {
+        add(obtainMessage(what));
+    }
+
+    @Override
+    public void sendMessage(int what, Object obj) {
+        add(obtainMessage(what, obj));
+    }
+
+    /**
+     * Moves a runnable of {@link #scheduleExecution(Runnable, long)} into the queue once it is due.
+     */
+    private class ScheduledExecution implements Runnable {
+
+        private final Runnable runnable;
+
+        private ScheduledFuture<?> future;
+
+        ScheduledExecution(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            synchronized (monitor) {
+                //cleared while it was already starting
+                if (!scheduledExecutions.remove(future)) {
+                    return;
+                }
+                enqueue(runnable);
+            }
+        }
+    }
+}
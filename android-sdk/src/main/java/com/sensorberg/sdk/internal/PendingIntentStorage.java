@@ -6,13 +6,30 @@ import com.sensorberg.sdk.internal.interfaces.ServiceScheduler;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
+/**
+ * Keeps the pending intents that survive a reboot in a {@link SQLiteStore}. Nothing touches the database on the
+ * calling thread: the operations are queued in order and run on a background thread, where the adds and removes that
+ * piled up are written in one transaction each, and restored intents are handed back to the main thread.
+ */
 public class PendingIntentStorage {
 
+    /**
+     * restored intents handed to the main thread at once, so restoring thousands does not block it for long
+     */
+    private static final int RESTORE_CHUNK_SIZE = 64;
+
     private final ServiceScheduler serviceScheduler;
 
     private final SQLiteStore storage;
@@ -22,36 +39,133 @@ public class PendingIntentStorage {
 
     private Clock clock;
 
+    private final Executor executor;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * {@link SQLiteStore.Entry}s to add, {@link Integer} indices to remove and {@link Runnable}s, in order
+     */
+    private final List<Object> queue = new ArrayList<>();
+
+    private boolean draining;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            List<Object> operations;
+            synchronized (queue) {
+                operations = new ArrayList<>(queue);
+                queue.clear();
+                draining = false;
+            }
+            List<SQLiteStore.Entry> added = new ArrayList<>();
+            List<Integer> removed = new ArrayList<>();
+            for (Object operation : operations) {
+                if (operation instanceof SQLiteStore.Entry) {
+                    //the adds of a batch are written before its removes
+                    if (!removed.isEmpty()) {
+                        write(added, removed);
+                    }
+                    added.add((SQLiteStore.Entry) operation);
+                } else if (operation instanceof Integer) {
+                    removed.add((Integer) operation);
+                } else {
+                    write(added, removed);
+                    ((Runnable) operation).run();
+                }
+            }
+            write(added, removed);
+        }
+    };
+
     public PendingIntentStorage(ServiceScheduler serviceScheduler, Clock clk) {
         this.serviceScheduler = serviceScheduler;
         clock = clk;
         SensorbergSdk.getComponent().inject(this);
         storage = new SQLiteStore("pendingIntentStorage.sqlite", context);
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        executor = threadPoolExecutor;
+    }
+
+    private void enqueue(Object operation) {
+        synchronized (queue) {
+            queue.add(operation);
+            if (!draining) {
+                draining = true;
+                executor.execute(drain);
+            }
+        }
+    }
+
+    private void write(List<SQLiteStore.Entry> added, List<Integer> removed) {
+        if (!added.isEmpty()) {
+            storage.replaceAll(added);
+            added.clear();
+        }
+        if (!removed.isEmpty()) {
+            storage.deleteAll(removed);
+            removed.clear();
+        }
     }
 
     public void add(int index, long timestamp, int identifier, Bundle bundle) {
-        storage.deleteByIdentifier(identifier);
-        storage.put(new SQLiteStore.Entry(index, timestamp, identifier, bundle));
+        enqueue(new SQLiteStore.Entry(index, timestamp, identifier, bundle));
     }
 
+    /**
+     * Reads the stored intents on the background thread and schedules them again on the main thread, dropping those
+     * that are overdue.
+     */
     public void restorePendingIntents() {
-        storage.deleteOlderThan(clock.now());
-        ArrayList<SQLiteStore.Entry> entries = storage.loadRegistry();
-        for (SQLiteStore.Entry entry : entries) {
-            long relativeFromNow = entry.timestamp - clock.now();
-            serviceScheduler.scheduleIntent(entry.index, relativeFromNow, entry.bundle);
-        }
+        final long now = clock.now();
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                storage.deleteOlderThan(now);
+                final List<SQLiteStore.Entry> chunk = new ArrayList<>(RESTORE_CHUNK_SIZE);
+                storage.forEach(new SQLiteStore.Visitor() {
+                    @Override
+                    public void visit(SQLiteStore.Entry entry) {
+                        chunk.add(entry);
+                        if (chunk.size() == RESTORE_CHUNK_SIZE) {
+                            schedule(new ArrayList<>(chunk), now);
+                            chunk.clear();
+                        }
+                    }
+                });
+                if (!chunk.isEmpty()) {
+                    schedule(chunk, now);
+                }
+            }
+        });
+    }
+
+    private void schedule(final List<SQLiteStore.Entry> entries, final long now) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (SQLiteStore.Entry entry : entries) {
+                    serviceScheduler.scheduleIntent(entry.index, entry.timestamp - now, entry.bundle);
+                }
+            }
+        });
     }
 
     public void clearAllPendingIntents() {
-        ArrayList<SQLiteStore.Entry> entries = storage.loadRegistry();
-        for (SQLiteStore.Entry entry : entries) {
-            serviceScheduler.unscheduleIntent(entry.index);
-        }
-        storage.clear();
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                for (int index : storage.loadIndices()) {
+                    serviceScheduler.unscheduleIntent(index);
+                }
+                storage.clear();
+            }
+        });
     }
 
     public void removeStoredPendingIntent(int index) {
-        storage.delete(index);
+        enqueue(index);
     }
 }
@@ -1,10 +1,11 @@
 package com.sensorberg.sdk.internal;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -12,64 +13,161 @@ import android.os.Parcelable;
 import com.sensorberg.sdk.resolver.BeaconEvent;
 
 import java.util.ArrayList;
-
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Class {@link SQLiteStore} keeps entries with a {@link Bundle} each in their own database file. All writes go
+ * through compiled statements on indexed columns, and the database is in write ahead log mode, so a write does not
+ * wait for readers and readers do not wait for it. Many writes at once go through {@link #replaceAll(Collection)}
+ * and {@link #deleteAll(Collection)}, which commit them in one transaction instead of one each.
+ */
 public class SQLiteStore {
     private final SQLiteDatabase diskRegistry;
 
+    private SQLiteStatement insert;
+    private SQLiteStatement deleteByIndex;
+    private SQLiteStatement deleteByIdentifier;
+    private SQLiteStatement deleteOlderThan;
+
+    /**
+     * Gets the entries of {@link #forEach(Visitor)} one at a time.
+     */
+    public interface Visitor {
+        void visit(Entry entry);
+    }
+
     public SQLiteStore(String fileName, Context context) {
         this.diskRegistry = new RegistryOpenHelper(context, fileName).getWritableDatabase();
+        this.diskRegistry.enableWriteAheadLogging();
+    }
+
+    public synchronized void put(Entry entry) {
+        if (insert == null) {
+            insert = diskRegistry.compileStatement(
+                    "INSERT INTO Entry (_index, _timestamp, _identifier, _bundleBlob) VALUES (?, ?, ?, ?)");
+        }
+        insert.bindLong(1, entry.index);
+        insert.bindLong(2, entry.timestamp);
+        insert.bindLong(3, entry.identifier);
+        insert.bindBlob(4, ParcelableUtil.marshall(entry.bundle));
+        insert.executeInsert();
+    }
+
+    /**
+     * Replaces the entries with the identifier of the entry by it, in one transaction.
+     */
+    public synchronized void replace(Entry entry) {
+        replaceAll(Collections.singletonList(entry));
     }
 
-    public void put(Entry entry) {
-        ContentValues values = new ContentValues(4);
-        values.put("_index", entry.index);
-        values.put("_timestamp", entry.timestamp);
-        values.put("_identifier", entry.identifier);
-        values.put("_bundleBlob", ParcelableUtil.marshall(entry.bundle));
-        diskRegistry.insertOrThrow("Entry", null, values);
+    /**
+     * Replaces the entries with the identifier of each entry by it, in order and all in one transaction.
+     */
+    public synchronized void replaceAll(Collection<Entry> entries) {
+        diskRegistry.beginTransaction();
+        try {
+            for (Entry entry : entries) {
+                deleteByIdentifier(entry.identifier);
+                put(entry);
+            }
+            diskRegistry.setTransactionSuccessful();
+        } finally {
+            diskRegistry.endTransaction();
+        }
     }
 
     public int size() {
-        Cursor countCursor = diskRegistry.rawQuery("SELECT COUNT(*) FROM Entry", null);
-        countCursor.moveToFirst();
-        int count = countCursor.getInt(0);
-        countCursor.close();
-        return count;
+        return (int) DatabaseUtils.queryNumEntries(diskRegistry, "Entry");
     }
 
     public ArrayList<Entry> loadRegistry() {
-        ArrayList<Entry> values = new ArrayList<>();
-        Cursor cursor = diskRegistry.query("Entry", null, null, null, null, null, null);
-        if(cursor.moveToFirst()) {
-            do {
+        final ArrayList<Entry> values = new ArrayList<>();
+        forEach(new Visitor() {
+            @Override
+            public void visit(Entry entry) {
+                values.add(entry);
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Reads the entries one at a time, ordered by their timestamp, without keeping them all in memory.
+     */
+    public void forEach(Visitor visitor) {
+        Cursor cursor = diskRegistry.rawQuery(
+                "SELECT _index, _timestamp, _identifier, _bundleBlob FROM Entry ORDER BY _timestamp", null);
+        try {
+            while (cursor.moveToNext()) {
                 int index = cursor.getInt(0);
                 long timestamp = cursor.getLong(1);
                 int identifier = cursor.getInt(2);
                 Bundle something = ParcelableUtil.unmarshall(cursor.getBlob(3), Bundle.CREATOR);
                 something.setClassLoader(BeaconEvent.class.getClassLoader());
-                values.add(new Entry(index, timestamp, identifier, something));
-
+                visitor.visit(new Entry(index, timestamp, identifier, something));
             }
-            while(cursor.moveToNext());
+        } finally {
+            cursor.close();
         }
-        cursor.close();
+    }
 
-        return values;
+    /**
+     * @return the indices of all entries, without reading their bundles
+     */
+    public int[] loadIndices() {
+        Cursor cursor = diskRegistry.rawQuery("SELECT _index FROM Entry", null);
+        try {
+            int[] indices = new int[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                indices[i] = cursor.getInt(0);
+            }
+            return indices;
+        } finally {
+            cursor.close();
+        }
     }
 
     public synchronized void delete(int index) {
-        diskRegistry.execSQL("DELETE FROM Entry WHERE _index = " + index);
+        if (deleteByIndex == null) {
+            deleteByIndex = diskRegistry.compileStatement("DELETE FROM Entry WHERE _index = ?");
+        }
+        deleteByIndex.bindLong(1, index);
+        deleteByIndex.executeUpdateDelete();
+    }
+
+    /**
+     * Deletes the entries with the indices, in one transaction.
+     */
+    public synchronized void deleteAll(Collection<Integer> indices) {
+        diskRegistry.beginTransaction();
+        try {
+            for (int index : indices) {
+                delete(index);
+            }
+            diskRegistry.setTransactionSuccessful();
+        } finally {
+            diskRegistry.endTransaction();
+        }
     }
 
     public synchronized void deleteByIdentifier(int identifiert) {
-        diskRegistry.execSQL("DELETE FROM Entry WHERE _identifier = " + identifiert);
+        if (deleteByIdentifier == null) {
+            deleteByIdentifier = diskRegistry.compileStatement("DELETE FROM Entry WHERE _identifier = ?");
+        }
+        deleteByIdentifier.bindLong(1, identifiert);
+        deleteByIdentifier.executeUpdateDelete();
     }
 
-    public void deleteOlderThan(long timestamp) {
-        diskRegistry.execSQL("DELETE FROM Entry WHERE _timestamp < " + timestamp);
+    public synchronized void deleteOlderThan(long timestamp) {
+        if (deleteOlderThan == null) {
+            deleteOlderThan = diskRegistry.compileStatement("DELETE FROM Entry WHERE _timestamp < ?");
+        }
+        deleteOlderThan.bindLong(1, timestamp);
+        deleteOlderThan.executeUpdateDelete();
     }
 
-    public void clear() {
+    public synchronized void clear() {
         diskRegistry.execSQL("DELETE FROM Entry");
     }
 
@@ -88,7 +186,7 @@ public class SQLiteStore {
     }
     class RegistryOpenHelper extends SQLiteOpenHelper
     {
-        private static final int VERSION = 2;
+        private static final int VERSION = 3;
 
         public RegistryOpenHelper(Context context, String name)
         {
@@ -99,11 +197,24 @@ public class SQLiteStore {
         public void onCreate(SQLiteDatabase database)
         {
             database.execSQL("CREATE TABLE Entry (_index INTEGER, _timestamp INTEGER, _identifier INTEGER, _bundleBlob BLOB)");
+            createIndices(database);
+        }
+
+        private void createIndices(SQLiteDatabase database)
+        {
+            database.execSQL("CREATE INDEX IF NOT EXISTS Entry_index ON Entry (_index)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS Entry_identifier ON Entry (_identifier)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS Entry_timestamp ON Entry (_timestamp)");
         }
 
         @Override
         public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion)
         {
+            if (oldVersion == 2) {
+                //Version 3 only added the indices, keep the entries.
+                createIndices(database);
+                return;
+            }
             database.execSQL("DROP TABLE IF EXISTS Entry");
             onCreate(database);
         }
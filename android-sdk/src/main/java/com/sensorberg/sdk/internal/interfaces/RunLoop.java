@@ -2,8 +2,6 @@ package com.sensorberg.sdk.internal.interfaces;
 
 import android.os.Message;
 
-import java.util.TimerTask;
-
 public interface RunLoop {
 
     interface MessageHandlerCallback {
@@ -23,9 +21,17 @@ public interface RunLoop {
 
     void scheduleExecution(Runnable runnable, long wait_time);
 
-    void scheduleAtFixedRate(TimerTask timerTask, long when, long interval);
-
-    void cancelFixedRateExecution();
+    /**
+     * Schedules the single timer of this run loop to run {@code runnable} on the loop's thread after {@code delay}
+     * millis. A previously scheduled timer is replaced. Unlike {@link #scheduleExecution(Runnable, long)} the timer is
+     * not removed by {@link #clearScheduledExecutions()}.
+     *
+     * @param runnable the runnable to run
+     * @param delay the delay in millis
+     */
+    void scheduleTimer(Runnable runnable, long delay);
+
+    void cancelTimer();
 
     Message obtainMessage(int what);
 
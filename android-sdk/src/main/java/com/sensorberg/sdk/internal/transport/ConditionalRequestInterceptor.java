@@ -0,0 +1,181 @@
+package com.sensorberg.sdk.internal.transport;
+
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.internal.transport.interfaces.Transport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.Properties;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Makes the requests of a resource conditional on the ETag and Last-Modified of its last 200 response. Only one
+ * response per resource is remembered, because the caller only keeps one: a layout fetched for other attributes or
+ * another api key is requested unconditionally. A 304 is passed through to the caller without a body, so the caller
+ * has to keep the body of the last 200 itself.
+ * <p>
+ * Requests are marked by the {@link #LAYOUT} or {@link #SETTINGS} header, which never leaves the device. Until
+ * {@link #setEnabled(boolean)} is called they are left to the http cache.
+ */
+public class ConditionalRequestInterceptor implements Interceptor {
+
+    public static final String HEADER_RESOURCE = "X-Sensorberg-Conditional";
+
+    public static final String RESOURCE_LAYOUT = "layout";
+
+    public static final String RESOURCE_SETTINGS = "settings";
+
+    public static final String LAYOUT = HEADER_RESOURCE + ": " + RESOURCE_LAYOUT;
+
+    public static final String SETTINGS = HEADER_RESOURCE + ": " + RESOURCE_SETTINGS;
+
+    private static final String HEADER_ETAG = "ETag";
+
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private static final String HEADER_PID = "X-pid";
+
+    private static final String SUFFIX_KEY = ".key";
+
+    private static final String SUFFIX_ETAG = ".etag";
+
+    private static final String SUFFIX_LAST_MODIFIED = ".lastModified";
+
+    /**
+     * null to keep the validators in memory only
+     */
+    private final File file;
+
+    private volatile boolean enabled;
+
+    private Properties validators;
+
+    public ConditionalRequestInterceptor(File file) {
+        this.file = file;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String resource = request.header(HEADER_RESOURCE);
+        if (resource == null) {
+            return chain.proceed(request);
+        }
+        Request.Builder builder = request.newBuilder().removeHeader(HEADER_RESOURCE);
+        if (!enabled || !"GET".equals(request.method())) {
+            return chain.proceed(builder.build());
+        }
+
+        //the api key is part of the url from V1 on, and only the layouts before V2 depend on the beacon
+        String key = request.header(Transport.HEADER_XAPIKEY) + " " + request.header(HEADER_PID) + " " + request.url();
+        synchronized (this) {
+            Properties stored = getValidators();
+            if (key.equals(stored.getProperty(resource + SUFFIX_KEY))) {
+                String eTag = stored.getProperty(resource + SUFFIX_ETAG);
+                String lastModified = stored.getProperty(resource + SUFFIX_LAST_MODIFIED);
+                if (eTag != null) {
+                    builder.header(HEADER_IF_NONE_MATCH, eTag);
+                }
+                if (lastModified != null) {
+                    builder.header(HEADER_IF_MODIFIED_SINCE, lastModified);
+                }
+            }
+        }
+
+        Response response = chain.proceed(builder.build());
+        if (response.code() == HttpURLConnection.HTTP_OK) {
+            remember(resource, key, response.header(HEADER_ETAG), response.header(HEADER_LAST_MODIFIED));
+        }
+        return response;
+    }
+
+    /**
+     * Drops the validators of {@code resource}, to be called when the caller lost the body they belong to.
+     */
+    public synchronized void forget(String resource) {
+        remember(resource, null, null, null);
+    }
+
+    private synchronized void remember(String resource, String key, String eTag, String lastModified) {
+        Properties stored = getValidators();
+        if (eTag == null && lastModified == null) {
+            key = null;
+        }
+        boolean changed = set(stored, resource + SUFFIX_KEY, key)
+                | set(stored, resource + SUFFIX_ETAG, key == null ? null : eTag)
+                | set(stored, resource + SUFFIX_LAST_MODIFIED, key == null ? null : lastModified);
+        if (changed) {
+            save(stored);
+        }
+    }
+
+    private static boolean set(Properties properties, String name, String value) {
+        Object previous = value == null ? properties.remove(name) : properties.setProperty(name, value);
+        return value == null ? previous != null : !value.equals(previous);
+    }
+
+    private Properties getValidators() {
+        if (validators == null) {
+            validators = new Properties();
+            if (file != null && file.exists()) {
+                InputStream in = null;
+                try {
+                    in = new FileInputStream(file);
+                    validators.load(in);
+                } catch (IOException e) {
+                    Logger.log.logError("could not read the http validators", e);
+                    validators.clear();
+                } finally {
+                    close(in);
+                }
+            }
+        }
+        return validators;
+    }
+
+    private void save(Properties properties) {
+        if (file == null) {
+            return;
+        }
+        OutputStream out = null;
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("could not create " + parent);
+            }
+            out = new FileOutputStream(file);
+            properties.store(out, null);
+        } catch (IOException e) {
+            Logger.log.logError("could not write the http validators", e);
+        } finally {
+            close(out);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                //nothing left to do
+            }
+        }
+    }
+}
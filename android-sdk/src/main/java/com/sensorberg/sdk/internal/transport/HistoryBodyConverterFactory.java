@@ -0,0 +1,41 @@
+package com.sensorberg.sdk.internal.transport;
+
+import com.google.gson.Gson;
+import com.sensorberg.sdk.internal.transport.model.HistoryBody;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.RequestBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Turns {@link HistoryBody} request parameters into a {@link HistoryRequestBody} that writes the json as it goes.
+ * Must be added before the Gson converter, which would otherwise buffer the whole document.
+ */
+public class HistoryBodyConverterFactory extends Converter.Factory {
+
+    private final Gson gson;
+
+    private final boolean gzip;
+
+    public HistoryBodyConverterFactory(Gson gson, boolean gzip) {
+        this.gson = gson;
+        this.gzip = gzip;
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+                                                          Annotation[] methodAnnotations, Retrofit retrofit) {
+        if (type != HistoryBody.class) {
+            return null;
+        }
+        return new Converter<HistoryBody, RequestBody>() {
+            @Override
+            public RequestBody convert(HistoryBody value) {
+                return new HistoryRequestBody(gson, value, gzip);
+            }
+        };
+    }
+}
@@ -0,0 +1,104 @@
+package com.sensorberg.sdk.internal.transport;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import com.sensorberg.sdk.internal.transport.model.HistoryBody;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Writes a {@link HistoryBody} to the connection one element at a time instead of rendering the whole json document
+ * in memory first. The output is the same document Gson would produce for the {@link HistoryBody}, optionally gzip
+ * compressed. The body can be written more than once, so OkHttp is free to retry it.
+ * <p>
+ * The rows are not streamed from the database: the scans, actions and conversions of the body are the model objects
+ * of one {@link com.sensorberg.sdk.storage.HistoryStore.Batch}, so the memory of an upload is bounded by the batch
+ * size, not by the number of pending events, and only the json text is never held in full.
+ */
+public class HistoryRequestBody extends RequestBody {
+
+    public static final String CONTENT_ENCODING_GZIP = "gzip";
+
+    private static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=UTF-8");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Gson gson;
+
+    private final HistoryBody body;
+
+    private final boolean gzip;
+
+    public HistoryRequestBody(Gson gson, HistoryBody body, boolean gzip) {
+        this.gson = gson;
+        this.body = body;
+        this.gzip = gzip;
+    }
+
+    public boolean isGzipped() {
+        return gzip;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        //unknown until written, sent chunked
+        return -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        BufferedSink target = gzip ? Okio.buffer(new GzipSink(sink)) : sink;
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(target.outputStream(), UTF_8));
+        writer.beginObject();
+        writeArray(writer, "events", body.events);
+        writeArray(writer, "actions", body.actions);
+        writeArray(writer, "conversions", body.conversions);
+        if (body.deviceTimestamp != null) {
+            writer.name("deviceTimestamp");
+            gson.getAdapter(Date.class).write(writer, body.deviceTimestamp);
+        }
+        writer.endObject();
+        writer.flush();
+        if (gzip) {
+            //writes the gzip trailer
+            target.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void writeArray(JsonWriter writer, String name, List<T> values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        writer.name(name);
+        writer.beginArray();
+        TypeAdapter<T> adapter = null;
+        for (T value : values) {
+            if (value == null) {
+                writer.nullValue();
+                continue;
+            }
+            if (adapter == null) {
+                adapter = (TypeAdapter<T>) gson.getAdapter(value.getClass());
+            }
+            adapter.write(writer, value);
+        }
+        writer.endArray();
+    }
+}
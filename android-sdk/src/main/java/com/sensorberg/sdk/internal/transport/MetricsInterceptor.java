@@ -0,0 +1,173 @@
+package com.sensorberg.sdk.internal.transport;
+
+import com.sensorberg.sdk.metrics.Counter;
+import com.sensorberg.sdk.metrics.Metrics;
+
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSink;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+
+/**
+ * Counts the requests and the bytes sent and received per endpoint in the {@link Metrics}. It is a network
+ * interceptor, so responses from the http cache are not counted and bodies are counted as they go over the wire,
+ * compressed and also when their length is not known up front. Headers are not counted.
+ * <p>
+ * The endpoints are the layout, the history and the settings of every backend version, anything else is counted as
+ * other, so the counters are e.g. {@code network.layout.requests} and {@code network.other.bytes.received}.
+ */
+public class MetricsInterceptor implements Interceptor {
+
+    static final Endpoint LAYOUT = new Endpoint("layout");
+
+    static final Endpoint HISTORY = new Endpoint("history");
+
+    static final Endpoint SETTINGS = new Endpoint("settings");
+
+    static final Endpoint OTHER = new Endpoint("other");
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Endpoint endpoint = endpointOf(request);
+        endpoint.requests.inc();
+        if (request.body() != null) {
+            request = request.newBuilder()
+                    .method(request.method(), new CountingRequestBody(request.body(), endpoint.bytesSent))
+                    .build();
+        }
+
+        Response response = chain.proceed(request);
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        BufferedSource counted = Okio.buffer(new CountingSource(body.source(), endpoint.bytesReceived));
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), counted))
+                .build();
+    }
+
+    /**
+     * @return the endpoint of the paths of {@link com.sensorberg.sdk.internal.transport.interfaces.RetrofitApiServiceV0},
+     * V1 and V2, {@link #OTHER} for any other path
+     */
+    static Endpoint endpointOf(Request request) {
+        List<String> segments = request.url().pathSegments();
+        switch (segments.get(segments.size() - 1)) {
+            case "interactions.json":
+                return LAYOUT;
+            case "events.json":
+            case "analytics.json":
+                return HISTORY;
+            case "settings.json":
+                return SETTINGS;
+            case "layout":
+                //V0 posts the history to the layout
+                return "POST".equals(request.method()) ? HISTORY : LAYOUT;
+            case "android":
+                return segments.contains("settings") ? SETTINGS : OTHER;
+            default:
+                return OTHER;
+        }
+    }
+
+    static final class Endpoint {
+
+        final Counter requests;
+
+        final Counter bytesSent;
+
+        final Counter bytesReceived;
+
+        Endpoint(String name) {
+            requests = Metrics.counter("network." + name + ".requests");
+            bytesSent = Metrics.counter("network." + name + ".bytes.sent");
+            bytesReceived = Metrics.counter("network." + name + ".bytes.received");
+        }
+    }
+
+    private static class CountingRequestBody extends RequestBody {
+
+        private final RequestBody delegate;
+
+        private final Counter bytesSent;
+
+        CountingRequestBody(RequestBody delegate, Counter bytesSent) {
+            this.delegate = delegate;
+            this.bytesSent = bytesSent;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            BufferedSink counted = Okio.buffer(new CountingSink(sink, bytesSent));
+            delegate.writeTo(counted);
+            //closing is idempotent, the delegate may have closed it already, e.g. to write a gzip trailer
+            counted.close();
+        }
+    }
+
+    private static class CountingSink extends ForwardingSink {
+
+        private final Counter bytesSent;
+
+        CountingSink(Sink delegate, Counter bytesSent) {
+            super(delegate);
+            this.bytesSent = bytesSent;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            bytesSent.add(byteCount);
+        }
+
+        @Override
+        public void close() throws IOException {
+            //okhttp closes the request sink itself once the body is written
+            flush();
+        }
+    }
+
+    private static class CountingSource extends ForwardingSource {
+
+        private final Counter bytesReceived;
+
+        CountingSource(Source delegate, Counter bytesReceived) {
+            super(delegate);
+            this.bytesReceived = bytesReceived;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                bytesReceived.add(read);
+            }
+            return read;
+        }
+    }
+}
@@ -37,6 +37,8 @@ public class RetrofitApiServiceImpl {
 
     public static final String OKHTTP_HEADER = "okhttp-header";
 
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+
     private static final int CONNECTION_TIMEOUT = 30; //seconds
 
     private static final long HTTP_RESPONSE_DISK_CACHE_MAX_SIZE = 5 * 1024L * 1024L; //5MB
@@ -55,6 +57,7 @@ public class RetrofitApiServiceImpl {
 
     private OkHttpClient mClient;
     private HttpLoggingInterceptor httpLoggingInterceptor;
+    private ConditionalRequestInterceptor conditionalRequestInterceptor;
 
     public RetrofitApiServiceImpl(File cacheFolder, Gson gson, PlatformIdentifier platformId, String baseUrl) {
         mGson = gson;
@@ -63,6 +66,7 @@ public class RetrofitApiServiceImpl {
         Retrofit restAdapter = new Retrofit.Builder()
                 .baseUrl(baseUrl)
                 .client(getOkHttpClient(cacheFolder))
+                .addConverterFactory(new HistoryBodyConverterFactory(mGson, RetrofitApiTransport.GZIP_HISTORY))
                 .addConverterFactory(GsonConverterFactory.create(mGson))
                 .build();
 
@@ -106,6 +110,10 @@ public class RetrofitApiServiceImpl {
                         .add(Transport.HEADER_XAPIKEY, mApiToken);
             }
 
+            if (request.body() instanceof HistoryRequestBody && ((HistoryRequestBody) request.body()).isGzipped()) {
+                headersBuilder.add(HEADER_CONTENT_ENCODING, HistoryRequestBody.CONTENT_ENCODING_GZIP);
+            }
+
             request = request.newBuilder().headers(headersBuilder.build()).build();
             return chain.proceed(request);
         }
@@ -116,11 +124,15 @@ public class RetrofitApiServiceImpl {
 
         okClientBuilder.addInterceptor(headerAuthorizationInterceptor);
 
+        conditionalRequestInterceptor = new ConditionalRequestInterceptor(baseDir != null ? new File(baseDir, "HttpValidators") : null);
+        okClientBuilder.addInterceptor(conditionalRequestInterceptor);
+
         httpLoggingInterceptor = new HttpLoggingInterceptor();
         httpLoggingInterceptor.setLevel(Logger.isVerboseLoggingEnabled() ?
                 HttpLoggingInterceptor.Level.BODY :
                 HttpLoggingInterceptor.Level.NONE);
         okClientBuilder.addInterceptor(httpLoggingInterceptor);
+        okClientBuilder.addNetworkInterceptor(new MetricsInterceptor());
         okClientBuilder.addNetworkInterceptor(new Interceptor() {
             @Override
             public Response intercept(Chain chain) throws IOException {
@@ -156,6 +168,24 @@ public class RetrofitApiServiceImpl {
         }
     }
 
+    /**
+     * Makes layout and settings requests conditional on the last 200 response instead of answering them from the
+     * http cache. A 304 then reaches the caller without a body, so only callers that keep the last body may enable
+     * this, see {@link ConditionalRequestInterceptor}.
+     */
+    public void setConditionalRequestsEnabled(boolean enabled) {
+        conditionalRequestInterceptor.setEnabled(enabled);
+    }
+
+    /**
+     * Makes the next request for {@code resource} unconditional, to be called when the body of the last 200 is lost.
+     *
+     * @param resource {@link ConditionalRequestInterceptor#RESOURCE_LAYOUT} or {@link ConditionalRequestInterceptor#RESOURCE_SETTINGS}
+     */
+    public void forgetConditionalRequest(String resource) {
+        conditionalRequestInterceptor.forget(resource);
+    }
+
     public Call<ResolveResponse> updateBeaconLayout(SortedMap<String, String> attributes) {
         if (attributes == null) {
             attributes = new TreeMap<>();
@@ -4,6 +4,7 @@ import android.content.SharedPreferences;
 import android.text.TextUtils;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.sensorberg.sdk.Logger;
 import com.sensorberg.sdk.internal.interfaces.BeaconHistoryUploadIntervalListener;
 import com.sensorberg.sdk.internal.interfaces.BeaconResponseHandler;
@@ -21,11 +22,15 @@ import com.sensorberg.sdk.model.server.ResolveResponse;
 import com.sensorberg.sdk.receivers.NetworkInfoBroadcastReceiver;
 import com.sensorberg.sdk.resolver.BeaconEvent;
 import com.sensorberg.sdk.scanner.ScanEvent;
+import com.sensorberg.sdk.storage.LayoutSnapshotStore;
+import com.sensorberg.utils.Objects;
 
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import lombok.Setter;
@@ -35,6 +40,7 @@ import retrofit2.Callback;
 import retrofit2.Response;
 
 import static com.sensorberg.sdk.settings.SharedPreferencesKeys.Network.KEY_RESOLVE_RESPONSE;
+import static com.sensorberg.sdk.settings.SharedPreferencesKeys.Network.KEY_RESOLVE_RESPONSE_TIMESTAMP;
 import static com.sensorberg.utils.ListUtils.map;
 
 public class RetrofitApiTransport implements Transport {
@@ -43,43 +49,156 @@ public class RetrofitApiTransport implements Transport {
 
     public static int BACKEND_VERSION = 2;
 
+    /**
+     * gzip the history uploads, only for backends that accept a gzip Content-Encoding
+     */
+    public static boolean GZIP_HISTORY = false;
+
     private final Clock mClock;
 
     private RetrofitApiServiceImpl apiService;
 
-    private ResolveResponse lastSuccess;
+    /**
+     * read from the {@link #layoutSnapshotStore} on first use, see {@link #getLastSuccess()}
+     */
+    private volatile ResolveResponse lastSuccess;
+
+    private volatile boolean lastSuccessLoaded;
+
+    private volatile long lastSuccessTimestamp;
+
+    private final LayoutSnapshotStore layoutSnapshotStore;
 
     private SharedPreferences prefs;
 
     private Gson gson;
 
+    /**
+     * whether the current {@link #mProximityUUIDUpdateHandler} got the uuids of the last layout, it is not told
+     * again until the layout changes
+     */
+    private volatile boolean proximityUUIDsDelivered;
+
     @Setter
     private BeaconHistoryUploadIntervalListener beaconHistoryUploadIntervalListener = BeaconHistoryUploadIntervalListener.NONE;
 
     private ProximityUUIDUpdateHandler mProximityUUIDUpdateHandler = ProximityUUIDUpdateHandler.NONE;
 
-    public RetrofitApiTransport(RetrofitApiServiceImpl retrofitApiService, Clock clk, SharedPreferences sharedPreferences, Gson gson) {
+    private final Object layoutRequestsMonitor = new Object();
+
+    /**
+     * layout requests in flight, rarely more than two
+     */
+    private final List<LayoutRequest> layoutRequests = new ArrayList<>();
+
+    private interface LayoutCallback {
+
+        void onSuccess(ResolveResponse resolveResponse, boolean changed);
+
+        void onFailure(Throwable t);
+    }
+
+    private static class LayoutRequest {
+
+        final String pid;
+
+        final SortedMap<String, String> attributes;
+
+        final boolean refresh;
+
+        final List<LayoutCallback> callbacks = new ArrayList<>();
+
+        /**
+         * true once the request was sent again without validators, after a 304 that could not be used
+         */
+        boolean retriedUnconditionally;
+
+        LayoutRequest(String pid, SortedMap<String, String> attributes, boolean refresh) {
+            this.pid = pid;
+            this.attributes = attributes;
+            this.refresh = refresh;
+        }
+    }
+
+    public RetrofitApiTransport(RetrofitApiServiceImpl retrofitApiService, Clock clk, SharedPreferences sharedPreferences, Gson gson,
+                                LayoutSnapshotStore layoutSnapshotStore) {
         apiService = retrofitApiService;
         mClock = clk;
         prefs = sharedPreferences;
         this.gson = gson;
-        load();
+        this.layoutSnapshotStore = layoutSnapshotStore;
+        lastSuccessTimestamp = prefs.getLong(KEY_RESOLVE_RESPONSE_TIMESTAMP, 0);
+        //the last layout is kept in the snapshot and the settings by the SettingsManager, a 304 needs no body
+        apiService.setConditionalRequestsEnabled(true);
     }
 
     private RetrofitApiServiceImpl getApiService() {
         return apiService;
     }
 
-    private void load() {
+    /**
+     * @return the layout to fall back to, loaded from the snapshot the first time it is needed
+     */
+    private ResolveResponse getLastSuccess() {
+        if (!lastSuccessLoaded) {
+            synchronized (this) {
+                if (!lastSuccessLoaded) {
+                    ResolveResponse loaded = layoutSnapshotStore.load();
+                    if (loaded == null) {
+                        loaded = migrateSharedPreferences();
+                    }
+                    if (loaded != null) {
+                        loaded.compile();
+                    }
+                    lastSuccess = loaded;
+                    lastSuccessLoaded = true;
+                }
+            }
+        }
+        return lastSuccess;
+    }
+
+    /**
+     * Moves the layout that older versions kept as json in the shared preferences into the snapshot.
+     */
+    private ResolveResponse migrateSharedPreferences() {
         String json = prefs.getString(KEY_RESOLVE_RESPONSE, null);
-        if (!TextUtils.isEmpty(json)) {
-            lastSuccess = gson.fromJson(json, ResolveResponse.class);
+        if (TextUtils.isEmpty(json)) {
+            return null;
+        }
+        ResolveResponse legacy = null;
+        try {
+            legacy = gson.fromJson(json, ResolveResponse.class);
+        } catch (JsonParseException e) {
+            Logger.log.logError("could not migrate the last layout", e);
         }
+        if (legacy != null) {
+            layoutSnapshotStore.save(legacy);
+        }
+        prefs.edit().remove(KEY_RESOLVE_RESPONSE).apply();
+        return legacy;
     }
 
-    private void save(ResolveResponse body) {
-        lastSuccess = body;
-        prefs.edit().putString(KEY_RESOLVE_RESPONSE, gson.toJson(lastSuccess)).apply();
+    /**
+     * Keeps {@code body} as the layout to fall back to. An unchanged layout is not written again, only the time it
+     * was confirmed.
+     *
+     * @return the compiled layout to resolve against
+     */
+    private synchronized ResolveResponse store(ResolveResponse body, boolean changed) {
+        lastSuccessTimestamp = mClock.now();
+        SharedPreferences.Editor editor = prefs.edit().putLong(KEY_RESOLVE_RESPONSE_TIMESTAMP, lastSuccessTimestamp);
+        //an unchanged response is the layout of the snapshot, no need to read it
+        if (changed || !lastSuccessLoaded || lastSuccess == null) {
+            body.compile();
+            lastSuccess = body;
+            lastSuccessLoaded = true;
+            //a layout with the same content as the snapshot is not written again
+            layoutSnapshotStore.save(body);
+            editor.remove(KEY_RESOLVE_RESPONSE);
+        }
+        editor.apply();
+        return lastSuccess;
     }
 
     @Override
@@ -89,6 +208,7 @@ public class RetrofitApiTransport implements Transport {
         } else {
             mProximityUUIDUpdateHandler = ProximityUUIDUpdateHandler.NONE;
         }
+        proximityUUIDsDelivered = false;
     }
 
     private boolean isModified(Response<ResolveResponse> response) {
@@ -98,47 +218,162 @@ public class RetrofitApiTransport implements Transport {
 
     @Override
     public void getBeacon(final ScanEvent scanEvent, SortedMap<String, String> attributes, final BeaconResponseHandler beaconResponseHandler) {
-        String networkInfo = NetworkInfoBroadcastReceiver.latestNetworkInfo != null
-                ? NetworkInfoBroadcastReceiver.getNetworkInfoString() : "";
-
-        getApiService()
-                .getBeacon(scanEvent.getBeaconId().getPid(), networkInfo, attributes)
-                .enqueue(new Callback<ResolveResponse>() {
-                    @Override
-                    public void onResponse(Call<ResolveResponse> call, Response<ResolveResponse> response) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            save(response.body());
-                            onSuccess(response.body(), isModified(response));
-                        } else {
-                            onFail(new Throwable("No Content, Invalid Api Key"));
-                        }
-                    }
+        fetchLayout(scanEvent.getBeaconId().getPid(), attributes, false, new LayoutCallback() {
+            @Override
+            public void onSuccess(ResolveResponse resolveResponse, boolean changed) {
+                List<BeaconEvent> beaconEvents = checkSuccessfulBeaconResponse(scanEvent, resolveResponse);
+                beaconResponseHandler.onSuccess(beaconEvents);
+                checkShouldCallBeaconResponseHandlers(resolveResponse, changed);
+            }
 
-                    @Override
-                    public void onFailure(Call<ResolveResponse> call, Throwable t) {
-                        onFail(t);
-                    }
+            @Override
+            public void onFailure(Throwable t) {
+                ResolveResponse backup = getLastSuccess();
+                if (backup == null) {
+                    beaconResponseHandler.onFailure(t);
+                } else {
+                    Logger.log.logError("resolution failed, but we have a backup:" + scanEvent.getBeaconId().toTraditionalString(), t);
+                    onSuccess(backup, false);
+                }
+            }
+        });
+    }
 
-                    void onSuccess(ResolveResponse resolveResponse, boolean changed) {
-                        List<BeaconEvent> beaconEvents = checkSuccessfulBeaconResponse(scanEvent, resolveResponse);
-                        beaconResponseHandler.onSuccess(beaconEvents);
-                        checkShouldCallBeaconResponseHandlers(resolveResponse, changed);
-                    }
+    /**
+     * Requests the layout for {@code attributes}, or joins a request for the same attributes that is already in
+     * flight. A refresh bypasses the http cache, so it only joins other refreshes, while a plain request joins
+     * either kind. Every response is stored once, no matter how many callers share it.
+     *
+     * @param pid        the pid of the beacon that triggered the request, only sent to backends before V2
+     * @param attributes the targeting attributes
+     * @param refresh    true to bypass the http cache
+     * @param callback   receives the shared result
+     */
+    private void fetchLayout(String pid, SortedMap<String, String> attributes, final boolean refresh, LayoutCallback callback) {
+        final SortedMap<String, String> key = attributes == null ? new TreeMap<String, String>() : new TreeMap<>(attributes);
+        //before V2 the response depends on the beacon, so only identical beacons may share a request
+        final String keyPid = BACKEND_VERSION < 2 ? pid : null;
+        final LayoutRequest request;
+        synchronized (layoutRequestsMonitor) {
+            LayoutRequest pending = findLayoutRequest(keyPid, key, true);
+            if (pending == null && !refresh) {
+                pending = findLayoutRequest(keyPid, key, false);
+            }
+            if (pending != null) {
+                pending.callbacks.add(callback);
+                return;
+            }
+            request = new LayoutRequest(keyPid, key, refresh);
+            request.callbacks.add(callback);
+            layoutRequests.add(request);
+        }
 
-                    void onFail(Throwable t) {
-                        if (lastSuccess == null) {
-                            beaconResponseHandler.onFailure(t);
-                        } else {
-                            Logger.log.logError("resolution failed, but we have a backup:" + scanEvent.getBeaconId().toTraditionalString(), t);
-                            onSuccess(lastSuccess, false);
-                        }
+        Call<ResolveResponse> call;
+        if (refresh) {
+            call = getApiService().updateBeaconLayout(key);
+        } else {
+            String networkInfo = NetworkInfoBroadcastReceiver.latestNetworkInfo != null
+                    ? NetworkInfoBroadcastReceiver.getNetworkInfoString() : "";
+            call = getApiService().getBeacon(pid, networkInfo, key);
+        }
+        call.enqueue(new Callback<ResolveResponse>() {
+            @Override
+            public void onResponse(Call<ResolveResponse> call, Response<ResolveResponse> response) {
+                boolean notModified = response.code() == HttpURLConnection.HTTP_NOT_MODIFIED;
+                if (notModified && getLastSuccess() == null && !request.retriedUnconditionally) {
+                    //the snapshot was lost, but the request was conditional on it
+                    request.retriedUnconditionally = true;
+                    getApiService().forgetConditionalRequest(ConditionalRequestInterceptor.RESOURCE_LAYOUT);
+                    call.clone().enqueue(this);
+                    return;
+                }
+                List<LayoutCallback> callbacks = finish(request);
+                ResolveResponse lastSuccess = notModified ? getLastSuccess() : null;
+                if (lastSuccess != null) {
+                    ResolveResponse layout = store(lastSuccess, false);
+                    for (LayoutCallback waiting : callbacks) {
+                        waiting.onSuccess(layout, false);
+                    }
+                } else if (response.isSuccessful() && response.body() != null) {
+                    boolean changed = isModified(response);
+                    ResolveResponse layout = store(response.body(), changed);
+                    for (LayoutCallback waiting : callbacks) {
+                        waiting.onSuccess(layout, changed);
                     }
+                } else {
+                    Exception exception = notModified
+                            ? new Exception("Not Modified, but there is no layout to keep")
+                            : new Exception("No Content, Invalid Api Key");
+                    for (LayoutCallback waiting : callbacks) {
+                        waiting.onFailure(exception);
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ResolveResponse> call, Throwable t) {
+                //a 200 that could not be parsed leaves validators for a layout we do not have
+                getApiService().forgetConditionalRequest(ConditionalRequestInterceptor.RESOURCE_LAYOUT);
+                for (LayoutCallback waiting : finish(request)) {
+                    waiting.onFailure(t);
+                }
+            }
+        });
+    }
+
+    private LayoutRequest findLayoutRequest(String pid, SortedMap<String, String> attributes, boolean refresh) {
+        for (LayoutRequest request : layoutRequests) {
+            if (request.refresh == refresh && Objects.equals(request.pid, pid) && request.attributes.equals(attributes)) {
+                return request;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes {@code request} from the pending requests, nobody can join it afterwards.
+     *
+     * @return the callbacks of everybody who joined
+     */
+    private List<LayoutCallback> finish(LayoutRequest request) {
+        synchronized (layoutRequestsMonitor) {
+            layoutRequests.remove(request);
+            return request.callbacks;
+        }
+    }
 
-                });
+    @Override
+    public boolean resolveFromCachedLayout(ScanEvent scanEvent, long maxAge, BeaconResponseHandler beaconResponseHandler) {
+        if (BACKEND_VERSION < 2) {
+            //before V2 the last layout belongs to the pid of the last request, not to every beacon
+            return false;
+        }
+        long age = mClock.now() - lastSuccessTimestamp;
+        //a negative age means the clock was set back, the layout may be arbitrarily old
+        if (age < 0 || age > maxAge) {
+            return false;
+        }
+        ResolveResponse cached = getLastSuccess();
+        if (cached == null) {
+            return false;
+        }
+        beaconResponseHandler.onSuccess(checkSuccessfulBeaconResponse(scanEvent, cached));
+        return true;
+    }
+
+    /**
+     * Hands the proximity uuids of {@code layout} to the {@link #mProximityUUIDUpdateHandler}, unless it already has
+     * them, which saves rebuilding the uuid list and the geofence database for every unchanged layout.
+     */
+    private void updateProximityUUIDs(ResolveResponse layout, boolean changed) {
+        if (changed || !proximityUUIDsDelivered) {
+            mProximityUUIDUpdateHandler.proximityUUIDListUpdated(layout.getAccountProximityUUIDs(), changed);
+            proximityUUIDsDelivered = true;
+        }
     }
 
     private void checkShouldCallBeaconResponseHandlers(ResolveResponse successfulResponse, boolean changed) {
-        mProximityUUIDUpdateHandler.proximityUUIDListUpdated(successfulResponse.getAccountProximityUUIDs(), changed);
+        updateProximityUUIDs(successfulResponse, changed);
 
         if (successfulResponse.reportTriggerSeconds != null) {
             beaconHistoryUploadIntervalListener
@@ -241,39 +476,24 @@ public class RetrofitApiTransport implements Transport {
 
     @Override
     public void updateBeaconLayout(SortedMap<String, String> attributes) {
-        getApiService()
-                .updateBeaconLayout(attributes)
-                .enqueue(new Callback<ResolveResponse>() {
-                    @Override
-                    public void onResponse(Call<ResolveResponse> call, Response<ResolveResponse> response) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            save(response.body());
-                            onSuccess(response.body(), isModified(response));
-                        } else {
-                            onFail(new Exception("Failed to updateBeaconLayout. Response body is empty"));
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<ResolveResponse> call, Throwable t) {
-                        onFail(t);
-                    }
-
-                    void onSuccess(ResolveResponse resolveResponse, boolean changed) {
-                        mProximityUUIDUpdateHandler.proximityUUIDListUpdated(resolveResponse.getAccountProximityUUIDs(), changed);
-                    }
-
-                    void onFail(Throwable t) {
-                        if (lastSuccess == null) {
-                            Logger.log.logError("UpdateBeaconLayout failed", t);
-                            mProximityUUIDUpdateHandler.proximityUUIDListUpdated(Collections.EMPTY_LIST, true);
-                        } else {
-                            Logger.log.logError("UpdateBeaconLayout failed, but we have a backup", t);
-                            onSuccess(lastSuccess, false);
-                        }
-                    }
+        fetchLayout(null, attributes, true, new LayoutCallback() {
+            @Override
+            public void onSuccess(ResolveResponse resolveResponse, boolean changed) {
+                updateProximityUUIDs(resolveResponse, changed);
+            }
 
-                });
+            @Override
+            public void onFailure(Throwable t) {
+                ResolveResponse backup = getLastSuccess();
+                if (backup == null) {
+                    Logger.log.logError("UpdateBeaconLayout failed", t);
+                    mProximityUUIDUpdateHandler.proximityUUIDListUpdated(Collections.EMPTY_LIST, true);
+                } else {
+                    Logger.log.logError("UpdateBeaconLayout failed, but we have a backup", t);
+                    onSuccess(backup, false);
+                }
+            }
+        });
     }
 
     @Override
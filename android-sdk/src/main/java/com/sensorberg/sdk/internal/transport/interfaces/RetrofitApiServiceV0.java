@@ -1,5 +1,6 @@
 package com.sensorberg.sdk.internal.transport.interfaces;
 
+import com.sensorberg.sdk.internal.transport.ConditionalRequestInterceptor;
 import com.sensorberg.sdk.internal.transport.model.HistoryBody;
 import com.sensorberg.sdk.internal.transport.model.SettingsResponse;
 import com.sensorberg.sdk.model.server.BaseResolveResponse;
@@ -17,15 +18,17 @@ import retrofit2.http.Path;
 public interface RetrofitApiServiceV0 {
 
     @GET("/layout")
-    @Headers("Cache-Control: max-age=0")
+    @Headers({"Cache-Control: max-age=0", ConditionalRequestInterceptor.LAYOUT})
     Call<ResolveResponse> updateBeaconLayout();
 
     @GET("/layout")
+    @Headers(ConditionalRequestInterceptor.LAYOUT)
     Call<ResolveResponse> getBeacon(@Header("X-pid") String beaconId, @Header("X-qos") String networkInfo);
 
     @POST("/layout")
     Call<ResponseBody> publishHistory(@Body HistoryBody body);
 
     @GET("/applications/{apiKey}/settings/android")
+    @Headers(ConditionalRequestInterceptor.SETTINGS)
     Call<SettingsResponse> getSettings(@Path("apiKey") String apiKey);
 }
\ No newline at end of file
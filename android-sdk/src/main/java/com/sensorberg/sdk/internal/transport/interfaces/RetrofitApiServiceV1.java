@@ -1,5 +1,6 @@
 package com.sensorberg.sdk.internal.transport.interfaces;
 
+import com.sensorberg.sdk.internal.transport.ConditionalRequestInterceptor;
 import com.sensorberg.sdk.internal.transport.model.HistoryBody;
 import com.sensorberg.sdk.internal.transport.model.SettingsResponse;
 import com.sensorberg.sdk.model.server.BaseResolveResponse;
@@ -20,15 +21,17 @@ import retrofit2.http.QueryMap;
 public interface RetrofitApiServiceV1 {
 
     @GET("/api/v1/sdk/gateways/{apiKey}/interactions.json")
-    @Headers("Cache-Control: max-age=0")
+    @Headers({"Cache-Control: max-age=0", ConditionalRequestInterceptor.LAYOUT})
     Call<ResolveResponse> updateBeaconLayout(@Path("apiKey") String apiKey, @QueryMap SortedMap<String, String> attributes);
 
     @GET("/api/v1/sdk/gateways/{apiKey}/interactions.json")
+    @Headers(ConditionalRequestInterceptor.LAYOUT)
     Call<ResolveResponse> getBeacon(@Header("X-pid") String beaconId, @Header("X-qos") String networkInfo, @Path("apiKey") String apiKey, @QueryMap SortedMap<String, String> attributes);
 
     @POST("/api/v1/sdk/events.json")
     Call<ResponseBody> publishHistory(@Body HistoryBody body);
 
     @GET("/api/v1/sdk/gateways/{apiKey}/settings.json?platform=android")
+    @Headers(ConditionalRequestInterceptor.SETTINGS)
     Call<SettingsResponse> getSettings(@Path("apiKey") String apiKey);
 }
\ No newline at end of file
@@ -35,6 +35,17 @@ public interface Transport {
 
     void getBeacon(ScanEvent scanEvent, SortedMap<String, String> attributes, BeaconResponseHandler beaconResponseHandler);
 
+    /**
+     * Resolves {@code scanEvent} against the last layout received from the server, without any network access.
+     * The handler is called synchronously.
+     *
+     * @param scanEvent             the event to resolve
+     * @param maxAge                the maximum age of the cached layout in millis
+     * @param beaconResponseHandler receives the resolved events
+     * @return false if there is no cached layout or it is older than {@code maxAge}, the handler is not called then
+     */
+    boolean resolveFromCachedLayout(ScanEvent scanEvent, long maxAge, BeaconResponseHandler beaconResponseHandler);
+
     boolean setApiToken(String apiToken);
 
     void loadSettings(TransportSettingsCallback transportSettingsCallback);
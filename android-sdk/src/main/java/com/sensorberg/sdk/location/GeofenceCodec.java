@@ -0,0 +1,156 @@
+package com.sensorberg.sdk.location;
+
+import com.sensorberg.sdk.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packs a fence, an 8 char geohash plus a 6 digit radius as received from the backend, into a single long: the
+ * 40 bits of the geohash followed by 20 bits of the radius. Codes sort like their geohashes.
+ */
+public final class GeofenceCodec {
+
+    public static final int LENGTH = 14;
+
+    private static final int GEOHASH_LENGTH = 8;
+
+    private static final int RADIUS_BITS = 20;
+
+    private static final int GEOHASH_BITS = 5 * GEOHASH_LENGTH;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    /**
+     * the value of every base32 char by its char, upper or lower case, or -1
+     */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < BASE32.length; i++) {
+            VALUES[BASE32[i]] = (byte) i;
+            VALUES[Character.toUpperCase(BASE32[i])] = (byte) i;
+        }
+    }
+
+    private GeofenceCodec() {
+    }
+
+    /**
+     * @param fence the fence, the geohash in upper or lower case
+     * @return the code of the fence
+     * @throws IllegalArgumentException if it is not a fence
+     */
+    public static long encode(CharSequence fence) {
+        if (fence == null) {
+            throw new IllegalArgumentException("Geofence string can't be null");
+        }
+        if (fence.length() != LENGTH) {
+            throw new IllegalArgumentException("Geofence string has to be exactly " + LENGTH + " chars");
+        }
+        long geohash = 0;
+        for (int i = 0; i < GEOHASH_LENGTH; i++) {
+            char c = fence.charAt(i);
+            int value = c < VALUES.length ? VALUES[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid geofence geohash: " + fence);
+            }
+            geohash = (geohash << 5) | value;
+        }
+        int radius = 0;
+        for (int i = GEOHASH_LENGTH; i < LENGTH; i++) {
+            char c = fence.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Geofence last 6 chars have to be digits");
+            }
+            radius = 10 * radius + (c - '0');
+        }
+        if (radius == 0) {
+            throw new IllegalArgumentException("Geofence radius can't be 0");
+        }
+        return (geohash << RADIUS_BITS) | radius;
+    }
+
+    /**
+     * Encodes the fences of a layout, invalid ones are logged and left out.
+     *
+     * @param fences the fences
+     * @return the distinct codes of the fences, sorted
+     */
+    public static long[] encodeAll(List<String> fences) {
+        long[] codes = new long[fences.size()];
+        int size = 0;
+        for (int i = 0; i < fences.size(); i++) {
+            try {
+                codes[size] = encode(fences.get(i));
+                size++;
+            } catch (IllegalArgumentException ex) {
+                Logger.log.geofenceError("Invalid geofence: " + fences.get(i), ex);
+            }
+        }
+        Arrays.sort(codes, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || codes[distinct - 1] != codes[i]) {
+                codes[distinct++] = codes[i];
+            }
+        }
+        return distinct == codes.length ? codes : Arrays.copyOf(codes, distinct);
+    }
+
+    /**
+     * @return the fence of a code, with the geohash in lower case
+     */
+    public static String decode(long code) {
+        char[] fence = new char[LENGTH];
+        long geohash = code >>> RADIUS_BITS;
+        for (int i = GEOHASH_LENGTH - 1; i >= 0; i--) {
+            fence[i] = BASE32[(int) (geohash & 31)];
+            geohash >>>= 5;
+        }
+        int radius = getRadius(code);
+        for (int i = LENGTH - 1; i >= GEOHASH_LENGTH; i--) {
+            fence[i] = (char) ('0' + radius % 10);
+            radius /= 10;
+        }
+        return new String(fence);
+    }
+
+    /**
+     * @return the geohash of a code, in lower case
+     */
+    public static String getGeohash(long code) {
+        return decode(code).substring(0, GEOHASH_LENGTH);
+    }
+
+    /**
+     * @return the radius of the fence in meters
+     */
+    public static int getRadius(long code) {
+        return (int) (code & ((1 << RADIUS_BITS) - 1));
+    }
+
+    /**
+     * @return the latitude of the center of the geohash cell
+     */
+    public static double getLatitude(long code) {
+        //the bits of the geohash alternate between longitude and latitude, starting with longitude
+        return center(code >>> RADIUS_BITS, 0, -90, 180);
+    }
+
+    /**
+     * @return the longitude of the center of the geohash cell
+     */
+    public static double getLongitude(long code) {
+        return center(code >>> RADIUS_BITS, 1, -180, 360);
+    }
+
+    private static double center(long geohash, int shift, double min, double range) {
+        int bits = 0;
+        for (int i = GEOHASH_BITS - 2 + shift; i >= 0; i -= 2) {
+            bits = (bits << 1) | (int) ((geohash >>> i) & 1);
+        }
+        return min + (bits + 0.5) * range / (1 << GEOHASH_BITS / 2);
+    }
+}
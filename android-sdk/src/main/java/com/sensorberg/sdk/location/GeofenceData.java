@@ -11,7 +11,6 @@ import com.sensorberg.utils.Objects;
 import java.util.ArrayList;
 import java.util.List;
 
-import ch.hsr.geohash.GeoHash;
 import lombok.Getter;
 
 /**
@@ -27,23 +26,11 @@ public class GeofenceData implements Parcelable {
 
     protected GeofenceData(String fence) {
         this.fence = fence;
-        String problem = check(fence);
-        if (problem != null) {
-            throw new IllegalArgumentException(problem);
-        }
-        radius = Integer.valueOf(fence.substring(8, 14));
-        if (radius == 0) {
-            throw new IllegalArgumentException("Geofence radius can't be 0");
-        }
-        String start = fence.substring(0, 8);
-        try {
-            GeoHash hash = GeoHash.fromGeohashString(start);
-            geohash = hash.toBase32();
-            latitude = hash.getPoint().getLatitude();
-            longitude = hash.getPoint().getLongitude();
-        } catch (NullPointerException ex) {
-            throw new IllegalArgumentException("Invalid geofence geohash: "+start);
-        }
+        long code = GeofenceCodec.encode(fence);
+        radius = GeofenceCodec.getRadius(code);
+        geohash = GeofenceCodec.getGeohash(code);
+        latitude = GeofenceCodec.getLatitude(code);
+        longitude = GeofenceCodec.getLongitude(code);
     }
 
     protected GeofenceData(Parcel in) {
@@ -54,19 +41,6 @@ public class GeofenceData implements Parcelable {
         radius = in.readInt();
     }
 
-    private static String check(String geofenceId) {
-        if (geofenceId == null) {
-            return "Geofence string can't be null";
-        }
-        if (geofenceId.length() != 14) {
-            return "Geofence string has to be exactly 14 chars";
-        }
-        if (!geofenceId.substring(8, 14).matches("^[0-9]{6}$")) {
-            return "Geofence last 6 chars have to be digits";
-        }
-        return null;
-    }
-
     protected static List<GeofenceData> from(GeofencingEvent event) {
         String problem = check(event);
         if (problem != null) {
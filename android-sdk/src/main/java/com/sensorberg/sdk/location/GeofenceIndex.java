@@ -0,0 +1,418 @@
+package com.sensorberg.sdk.location;
+
+import java.util.Arrays;
+
+/**
+ * Static k-d tree over the centers of the geofences, to find the ones closest to a location without looking at all
+ * of them. The centers are stored as points on the unit sphere, so distances in the tree are chords: they grow with
+ * the distance on the surface, and there is no special case for the poles or the antimeridian.
+ * <p>
+ * The tree is built once and never modified, build a new one when the fences change. It has no Android
+ * dependencies.
+ */
+final class GeofenceIndex {
+
+    /**
+     * mean earth radius in meters
+     */
+    static final double EARTH_RADIUS = 6371008.8;
+
+    /**
+     * x, y and z of every point, in tree order
+     */
+    private final float[] points;
+
+    /**
+     * the id of every point, in tree order
+     */
+    private final long[] ids;
+
+    /**
+     * the radius of every fence in meters, in tree order
+     */
+    private final float[] radii;
+
+    /**
+     * the axis each subtree is split on, stored at the index of its median
+     */
+    private final byte[] axes;
+
+    /**
+     * the largest radius in each subtree, stored at the index of its median
+     */
+    private final float[] reaches;
+
+    private final int size;
+
+    private GeofenceIndex(float[] points, long[] ids, float[] radii, int size) {
+        this.points = points;
+        this.ids = ids;
+        this.radii = radii;
+        this.size = size;
+        this.axes = new byte[size];
+        this.reaches = new float[size];
+        build(0, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the {@code count} points closest to a location.
+     *
+     * @param latitude the latitude of the location
+     * @param longitude the longitude of the location
+     * @param count how many points to find
+     * @return the closest points, closest first
+     */
+    Neighbours nearest(double latitude, double longitude, int count) {
+        Neighbours neighbours = new Neighbours(Math.min(count, size));
+        if (neighbours.capacity == 0) {
+            return neighbours;
+        }
+        double lat = Math.toRadians(latitude);
+        double lng = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        search(0, size, cosLat * Math.cos(lng), cosLat * Math.sin(lng), Math.sin(lat), neighbours);
+        neighbours.sort();
+        return neighbours;
+    }
+
+    /**
+     * Finds how far a location is from the edge of the closest fence that is not excluded, e.g. because it is
+     * registered already. The device can move that far from the location before it may enter such a fence.
+     *
+     * @param latitude the latitude of the location
+     * @param longitude the longitude of the location
+     * @param excluded the fences to leave out
+     * @return the distance in meters, negative if the location is inside such a fence, or
+     * {@link Double#POSITIVE_INFINITY} if all fences are excluded
+     */
+    double nearestEdge(double latitude, double longitude, Neighbours excluded) {
+        long[] skipped = new long[excluded.size()];
+        for (int i = 0; i < skipped.length; i++) {
+            skipped[i] = excluded.getId(i);
+        }
+        Arrays.sort(skipped);
+        double lat = Math.toRadians(latitude);
+        double lng = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        return searchEdge(0, size, cosLat * Math.cos(lng), cosLat * Math.sin(lng), Math.sin(lat), skipped,
+                Double.POSITIVE_INFINITY);
+    }
+
+    private double searchEdge(int from, int to, double x, double y, double z, long[] skipped, double best) {
+        if (from >= to) {
+            return best;
+        }
+        int median = (from + to) >>> 1;
+        double dx = x - points[3 * median];
+        double dy = y - points[3 * median + 1];
+        double dz = z - points[3 * median + 2];
+        if (Arrays.binarySearch(skipped, ids[median]) < 0) {
+            best = Math.min(best, toMeters(dx * dx + dy * dy + dz * dz) - radii[median]);
+        }
+        if (to - from == 1) {
+            return best;
+        }
+        int axis = axes[median];
+        double split = axis == 0 ? dx : (axis == 1 ? dy : dz);
+        //the distance on the surface is at least the chord, which is at least the distance to the splitting plane
+        boolean farSideMayBeCloser = Math.abs(split) * EARTH_RADIUS - reaches[median] < best;
+        if (split < 0) {
+            best = searchEdge(from, median, x, y, z, skipped, best);
+            if (farSideMayBeCloser && Math.abs(split) * EARTH_RADIUS - reaches[median] < best) {
+                best = searchEdge(median + 1, to, x, y, z, skipped, best);
+            }
+        } else {
+            best = searchEdge(median + 1, to, x, y, z, skipped, best);
+            if (farSideMayBeCloser && Math.abs(split) * EARTH_RADIUS - reaches[median] < best) {
+                best = searchEdge(from, median, x, y, z, skipped, best);
+            }
+        }
+        return best;
+    }
+
+    private void search(int from, int to, double x, double y, double z, Neighbours neighbours) {
+        if (from >= to) {
+            return;
+        }
+        int median = (from + to) >>> 1;
+        double dx = x - points[3 * median];
+        double dy = y - points[3 * median + 1];
+        double dz = z - points[3 * median + 2];
+        neighbours.offer(ids[median], dx * dx + dy * dy + dz * dz);
+        if (to - from == 1) {
+            return;
+        }
+        int axis = axes[median];
+        double split = axis == 0 ? dx : (axis == 1 ? dy : dz);
+        if (split < 0) {
+            search(from, median, x, y, z, neighbours);
+            if (!neighbours.isFull() || split * split < neighbours.worst()) {
+                search(median + 1, to, x, y, z, neighbours);
+            }
+        } else {
+            search(median + 1, to, x, y, z, neighbours);
+            if (!neighbours.isFull() || split * split < neighbours.worst()) {
+                search(from, median, x, y, z, neighbours);
+            }
+        }
+    }
+
+    /**
+     * @return the largest radius in the subtree
+     */
+    private float build(int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+        int median = (from + to) >>> 1;
+        if (to - from == 1) {
+            reaches[median] = radii[median];
+            return reaches[median];
+        }
+        int axis = widestAxis(from, to);
+        select(from, to - 1, median, axis);
+        axes[median] = (byte) axis;
+        reaches[median] = Math.max(radii[median], Math.max(build(from, median), build(median + 1, to)));
+        return reaches[median];
+    }
+
+    private int widestAxis(int from, int to) {
+        int widest = 0;
+        float widestSpread = -1;
+        for (int axis = 0; axis < 3; axis++) {
+            float min = Float.MAX_VALUE;
+            float max = -Float.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                float value = points[3 * i + axis];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > widestSpread) {
+                widestSpread = max - min;
+                widest = axis;
+            }
+        }
+        return widest;
+    }
+
+    /**
+     * Moves the point that belongs at {@code k} when sorted by {@code axis} there, with smaller or equal points
+     * before it and larger or equal points after it.
+     */
+    private void select(int left, int right, int k, int axis) {
+        while (right > left) {
+            int middle = (left + right) >>> 1;
+            //median of three, so sorted input does not make it quadratic
+            if (value(middle, axis) < value(left, axis)) {
+                swap(middle, left);
+            }
+            if (value(right, axis) < value(left, axis)) {
+                swap(right, left);
+            }
+            if (value(right, axis) < value(middle, axis)) {
+                swap(right, middle);
+            }
+            float pivot = value(middle, axis);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (value(i, axis) < pivot) {
+                    i++;
+                }
+                while (value(j, axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private float value(int index, int axis) {
+        return points[3 * index + axis];
+    }
+
+    private void swap(int a, int b) {
+        for (int axis = 0; axis < 3; axis++) {
+            float point = points[3 * a + axis];
+            points[3 * a + axis] = points[3 * b + axis];
+            points[3 * b + axis] = point;
+        }
+        long id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        float radius = radii[a];
+        radii[a] = radii[b];
+        radii[b] = radius;
+    }
+
+    /**
+     * @param chordSquared the squared chord between two points on the unit sphere
+     * @return the distance between them on the surface of the earth, in meters
+     */
+    static double toMeters(double chordSquared) {
+        return 2 * Math.asin(Math.min(1, Math.sqrt(chordSquared) / 2)) * EARTH_RADIUS;
+    }
+
+    static class Builder {
+
+        private float[] points;
+
+        private long[] ids;
+
+        private float[] radii;
+
+        private int size;
+
+        Builder(int expectedSize) {
+            points = new float[3 * Math.max(1, expectedSize)];
+            ids = new long[Math.max(1, expectedSize)];
+            radii = new float[Math.max(1, expectedSize)];
+        }
+
+        Builder add(long id, double latitude, double longitude, int radius) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, 2 * size);
+                radii = Arrays.copyOf(radii, 2 * size);
+                points = Arrays.copyOf(points, 6 * size);
+            }
+            double lat = Math.toRadians(latitude);
+            double lng = Math.toRadians(longitude);
+            double cosLat = Math.cos(lat);
+            points[3 * size] = (float) (cosLat * Math.cos(lng));
+            points[3 * size + 1] = (float) (cosLat * Math.sin(lng));
+            points[3 * size + 2] = (float) Math.sin(lat);
+            ids[size] = id;
+            radii[size] = radius;
+            size++;
+            return this;
+        }
+
+        GeofenceIndex build() {
+            GeofenceIndex index = new GeofenceIndex(points, ids, radii, size);
+            points = null;
+            ids = null;
+            radii = null;
+            return index;
+        }
+    }
+
+    /**
+     * The result of {@link #nearest(double, double, int)}. While searching it is a max-heap on the distance, so the
+     * worst candidate can be replaced cheaply.
+     */
+    static class Neighbours {
+
+        private final int capacity;
+
+        private final long[] ids;
+
+        private final double[] distances;
+
+        private int count;
+
+        Neighbours(int capacity) {
+            this.capacity = capacity;
+            ids = new long[capacity];
+            distances = new double[capacity];
+        }
+
+        int size() {
+            return count;
+        }
+
+        /**
+         * @param index between 0 and {@link #size()}, 0 is the closest
+         * @return the id of the point
+         */
+        long getId(int index) {
+            return ids[index];
+        }
+
+        /**
+         * @param index between 0 and {@link #size()}, 0 is the closest
+         * @return the distance to the point in meters
+         */
+        double getDistance(int index) {
+            return toMeters(distances[index]);
+        }
+
+        boolean isFull() {
+            return count == capacity;
+        }
+
+        double worst() {
+            return distances[0];
+        }
+
+        void offer(long id, double distance) {
+            if (count < capacity) {
+                int child = count++;
+                while (child > 0) {
+                    int parent = (child - 1) / 2;
+                    if (distances[parent] >= distance) {
+                        break;
+                    }
+                    ids[child] = ids[parent];
+                    distances[child] = distances[parent];
+                    child = parent;
+                }
+                ids[child] = id;
+                distances[child] = distance;
+            } else if (distance < distances[0]) {
+                siftDown(id, distance, count);
+            }
+        }
+
+        /**
+         * Puts {@code id} at the root and sifts it down in a heap of {@code heapSize}.
+         */
+        private void siftDown(long id, double distance, int heapSize) {
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                ids[parent] = ids[child];
+                distances[parent] = distances[child];
+                parent = child;
+            }
+            ids[parent] = id;
+            distances[parent] = distance;
+        }
+
+        /**
+         * Heap sort, turns the max-heap into ascending order.
+         */
+        void sort() {
+            for (int end = count - 1; end > 0; end--) {
+                long id = ids[end];
+                double distance = distances[end];
+                ids[end] = ids[0];
+                distances[end] = distances[0];
+                siftDown(id, distance, end);
+            }
+        }
+    }
+}
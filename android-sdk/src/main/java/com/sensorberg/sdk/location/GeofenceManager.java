@@ -27,6 +27,7 @@ import com.sensorberg.sdk.settings.SettingsManager;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -49,11 +50,17 @@ public class GeofenceManager implements GeofenceListener {
 
     private Location previous;
     private Location current;
-    private boolean updating = false;
     private boolean enabled = false;
     @Setter
     private boolean registered = false;
 
+    private GeofenceRegistrar registrar;
+
+    /**
+     * the layout changed since the last registration
+     */
+    private boolean fencesChanged = false;
+
     private final boolean playServicesNotAvailable;
 
     public GeofenceManager(Context context, SettingsManager settings, SharedPreferences prefs, Gson gson, PlayServiceManager play) {
@@ -71,6 +78,7 @@ public class GeofenceManager implements GeofenceListener {
 
         entered = loadEntered();
         storage = new GeofenceStorage(context, settings, prefs);
+        registrar = new GeofenceRegistrar(playApi, registrarListener);
         play.addListener(connectionCallbacks);
         previous = restorePrevious();
         current = restoreLastKnown();
@@ -134,19 +142,23 @@ public class GeofenceManager implements GeofenceListener {
         prefs.edit().putLong(Constants.SharedPreferencesKeys.Location.LAST_DB_UPDATED,
                 System.currentTimeMillis()).apply();
 
+        if (!storage.updateFences(fences)) {
+            Logger.log.geofence("Update: layout change without fence changes");
+            return;
+        }
         Logger.log.geofence("Update: layout change");
-        storage.updateFences(fences);
         if (fences.size() == 0 && storage.getCount() == 0) {
             disable();
         } else {
             enable();
         }
         registered = false;
+        fencesChanged = true;
         if (storage.getCount() <= GeofenceStorage.HIGH) {
             requestSingleUpdate();
         }
         if (trigger(current)) {
-            removeGeofences(current);
+            updateGeofences(current);
         }
     }
 
@@ -163,7 +175,7 @@ public class GeofenceManager implements GeofenceListener {
 
         Logger.log.geofence("Update: ping at " + current);
         if (trigger(current)) {
-            removeGeofences(current);
+            updateGeofences(current);
         }
     }
 
@@ -181,6 +193,8 @@ public class GeofenceManager implements GeofenceListener {
         if (enabled) {
             Logger.log.geofence("Event: Location state changed");
             registered = false;
+            //Play Services removes all geofences when location becomes unavailable
+            registrar.forget();
             requestSingleUpdate();
         }
     }
@@ -199,10 +213,6 @@ public class GeofenceManager implements GeofenceListener {
             Logger.log.geofenceError("Deny: Service is not connected, will retry", null);
             return false;
         }
-        if (updating) {
-            Logger.log.geofence("Deny: Already updating");
-            return false;
-        }
         if (storage.getCount() <= GeofenceStorage.HIGH) {
             //We don't have to consider location below 100 geofences
             if (registered) {
@@ -213,6 +223,10 @@ public class GeofenceManager implements GeofenceListener {
                 return true;
             }
         } else {
+            if (fencesChanged && location != null) {
+                Logger.log.geofence("Allow: Fences changed, at " + location);
+                return true;
+            }
             if (previous == null) {
                 if (location == null) {
                     Logger.log.geofence("Deny: No location available");
@@ -239,86 +253,40 @@ public class GeofenceManager implements GeofenceListener {
         }
     }
 
-    private void removeGeofences(final Location location) {
-        updating = true;
-        try {
-            LocationServices.GeofencingApi
-                    .removeGeofences(
-                            play.getClient(),
-                            GeofenceReceiver.getGeofencePendingIntent(context))
-                    .setResultCallback(new ResultCallback<Status>() {
-                        @Override
-                        public void onResult(@NonNull Status status) {
-                            if (status.isSuccess()) {
-                                registerGeofences(location);
-                            } else {
-                                onGeofencesFailed(null, status.getStatusCode());
-                            }
-                        }
-                    });
-        } catch (SecurityException | IllegalStateException ex) {
-            onGeofencesFailed(ex, 0);
-        }
-    }
-
-    private void registerGeofences(final Location location) {
-        final List<GeofencingRequest> requests = getGeofencingRequests(location);
-        if (requests.isEmpty()) {
-            onGeofencesRemoved(location);
+    /**
+     * Registers the geofences around the location. If a registration is running, the latest location is
+     * registered after it.
+     */
+    private void updateGeofences(Location location) {
+        HashMap<String, Geofence> desired = getDesiredGeofences(location);
+        if (desired == null) {
             return;
         }
-        try {
-            for (final GeofencingRequest request : requests) {
-                LocationServices.GeofencingApi
-                        .addGeofences(
-                                play.getClient(),
-                                request,
-                                GeofenceReceiver.getGeofencePendingIntent(context))
-                        .setResultCallback(new ResultCallback<Status>() {
-                            @Override
-                            public void onResult(@NonNull Status status) {
-                                if (status.isSuccess()) {
-                                    onGeofencesAdded(location, request.getGeofences(),
-                                            request.getInitialTrigger());
-                                } else {
-                                    onGeofencesFailed(null, status.getStatusCode());
-                                }
-                            }
-                        });
-            }
-        } catch (SecurityException | IllegalStateException ex) {
-            onGeofencesFailed(ex, 0);
+        if (registrar.isRegistering()) {
+            Logger.log.geofence("Update: queued after the running registration");
         }
+        registrar.submit(new GeofenceRegistrar.Target(location, desired, new HashSet<>(entered.keySet())));
     }
 
-    private void onGeofencesAdded(Location location, List<Geofence> geofences, int initialTrigger) {
+    private void onGeofencesAdded(Location location, int added, int removed) {
         registered = true;
-        updating = false;
+        fencesChanged = false;
         previous = location;
         storePrevious(previous);
-        Logger.log.geofence("Successfully added " + geofences.size() +
-                " geofences, initial trigger: " + initialTrigger);
+        Logger.log.geofence("Successfully added " + added + " and removed " + removed + " geofences, " +
+                registrar.getRegisteredCount() + " registered");
         requestLocationUpdates();
     }
 
     private void onGeofencesRemoved(Location location) {
         registered = true;
-        updating = false;
+        fencesChanged = false;
         previous = location;
         storePrevious(previous);
         Logger.log.geofence("No geofences around, nothing tracked at " + location);
         disable();
     }
 
-    private void onGeofencesFailed(Exception ex, int status) {
-        updating = false;
-        if (ex != null) {
-            Logger.log.geofenceError("Failed to add geofences, error code: " + status, ex);
-        } else {
-            Logger.log.geofenceError("Failed to add geofences, error code: " + status, ex);
-        }
-    }
-
     @Override
     public void onGeofenceEvent(GeofenceData geofenceData, boolean entry, String pairingIdNotUsedHere) {
 
@@ -351,22 +319,17 @@ public class GeofenceManager implements GeofenceListener {
         notifyListeners(geofenceData, entry, pairingId);
     }
 
-    private List<GeofencingRequest> getGeofencingRequests(Location location) {
-        List<GeofencingRequest> result = new ArrayList<>(2);
+    /**
+     * @return the geofences that should be registered at the location, null if they can't be read
+     */
+    private HashMap<String, Geofence> getDesiredGeofences(Location location) {
         try {
-            HashMap<String, Geofence> triggerEnter = storage.getGeofences(location);
-            HashMap<String, Geofence> triggerExit = new HashMap<>();
-            //Move geofences we're inside to saved set of geofences,
-            //which will be triggered when registered outside of geofence
+            HashMap<String, Geofence> desired = storage.getGeofences(location);
+            //Cleanup entered geofences that are not anymore in range
             Iterator<Map.Entry<String, String>> iterator = entered.entrySet().iterator();
             while (iterator.hasNext()) {
                 Map.Entry<String, String> inside = iterator.next();
-                Geofence temp = triggerEnter.get(inside.getKey());
-                if (temp != null) {
-                    triggerEnter.remove(inside.getKey());
-                    triggerExit.put(inside.getKey(), temp);
-                } else {
-                    //Cleanup entered geofence if it's not anymore in range
+                if (!desired.containsKey(inside.getKey())) {
                     iterator.remove();
                     //It's because of either:
                     // - Device moving far enough from this geofence with location disabled,
@@ -377,22 +340,11 @@ public class GeofenceManager implements GeofenceListener {
                 }
             }
             saveEntered(entered);
-            if (triggerEnter.size() > 0) {
-                GeofencingRequest.Builder builder = new GeofencingRequest.Builder();
-                builder.setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_ENTER);
-                builder.addGeofences(new ArrayList<>(triggerEnter.values()));
-                result.add(builder.build());
-            }
-            if (triggerExit.size() > 0) {
-                GeofencingRequest.Builder builder = new GeofencingRequest.Builder();
-                builder.setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_EXIT);
-                builder.addGeofences(new ArrayList<>(triggerExit.values()));
-                result.add(builder.build());
-            }
+            return desired;
         } catch (SQLException ex) {
             Logger.log.geofenceError("Can't build geofencing reqest", ex);
+            return null;
         }
-        return result;
     }
 
     private void requestSingleUpdate() {
@@ -589,6 +541,58 @@ public class GeofenceManager implements GeofenceListener {
         }
     };
 
+    private final GeofenceRegistrar.Listener registrarListener = new GeofenceRegistrar.Listener() {
+        @Override
+        public void onRegistered(GeofenceRegistrar.Target target, int added, int removed) {
+            if (target.geofences.isEmpty()) {
+                onGeofencesRemoved(target.location);
+            } else {
+                onGeofencesAdded(target.location, added, removed);
+            }
+        }
+
+        @Override
+        public void onFailed(GeofenceRegistrar.Target target, int status) {
+            Logger.log.geofenceError("Failed to add geofences, error code: " + status, null);
+        }
+    };
+
+    private final GeofenceRegistrar.Api playApi = new GeofenceRegistrar.Api() {
+        @Override
+        public void removeAll(GeofenceRegistrar.Callback callback) {
+            LocationServices.GeofencingApi
+                    .removeGeofences(play.getClient(), GeofenceReceiver.getGeofencePendingIntent(context))
+                    .setResultCallback(forward(callback));
+        }
+
+        @Override
+        public void remove(List<String> fences, GeofenceRegistrar.Callback callback) {
+            LocationServices.GeofencingApi
+                    .removeGeofences(play.getClient(), fences)
+                    .setResultCallback(forward(callback));
+        }
+
+        @Override
+        public void add(List<Geofence> fences, int initialTrigger, GeofenceRegistrar.Callback callback) {
+            GeofencingRequest request = new GeofencingRequest.Builder()
+                    .setInitialTrigger(initialTrigger)
+                    .addGeofences(fences)
+                    .build();
+            LocationServices.GeofencingApi
+                    .addGeofences(play.getClient(), request, GeofenceReceiver.getGeofencePendingIntent(context))
+                    .setResultCallback(forward(callback));
+        }
+
+        private ResultCallback<Status> forward(final GeofenceRegistrar.Callback callback) {
+            return new ResultCallback<Status>() {
+                @Override
+                public void onResult(@NonNull Status status) {
+                    callback.onResult(status.isSuccess(), status.getStatusCode());
+                }
+            };
+        }
+    };
+
     private final LocationListener locationListener = new LocationListener() {
         @Override
         public void onLocationChanged(Location incoming) {
@@ -602,7 +606,7 @@ public class GeofenceManager implements GeofenceListener {
                 storeLastKnown(current);
                 Logger.log.geofence("Update: location change at " + incoming);
                 if (trigger(incoming)) {
-                    removeGeofences(incoming);
+                    updateGeofences(incoming);
                 }
             }
         }
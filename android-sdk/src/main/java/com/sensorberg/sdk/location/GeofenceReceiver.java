@@ -75,6 +75,7 @@ public class GeofenceReceiver extends BroadcastReceiver {
     }
 
     private void handleProvidersChanged(Context context) {
+        LocationHelper.onProvidersChanged();
         LocationManager locationManager =
                 (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
         if (isLocationEnabled(locationManager)) {
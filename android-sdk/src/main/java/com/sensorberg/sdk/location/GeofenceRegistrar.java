@@ -0,0 +1,299 @@
+package com.sensorberg.sdk.location;
+
+import android.location.Location;
+
+import com.google.android.gms.location.Geofence;
+import com.sensorberg.sdk.Logger;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Brings the geofences registered with Play Services to the desired ones. One registration runs at a time, targets
+ * submitted meanwhile are coalesced and only the latest one is registered next. A registration sends only the
+ * difference to what is registered: one removal and up to two additions, and it completes once all of them
+ * answered. All calls and callbacks are expected on the same thread.
+ */
+class GeofenceRegistrar {
+
+    /**
+     * The calls to Play Services.
+     */
+    interface Api {
+
+        /**
+         * Removes all geofences of this app.
+         */
+        void removeAll(Callback callback);
+
+        void remove(List<String> fences, Callback callback);
+
+        /**
+         * @param initialTrigger one of the {@link com.google.android.gms.location.GeofencingRequest} initial triggers
+         */
+        void add(List<Geofence> fences, int initialTrigger, Callback callback);
+    }
+
+    interface Callback {
+
+        /**
+         * @param status the status code, 0 if the call did not reach Play Services
+         */
+        void onResult(boolean success, int status);
+    }
+
+    interface Listener {
+
+        /**
+         * The geofences of the target are registered.
+         */
+        void onRegistered(Target target, int added, int removed);
+
+        /**
+         * Registering the target failed, it is not known which geofences are registered now.
+         */
+        void onFailed(Target target, int status);
+    }
+
+    /**
+     * The geofences that should be registered at a location.
+     */
+    static class Target {
+
+        final Location location;
+
+        final Map<String, Geofence> geofences;
+
+        /**
+         * the fences the device is inside, they are registered to trigger the exit
+         */
+        final Set<String> inside;
+
+        Target(Location location, Map<String, Geofence> geofences, Set<String> inside) {
+            this.location = location;
+            this.geofences = geofences;
+            this.inside = inside;
+        }
+    }
+
+    /**
+     * The initial triggers of the GeofencingRequest, so Play Services is not needed to load this class.
+     */
+    static final int INITIAL_TRIGGER_ENTER = 1;
+    static final int INITIAL_TRIGGER_EXIT = 2;
+
+    private final Api api;
+
+    private final Listener listener;
+
+    /**
+     * the registered fences, null if that is not known, e.g. before the first registration or after a failed one
+     */
+    private Set<String> registered;
+
+    private Registration running;
+
+    private Target next;
+
+    GeofenceRegistrar(Api api, Listener listener) {
+        this.api = api;
+        this.listener = listener;
+    }
+
+    /**
+     * Registers the geofences of the target, after the running registration if there is one. A target that is
+     * still waiting for that is replaced.
+     */
+    void submit(Target target) {
+        if (running != null) {
+            if (next != null) {
+                Logger.log.geofence("Registration of " + next.geofences.size() + " geofences superseded");
+            }
+            next = target;
+            return;
+        }
+        running = new Registration(target);
+        running.start();
+    }
+
+    /**
+     * Forgets which geofences are registered, the next registration removes all of them first.
+     */
+    void forget() {
+        registered = null;
+        if (running != null) {
+            running.forgotten = true;
+        }
+    }
+
+    boolean isRegistering() {
+        return running != null;
+    }
+
+    /**
+     * @return the number of registered geofences, -1 if that is not known
+     */
+    int getRegisteredCount() {
+        return registered == null ? -1 : registered.size();
+    }
+
+    private void onFinished(Registration registration) {
+        running = null;
+        if (registration.failed) {
+            registered = null;
+            listener.onFailed(registration.target, registration.status);
+        } else {
+            registered = registration.forgotten ? null : new HashSet<>(registration.target.geofences.keySet());
+            listener.onRegistered(registration.target, registration.added, registration.removed);
+        }
+        if (running == null && next != null) {
+            Target target = next;
+            next = null;
+            submit(target);
+        }
+    }
+
+    /**
+     * One registration with all of its calls to Play Services.
+     */
+    private class Registration {
+
+        private final Target target;
+
+        private int pending;
+
+        private int added;
+
+        private int removed;
+
+        private boolean failed;
+
+        private int status;
+
+        private boolean forgotten;
+
+        Registration(Target target) {
+            this.target = target;
+        }
+
+        void start() {
+            if (registered != null) {
+                send();
+                return;
+            }
+            pending = 1;
+            try {
+                api.removeAll(new Callback() {
+                    @Override
+                    public void onResult(boolean success, int status) {
+                        if (success) {
+                            registered = new HashSet<>();
+                            send();
+                        } else {
+                            fail(status);
+                        }
+                    }
+                });
+            } catch (SecurityException | IllegalStateException ex) {
+                Logger.log.geofenceError("Removing all geofences failed", ex);
+                fail(0);
+            }
+        }
+
+        /**
+         * Sends the difference between the registered fences and the target, all calls at once.
+         */
+        private void send() {
+            List<String> obsolete = new ArrayList<>();
+            for (String fence : registered) {
+                if (!target.geofences.containsKey(fence)) {
+                    obsolete.add(fence);
+                }
+            }
+            List<Geofence> triggerEnter = new ArrayList<>();
+            //Geofences we're inside will be triggered when registered outside of geofence
+            List<Geofence> triggerExit = new ArrayList<>();
+            for (Map.Entry<String, Geofence> fence : target.geofences.entrySet()) {
+                if (registered.contains(fence.getKey())) {
+                    continue;
+                }
+                if (target.inside.contains(fence.getKey())) {
+                    triggerExit.add(fence.getValue());
+                } else {
+                    triggerEnter.add(fence.getValue());
+                }
+            }
+            pending = (obsolete.isEmpty() ? 0 : 1) + (triggerEnter.isEmpty() ? 0 : 1) + (triggerExit.isEmpty() ? 0 : 1);
+            if (pending == 0) {
+                onFinished(this);
+                return;
+            }
+            remove(obsolete);
+            add(triggerEnter, INITIAL_TRIGGER_ENTER);
+            add(triggerExit, INITIAL_TRIGGER_EXIT);
+        }
+
+        private void remove(final List<String> fences) {
+            if (fences.isEmpty()) {
+                return;
+            }
+            try {
+                api.remove(fences, new Callback() {
+                    @Override
+                    public void onResult(boolean success, int status) {
+                        if (success) {
+                            removed += fences.size();
+                            answered();
+                        } else {
+                            fail(status);
+                        }
+                    }
+                });
+            } catch (SecurityException | IllegalStateException ex) {
+                Logger.log.geofenceError("Removing geofences failed", ex);
+                fail(0);
+            }
+        }
+
+        private void add(final List<Geofence> fences, int initialTrigger) {
+            if (fences.isEmpty()) {
+                return;
+            }
+            try {
+                api.add(fences, initialTrigger, new Callback() {
+                    @Override
+                    public void onResult(boolean success, int status) {
+                        if (success) {
+                            added += fences.size();
+                            answered();
+                        } else {
+                            fail(status);
+                        }
+                    }
+                });
+            } catch (SecurityException | IllegalStateException ex) {
+                Logger.log.geofenceError("Adding geofences failed", ex);
+                fail(0);
+            }
+        }
+
+        private void answered() {
+            if (--pending == 0) {
+                onFinished(this);
+            }
+        }
+
+        private void fail(int status) {
+            if (!failed) {
+                failed = true;
+                this.status = status;
+            }
+            if (--pending == 0) {
+                onFinished(this);
+            }
+        }
+    }
+}
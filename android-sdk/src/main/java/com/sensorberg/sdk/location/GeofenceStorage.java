@@ -15,19 +15,15 @@ import com.sensorberg.sdk.settings.DefaultSettings;
 import com.sensorberg.sdk.settings.SettingsManager;
 import com.sensorberg.sdk.storage.DBHelper;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
-import ch.hsr.geohash.GeoHash;
-import ch.hsr.geohash.WGS84Point;
-import ch.hsr.geohash.queries.GeoHashCircleQuery;
 import lombok.Getter;
 
 public class GeofenceStorage {
 
     private static final int MIN_RADIUS = 100;          //100 m
-    private static final int MAX_RADIUS = 819200;       //So we'll get there by doubling 100 m
+    private static final int MAX_RADIUS = 819200;       //The most the device may move before we select again
     public static final int HIGH = 100;
     public static final int LOW = HIGH / 2;
 
@@ -35,9 +31,37 @@ public class GeofenceStorage {
     private SettingsManager settings;
     private SQLiteDatabase db;
 
+    /**
+     * How far the device may move from the last selection before it could enter a fence that is not selected.
+     */
     @Getter private int radius;
     @Getter private int count;
 
+    /**
+     * closest fences by their code, null until it is needed after the fences changed
+     */
+    private GeofenceIndex index;
+
+    /**
+     * the last selection, null after the fences changed
+     */
+    private HashMap<String, Geofence> selection;
+
+    /**
+     * where the last selection was made, null if it does not depend on the location
+     */
+    private Location selectedAt;
+
+    /**
+     * the fences of the last selection by code, the ones that are selected again are not built again
+     */
+    private HashMap<Long, Geofence> built = new HashMap<>();
+
+    /**
+     * the responsiveness the fences in {@link #built} were built with
+     */
+    private int builtResponsiveness;
+
     public GeofenceStorage(Context context, SettingsManager settings, SharedPreferences preferences) {
         this.settings = settings;
         this.preferences = preferences;
@@ -48,240 +72,206 @@ public class GeofenceStorage {
         count = getCountQuery();
     }
 
-    public void updateFences(List<String> fences) {
-        SQLiteStatement stmt = null;
+    /**
+     * Stores the fences of the layout, only the ones that were added or removed since the last update are written,
+     * all in one transaction.
+     *
+     * @param fences the fences of the layout
+     * @return true if the stored fences changed
+     */
+    public boolean updateFences(List<String> fences) {
+        SQLiteStatement delete = null;
+        SQLiteStatement insert = null;
         try {
             long start = System.currentTimeMillis();
+            long[] wanted = GeofenceCodec.encodeAll(fences);
+            long[] stored = loadCodes();
+            int added = 0;
+            int removed = 0;
             db.beginTransaction();
-            db.execSQL("DELETE FROM " + DBHelper.TABLE_GEOFENCES);
-            stmt = db.compileStatement(
-                    "INSERT OR IGNORE INTO " + DBHelper.TABLE_GEOFENCES + " (" + DBHelper.TG_FENCE + ") VALUES (?)"
-            );
-            for (String fence : fences) {
-                stmt.clearBindings();
-                stmt.bindString(1, fence);
-                stmt.executeInsert();
+            try {
+                //both are sorted, walk them side by side
+                int w = 0;
+                int s = 0;
+                while (w < wanted.length || s < stored.length) {
+                    if (s == stored.length || (w < wanted.length && wanted[w] < stored[s])) {
+                        if (insert == null) {
+                            insert = db.compileStatement(
+                                    "INSERT OR IGNORE INTO " + DBHelper.TABLE_GEOFENCES + " (" + DBHelper.TG_CODE + ") VALUES (?)"
+                            );
+                        }
+                        insert.bindLong(1, wanted[w++]);
+                        insert.executeInsert();
+                        added++;
+                    } else if (w == wanted.length || stored[s] < wanted[w]) {
+                        if (delete == null) {
+                            delete = db.compileStatement(
+                                    "DELETE FROM " + DBHelper.TABLE_GEOFENCES + " WHERE " + DBHelper.TG_CODE + " = ?"
+                            );
+                        }
+                        delete.bindLong(1, stored[s++]);
+                        delete.executeUpdateDelete();
+                        removed++;
+                    } else {
+                        w++;
+                        s++;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (added == 0 && removed == 0) {
+                Logger.log.geofence("Unchanged " + count + " fences");
+                return false;
             }
-            db.setTransactionSuccessful();
-            count = fences.size();
-            Logger.log.geofence("Saved "+fences.size()+" in "+(System.currentTimeMillis() - start) + " ms");
+            count = wanted.length;
+            invalidate();
+            Logger.log.geofence("Added " + added + " and removed " + removed + " fences in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            return true;
         } catch (SQLException ex) {
             Logger.log.geofenceError("Storage error", ex);
+            count = getCountQuery();
+            invalidate();
+            return true;
         } finally {
-            if (stmt != null) {
-                stmt.close();
+            if (delete != null) {
+                delete.close();
+            }
+            if (insert != null) {
+                insert.close();
+            }
+        }
+    }
+
+    /**
+     * @return the codes of all stored fences, sorted
+     */
+    private long[] loadCodes() throws SQLException {
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery("SELECT " + DBHelper.TG_CODE + " FROM " + DBHelper.TABLE_GEOFENCES
+                    + " ORDER BY " + DBHelper.TG_CODE, null);
+            long[] codes = new long[cursor.getCount()];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                codes[i++] = cursor.getLong(0);
             }
-            db.endTransaction();
+            return codes;
+        } finally {
+            close(cursor);
         }
     }
 
+    private void invalidate() {
+        index = null;
+        selection = null;
+        selectedAt = null;
+        built.clear();
+    }
+
     /**
-     * Get list of N geofences closest to the given location.
-     * @param location Location. When null it returns up to HIGH random geofences.
+     * Get list of N geofences closest to the given location. The last selection is returned again as long as the
+     * device did not move further than {@link #getRadius()} from where it was made.
+     * @param location Location. When null it returns up to HIGH random geofences, or the last selection.
      * @return List of geofences as requested. Always less than HIGH.
      */
     public HashMap<String, Geofence> getGeofences(Location location) throws SQLException {
         if (count == 0) {
             //No geofences, return empty array.
             return new HashMap<>(0);
-        } else if (count < HIGH || location == null) {
+        }
+        if (settings.getGeofenceNotificationResponsiveness() != builtResponsiveness) {
+            built.clear();
+            selection = null;
+            builtResponsiveness = settings.getGeofenceNotificationResponsiveness();
+        }
+        if (selection != null && (location == null || count < HIGH
+                || (selectedAt != null && selectedAt.distanceTo(location) < radius))) {
+            return new HashMap<>(selection);
+        }
+        if (count < HIGH || location == null) {
             //We're below HIGH (or location is unknown), register up to HIGH geofences.
-            String sql = "SELECT " + DBHelper.TG_FENCE + " FROM " + DBHelper.TABLE_GEOFENCES + " LIMIT " + HIGH;
+            String sql = "SELECT " + DBHelper.TG_CODE + " FROM " + DBHelper.TABLE_GEOFENCES + " LIMIT " + HIGH;
             Cursor cursor = null;
             try {
                 cursor = db.rawQuery(sql, null);
-                return getGeofencesFromCursor(cursor, count);
+                HashMap<Long, Geofence> selected = new HashMap<>(count);
+                while (cursor.moveToNext()) {
+                    selected.put(cursor.getLong(0), buildGeofence(cursor.getLong(0)));
+                }
+                select(selected, null);
+                return new HashMap<>(selection);
             } finally {
                 close(cursor);
             }
         } else {
             //More than 100 geofences case.
             long start = System.currentTimeMillis();
-            WGS84Point center = new WGS84Point(location.getLatitude(), location.getLongitude());
-            radius = preferences.getInt(
-                    Constants.SharedPreferencesKeys.Location.INITIAL_GEOFENCES_SEARCH_RADIUS,
-                    DefaultSettings.DEFAULT_INITIAL_GEOFENCES_SEARCH_RADIUS);
-            Cursor cursor = null;
-            try {
-                cursor = searchGeofencesRange(center, radius);
-                if (cursor.getCount() > LOW && cursor.getCount() <= HIGH) {
-                    //Good enough on first shot. Use it.
-                    return getGeofencesFromCursor(cursor, cursor.getCount());
-                } else {
-                    //If more than HIGH we'll search and reduce radius, else increase
-                    if (cursor.getCount() > HIGH) {
-                        cursor = searchAndReduce(center, radius, cursor);
-                    } else {
-                        cursor = searchAndExtend(center, radius, cursor);
-                    }
-                    Logger.log.geofence("Filtered " + cursor.getCount() + " out of " + count +
-                            " in " + (System.currentTimeMillis() - start) + " ms");
-                    return getGeofencesFromCursor(cursor, HIGH);
-                }
-            } finally {
-                close(cursor);
+            GeofenceIndex index = getIndex();
+            GeofenceIndex.Neighbours nearest = index.nearest(location.getLatitude(), location.getLongitude(), HIGH);
+            if (nearest.size() == 0) {
+                return new HashMap<>(0);
             }
-        }
-    }
-
-    /**
-     * @param center Center point of search.
-     * @param radius Initial radius of search. Final value of radius will be stored.
-     * @param current Initial cursor. Will be closed if not needed anymore.
-     *                It should have > HIGH rows, otherwise it will be returned back.
-     * @return Found cursor, possibly having less than HIGH geofences. If this is not possible,
-     * then it might have more than HIGH rows. It can also be original cursor.
-     */
-    private Cursor searchAndReduce(WGS84Point center, int radius, Cursor current) {
-        Cursor result = current, previous = null;
-        int radiusPrev = radius;
-        boolean done = false;
-        while (!done) {
-            //Decide whether found is acceptable.
-            if (current.getCount() <= HIGH) {
-                if (current.getCount() > 0) {
-                    //Good enough / perfect case.
-                    result = current;
-                    close(previous);
-                } else {
-                    //It's zero, use previous.
-                    radius = radiusPrev;
-                    if (previous != null) {
-                        //If the previous value was > 0 then we take it.
-                        result = previous;
-                        close(current);
-                    } else {
-                        //Previous is null, invalid invocation. (Called with current = 0)
-                        result = current;
-                        close(previous);
-                    }
+            HashMap<Long, Geofence> selected = new HashMap<>(nearest.size());
+            int added = 0;
+            for (int i = 0; i < nearest.size(); i++) {
+                Geofence geofence = built.get(nearest.getId(i));
+                if (geofence == null) {
+                    geofence = buildGeofence(nearest.getId(i));
+                    added++;
                 }
-                Logger.log.geofence("Found " + result.getCount() + " by reducing radius to " + radius + " m");
-                preferences.edit().putInt(
-                        Constants.SharedPreferencesKeys.Location.INITIAL_GEOFENCES_SEARCH_RADIUS, radius).apply();
-                this.radius = radius;
-                break;
-            }
-            //Loop things
-            close(previous);
-            radiusPrev = radius;
-            radius /= 2;
-            if (radius < MIN_RADIUS) {
-                //So we don't overshoot or loop forever.
-                radius = MIN_RADIUS;
-                done = true;
-                Logger.log.geofence("Minimal radius reached: " + radius);
+                selected.put(nearest.getId(i), geofence);
             }
-            previous = current;
-            current = searchGeofencesRange(center, radius);
+            double edge = index.nearestEdge(location.getLatitude(), location.getLongitude(), nearest);
+            setRadius((int) Math.max(MIN_RADIUS, Math.min(MAX_RADIUS, edge)));
+            select(selected, location);
+            Logger.log.geofence("Found " + selection.size() + " closest out of " + count + ", " + added +
+                    " new, next selection in " + radius + " m, in " + (System.currentTimeMillis() - start) + " ms");
+            return new HashMap<>(selection);
         }
-        return result;
     }
 
-    /**
-     * @param center Center point of search.
-     * @param radius Initial radius of search. Final value of radius will be stored.
-     * @param current Initial cursor. Will be closed if not needed anymore.
-     *                It should have <= LOW rows, otherwise it will be returned back.
-     * @return Found cursor, possibly having more than LOW and less than HIGH geofences.
-     * If this is not possible then it might have more or less, but always at least 1,
-     * closest to center point, provided there are geofences at all in MAX_RADIUS.
-     */
-    private Cursor searchAndExtend(WGS84Point center, int radius, Cursor current) {
-        Cursor result = current, previous = null;
-        int radiusPrev = radius;
-        boolean done = false;
-        while (!done) {
-            //Decide whether found is acceptable.
-            if (current.getCount() > LOW) {
-                if (current.getCount() <= HIGH) {
-                    //Good enough / perfect case.
-                    result = current;
-                    close(previous);
-                } else {
-                    //More than HIGH, check previous cursor.
-                    radius = radiusPrev;
-                    if (previous != null && previous.getCount() != 0) {
-                        //If the previous value was > 0 then we take it.
-                        result = previous;
-                        close(current);
-                    } else {
-                        //Else we take current result (which is above HIGH) and then limit it to HIGH.
-                        result = current;
-                        close(previous);
-                    }
-                }
-                Logger.log.geofence("Found: " + result.getCount() + " by extending radius to " + radius + " m");
-                preferences.edit().putInt(
-                        Constants.SharedPreferencesKeys.Location.INITIAL_GEOFENCES_SEARCH_RADIUS, radius).apply();
-                this.radius = radius;
-                break;
-            }
-            //Loop things
-            close(previous);
-            radiusPrev = radius;
-            radius *= 2;
-            if (radius > MAX_RADIUS) {
-                //So we don't overshoot or loop forever.
-                radius = MAX_RADIUS;
-                done = true;
-                Logger.log.geofence("Maximum radius reached: " + radius);
-            }
-            previous = current;
-            current = searchGeofencesRange(center, radius);
+    private void select(HashMap<Long, Geofence> selected, Location location) {
+        built = selected;
+        selectedAt = location;
+        selection = new HashMap<>(selected.size());
+        for (Geofence geofence : selected.values()) {
+            selection.put(geofence.getRequestId(), geofence);
         }
-        return result;
     }
 
-    private List<GeoHash> truncateToBase32(List<GeoHash> geoHashes) {
-        List<GeoHash> result = new ArrayList<>(geoHashes.size());
-        for (GeoHash search : geoHashes) {
-            int bits = search.significantBits();
-            int floor = (int) (5*(Math.floor(bits/5)));
-            if (floor == 0) {
-                //This means the geohash for lookup is below 1 char and OVER 2500 km big.
-                //(or even over 9000 perhaps ;)
-                floor = 5;
-            }
-            GeoHash round = GeoHash.fromLongValue(search.longValue(), floor);
-            result.add(round);
+    private void setRadius(int radius) {
+        if (radius != this.radius) {
+            this.radius = radius;
+            preferences.edit().putInt(
+                    Constants.SharedPreferencesKeys.Location.INITIAL_GEOFENCES_SEARCH_RADIUS, radius).apply();
         }
-        return result;
     }
 
-    private HashMap<String, Geofence> getGeofencesFromCursor(Cursor cursor, int limit) {
-        HashMap<String, Geofence> result = new HashMap<>(limit);
-        Geofence geofence;
-        int i = 0;
-        while (cursor.moveToNext()) {
-            i++;
-            if (i <= HIGH) {
-                String fence = cursor.getString(cursor.getColumnIndex(DBHelper.TG_FENCE));
-                geofence = buildGeofence(fence);
-                if (geofence != null) {
-                    result.put(fence, geofence);
+    /**
+     * @return the index of all stored geofences, it is built with one query the first time it is needed
+     */
+    private GeofenceIndex getIndex() throws SQLException {
+        if (index == null) {
+            long start = System.currentTimeMillis();
+            GeofenceIndex.Builder builder = new GeofenceIndex.Builder(count);
+            Cursor cursor = null;
+            try {
+                cursor = db.rawQuery("SELECT " + DBHelper.TG_CODE + " FROM " + DBHelper.TABLE_GEOFENCES, null);
+                while (cursor.moveToNext()) {
+                    long code = cursor.getLong(0);
+                    builder.add(code, GeofenceCodec.getLatitude(code), GeofenceCodec.getLongitude(code),
+                            GeofenceCodec.getRadius(code));
                 }
-            } else {
-                Logger.log.geofenceError("Over " + HIGH + " found in cursor", null);
-                break;
-            }
-        }
-        return result;
-    }
-
-    private Cursor searchGeofencesRange(WGS84Point center, int radius) throws SQLException {
-        GeoHashCircleQuery query = new GeoHashCircleQuery(center, radius);
-        List<GeoHash> geoHashes = truncateToBase32(query.getSearchHashes());
-        String sql = "SELECT " + DBHelper.TG_FENCE + " FROM " + DBHelper.TABLE_GEOFENCES + " WHERE " + DBHelper.TG_FENCE + " LIKE ?";
-        String[] args = new String[geoHashes.size()];
-        for (int i = 0; i < geoHashes.size(); i++) {
-            args[i] = geoHashes.get(i).toBase32()+"%";
-            if (i > 0) {
-                sql += " OR " + DBHelper.TG_FENCE + " LIKE ?";
+            } finally {
+                close(cursor);
             }
+            index = builder.build();
+            Logger.log.geofence("Indexed " + index.size() + " in " + (System.currentTimeMillis() - start) + " ms");
         }
-        sql += " LIMIT " + (HIGH+1);
-        return db.rawQuery(sql, args);
+        return index;
     }
 
     private int getCountQuery() throws SQLException {
@@ -298,24 +288,18 @@ public class GeofenceStorage {
         }
     }
 
-    private Geofence buildGeofence(String fence) {
-        try {
-            GeofenceData temp = new GeofenceData(fence);
-            return new Geofence.Builder()
-                    .setRequestId(temp.getFence())
-                    .setCircularRegion(
-                            temp.getLatitude(),
-                            temp.getLongitude(),
-                            temp.getRadius())
-                    .setExpirationDuration(Long.MAX_VALUE)
-                    .setNotificationResponsiveness(settings.getGeofenceNotificationResponsiveness())
-                    //TODO this could be optimized to trigger only on entry / exit according to layout. Not worth it now.
-                    .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT)
-                    .build();
-        } catch (IllegalArgumentException ex) {
-            Logger.log.geofenceError("Invalid geofence: "+fence, ex);
-            return null;
-        }
+    private Geofence buildGeofence(long code) {
+        return new Geofence.Builder()
+                .setRequestId(GeofenceCodec.decode(code))
+                .setCircularRegion(
+                        GeofenceCodec.getLatitude(code),
+                        GeofenceCodec.getLongitude(code),
+                        GeofenceCodec.getRadius(code))
+                .setExpirationDuration(Long.MAX_VALUE)
+                .setNotificationResponsiveness(settings.getGeofenceNotificationResponsiveness())
+                //TODO this could be optimized to trigger only on entry / exit according to layout. Not worth it now.
+                .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT)
+                .build();
     }
 
     private void close(Cursor cursor) {
@@ -12,13 +12,30 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LocationHelper {
 
+    /**
+     * The providers are asked again after this part of the max age, so a newer location is picked up while the
+     * one of the snapshot would still be fresh enough.
+     */
+    private static final int SNAPSHOTS_PER_MAX_AGE = 4;
+
+    /**
+     * bumped when the location providers change, every helper asks the providers again then
+     */
+    private static final AtomicInteger providersChanges = new AtomicInteger();
+
     private LocationManager manager;
     private SettingsManager settings;
 
+    /**
+     * the snapshot of the location, null if there was none that is accurate and fresh
+     */
     private GeoHashLocation location;
+    private long snapshotValidUntil;
+    private int snapshotProvidersChanges;
 
     public LocationHelper(LocationManager manager, SettingsManager settings) {
         this.manager = manager;
@@ -27,19 +44,54 @@ public class LocationHelper {
 
     /**
      * Get most recent geohash fulfilling accuracy / age boundaries.
-     * This methods works as passively as possible.
+     * This methods works as passively as possible. The location providers are not asked again while the last
+     * snapshot is recent, unless they or the location changed in between.
      *
      * @return Geohash if location is within given accuracy and age, null if not.
      * Also null if the location is not available or permissions are missing.
      */
-    public String getGeohash() {
-        location = acquireGeohash();
+    public synchronized String getGeohash() {
+        long now = System.currentTimeMillis();
+        if (now >= snapshotValidUntil || snapshotProvidersChanges != providersChanges.get()) {
+            snapshotProvidersChanges = providersChanges.get();
+            takeSnapshot(acquireGeohash(), now);
+        }
         if (location != null) {
             return location.getGeohash();
         }
         return null;
     }
 
+    /**
+     * Uses a location that was delivered to the SDK, e.g. by the fused location provider, for the snapshot if it is
+     * newer, accurate and fresh. Otherwise the providers are asked again on the next call.
+     *
+     * @param incoming the location
+     */
+    public synchronized void onLocationChanged(Location incoming) {
+        if (isAccurateAndFreshAndNotNull(incoming) && (location == null || incoming.getTime() > location.getTime())) {
+            takeSnapshot(new GeoHashLocation(incoming), System.currentTimeMillis());
+        } else {
+            snapshotValidUntil = 0;
+        }
+    }
+
+    /**
+     * Makes all helpers ask the providers again, call it when the location providers changed.
+     */
+    public static void onProvidersChanged() {
+        providersChanges.incrementAndGet();
+    }
+
+    private void takeSnapshot(GeoHashLocation snapshot, long now) {
+        location = snapshot;
+        snapshotValidUntil = now + getMaxLocationAge() / SNAPSHOTS_PER_MAX_AGE;
+        if (location != null) {
+            //the location must not be used after it got too old
+            snapshotValidUntil = Math.min(snapshotValidUntil, location.getTime() + getMaxLocationAge());
+        }
+    }
+
     /**
      * Is location enabled, as per status bar indicator being on/off
      * @return location enabled/disabled
@@ -0,0 +1,36 @@
+package com.sensorberg.sdk.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+/**
+ * Class {@link Counter} counts events. It never locks, so it can be incremented from the Bluetooth binder thread.
+ */
+public final class Counter {
+
+    @Getter
+    private final String name;
+
+    private final AtomicLong count = new AtomicLong();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void inc() {
+        count.incrementAndGet();
+    }
+
+    public void add(long delta) {
+        count.addAndGet(delta);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    void reset() {
+        count.set(0);
+    }
+}
@@ -0,0 +1,32 @@
+package com.sensorberg.sdk.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+/**
+ * Class {@link Gauge} holds the last value that was measured, for example the size of a backlog.
+ */
+public final class Gauge {
+
+    @Getter
+    private final String name;
+
+    private final AtomicLong value = new AtomicLong();
+
+    Gauge(String name) {
+        this.name = name;
+    }
+
+    public void set(long value) {
+        this.value.set(value);
+    }
+
+    public long getValue() {
+        return value.get();
+    }
+
+    void reset() {
+        value.set(0);
+    }
+}
@@ -0,0 +1,60 @@
+package com.sensorberg.sdk.metrics;
+
+import java.io.Serializable;
+
+import lombok.Getter;
+
+/**
+ * Class {@link HistogramSnapshot} is a copy of a {@link Histogram} at one point in time.
+ */
+public final class HistogramSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Getter
+    private final long count;
+
+    @Getter
+    private final long sum;
+
+    @Getter
+    private final long max;
+
+    private final long[] buckets;
+
+    HistogramSnapshot(long count, long sum, long max, long[] buckets) {
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+        this.buckets = buckets;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return an upper bound of the value that {@code percentile} percent of the recorded values are below or equal
+     * to, within the precision of the {@link Histogram}, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        //the buckets are read one by one while values are recorded, so they may not add up to the count exactly
+        long total = 0;
+        for (long bucket : buckets) {
+            total += bucket;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(Histogram.upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+}
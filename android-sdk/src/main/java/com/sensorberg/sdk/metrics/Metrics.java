@@ -0,0 +1,162 @@
+package com.sensorberg.sdk.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Class {@link Metrics} holds the counters, gauges and histograms of the SDK. They live in the process of the
+ * {@link com.sensorberg.sdk.SensorbergService}, the host app reads them with
+ * {@link com.sensorberg.SensorbergSdk#requestMetrics(com.sensorberg.SensorbergSdkMetricsListener)}.
+ */
+public final class Metrics {
+
+    private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private static volatile long since = System.currentTimeMillis();
+
+    /**
+     * advertisements handed to the scanner by the Bluetooth stack
+     */
+    public static final Counter ADVERTISEMENTS_RECEIVED = counter("scanner.advertisements.received");
+
+    /**
+     * advertisements that were dropped because the scanner could not keep up
+     */
+    public static final Counter ADVERTISEMENTS_DROPPED = counter("scanner.advertisements.dropped");
+
+    /**
+     * advertisements below the minimum RSSI of the settings
+     */
+    public static final Counter ADVERTISEMENTS_FILTERED_BY_RSSI = counter("scanner.advertisements.filtered.rssi");
+
+    /**
+     * advertisements of beacons further away than the maximum distance of the settings
+     */
+    public static final Counter ADVERTISEMENTS_FILTERED_BY_DISTANCE = counter("scanner.advertisements.filtered.distance");
+
+    /**
+     * advertisements that did not contain an iBeacon
+     */
+    public static final Counter PARSE_FAILURES = counter("scanner.advertisements.parse_failures");
+
+    public static final Counter ENTRIES = counter("scanner.entries");
+
+    public static final Counter EXITS = counter("scanner.exits");
+
+    /**
+     * time it takes to append the changed beacons to the journal on disk, in microseconds
+     */
+    public static final Histogram BEACON_MAP_APPEND_MICROS = histogram("scanner.beaconmap.append.micros");
+
+    /**
+     * time it takes to write all seen beacons to disk, when the journal is compacted or the map is kept in a single
+     * file, in microseconds
+     */
+    public static final Histogram BEACON_MAP_REWRITE_MICROS = histogram("scanner.beaconmap.rewrite.micros");
+
+    /**
+     * time from the {@link com.sensorberg.sdk.scanner.ScanEvent} to its resolved
+     * {@link com.sensorberg.sdk.resolver.BeaconEvent}s, in milliseconds
+     */
+    public static final Histogram RESOLVER_LATENCY_MILLIS = histogram("resolver.latency.millis");
+
+    /**
+     * scans, actions and conversions that wait to be published
+     */
+    public static final Gauge HISTORY_BACKLOG = gauge("history.backlog");
+
+    private Metrics() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * @param name the name of the counter
+     * @return the counter of that name, it is created if it does not exist yet
+     */
+    public static Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            Counter created = new Counter(name);
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * @param name the name of the gauge
+     * @return the gauge of that name, it is created if it does not exist yet
+     */
+    public static Gauge gauge(String name) {
+        Gauge gauge = gauges.get(name);
+        if (gauge == null) {
+            Gauge created = new Gauge(name);
+            gauge = gauges.putIfAbsent(name, created);
+            if (gauge == null) {
+                gauge = created;
+            }
+        }
+        return gauge;
+    }
+
+    /**
+     * @param name the name of the histogram
+     * @return the histogram of that name, it is created if it does not exist yet
+     */
+    public static Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            Histogram created = new Histogram(name);
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Copies all metrics. Values that are recorded while the copy is made may or may not be part of it.
+     *
+     * @return the current values of all metrics
+     */
+    public static MetricsSnapshot snapshot() {
+        Map<String, Long> counterValues = new TreeMap<>();
+        for (Counter counter : counters.values()) {
+            counterValues.put(counter.getName(), counter.getCount());
+        }
+        Map<String, Long> gaugeValues = new TreeMap<>();
+        for (Gauge gauge : gauges.values()) {
+            gaugeValues.put(gauge.getName(), gauge.getValue());
+        }
+        Map<String, HistogramSnapshot> histogramValues = new TreeMap<>();
+        for (Histogram histogram : histograms.values()) {
+            histogramValues.put(histogram.getName(), histogram.snapshot());
+        }
+        return new MetricsSnapshot(since, System.currentTimeMillis(), counterValues, gaugeValues, histogramValues);
+    }
+
+    /**
+     * Sets all metrics back to 0, rates of later snapshots are measured from now on.
+     */
+    public static void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Gauge gauge : gauges.values()) {
+            gauge.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        since = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,115 @@
+package com.sensorberg.sdk.metrics;
+
+import com.google.gson.JsonObject;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Class {@link MetricsSnapshot} is a copy of all {@link Metrics} at one point in time. It is {@link Serializable}, so
+ * it can be sent from the process of the {@link com.sensorberg.sdk.SensorbergService} to the host app.
+ */
+public final class MetricsSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final double[] EXPORTED_PERCENTILES = {50, 90, 99};
+
+    /**
+     * the time the metrics were started or last reset at
+     */
+    @Getter
+    private final long since;
+
+    /**
+     * the time the snapshot was taken at
+     */
+    @Getter
+    private final long timestamp;
+
+    @Getter
+    private final Map<String, Long> counters;
+
+    @Getter
+    private final Map<String, Long> gauges;
+
+    @Getter
+    private final Map<String, HistogramSnapshot> histograms;
+
+    MetricsSnapshot(long since, long timestamp, Map<String, Long> counters, Map<String, Long> gauges,
+            Map<String, HistogramSnapshot> histograms) {
+        this.since = since;
+        this.timestamp = timestamp;
+        this.counters = counters;
+        this.gauges = gauges;
+        this.histograms = histograms;
+    }
+
+    /**
+     * @param counter the name of a counter
+     * @return its value, or 0 if there is no such counter
+     */
+    public long getCount(String counter) {
+        Long value = counters.get(counter);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * @param counter the name of a counter
+     * @return the events per second since the metrics were started or last reset
+     */
+    public double getRatePerSecond(String counter) {
+        long millis = timestamp - since;
+        return millis <= 0 ? 0 : getCount(counter) * 1000d / millis;
+    }
+
+    /**
+     * @param earlier an earlier snapshot of the same process
+     * @param counter the name of a counter
+     * @return the events per second between the two snapshots
+     */
+    public double getRatePerSecond(MetricsSnapshot earlier, String counter) {
+        long millis = timestamp - earlier.timestamp;
+        return millis <= 0 ? 0 : (getCount(counter) - earlier.getCount(counter)) * 1000d / millis;
+    }
+
+    /**
+     * @return the counters, gauges and a summary of every histogram, for logging or uploading
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("since", since);
+        json.addProperty("timestamp", timestamp);
+        JsonObject counterValues = new JsonObject();
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            counterValues.addProperty(entry.getKey(), entry.getValue());
+        }
+        json.add("counters", counterValues);
+        JsonObject gaugeValues = new JsonObject();
+        for (Map.Entry<String, Long> entry : gauges.entrySet()) {
+            gaugeValues.addProperty(entry.getKey(), entry.getValue());
+        }
+        json.add("gauges", gaugeValues);
+        JsonObject histogramValues = new JsonObject();
+        for (Map.Entry<String, HistogramSnapshot> entry : histograms.entrySet()) {
+            HistogramSnapshot histogram = entry.getValue();
+            JsonObject summary = new JsonObject();
+            summary.addProperty("count", histogram.getCount());
+            summary.addProperty("mean", histogram.getMean());
+            for (double percentile : EXPORTED_PERCENTILES) {
+                summary.addProperty("p" + (int) percentile, histogram.getPercentile(percentile));
+            }
+            summary.addProperty("max", histogram.getMax());
+            histogramValues.add(entry.getKey(), summary);
+        }
+        json.add("histograms", histogramValues);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+}
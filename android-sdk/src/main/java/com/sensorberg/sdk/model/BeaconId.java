@@ -11,9 +11,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Locale;
 import java.util.UUID;
 
 /**
@@ -47,6 +45,15 @@ public class BeaconId implements Parcelable, Serializable {
     private final GeofenceData geofenceData;
 
     transient private UUID uuid = null;
+
+    transient private String normalizedUuid = null;
+
+    transient private String pid = null;
+
+    transient private String traditionalString = null;
+
+    transient private int hashCode = 0;
+
     /**
      * Creates and initializes a new {@link BeaconId}.
      *
@@ -145,6 +152,27 @@ public class BeaconId implements Parcelable, Serializable {
         this.geofenceData = null;
     }
 
+    /**
+     * Creates and initializes a new {@link BeaconId} from its primitive parts, without intermediate objects.
+     *
+     * @param uuidMostSignificantBits  the most significant bits of the proximity {@link UUID}
+     * @param uuidLeastSignificantBits the least significant bits of the proximity {@link UUID}
+     * @param majorId                  the major id of the {@link BeaconId}
+     * @param minorId                  the minor id of the {@link BeaconId}
+     */
+    public BeaconId(long uuidMostSignificantBits, long uuidLeastSignificantBits, int majorId, int minorId) {
+        this.beaconId = new byte[20];
+        for (int i = 0; i < 8; i++) {
+            this.beaconId[i] = (byte) (uuidMostSignificantBits >>> (56 - 8 * i));
+            this.beaconId[8 + i] = (byte) (uuidLeastSignificantBits >>> (56 - 8 * i));
+        }
+        this.beaconId[0x10] = (byte) (majorId >>> 8);
+        this.beaconId[0x11] = (byte) majorId;
+        this.beaconId[0x12] = (byte) (minorId >>> 8);
+        this.beaconId[0x13] = (byte) minorId;
+        this.geofenceData = null;
+    }
+
     public int describeContents() {
         return (0);
     }
@@ -172,13 +200,16 @@ public class BeaconId implements Parcelable, Serializable {
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + Arrays.hashCode(beaconId);
-        if (geofenceData != null) {
-            result = prime * result + geofenceData.hashCode();
+        if (hashCode == 0) {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + Arrays.hashCode(beaconId);
+            if (geofenceData != null) {
+                result = prime * result + geofenceData.hashCode();
+            }
+            hashCode = result;
         }
-        return (result);
+        return (hashCode);
     }
 
     /**
@@ -202,7 +233,10 @@ public class BeaconId implements Parcelable, Serializable {
      * @return the traditional representation of the {@link BeaconId}
      */
     public String toTraditionalString() {
-        return (String.format(Locale.US, "%s:%d:%d", getUuid(), getMajorId(), getMinorId()));
+        if (traditionalString == null) {
+            traditionalString = getUuid().toString() + ':' + getMajorId() + ':' + getMinorId();
+        }
+        return (traditionalString);
     }
 
     /**
@@ -230,28 +264,46 @@ public class BeaconId implements Parcelable, Serializable {
      */
     public UUID getUuid() {
         if (uuid == null) {
-            byte[] uuidHigh = new byte[0x08];
-            byte[] uuidLow = new byte[0x08];
-            System.arraycopy(beaconId, 0x00, uuidHigh, 0, 0x08);
-            System.arraycopy(beaconId, 0x08, uuidLow, 0, 0x08);
-            uuid = new UUID(toLong(uuidHigh), toLong(uuidLow));
+            uuid = new UUID(toLong(beaconId, 0x00), toLong(beaconId, 0x08));
         }
         return (uuid);
     }
 
-    private static long toLong(byte[] bytes) {
-        ByteBuffer buffer = ByteBuffer.allocate(8);
-        buffer.put(bytes, 0, bytes.length);
-        buffer.flip();
-        return (buffer.getLong());
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return (value);
     }
 
     public String getNormalizedUUIDString() {
-        return UUIDUtils.uuidWithoutDashesString(getUuid());
+        if (normalizedUuid == null) {
+            normalizedUuid = UUIDUtils.uuidWithoutDashesString(getUuid());
+        }
+        return normalizedUuid;
     }
 
+    /**
+     * Returns the proximity uuid without dashes followed by the five digit major and minor id. The value is cached.
+     *
+     * @return the pid of this {@link BeaconId}
+     */
     public String getPid(){
-        return String.format("%1s%2$05d%3$05d", this.getProximityUUIDWithoutDashes(), this.getMajorId(), this.getMinorId());
+        if (pid == null) {
+            StringBuilder builder = new StringBuilder(42);
+            builder.append(getProximityUUIDWithoutDashes());
+            appendFiveDigits(builder, getMajorId());
+            appendFiveDigits(builder, getMinorId());
+            pid = builder.toString();
+        }
+        return pid;
+    }
+
+    private static void appendFiveDigits(StringBuilder builder, int value) {
+        for (int divisor = 10000; divisor > 0; divisor /= 10) {
+            builder.append((char) ('0' + (value / divisor) % 10));
+        }
     }
 
     @Override
@@ -265,6 +317,6 @@ public class BeaconId implements Parcelable, Serializable {
     }
 
     public String getProximityUUIDWithoutDashes() {
-        return UUIDUtils.uuidWithoutDashesString(this.getUuid());
+        return getNormalizedUUIDString();
     }
 }
@@ -0,0 +1,119 @@
+package com.sensorberg.sdk.model;
+
+/**
+ * Class {@link BeaconIdRegistry} hands out one shared {@link BeaconId} per physical beacon. Ids are keyed by the
+ * primitive (uuid msb, uuid lsb, major &lt;&lt; 16 | minor) triple in an open-addressing table, so looking up a beacon
+ * that was seen before does not allocate. Because the same instance is reused, the strings that {@link BeaconId}
+ * caches (pid, uuid) are only computed once per beacon.
+ * <p>
+ * The registry is bounded: when it holds {@code maxSize} beacons it starts over, which only costs one
+ * {@link BeaconId} allocation per beacon seen afterwards. It is thread safe.
+ */
+public class BeaconIdRegistry {
+
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxSize;
+
+    private long[] uuidMostSignificantBits;
+
+    private long[] uuidLeastSignificantBits;
+
+    private int[] majorMinors;
+
+    private BeaconId[] beaconIds;
+
+    private int size;
+
+    public BeaconIdRegistry() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public BeaconIdRegistry(int maxSize) {
+        this.maxSize = maxSize;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the shared {@link BeaconId} for the given beacon, creating it on first use.
+     *
+     * @param uuidMostSignificantBits  the most significant bits of the proximity uuid
+     * @param uuidLeastSignificantBits the least significant bits of the proximity uuid
+     * @param majorId                  the major id
+     * @param minorId                  the minor id
+     * @return the canonical {@link BeaconId}
+     */
+    public synchronized BeaconId intern(long uuidMostSignificantBits, long uuidLeastSignificantBits, int majorId, int minorId) {
+        int majorMinor = (majorId << 16) | (minorId & 0xFFFF);
+        int mask = beaconIds.length - 1;
+        int index = hash(uuidMostSignificantBits, uuidLeastSignificantBits, majorMinor) & mask;
+        while (beaconIds[index] != null) {
+            if (majorMinors[index] == majorMinor
+                    && this.uuidMostSignificantBits[index] == uuidMostSignificantBits
+                    && this.uuidLeastSignificantBits[index] == uuidLeastSignificantBits) {
+                return beaconIds[index];
+            }
+            index = (index + 1) & mask;
+        }
+
+        BeaconId beaconId = new BeaconId(uuidMostSignificantBits, uuidLeastSignificantBits, majorId, minorId);
+        if (size >= maxSize) {
+            allocate(INITIAL_CAPACITY);
+        } else if ((size + 1) * 2 > beaconIds.length) {
+            grow();
+        }
+        insert(uuidMostSignificantBits, uuidLeastSignificantBits, majorMinor, beaconId);
+        return beaconId;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void insert(long msb, long lsb, int majorMinor, BeaconId beaconId) {
+        int mask = beaconIds.length - 1;
+        int index = hash(msb, lsb, majorMinor) & mask;
+        while (beaconIds[index] != null) {
+            index = (index + 1) & mask;
+        }
+        uuidMostSignificantBits[index] = msb;
+        uuidLeastSignificantBits[index] = lsb;
+        majorMinors[index] = majorMinor;
+        beaconIds[index] = beaconId;
+        size++;
+    }
+
+    private void grow() {
+        long[] oldMsb = uuidMostSignificantBits;
+        long[] oldLsb = uuidLeastSignificantBits;
+        int[] oldMajorMinors = majorMinors;
+        BeaconId[] oldBeaconIds = beaconIds;
+        allocate(oldBeaconIds.length * 2);
+        for (int i = 0; i < oldBeaconIds.length; i++) {
+            if (oldBeaconIds[i] != null) {
+                insert(oldMsb[i], oldLsb[i], oldMajorMinors[i], oldBeaconIds[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        uuidMostSignificantBits = new long[capacity];
+        uuidLeastSignificantBits = new long[capacity];
+        majorMinors = new int[capacity];
+        beaconIds = new BeaconId[capacity];
+        size = 0;
+    }
+
+    private static int hash(long msb, long lsb, int majorMinor) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb * 0xC2B2AE3D27D4EB4FL ^ majorMinor;
+        h ^= h >>> 32;
+        h ^= h >>> 16;
+        return (int) h;
+    }
+}
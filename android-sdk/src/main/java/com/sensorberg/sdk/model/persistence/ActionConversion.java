@@ -68,6 +68,12 @@ public class ActionConversion implements Parcelable {
         this.date = System.currentTimeMillis();
     }
 
+    public ActionConversion(String actionInstanceUuid, int type, long date) {
+        this.actionInstanceUuid = actionInstanceUuid;
+        this.type = type;
+        this.date = date;
+    }
+
     protected ActionConversion(Parcel in) {
         actionInstanceUuid = in.readString();
         date = in.readLong();
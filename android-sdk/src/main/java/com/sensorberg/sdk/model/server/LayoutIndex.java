@@ -0,0 +1,156 @@
+package com.sensorberg.sdk.model.server;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiled form of the actions of a {@link ResolveResponse}. Maps normalized beacon pids and geofence ids to the
+ * actions that mention them and keeps the trigger masks and timeframes of all actions in primitive arrays, so
+ * resolving a scan event only looks at the actions of its beacon. Immutable once built.
+ */
+final class LayoutIndex {
+
+    private final List<ResolveAction> actions;
+
+    /**
+     * lowercase pid without dashes to indices into {@link #actions}, ascending
+     */
+    private final Map<String, int[]> actionsByBeacon;
+
+    /**
+     * geofence id to indices into {@link #actions}, ascending
+     */
+    private final Map<String, int[]> actionsByGeofence;
+
+    private final int[] triggers;
+
+    /**
+     * the timeframes of action {@code i} are {@code [timeframeOffsets[i], timeframeOffsets[i + 1])}
+     */
+    private final int[] timeframeOffsets;
+
+    private final long[] validFrom;
+
+    private final long[] validTo;
+
+    LayoutIndex(List<ResolveAction> actions) {
+        this.actions = actions == null ? Collections.<ResolveAction>emptyList() : new ArrayList<>(actions);
+        int size = this.actions.size();
+        triggers = new int[size];
+        timeframeOffsets = new int[size + 1];
+
+        Map<String, List<Integer>> beacons = new HashMap<>();
+        Map<String, List<Integer>> geofences = new HashMap<>();
+        int timeframeCount = 0;
+        for (int i = 0; i < size; i++) {
+            ResolveAction action = this.actions.get(i);
+            triggers[i] = action.getTrigger();
+            timeframeCount += action.getTimeframes() == null ? 0 : action.getTimeframes().size();
+            if (action.getBeacons() == null) {
+                continue;
+            }
+            for (String beacon : action.getBeacons()) {
+                if (beacon == null) {
+                    continue;
+                }
+                //an entry can be a geofence id or a pid, only the matching kind of scan event will look it up
+                add(geofences, beacon, i);
+                add(beacons, normalize(beacon), i);
+            }
+        }
+        actionsByBeacon = compact(beacons);
+        actionsByGeofence = compact(geofences);
+
+        validFrom = new long[timeframeCount];
+        validTo = new long[timeframeCount];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            timeframeOffsets[i] = offset;
+            List<Timeframe> timeframes = this.actions.get(i).getTimeframes();
+            if (timeframes != null) {
+                for (Timeframe timeframe : timeframes) {
+                    validFrom[offset] = timeframe.start == null ? Long.MIN_VALUE : timeframe.start.getTime();
+                    validTo[offset] = timeframe.end == null ? Long.MAX_VALUE : timeframe.end.getTime();
+                    offset++;
+                }
+            }
+        }
+        timeframeOffsets[size] = offset;
+    }
+
+    /**
+     * Returns the actions for {@code beaconId} whose trigger matches {@code trigger} and which are valid at
+     * {@code now}, in layout order.
+     */
+    List<ResolveAction> resolve(BeaconId beaconId, int trigger, long now) {
+        int[] candidates;
+        if (beaconId.getGeofenceData() == null) {
+            candidates = actionsByBeacon.get(normalize(beaconId.getPid()));
+        } else {
+            candidates = actionsByGeofence.get(beaconId.getGeofenceData().getFence());
+        }
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+        List<ResolveAction> result = new ArrayList<>(candidates.length);
+        for (int index : candidates) {
+            if ((trigger & triggers[index]) == trigger && isValid(index, now)) {
+                result.add(actions.get(index));
+            }
+        }
+        return result;
+    }
+
+    private boolean isValid(int index, long now) {
+        int from = timeframeOffsets[index];
+        int to = timeframeOffsets[index + 1];
+        if (from == to) {
+            return true;
+        }
+        for (int i = from; i < to; i++) {
+            if (now >= validFrom[i] && now <= validTo[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void add(Map<String, List<Integer>> map, String key, int index) {
+        List<Integer> indices = map.get(key);
+        if (indices == null) {
+            indices = new ArrayList<>(1);
+            map.put(key, indices);
+        }
+        //actions are visited in order, so a duplicate can only be the last entry
+        if (indices.isEmpty() || indices.get(indices.size() - 1) != index) {
+            indices.add(index);
+        }
+    }
+
+    private static Map<String, int[]> compact(Map<String, List<Integer>> map) {
+        Map<String, int[]> result = new HashMap<>(Math.max(16, map.size() * 2));
+        for (Map.Entry<String, List<Integer>> entry : map.entrySet()) {
+            List<Integer> indices = entry.getValue();
+            int[] values = new int[indices.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = indices.get(i);
+            }
+            result.put(entry.getKey(), values);
+        }
+        return result;
+    }
+
+    /**
+     * Lowercases {@code pid} and strips its dashes, without allocating if it already is normalized.
+     */
+    static String normalize(String pid) {
+        String normalized = pid.indexOf('-') >= 0 ? pid.replace("-", "") : pid;
+        return normalized.toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -1,6 +1,7 @@
 package com.sensorberg.sdk.model.server;
 
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.annotations.Expose;
 
 import com.sensorberg.sdk.action.Action;
@@ -13,11 +14,16 @@ import com.sensorberg.utils.UUIDUtils;
 
 import org.json.JSONException;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.ToString;
 
@@ -54,6 +60,7 @@ public class ResolveAction implements Serializable {
     private String eid;
 
     @Expose
+    @Getter(AccessLevel.PACKAGE)
     private int trigger;
 
     @Expose
@@ -63,6 +70,7 @@ public class ResolveAction implements Serializable {
     private String name;
 
     @Expose
+    @Getter(AccessLevel.PACKAGE)
     private List<String> beacons;
 
     @Expose
@@ -83,6 +91,7 @@ public class ResolveAction implements Serializable {
     private JsonObject content;
 
     @Expose
+    @Getter(AccessLevel.PACKAGE)
     private List<Timeframe> timeframes;
 
     @Expose
@@ -138,6 +147,57 @@ public class ResolveAction implements Serializable {
         return false;
     }
 
+    void writeSnapshot(DataOutput out) throws IOException {
+        SnapshotCodec.writeString(out, eid);
+        out.writeInt(trigger);
+        out.writeInt(type);
+        SnapshotCodec.writeString(out, name);
+        SnapshotCodec.writeStrings(out, beacons);
+        out.writeLong(suppressionTime);
+        out.writeBoolean(sendOnlyOnce);
+        out.writeLong(delay);
+        out.writeBoolean(reportImmediately);
+        SnapshotCodec.writeString(out, content == null ? null : content.toString());
+        out.writeInt(timeframes == null ? -1 : timeframes.size());
+        if (timeframes != null) {
+            for (Timeframe timeframe : timeframes) {
+                SnapshotCodec.writeDate(out, timeframe.start);
+                SnapshotCodec.writeDate(out, timeframe.end);
+            }
+        }
+        SnapshotCodec.writeDate(out, deliverAt);
+    }
+
+    static ResolveAction readSnapshot(DataInput in, JsonParser parser) throws IOException {
+        String eid = SnapshotCodec.readString(in);
+        int trigger = in.readInt();
+        int type = in.readInt();
+        String name = SnapshotCodec.readString(in);
+        List<String> beacons = SnapshotCodec.readStrings(in);
+        long suppressionTime = in.readLong();
+        boolean sendOnlyOnce = in.readBoolean();
+        long delay = in.readLong();
+        boolean reportImmediately = in.readBoolean();
+        String content = SnapshotCodec.readString(in);
+        List<Timeframe> timeframes = null;
+        int timeframeCount = in.readInt();
+        if (timeframeCount >= 0) {
+            timeframes = new ArrayList<>(timeframeCount);
+            for (int i = 0; i < timeframeCount; i++) {
+                Date start = SnapshotCodec.readDate(in);
+                Date end = SnapshotCodec.readDate(in);
+                timeframes.add(new Timeframe(start == null ? null : start.getTime(), end == null ? null : end.getTime()));
+            }
+        }
+        Date deliverAt = SnapshotCodec.readDate(in);
+
+        ResolveAction action = new ResolveAction(eid, trigger, type, name, beacons, suppressionTime, delay, reportImmediately,
+                content == null ? null : parser.parse(content).getAsJsonObject(), deliverAt);
+        action.sendOnlyOnce = sendOnlyOnce;
+        action.timeframes = timeframes;
+        return action;
+    }
+
     public static class Builder {
 
         public String uuid = UUID.randomUUID().toString();
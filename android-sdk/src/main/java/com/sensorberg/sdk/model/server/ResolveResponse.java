@@ -1,5 +1,6 @@
 package com.sensorberg.sdk.model.server;
 
+import com.google.gson.JsonParser;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
@@ -7,6 +8,9 @@ import com.sensorberg.sdk.resolver.BeaconEvent;
 import com.sensorberg.sdk.scanner.ScanEvent;
 import com.sensorberg.utils.ListUtils;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -14,7 +18,7 @@ import java.util.List;
 
 import lombok.ToString;
 
-@ToString
+@ToString(exclude = "layoutIndex")
 public class ResolveResponse extends BaseResolveResponse implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -29,6 +33,8 @@ public class ResolveResponse extends BaseResolveResponse implements Serializable
     @SerializedName("reportTrigger")
     public Long reportTriggerSeconds;
 
+    private transient volatile LayoutIndex layoutIndex;
+
     public List<ResolveAction> resolve(ScanEvent scanEvent, long now) {
         ArrayList<ResolveAction> beaconEvents = new ArrayList<>();
         beaconEvents.addAll(getActionsFromLayout(scanEvent, now));
@@ -37,28 +43,31 @@ public class ResolveResponse extends BaseResolveResponse implements Serializable
     }
 
     /**
-     * used internally to create all the @{ResolveAction} from the @{actions} array
+     * Builds the lookup structure for {@link #resolve(ScanEvent, long)}. Called when the response is received or
+     * loaded, otherwise the first resolution does it.
+     */
+    public void compile() {
+        getLayoutIndex();
+    }
+
+    /**
+     * used internally to find all the @{ResolveAction} from the @{actions} array matching the scan event
      *
      * @param scanEvent used to match
      * @return all matching BeaconEvents
      */
     private List<ResolveAction> getActionsFromLayout(final ScanEvent scanEvent, final long now) {
-        if (actions == null) {
-            return Collections.emptyList();
+        return getLayoutIndex().resolve(scanEvent.getBeaconId(), scanEvent.getTrigger(), now);
+    }
+
+    private LayoutIndex getLayoutIndex() {
+        LayoutIndex index = layoutIndex;
+        if (index == null) {
+            //building it twice in a race is harmless, the result is the same
+            index = new LayoutIndex(actions);
+            layoutIndex = index;
         }
-        return ListUtils.filter(actions, new ListUtils.Filter<ResolveAction>() {
-            @Override
-            public boolean matches(ResolveAction resolveAction) {
-                boolean matchTrigger = resolveAction.matchTrigger(scanEvent.getTrigger());
-                if (matchTrigger) {
-                    boolean matchBeacon = resolveAction.containsBeacon(scanEvent.getBeaconId());
-                    if (matchBeacon) {
-                        return resolveAction.isValidNow(now);
-                    }
-                }
-                return false;
-            }
-        });
+        return index;
     }
 
     /**
@@ -81,6 +90,52 @@ public class ResolveResponse extends BaseResolveResponse implements Serializable
     }
 
 
+    /**
+     * Writes everything needed to resolve against this layout in the compact format of the layout snapshot. Much
+     * cheaper to read back than the json, see {@link #readSnapshot(DataInput)}.
+     */
+    public void writeSnapshot(DataOutput out) throws IOException {
+        SnapshotCodec.writeStrings(out, getAccountProximityUUIDs());
+        out.writeBoolean(reportTriggerSeconds != null);
+        if (reportTriggerSeconds != null) {
+            out.writeLong(reportTriggerSeconds);
+        }
+        writeActions(out, actions);
+        writeActions(out, instantActions);
+    }
+
+    public static ResolveResponse readSnapshot(DataInput in) throws IOException {
+        JsonParser parser = new JsonParser();
+        List<String> accountProximityUUIDs = SnapshotCodec.readStrings(in);
+        Long reportTriggerSeconds = in.readBoolean() ? in.readLong() : null;
+        List<ResolveAction> actions = readActions(in, parser);
+        List<ResolveAction> instantActions = readActions(in, parser);
+        return new ResolveResponse(accountProximityUUIDs, actions, instantActions, reportTriggerSeconds);
+    }
+
+    private static void writeActions(DataOutput out, List<ResolveAction> actions) throws IOException {
+        if (actions == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(actions.size());
+        for (ResolveAction action : actions) {
+            action.writeSnapshot(out);
+        }
+    }
+
+    private static List<ResolveAction> readActions(DataInput in, JsonParser parser) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<ResolveAction> actions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            actions.add(ResolveAction.readSnapshot(in, parser));
+        }
+        return actions;
+    }
+
     private ResolveResponse(List<String> accountProximityUUIDs, List<ResolveAction> actions, List<ResolveAction> instantActions,
             Long reportTriggerSeconds) {
         super(accountProximityUUIDs);
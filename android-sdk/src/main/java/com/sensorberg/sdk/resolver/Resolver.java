@@ -4,9 +4,11 @@ import android.os.Message;
 
 import com.sensorberg.sdk.Logger;
 import com.sensorberg.sdk.internal.interfaces.BeaconResponseHandler;
+import com.sensorberg.sdk.internal.interfaces.Clock;
 import com.sensorberg.sdk.internal.interfaces.HandlerManager;
 import com.sensorberg.sdk.internal.interfaces.RunLoop;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
+import com.sensorberg.sdk.metrics.Metrics;
 import com.sensorberg.sdk.scanner.ScanEvent;
 
 import java.util.List;
@@ -22,15 +24,25 @@ public final class Resolver implements RunLoop.MessageHandlerCallback {
 
     private final RunLoop runLoop;
 
+    private final Clock clock;
+
     @Setter
     protected SortedMap<String, String> attributes;
 
     @Setter
     private ResolverListener listener = ResolverListener.NONE;
 
-    public Resolver(ResolverConfiguration configuration, HandlerManager handlerManager, Transport transport, SortedMap<String, String> attributes) {
+    /**
+     * while the cached layout is younger than this, scan events are resolved locally. 0 always asks the server.
+     */
+    @Setter
+    private volatile long cachedLayoutMaxAge;
+
+    public Resolver(ResolverConfiguration configuration, HandlerManager handlerManager, Transport transport, Clock clk,
+            SortedMap<String, String> attributes) {
         this.configuration = configuration;
         runLoop = handlerManager.getResolverRunLoop(this);
+        clock = clk;
         this.transport = transport;
         transport.setApiToken(configuration.apiToken);
         this.attributes = attributes;
@@ -56,13 +68,15 @@ public final class Resolver implements RunLoop.MessageHandlerCallback {
     }
 
     public void queryServer(final ScanEvent scanEvent) {
-        Logger.log.beaconResolveState(scanEvent, "starting to resolve request");
-        transport.getBeacon(scanEvent, attributes, new BeaconResponseHandler() {
+        BeaconResponseHandler beaconResponseHandler = new BeaconResponseHandler() {
             @Override
             public void onSuccess(List<BeaconEvent> beaconEvents) {
+                Metrics.RESOLVER_LATENCY_MILLIS.record(clock.now() - scanEvent.getEventTime());
                 listener.onResolutionsFinished(beaconEvents);
-                for (BeaconEvent beaconEvent : beaconEvents) {
-                    Logger.log.beaconResolveState(scanEvent, "success resolving action:" + beaconEvent.getAction());
+                if (Logger.isVerboseLoggingEnabled()) {
+                    for (BeaconEvent beaconEvent : beaconEvents) {
+                        Logger.log.beaconResolveState(scanEvent, "success resolving action:" + beaconEvent.getAction());
+                    }
                 }
             }
 
@@ -70,6 +84,12 @@ public final class Resolver implements RunLoop.MessageHandlerCallback {
             public void onFailure(Throwable throwable) {
                 listener.onResolutionFailed(throwable, scanEvent);
             }
-        });
+        };
+        if (cachedLayoutMaxAge > 0 && transport.resolveFromCachedLayout(scanEvent, cachedLayoutMaxAge, beaconResponseHandler)) {
+            Logger.log.beaconResolveState(scanEvent, "resolved from the cached layout");
+            return;
+        }
+        Logger.log.beaconResolveState(scanEvent, "starting to resolve request");
+        transport.getBeacon(scanEvent, attributes, beaconResponseHandler);
     }
 }
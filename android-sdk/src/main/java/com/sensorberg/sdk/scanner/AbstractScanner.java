@@ -19,16 +19,16 @@ import com.sensorberg.sdk.internal.interfaces.Platform;
 import com.sensorberg.sdk.internal.interfaces.RunLoop;
 import com.sensorberg.sdk.internal.interfaces.ServiceScheduler;
 import com.sensorberg.sdk.location.LocationHelper;
+import com.sensorberg.sdk.metrics.Metrics;
 import com.sensorberg.sdk.model.BeaconId;
+import com.sensorberg.sdk.model.BeaconIdRegistry;
 import com.sensorberg.sdk.settings.DefaultSettings;
 import com.sensorberg.sdk.settings.SettingsManager;
-import com.sensorberg.sdk.settings.TimeConstants;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.inject.Inject;
 
@@ -39,6 +39,10 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
 
     private static final long NEVER_STOPPED = 0L;
 
+    private static final long NO_EXIT_CHECK = Long.MAX_VALUE;
+
+    private static final int ADVERTISEMENT_QUEUE_CAPACITY = 256;
+
     long waitTime;
 
     long scanTime;
@@ -64,6 +68,63 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
 
     private final BeaconMap enteredBeacons;
 
+    /**
+     * runs the exit check when the next entered beacon may exit
+     */
+    private final Runnable exitCheck = new Runnable() {
+        @Override
+        public void run() {
+            loop();
+        }
+    };
+
+    /**
+     * the time the exit check timer is scheduled for, guarded by {@link #enteredBeaconsMonitor}
+     */
+    private long nextExitCheck = NO_EXIT_CHECK;
+
+    /**
+     * no exit checks before this time, so beacons get a chance to be seen after a scan starts
+     */
+    private long exitGraceEnd;
+
+    private final BeaconMap.ExpiryListener exitListener = new BeaconMap.ExpiryListener() {
+        @Override
+        public void onExpired(BeaconId beaconId, String pairingId, long timeSinceSeen) {
+            ScanEvent scanEvent = new ScanEvent(beaconId, lastExitCheckTimestamp, false, locationHelper.getGeohash(), pairingId);
+            runLoop.sendMessage(ScannerEvent.EVENT_DETECTED, scanEvent);
+            Metrics.EXITS.inc();
+            if (Logger.isVerboseLoggingEnabled()) {
+                Logger.log.beaconResolveState(scanEvent,
+                        " exited (time since we saw the beacon: " + (int) (timeSinceSeen / 1000) + " seconds)");
+            }
+        }
+    };
+
+    private final BeaconIdRegistry beaconIdRegistry = new BeaconIdRegistry();
+
+    /**
+     * hands advertisements from the Bluetooth binder thread to the run loop
+     */
+    private final AdvertisementRingBuffer advertisements = new AdvertisementRingBuffer(ADVERTISEMENT_QUEUE_CAPACITY);
+
+    /**
+     * true while an {@link ScannerEvent#ADVERTISEMENTS_RECEIVED} message is pending
+     */
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+
+    /**
+     * reused for every advertisement, only used on the run loop
+     */
+    private final BeaconAdvertisement advertisement = new BeaconAdvertisement();
+
+    private final AdvertisementRingBuffer.Consumer advertisementConsumer = new AdvertisementRingBuffer.Consumer() {
+        @Override
+        public void onAdvertisement(String address, int rssi, byte[] record, int offset, int length, long timestamp) {
+            AbstractScanner.this.onAdvertisement(address, rssi, record, offset, length, timestamp);
+        }
+    };
+
     @Getter
     private final RunLoop runLoop;
 
@@ -102,8 +163,13 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
         runLoop = handlerManager.getScannerRunLoop(this);
         bluetoothPlatform = btPlatform;
 
-        File beaconFile = shouldRestoreBeaconStates ? fileManager.getFile("enteredBeaconsCache") : null;
-        enteredBeacons = new BeaconMap(fileManager, beaconFile);
+        if (shouldRestoreBeaconStates) {
+            BeaconMapJournal journal = new BeaconMapJournal(fileManager.getFile("enteredBeaconsJournal"));
+            BeaconMap.migrate(fileManager, fileManager.getFile("enteredBeaconsCache"), journal);
+            enteredBeacons = new BeaconMap(journal);
+        } else {
+            enteredBeacons = new BeaconMap(fileManager, null);
+        }
 
         waitTime = settingsManager.getBackgroundWaitTime();
         scanTime = settingsManager.getBackgroundScanTime();
@@ -133,21 +199,8 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
         synchronized (enteredBeaconsMonitor) {
             final long now = clock.now();
             lastExitCheckTimestamp = now;
-            if (enteredBeacons.size() > 0) {
-                enteredBeacons.filter(new BeaconMap.Filter() {
-                    public boolean filter(EventEntry beaconEntry, BeaconId beaconId) {
-                        long timeSinceWeSawTheBeacon = now - beaconEntry.getLastBeaconTime() - beaconEntry.getScanPauseTime();
-                        if (timeSinceWeSawTheBeacon > settingsManager.getExitTimeoutMillis()) {
-                            ScanEvent scanEvent = new ScanEvent(beaconId, now, false, locationHelper.getGeohash(), beaconEntry.getPairingId());
-                            runLoop.sendMessage(ScannerEvent.EVENT_DETECTED, scanEvent);
-                            Logger.log.beaconResolveState(scanEvent,
-                                    " exited (time since we saw the beacon: " + (int) (timeSinceWeSawTheBeacon / 1000) + " seconds)");
-                            return true;
-                        }
-                        return false;
-                    }
-                });
-            }
+            enteredBeacons.removeExpired(now, settingsManager.getExitTimeoutMillis(), exitListener);
+            scheduleExitCheck(now);
         }
     }
 
@@ -170,42 +223,52 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
         return scanning;
     }
 
-    private void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+    private void drainAdvertisements() {
+        drainRequested.set(false);
+        advertisements.drain(advertisementConsumer);
+        int dropped = advertisements.takeDroppedCount();
+        if (dropped > 0) {
+            Metrics.ADVERTISEMENTS_DROPPED.add(dropped);
+            Logger.log.logError("dropped " + dropped + " advertisements, the scanner could not keep up");
+        }
+    }
+
+    private void onAdvertisement(String address, int rssi, byte[] record, int offset, int length, long seenAt) {
 
         if (settingsManager.getScannerMinRssi() != DefaultSettings.DEFAULT_SCANNER_MIN_RSSI &&
                 rssi < settingsManager.getScannerMinRssi()) {
+            Metrics.ADVERTISEMENTS_FILTERED_BY_RSSI.inc();
             return;
         }
 
-        Pair<BeaconId, Integer> beacon = ScanHelper.getBeaconID(scanRecord);
-        if (beacon != null) {
+        if (BeaconAdvertisementParser.parse(record, offset, length, advertisement)) {
 
-            int calRssi = beacon.second;
+            int calRssi = advertisement.getCalibratedTxPower();
             if (settingsManager.getScannerMaxDistance() != DefaultSettings.DEFAULT_SCANNER_MAX_DISTANCE &&
                     getDistanceFromRSSI(rssi, calRssi) > settingsManager.getScannerMaxDistance()) {
+                Metrics.ADVERTISEMENTS_FILTERED_BY_DISTANCE.inc();
                 return;
             }
 
-            BeaconId beaconId = beacon.first;
+            BeaconId beaconId = beaconIdRegistry.intern(advertisement.getUuidMostSignificantBits(),
+                    advertisement.getUuidLeastSignificantBits(), advertisement.getMajorId(), advertisement.getMinorId());
             synchronized (enteredBeaconsMonitor) {
-                long now = clock.now();
-                EventEntry entry = enteredBeacons.get(beaconId);
-
-                if (entry == null) {
-                    String address = device != null ? device.getAddress() : null;
-                    ScanEvent scanEvent = new ScanEvent(beaconId, now, true, address, rssi, calRssi, locationHelper.getGeohash(), UUID.randomUUID().toString());
-                    runLoop.sendMessage(ScannerEvent.EVENT_DETECTED, scanEvent);
-                    entry = new EventEntry(now, 0, ScanEventType.ENTRY.getMask(), scanEvent.getPairingId());
-                    Logger.log.beaconResolveState(scanEvent, "entered");
-                } else {
-                    entry = new EventEntry(now, 0, entry.getEventMask(), entry.getPairingId());
+                if (enteredBeacons.refresh(beaconId, seenAt)) {
                     Logger.log.beaconSeenAgain(beaconId);
                     if (this.rssiListener != RssiListener.NONE) {
                         runLoop.sendMessage(ScannerEvent.RSSI_UPDATED, new Pair<>(beaconId, rssi));
                     }
+                } else {
+                    ScanEvent scanEvent = new ScanEvent(beaconId, seenAt, true, address, rssi, calRssi, locationHelper.getGeohash(), UUID.randomUUID().toString());
+                    runLoop.sendMessage(ScannerEvent.EVENT_DETECTED, scanEvent);
+                    Metrics.ENTRIES.inc();
+                    enteredBeacons.put(beaconId, new EventEntry(seenAt, 0, ScanEventType.ENTRY.getMask(), scanEvent.getPairingId()));
+                    Logger.log.beaconResolveState(scanEvent, "entered");
+                    scheduleExitCheck(clock.now());
                 }
-                enteredBeacons.put(beaconId, entry);
             }
+        } else {
+            Metrics.PARSE_FAILURES.inc();
         }
     }
 
@@ -230,24 +293,33 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
             case ScannerEvent.PAUSE_SCAN: {
                 bluetoothPlatform.stopLeScan();
                 synchronized (enteredBeaconsMonitor) {
+                    enteredBeacons.flush();
                     if (running) {
                         running = false;
                         stop = clock.now();
                         prefs.edit().putLong(Constants.SharedPreferencesKeys.Scanner.SCAN_STOP_TIMESTAMP, stop).apply();
                     }
                 }
-                Logger.log.scannerStateChange("sleeping for " + waitTime + " millis");
+                cancelExitCheck();
+                //the fixed rate exit check used to update this until the end of the scan
+                lastExitCheckTimestamp = clock.now();
+                if (Logger.isVerboseLoggingEnabled()) {
+                    Logger.log.scannerStateChange("sleeping for " + waitTime + " millis");
+                }
                 scheduleExecution(ScannerEvent.UN_PAUSE_SCAN, waitTime);
-                runLoop.cancelFixedRateExecution();
                 break;
             }
             case ScannerEvent.UN_PAUSE_SCAN: {
                 lastScanStart = clock.now();
                 lastBreakLength = clock.now() - lastExitCheckTimestamp;
-                Logger.log.scannerStateChange("starting to scan again, scan break was " + lastBreakLength + " millis");
+                if (Logger.isVerboseLoggingEnabled()) {
+                    Logger.log.scannerStateChange("starting to scan again, scan break was " + lastBreakLength + " millis");
+                }
                 if (scanning) {
-                    Logger.log.debug("ScannerStatusUnpause" + Boolean.toString(scanning));
-                    Logger.log.scannerStateChange("scanning for " + scanTime + " millis, exit grace time is "+exitGraceTime+" millis");
+                    Logger.debug("ScannerStatusUnpause{}", scanning);
+                    if (Logger.isVerboseLoggingEnabled()) {
+                        Logger.log.scannerStateChange("scanning for " + scanTime + " millis, exit grace time is " + exitGraceTime + " millis");
+                    }
                     synchronized (enteredBeaconsMonitor) {
                         if (!running) {
                             running = true;
@@ -257,15 +329,14 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
                         if (stop != 0) {
                             enteredBeacons.addScanPauseTime(start - stop);
                         }
+                        exitGraceEnd = clock.now() + exitGraceTime;
                     }
                     bluetoothPlatform.startLeScan(scanCallback);
                     scheduleExecution(ScannerEvent.PAUSE_SCAN, scanTime);
-                    runLoop.scheduleAtFixedRate(new TimerTask() {
-                        @Override
-                        public void run() {
-                            loop();
-                        }
-                    }, exitGraceTime, TimeConstants.ONE_SECOND);
+                    synchronized (enteredBeaconsMonitor) {
+                        cancelExitCheck();
+                        scheduleExitCheck(clock.now());
+                    }
                 }
                 break;
             }
@@ -274,15 +345,18 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
                 scanning = false;
                 clearScheduledExecutions();
                 bluetoothPlatform.stopLeScan();
+                drainAdvertisements();
+                cancelExitCheck();
                 synchronized (enteredBeaconsMonitor) {
                     if (running) {
                         running = false;
                         stop = clock.now();
                         prefs.edit().putLong(Constants.SharedPreferencesKeys.Scanner.SCAN_STOP_TIMESTAMP, stop).apply();
                     }
+                    flushDueExits();
+                    enteredBeacons.flush();
                 }
                 lastStopTimestamp = clock.now();
-                runLoop.cancelFixedRateExecution();
                 Logger.log.scannerStateChange("scan stopped");
                 break;
             }
@@ -295,6 +369,10 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
                 }
                 break;
             }
+            case ScannerEvent.ADVERTISEMENTS_RECEIVED: {
+                drainAdvertisements();
+                break;
+            }
             case ScannerEvent.RSSI_UPDATED: {
                 //noinspection unchecked -> see useage of ScannerEvent.RSSI_UPDATED
                 Pair<BeaconId, Integer> value = (Pair<BeaconId, Integer>) queueEvent.getData();
@@ -311,8 +389,52 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
     protected abstract void clearScheduledExecutions();
 
     private void loop() {
-        if (bluetoothPlatform.isLeScanRunning()) {
-            checkAndExitEnteredBeacons();
+        synchronized (enteredBeaconsMonitor) {
+            nextExitCheck = NO_EXIT_CHECK;
+            if (!bluetoothPlatform.isLeScanRunning()) {
+                //e.g. Bluetooth is off, check again until the scan is paused or stopped
+                scheduleExitCheck(clock.now());
+                return;
+            }
+        }
+        checkAndExitEnteredBeacons();
+    }
+
+    /**
+     * Reports the exits that were due when the scan stopped but were waiting for the exit check resolution. Exits
+     * that become due during the grace time of a scan are left for the next scan, the beacon might not have been
+     * seen yet. Must hold {@link #enteredBeaconsMonitor}.
+     */
+    private void flushDueExits() {
+        if (stop < exitGraceEnd) {
+            return;
+        }
+        lastExitCheckTimestamp = clock.now();
+        //no time passed for the beacons since the scan stopped, the pause is only added when it starts again
+        enteredBeacons.removeExpired(stop, settingsManager.getExitTimeoutMillis(), exitListener);
+    }
+
+    /**
+     * Schedules the exit check for the earliest time an entered beacon may exit, unless an earlier check is
+     * scheduled already. Checks are never closer together than the exit check resolution, so exits that are due
+     * at about the same time are handled in one go. Must hold {@link #enteredBeaconsMonitor}.
+     */
+    private void scheduleExitCheck(long now) {
+        long timeUntilNextExit = enteredBeacons.getTimeUntilNextExit(now, settingsManager.getExitTimeoutMillis());
+        if (timeUntilNextExit < 0) {
+            return;
+        }
+        long due = Math.max(now + timeUntilNextExit, Math.max(exitGraceEnd, now + settingsManager.getExitCheckResolutionMillis()));
+        if (due < nextExitCheck) {
+            nextExitCheck = due;
+            runLoop.scheduleTimer(exitCheck, due - now);
+        }
+    }
+
+    private void cancelExitCheck() {
+        synchronized (enteredBeaconsMonitor) {
+            nextExitCheck = NO_EXIT_CHECK;
+            runLoop.cancelTimer();
         }
     }
 
@@ -345,11 +467,19 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
         runLoop.sendMessage(ScannerEvent.SCAN_STOP_REQUESTED);
     }
 
+    /**
+     * Runs on the Bluetooth binder thread. It only copies the advertisement into {@link #advertisements} and wakes
+     * up the run loop if it is not about to drain already, so it never waits for the scanner.
+     */
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
     private class ScanCallback implements BluetoothAdapter.LeScanCallback {
 
         public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
-            AbstractScanner.this.onLeScan(device, rssi, scanRecord);
+            Metrics.ADVERTISEMENTS_RECEIVED.inc();
+            String address = device != null ? device.getAddress() : null;
+            if (advertisements.offer(address, rssi, scanRecord, clock.now()) && drainRequested.compareAndSet(false, true)) {
+                runLoop.sendMessage(ScannerEvent.ADVERTISEMENTS_RECEIVED);
+            }
         }
     }
 
@@ -364,7 +494,7 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
                 exitGraceTime = scanTime / 2;
             }
             if (scanning) {
-                long lastWaitTime = clock.now() - lastExitCheckTimestamp;
+                long lastWaitTime = running ? 0 : clock.now() - lastExitCheckTimestamp;
                 clearScheduledExecutions();
                 if (lastWaitTime > waitTime) {
                     Logger.log.scannerStateChange("We have been waiting longer than the foreground wait time, so we´e going to scan right away");
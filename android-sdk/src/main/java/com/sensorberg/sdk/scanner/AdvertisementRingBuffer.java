@@ -0,0 +1,135 @@
+package com.sensorberg.sdk.scanner;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer/single-consumer queue of raw advertisements. The Bluetooth binder thread copies each scan
+ * record into a preallocated slot with {@link #offer(String, int, byte[], long)} and never blocks; the scanner run
+ * loop takes them out in batches with {@link #drain(Consumer)}. When the queue is full new advertisements are
+ * dropped and counted, the next sighting of the same beacon will make it through.
+ * <p>
+ * Exactly one thread may call {@link #offer(String, int, byte[], long)} and exactly one thread may call
+ * {@link #drain(Consumer)}.
+ */
+final class AdvertisementRingBuffer {
+
+    /**
+     * a legacy advertisement plus its scan response
+     */
+    static final int MAX_RECORD_LENGTH = 62;
+
+    interface Consumer {
+
+        /**
+         * @param address the address of the device, may be null
+         * @param rssi the received signal strength
+         * @param record the buffer holding the scan record, only valid during the call
+         * @param offset the offset of the scan record in {@code record}
+         * @param length the length of the scan record
+         * @param timestamp the time the advertisement was received
+         */
+        void onAdvertisement(String address, int rssi, byte[] record, int offset, int length, long timestamp);
+    }
+
+    private final int mask;
+
+    private final byte[] records;
+
+    private final int[] lengths;
+
+    private final int[] rssis;
+
+    private final long[] timestamps;
+
+    private final String[] addresses;
+
+    /**
+     * the next slot to read, only written by the consumer
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * the next slot to write, only written by the producer
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    /**
+     * the producer's last view of {@link #head}, so it does not read it on every offer
+     */
+    private long cachedHead;
+
+    /**
+     * @param capacity the number of slots, rounded up to a power of two
+     */
+    AdvertisementRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        records = new byte[size * MAX_RECORD_LENGTH];
+        lengths = new int[size];
+        rssis = new int[size];
+        timestamps = new long[size];
+        addresses = new String[size];
+    }
+
+    /**
+     * Copies an advertisement into the queue. Called by the producer thread only.
+     *
+     * @return false if the queue was full and the advertisement was dropped
+     */
+    boolean offer(String address, int rssi, byte[] scanRecord, long timestamp) {
+        long currentTail = tail.get();
+        if (currentTail - cachedHead > mask) {
+            cachedHead = head.get();
+            if (currentTail - cachedHead > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        int slot = (int) currentTail & mask;
+        int length = scanRecord == null ? 0 : Math.min(scanRecord.length, MAX_RECORD_LENGTH);
+        if (length > 0) {
+            System.arraycopy(scanRecord, 0, records, slot * MAX_RECORD_LENGTH, length);
+        }
+        lengths[slot] = length;
+        rssis[slot] = rssi;
+        timestamps[slot] = timestamp;
+        addresses[slot] = address;
+        tail.set(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Hands every queued advertisement to {@code consumer}. Called by the consumer thread only.
+     *
+     * @return the number of advertisements drained
+     */
+    int drain(Consumer consumer) {
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        int count = 0;
+        while (currentHead < currentTail) {
+            int slot = (int) currentHead & mask;
+            String address = addresses[slot];
+            addresses[slot] = null;
+            consumer.onAdvertisement(address, rssis[slot], records, slot * MAX_RECORD_LENGTH, lengths[slot], timestamps[slot]);
+            currentHead++;
+            head.lazySet(currentHead);
+            count++;
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * @return the number of advertisements dropped since the last call
+     */
+    int takeDroppedCount() {
+        return dropped.getAndSet(0);
+    }
+}
@@ -4,6 +4,7 @@ import android.content.SharedPreferences;
 import android.os.Message;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
 import com.sensorberg.sdk.Logger;
 import com.sensorberg.sdk.internal.interfaces.Clock;
@@ -11,19 +12,18 @@ import com.sensorberg.sdk.internal.interfaces.HandlerManager;
 import com.sensorberg.sdk.internal.interfaces.RunLoop;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.internal.transport.interfaces.TransportHistoryCallback;
+import com.sensorberg.sdk.metrics.Metrics;
 import com.sensorberg.sdk.model.persistence.ActionConversion;
 import com.sensorberg.sdk.model.persistence.BeaconAction;
 import com.sensorberg.sdk.model.persistence.BeaconScan;
 import com.sensorberg.sdk.resolver.BeaconEvent;
 import com.sensorberg.sdk.resolver.ResolverListener;
 import com.sensorberg.sdk.settings.TimeConstants;
+import com.sensorberg.sdk.storage.HistoryStore;
 
-import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Type;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -36,7 +36,6 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
 
     private static final int MSG_PUBLISH_HISTORY = 1;
     private static final int MSG_DELETE_ALL_DATA = 6;
-    private static final int MSG_SAVE_SUPPRESSION_STORE = 7;
     static final int MAX_UPLOAD_SIZE = 2000;
     static final long MAX_SUPPRESSION_AGE = 7 * TimeConstants.ONE_DAY;
 
@@ -49,37 +48,35 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
     @Setter
     private ResolverListener resolverListener = ResolverListener.NONE;
 
+    private final HistoryStore historyStore;
+
     private final SharedPreferences sharedPreferences;
 
     private final Gson gson;
 
     private final Object lock = new Object();
 
-    private List<BeaconScan> beaconScans = new LinkedList<>();
-
-    private List<BeaconAction> beaconActions = new LinkedList<>();
-
-    private Map<String, ActionConversion> actionConversions = new HashMap<>();
-
-    private HashMap<String, Long> suppressionTimeStore = new HashMap<>();
+    /**
+     * kept in memory because it is read for every presented action, written through to the {@link HistoryStore}
+     */
+    private final HashMap<String, Long> suppressionTimeStore;
 
-    public BeaconActionHistoryPublisher(Transport transport, Clock clock,
-                                        HandlerManager handlerManager, SharedPreferences sharedPrefs, Gson gson) {
+    public BeaconActionHistoryPublisher(Transport transport, Clock clock, HandlerManager handlerManager,
+                                        HistoryStore historyStore, SharedPreferences sharedPrefs, Gson gson) {
         this.transport = transport;
         this.clock = clock;
         runloop = handlerManager.getBeaconPublisherRunLoop(this);
+        this.historyStore = historyStore;
         sharedPreferences = sharedPrefs;
         this.gson = gson;
 
-        loadAllData();
+        migrateSharedPreferences();
+        suppressionTimeStore = historyStore.loadSuppressionTimes(clock.now() - MAX_SUPPRESSION_AGE);
     }
 
     @Override
     public void onScanEventDetected(ScanEvent scanEvent) {
-        synchronized (lock) {
-            beaconScans.add(BeaconScan.from(scanEvent));
-        }
-        saveAllData();
+        historyStore.addScan(BeaconScan.from(scanEvent));
     }
 
     @Override
@@ -91,47 +88,40 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
             case MSG_DELETE_ALL_DATA:
                 deleteAllData();
                 break;
-            case MSG_SAVE_SUPPRESSION_STORE:
-                saveSuppressionTimeStore();
-                break;
         }
     }
 
     private void publishHistorySynchronously() {
-        final List<BeaconScan> notSentScans;
-        final List<BeaconAction> notSentActions;
-        final List<String> notSentConversionsKeys;
-        final List<ActionConversion> notSentConversionsValues;
-        synchronized (lock) {
-            notSentScans = getList(beaconScans);
-            notSentActions = getList(beaconActions);
-            notSentConversionsKeys = getList(actionConversions.keySet());
-            notSentConversionsValues = getList(actionConversions.values());
-        }
+        final HistoryStore.Batch batch = historyStore.loadBatch(MAX_UPLOAD_SIZE);
+        updateBacklog();
 
-        if (notSentScans.isEmpty() && notSentActions.isEmpty() && notSentConversionsKeys.isEmpty()) {
+        if (batch.isEmpty()) {
             Logger.log.logBeaconHistoryPublisherState("nothing to report");
             return;
-        } else {
+        } else if (Logger.isVerboseLoggingEnabled()) {
             Logger.log.logBeaconHistoryPublisherState("reporting "
-                    + notSentScans.size() + " scans and "
-                    + notSentActions.size() + " actions and " +
-                    +notSentConversionsKeys.size() + " conversions");
+                    + batch.getScans().size() + " scans and "
+                    + batch.getActions().size() + " actions and " +
+                    +batch.getConversions().size() + " conversions");
         }
 
         TransportHistoryCallback transportHistoryCallback = new TransportHistoryCallback() {
             @Override
             public void onSuccess(List<BeaconScan> scanObjectList, List<BeaconAction> actionList, List<ActionConversion> conversions) {
-                synchronized (lock) {
-                    beaconActions.removeAll(notSentActions);
-                    beaconScans.removeAll(notSentScans);
-                    actionConversions.keySet().removeAll(notSentConversionsKeys);
+                historyStore.deleteBatch(batch);
+                updateBacklog();
+                if (Logger.isVerboseLoggingEnabled()) {
+                    Logger.log.logBeaconHistoryPublisherState("published "
+                            + batch.getActions().size() + " campaignStats and "
+                            + batch.getScans().size() + " beaconStats and " +
+                            +batch.getConversions().size() + " actionConversions successfully.");
+                }
+                if (batch.getScans().size() == MAX_UPLOAD_SIZE
+                        || batch.getActions().size() == MAX_UPLOAD_SIZE
+                        || batch.getConversions().size() == MAX_UPLOAD_SIZE) {
+                    //there is more, keep going instead of waiting for the next upload interval
+                    publishHistory();
                 }
-                Logger.log.logBeaconHistoryPublisherState("published "
-                        + notSentActions.size() + " campaignStats and "
-                        + notSentScans.size() + " beaconStats and " +
-                        +notSentConversionsKeys.size() + " actionConversions successfully.");
-                saveAllData();
             }
 
             @Override
@@ -145,19 +135,7 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
             }
         };
 
-        transport.publishHistory(notSentScans, notSentActions, notSentConversionsValues, transportHistoryCallback);
-    }
-
-    private static <T> List<T> getList(Collection<T> collection) {
-        if (collection.size() > MAX_UPLOAD_SIZE) {
-            if (collection instanceof List) {
-                return new LinkedList<>(((List<T>) collection).subList(0, MAX_UPLOAD_SIZE));
-            } else {
-                return new LinkedList<>(new LinkedList<>(collection).subList(0, MAX_UPLOAD_SIZE));
-            }
-        } else {
-            return new LinkedList<>(collection);
-        }
+        transport.publishHistory(batch.getScans(), batch.getActions(), batch.getConversions(), transportHistoryCallback);
     }
 
     public void publishHistory() {
@@ -165,27 +143,14 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
     }
 
     public void onActionPresented(BeaconEvent beaconEvent) {
-        synchronized (lock) {
-            beaconActions.add(BeaconAction.from(beaconEvent));
-        }
-        saveAllData();
+        historyStore.addAction(BeaconAction.from(beaconEvent));
         if (beaconEvent.isReportImmediately()) {
             publishHistory();
         }
     }
 
     public void onConversionUpdate(ActionConversion incoming) {
-        synchronized (lock) {
-            ActionConversion existing = actionConversions.get(incoming.getActionInstanceUuid());
-            if (existing != null && incoming.getType() <= existing.getType()) {
-                Logger.log.verbose("Conversion " + existing.getActionInstanceUuid() + " type change rejected. " +
-                        "Type can be changed only to higher. " +
-                        "Existing type: " + existing.getType() + " Incoming type: " + incoming.getType());
-                return;
-            }
-            actionConversions.put(incoming.getActionInstanceUuid(), incoming);
-        }
-        saveAllData();
+        historyStore.putConversion(incoming);
     }
 
     public void deleteAllObjects() {
@@ -205,11 +170,11 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
         }
         boolean value = lastPresentation != null && lastPresentation >= lastAllowedPresentationTime;
         if (!value) {
+            long now = clock.now();
             synchronized (lock) {
-                suppressionTimeStore.put(actionUUID.toString(), clock.now());
+                suppressionTimeStore.put(actionUUID.toString(), now);
             }
-            saveAllData();
-            runloop.add(runloop.obtainMessage(MSG_SAVE_SUPPRESSION_STORE));
+            historyStore.putSuppressionTime(actionUUID.toString(), now);
         }
         return value;
     }
@@ -227,126 +192,87 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
             value = suppressionTimeStore.containsKey(actionUUID.toString());
         }
         if (!value) {
+            long now = clock.now();
             synchronized (lock) {
-                suppressionTimeStore.put(actionUUID.toString(), clock.now());
+                suppressionTimeStore.put(actionUUID.toString(), now);
             }
-            saveAllData();
-            runloop.add(runloop.obtainMessage(MSG_SAVE_SUPPRESSION_STORE));
+            historyStore.putSuppressionTime(actionUUID.toString(), now);
         }
         return value;
     }
 
-    private void loadAllData() {
-        synchronized (lock) {
-            String actionJson = sharedPreferences.getString(BeaconAction.SHARED_PREFS_TAG, "");
-            if (!actionJson.isEmpty()) {
-                Type listType = new TypeToken<List<BeaconAction>>() {
-                }.getType();
-                beaconActions = gson.fromJson(actionJson, listType);
-            }
-
-            String scanJson = sharedPreferences.getString(BeaconScan.SHARED_PREFS_TAG, "");
-            if (!scanJson.isEmpty()) {
-                Type listType = new TypeToken<List<BeaconScan>>() {
-                }.getType();
-                beaconScans = gson.fromJson(scanJson, listType);
-            }
-
-            String conversionJson = sharedPreferences.getString(ActionConversion.SHARED_PREFS_TAG, "");
-            if (!conversionJson.isEmpty()) {
-                Type mapType = new TypeToken<HashMap<String, ActionConversion>>() {
-                }.getType();
-                actionConversions = gson.fromJson(conversionJson, mapType);
-            }
-            Logger.log.logBeaconHistoryPublisherState("loaded "
-                    + beaconActions.size() + " campaignStats and "
-                    + beaconScans.size() + " beaconStats "
-                    + actionConversions.size() + " actionConversions from shared preferences");
-
-            String supressionTimeStoreString = sharedPreferences.getString(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG, "");
-            if (!supressionTimeStoreString.isEmpty()) {
-                Type hashMapType = new TypeToken<HashMap<String, Long>>() {
-                }.getType();
-                suppressionTimeStore = gson.fromJson(supressionTimeStoreString, hashMapType);
-                Iterator<Map.Entry<String, Long>> iterator = suppressionTimeStore.entrySet().iterator();
-                long old = clock.now() - MAX_SUPPRESSION_AGE;
-                while (iterator.hasNext()) {
-                    Map.Entry<String, Long> entry = iterator.next();
-                    if (entry.getValue() <= old) {
-                        iterator.remove();
-                    }
-                }
-            }
+    /**
+     * Moves the history that older versions kept as json in the shared preferences into the {@link HistoryStore}.
+     * The shared preferences are only cleared once the import is committed.
+     */
+    private void migrateSharedPreferences() {
+        if (!sharedPreferences.contains(BeaconScan.SHARED_PREFS_TAG)
+                && !sharedPreferences.contains(BeaconAction.SHARED_PREFS_TAG)
+                && !sharedPreferences.contains(ActionConversion.SHARED_PREFS_TAG)
+                && !sharedPreferences.contains(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG)) {
+            return;
+        }
+        List<BeaconScan> scans = fromJson(BeaconScan.SHARED_PREFS_TAG, new TypeToken<List<BeaconScan>>() {
+        }.getType());
+        List<BeaconAction> actions = fromJson(BeaconAction.SHARED_PREFS_TAG, new TypeToken<List<BeaconAction>>() {
+        }.getType());
+        Map<String, ActionConversion> conversions = fromJson(ActionConversion.SHARED_PREFS_TAG, new TypeToken<HashMap<String, ActionConversion>>() {
+        }.getType());
+        Map<String, Long> suppressionTimes = fromJson(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG, new TypeToken<HashMap<String, Long>>() {
+        }.getType());
+
+        if (!historyStore.importAll(
+                scans != null ? scans : Collections.<BeaconScan>emptyList(),
+                actions != null ? actions : Collections.<BeaconAction>emptyList(),
+                conversions != null ? conversions : Collections.<String, ActionConversion>emptyMap(),
+                suppressionTimes != null ? suppressionTimes : Collections.<String, Long>emptyMap())) {
+            //keep them, the migration is tried again next time
+            return;
         }
+        Logger.log.logBeaconHistoryPublisherState("migrated "
+                + (actions != null ? actions.size() : 0) + " campaignStats and "
+                + (scans != null ? scans.size() : 0) + " beaconStats and "
+                + (conversions != null ? conversions.size() : 0) + " actionConversions from shared preferences");
+
+        deleteSavedFromSharedPreferences();
     }
 
-    public void saveAllData() {
-        String actionsJson;
-        String scansJson;
-        String conversionJson;
-        String supressionTimeStoreJson;
-        synchronized (lock) {
-            actionsJson = gson.toJson(beaconActions);
-            scansJson = gson.toJson(beaconScans);
-            conversionJson = gson.toJson(actionConversions);
-            supressionTimeStoreJson = gson.toJson(suppressionTimeStore);
+    private <T> T fromJson(String key, Type type) {
+        String json = sharedPreferences.getString(key, "");
+        if (json.isEmpty()) {
+            return null;
         }
-        if (Logger.isVerboseLoggingEnabled()) {
-            try {
-                Logger.log.logBeaconHistoryPublisherState("size of the stats" +
-                        " campaignStats:" + actionsJson.getBytes("UTF-8").length +
-                        " beaconStats:" + scansJson.getBytes("UTF-8").length +
-                        " conversionStats:" + conversionJson.getBytes("UTF-8").length);
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-            }
+        try {
+            return gson.fromJson(json, type);
+        } catch (JsonParseException e) {
+            Logger.log.logError("could not migrate " + key, e);
+            return null;
         }
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor
-                .putString(BeaconAction.SHARED_PREFS_TAG, actionsJson)
-                .putString(BeaconScan.SHARED_PREFS_TAG, scansJson)
-                .putString(ActionConversion.SHARED_PREFS_TAG, conversionJson)
-                .putString(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG, supressionTimeStoreJson)
-                .apply();
-        Logger.log.logBeaconHistoryPublisherState(
-                "saved " + beaconActions.size() + " campaignStats and "
-                        + beaconScans.size() + " beaconStats and "
-                        + actionConversions.size() + " actionConversions and "
-                        + suppressionTimeStore.size() + " supression related items to shared preferences");
     }
 
-    public void saveSuppressionTimeStore() {
-        String supressionTimeStoreJson;
-        synchronized (lock) {
-            supressionTimeStoreJson = gson.toJson(suppressionTimeStore);
-        }
-        sharedPreferences
-                .edit()
-                .putString(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG, supressionTimeStoreJson)
+    private void deleteSavedFromSharedPreferences() {
+        sharedPreferences.edit()
+                .remove(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG)
+                .remove(BeaconScan.SHARED_PREFS_TAG)
+                .remove(BeaconAction.SHARED_PREFS_TAG)
+                .remove(ActionConversion.SHARED_PREFS_TAG)
                 .apply();
     }
 
-    private void deleteSavedFromSharedPreferences(String key) {
-        if (sharedPreferences.contains(key)) {
-            sharedPreferences.edit().remove(key).apply();
-        }
-    }
-
     public void deleteAllData() {
         Logger.log.logBeaconHistoryPublisherState("will purge the saved data of "
-                + beaconActions.size() + " campaignStats and "
-                + beaconScans.size() + " beaconStats and "
-                + actionConversions.size() + "actionConversions");
+                + historyStore.getActionCount() + " campaignStats and "
+                + historyStore.getScanCount() + " beaconStats and "
+                + historyStore.getConversionCount() + " actionConversions");
         synchronized (lock) {
-            beaconActions = new LinkedList<>();
-            beaconScans = new LinkedList<>();
-            actionConversions = new HashMap<>();
-            suppressionTimeStore = new HashMap<>();
+            suppressionTimeStore.clear();
         }
+        historyStore.clear();
+        deleteSavedFromSharedPreferences();
+        updateBacklog();
+    }
 
-        deleteSavedFromSharedPreferences(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG);
-        deleteSavedFromSharedPreferences(BeaconScan.SHARED_PREFS_TAG);
-        deleteSavedFromSharedPreferences(BeaconAction.SHARED_PREFS_TAG);
-        deleteSavedFromSharedPreferences(ActionConversion.SHARED_PREFS_TAG);
+    private void updateBacklog() {
+        Metrics.HISTORY_BACKLOG.set(historyStore.getBacklog());
     }
 }
@@ -0,0 +1,55 @@
+package com.sensorberg.sdk.scanner;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+import java.util.Locale;
+
+import lombok.Getter;
+
+/**
+ * Class {@link BeaconAdvertisement} is a reusable, mutable holder for the fields of one iBeacon advertisement.
+ * It is filled by {@link BeaconAdvertisementParser#parse(byte[], BeaconAdvertisement)} and owned by the caller, so
+ * parsing does not allocate. It is not thread safe. It is intended for internal use only.
+ */
+public final class BeaconAdvertisement {
+
+    @Getter
+    long uuidMostSignificantBits;
+
+    @Getter
+    long uuidLeastSignificantBits;
+
+    @Getter
+    int majorId;
+
+    @Getter
+    int minorId;
+
+    /**
+     * -- GETTER --
+     * The calibrated tx power at one meter, as advertised by the beacon.
+     *
+     * @return rssi in db
+     */
+    @Getter
+    int calibratedTxPower;
+
+    /**
+     * Creates a new {@link BeaconId} for this advertisement.
+     *
+     * @return a new {@link BeaconId}
+     */
+    public BeaconId toBeaconId() {
+        return new BeaconId(uuidMostSignificantBits, uuidLeastSignificantBits, majorId, minorId);
+    }
+
+    @Override
+    public String toString() {
+        return "BeaconAdvertisement{" +
+                "uuid=" + String.format(Locale.US, "%016x%016x", uuidMostSignificantBits, uuidLeastSignificantBits) +
+                ", major=" + majorId +
+                ", minor=" + minorId +
+                ", calibratedTxPower=" + calibratedTxPower +
+                '}';
+    }
+}
@@ -0,0 +1,99 @@
+package com.sensorberg.sdk.scanner;
+
+/**
+ * Class {@link BeaconAdvertisementParser} decodes iBeacon advertisements into a caller-owned
+ * {@link BeaconAdvertisement}. Unlike {@link ScanHelper#getBeaconID(byte[])} it does not allocate and does not use
+ * exceptions for malformed packets, so it can run on every scan callback. It has no Android dependencies.
+ * It is intended for internal use only.
+ */
+public final class BeaconAdvertisementParser {
+
+    private static final int MANUFACTURER_SPECIFIC_DATA = 0xFF;
+
+    private static final int APPLE_COMPANY_ID_LOW = 0x4C;
+
+    private static final int APPLE_COMPANY_ID_HIGH = 0x00;
+
+    private static final int IBEACON_TYPE = 0x02;
+
+    /**
+     * the header (type, company id, beacon type) plus the data length byte that follows it
+     */
+    private static final int HEADER_LENGTH = 5;
+
+    private static final int BEACON_ID_LENGTH = 20;
+
+    private static final int MINIMUM_BEACON_PACKET_LENGTH = 26;
+
+    private BeaconAdvertisementParser() {
+        // Private constructor to make class purely static
+    }
+
+    /**
+     * Looks for an iBeacon structure in the advertisement and decodes it into {@code out}.
+     *
+     * @param advertisement the raw scan record
+     * @param out the record to fill; its contents are undefined if false is returned
+     * @return true if an iBeacon was found
+     */
+    public static boolean parse(byte[] advertisement, BeaconAdvertisement out) {
+        return advertisement != null && parse(advertisement, 0, advertisement.length, out);
+    }
+
+    /**
+     * Looks for an iBeacon structure in {@code length} bytes of {@code buffer}, starting at {@code offset}.
+     *
+     * @param buffer the buffer holding the raw scan record
+     * @param offset the start of the scan record
+     * @param length the length of the scan record
+     * @param out the record to fill; its contents are undefined if false is returned
+     * @return true if an iBeacon was found
+     */
+    public static boolean parse(byte[] buffer, int offset, int length, BeaconAdvertisement out) {
+        int end = offset + length;
+        while (offset < end) {
+            int packetLength = buffer[offset];
+            offset++;
+            if (packetLength <= 0) {
+                return false;
+            }
+            if (packetLength >= MINIMUM_BEACON_PACKET_LENGTH && matchesBeaconHeader(buffer, offset, end)) {
+                return decode(buffer, offset + HEADER_LENGTH, end, out);
+            }
+            offset += packetLength;
+        }
+        return false;
+    }
+
+    private static boolean matchesBeaconHeader(byte[] buffer, int offset, int end) {
+        return offset + HEADER_LENGTH - 1 <= end
+                && (buffer[offset] & 0xFF) == MANUFACTURER_SPECIFIC_DATA
+                && (buffer[offset + 1] & 0xFF) == APPLE_COMPANY_ID_LOW
+                && (buffer[offset + 2] & 0xFF) == APPLE_COMPANY_ID_HIGH
+                && (buffer[offset + 3] & 0xFF) == IBEACON_TYPE;
+    }
+
+    private static boolean decode(byte[] buffer, int offset, int end, BeaconAdvertisement out) {
+        if (offset + BEACON_ID_LENGTH + 1 > end) {
+            return false;
+        }
+        out.uuidMostSignificantBits = readLong(buffer, offset);
+        out.uuidLeastSignificantBits = readLong(buffer, offset + 8);
+        out.majorId = readUnsignedShort(buffer, offset + 16);
+        out.minorId = readUnsignedShort(buffer, offset + 18);
+        out.calibratedTxPower = buffer[offset + BEACON_ID_LENGTH];
+        return true;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+}
@@ -1,13 +1,15 @@
 package com.sensorberg.sdk.scanner;
 
 import com.sensorberg.sdk.internal.interfaces.FileManager;
+import com.sensorberg.sdk.metrics.Metrics;
 import com.sensorberg.sdk.model.BeaconId;
 
 import java.io.File;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 
+import static com.sensorberg.sdk.scanner.EnteredBeaconTable.NOT_QUEUED;
+
 public class BeaconMap {
 
     private FileManager fileManager;
@@ -17,20 +19,79 @@ public class BeaconMap {
         boolean filter(EventEntry beaconEntry, BeaconId beaconId);
     }
 
-    private final HashMap<BeaconId, EventEntry> storage;
+    public interface ExpiryListener {
+
+        /**
+         * Called for every beacon that was removed by {@link #removeExpired(long, long, ExpiryListener)}.
+         *
+         * @param beaconId the beacon that was removed
+         * @param pairingId the pairing id of its entry event
+         * @param timeSinceSeen the time since the beacon was last seen, not counting scan pauses
+         */
+        void onExpired(BeaconId beaconId, String pairingId, long timeSinceSeen);
+    }
+
+    private final EnteredBeaconTable storage = new EnteredBeaconTable();
+
+    private final ExitDeadlineQueue exitQueue = new ExitDeadlineQueue();
 
     private final File fileForPersistance;
 
+    private final BeaconMapJournal journal;
+
+    /**
+     * Creates a {@link BeaconMap} that rewrites the whole map to {@code file} on every change.
+     *
+     * @param fm the {@link FileManager} used for serialization
+     * @param file the file to persist to, or null for an in-memory map
+     */
     public BeaconMap(FileManager fm, File file) {
         fileManager = fm;
         fileForPersistance = file;
+        journal = null;
 
         if (fileForPersistance != null) {
-            storage = readBeaconEntriesFile(fileForPersistance);
+            putAll(storage, readBeaconEntriesFile(fileManager, fileForPersistance));
+            queueAll();
+        }
+    }
 
-        } else {
-            storage = new HashMap<>();
+    /**
+     * Creates a {@link BeaconMap} backed by an append-only {@link BeaconMapJournal}. Changes are only written
+     * when {@link #flush()} is called.
+     *
+     * @param beaconMapJournal the journal to restore from and append to
+     */
+    public BeaconMap(BeaconMapJournal beaconMapJournal) {
+        fileManager = null;
+        fileForPersistance = null;
+        journal = beaconMapJournal;
+        journal.replay(storage);
+        queueAll();
+    }
+
+    /**
+     * Moves the entries of a map that was persisted by {@link #BeaconMap(FileManager, File)} into {@code journal}.
+     * The legacy file is only deleted once its entries are written to the journal. Must be called before the
+     * journal is used.
+     *
+     * @param fm the {@link FileManager} used for deserialization
+     * @param legacyFile the file the map was persisted to
+     * @param journal the journal to move the entries to
+     * @return false if the entries could not be written, the legacy file is kept then
+     */
+    public static boolean migrate(FileManager fm, File legacyFile, BeaconMapJournal journal) {
+        if (!legacyFile.exists()) {
+            return true;
         }
+        EnteredBeaconTable legacy = new EnteredBeaconTable();
+        putAll(legacy, readBeaconEntriesFile(fm, legacyFile));
+        if (!journal.seed(legacy)) {
+            return false;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        legacyFile.delete();
+        return true;
     }
 
     public int size() {
@@ -39,6 +100,10 @@ public class BeaconMap {
 
     public void clear() {
         storage.clear();
+        exitQueue.clear();
+        if (journal != null) {
+            journal.clear();
+        }
         deleteFile();
     }
 
@@ -49,38 +114,114 @@ public class BeaconMap {
         }
     }
 
+    /**
+     * Returns a snapshot of the entry for {@code beaconId}. Use {@link #refresh(BeaconId, long)} on the hot path,
+     * it does not allocate.
+     *
+     * @param beaconId the beacon to look up
+     * @return the entry, or null if the beacon is not in the map
+     */
     public EventEntry get(BeaconId beaconId) {
-        return storage.get(beaconId);
+        int index = storage.indexOf(beaconId);
+        return index < 0 ? null : entryAt(index);
     }
 
     public void put(BeaconId beaconId, EventEntry entry) {
-        storage.put(beaconId, entry);
-        persist();
+        int index = storage.put(beaconId, entry.getLastBeaconTime(), entry.getScanPauseTime(), entry.getEventMask(), entry.getPairingId());
+        queue(index);
+        changed(beaconId);
+    }
+
+    /**
+     * Marks an already entered beacon as seen at {@code now}, resetting its scan pause time and keeping its event
+     * mask and pairing id.
+     *
+     * @param beaconId the beacon that was seen
+     * @param now the current time
+     * @return false if the beacon is not in the map
+     */
+    public boolean refresh(BeaconId beaconId, long now) {
+        int index = storage.indexOf(beaconId);
+        if (index < 0) {
+            return false;
+        }
+        storage.touch(index, now);
+        queue(index);
+        changed(beaconId);
+        return true;
     }
 
     public void addScanPauseTime(long pause) {
-        for(Map.Entry<BeaconId, EventEntry> entry : storage.entrySet()) {
-            storage.put(entry.getKey(),
-                    new EventEntry(
-                            entry.getValue().getLastBeaconTime(),
-                            entry.getValue().getScanPauseTime() + pause,
-                            entry.getValue().getEventMask(),
-                            entry.getValue().getPairingId()
-                    )
-            );
+        storage.addPause(pause);
+        if (journal != null) {
+            journal.addPause(pause);
+        }
+    }
+
+    /**
+     * Writes all changes since the last call to the journal. Does nothing if this map is not journal backed.
+     * The actual disk I/O happens on the journal's executor.
+     */
+    public void flush() {
+        if (journal != null) {
+            journal.flush(storage);
+        }
+    }
+
+    public void filter(final Filter filter) {
+        final boolean[] modified = new boolean[1];
+        storage.removeIf(new EnteredBeaconTable.Visitor() {
+            @Override
+            public boolean visit(EnteredBeaconTable table, int index) {
+                BeaconId beaconId = table.keyAt(index);
+                if (filter.filter(entryAt(index), beaconId)) {
+                    if (journal != null) {
+                        journal.markChanged(beaconId);
+                    }
+                    modified[0] = true;
+                    return true;
+                }
+                return false;
+            }
+        });
+        if (modified[0]) {
+            persist();
         }
     }
 
-    public void filter(Filter filter) {
+    /**
+     * Removes every beacon that was not seen for longer than {@code exitTimeout}, not counting scan pauses.
+     * Only beacons whose exit deadline has passed are looked at, beacons that were seen in the meantime are
+     * queued again with their new deadline.
+     *
+     * @param now the current time
+     * @param exitTimeout the exit timeout in millis
+     * @param listener notified for every removed beacon
+     */
+    public void removeExpired(long now, long exitTimeout, ExpiryListener listener) {
+        long activeTime = now - storage.pauseOffset();
         boolean modified = false;
-        Iterator<Map.Entry<BeaconId, EventEntry>> iterator = storage.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<BeaconId, EventEntry> enteredBeacon = iterator.next();
-            EventEntry beaconEntry = enteredBeacon.getValue();
-            BeaconId beaconId = enteredBeacon.getKey();
-            if (filter.filter(beaconEntry, beaconId)) {
-                iterator.remove();
+        while (!exitQueue.isEmpty() && activeTime - exitQueue.peekExitKey() > exitTimeout) {
+            long queuedExitKey = exitQueue.peekExitKey();
+            BeaconId beaconId = exitQueue.peekBeaconId();
+            exitQueue.poll();
+            int index = storage.indexOf(beaconId);
+            if (index < 0 || storage.queuedExitKeyAt(index) != queuedExitKey) {
+                //removed or queued again in the meantime
+                continue;
+            }
+            long timeSinceSeen = activeTime - storage.exitKeyAt(index);
+            if (timeSinceSeen > exitTimeout) {
+                String pairingId = storage.pairingIdAt(index);
+                storage.remove(beaconId);
+                if (journal != null) {
+                    journal.markChanged(beaconId);
+                }
                 modified = true;
+                listener.onExpired(beaconId, pairingId, timeSinceSeen);
+            } else {
+                storage.setQueuedExitKey(index, NOT_QUEUED);
+                queue(index);
             }
         }
         if (modified) {
@@ -88,13 +229,77 @@ public class BeaconMap {
         }
     }
 
+    /**
+     * Returns how long it takes until the next beacon may exit, assuming the scan is not paused in between.
+     *
+     * @param now the current time
+     * @param exitTimeout the exit timeout in millis
+     * @return the time in millis, 0 if a beacon is due already, or -1 if there are no beacons
+     */
+    public long getTimeUntilNextExit(long now, long exitTimeout) {
+        if (exitQueue.isEmpty()) {
+            return -1;
+        }
+        long activeTime = now - storage.pauseOffset();
+        return Math.max(0, exitQueue.peekExitKey() + exitTimeout + 1 - activeTime);
+    }
+
+    private void queue(int index) {
+        long exitKey = storage.exitKeyAt(index);
+        //a queued key may be older than the real one, the entry is queued again once it comes up
+        if (exitKey < storage.queuedExitKeyAt(index)) {
+            storage.setQueuedExitKey(index, exitKey);
+            exitQueue.add(exitKey, storage.keyAt(index));
+        }
+    }
+
+    private void queueAll() {
+        storage.forEach(new EnteredBeaconTable.Visitor() {
+            @Override
+            public boolean visit(EnteredBeaconTable table, int index) {
+                queue(index);
+                return false;
+            }
+        });
+    }
+
+    private EventEntry entryAt(int index) {
+        return new EventEntry(storage.lastBeaconTimeAt(index), storage.scanPauseTimeAt(index),
+                storage.eventMaskAt(index), storage.pairingIdAt(index));
+    }
+
+    private void changed(BeaconId beaconId) {
+        if (journal != null) {
+            journal.markChanged(beaconId);
+        } else {
+            persist();
+        }
+    }
+
     private void persist() {
         if (fileForPersistance != null) {
-            fileManager.write(storage, fileForPersistance);
+            long start = System.nanoTime();
+            final HashMap<BeaconId, EventEntry> snapshot = new HashMap<>(storage.size() * 2);
+            storage.forEach(new EnteredBeaconTable.Visitor() {
+                @Override
+                public boolean visit(EnteredBeaconTable table, int index) {
+                    snapshot.put(table.keyAt(index), entryAt(index));
+                    return false;
+                }
+            });
+            fileManager.write(snapshot, fileForPersistance);
+            Metrics.BEACON_MAP_REWRITE_MICROS.record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    private static void putAll(EnteredBeaconTable table, Map<BeaconId, EventEntry> entries) {
+        for (Map.Entry<BeaconId, EventEntry> entry : entries.entrySet()) {
+            EventEntry value = entry.getValue();
+            table.put(entry.getKey(), value.getLastBeaconTime(), value.getScanPauseTime(), value.getEventMask(), value.getPairingId());
         }
     }
 
-    private HashMap<BeaconId, EventEntry> readBeaconEntriesFile(File file) {
+    private static HashMap<BeaconId, EventEntry> readBeaconEntriesFile(FileManager fileManager, File file) {
         HashMap<BeaconId, EventEntry> value;
         try {
             //noinspection unchecked if it fails, see catch block
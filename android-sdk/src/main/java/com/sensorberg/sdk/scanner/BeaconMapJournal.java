@@ -0,0 +1,437 @@
+package com.sensorberg.sdk.scanner;
+
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.metrics.Metrics;
+import com.sensorberg.sdk.model.BeaconId;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only persistence for a {@link BeaconMap}. The journal only remembers which beacons changed and how much
+ * scan pause time was added since the last flush. When {@link #flush(EnteredBeaconTable)} is called, typically once
+ * per scan window, it appends one pause record followed by the current state of every changed beacon. When the
+ * journal has grown well beyond the number of live entries it is compacted into a fresh file. All disk I/O runs
+ * serially on the given {@link Executor}, never on the calling thread.
+ * <p>
+ * Every record is framed as {@code [int length][payload][int crc32]}, so a record that was only partially written
+ * before the process died is detected and dropped on {@link #replay(EnteredBeaconTable)}.
+ */
+public class BeaconMapJournal {
+
+    private static final byte RECORD_PUT = 1;
+
+    private static final byte RECORD_REMOVE = 2;
+
+    /**
+     * adds scan pause time to every entry restored so far
+     */
+    private static final byte RECORD_PAUSE = 3;
+
+    private static final int BEACON_ID_LENGTH = 20;
+
+    private static final int MAX_RECORD_LENGTH = 4096;
+
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 64;
+
+    private static final int COMPACTION_FACTOR = 4;
+
+    private final File file;
+
+    private final Executor executor;
+
+    private final Object pendingMonitor = new Object();
+
+    /**
+     * beacons that were added, updated or removed since the last flush
+     */
+    private final HashSet<BeaconId> pending = new HashSet<>();
+
+    private long pendingPause;
+
+    private int recordsInFile;
+
+    public BeaconMapJournal(File file) {
+        this(file, newSerialExecutor());
+    }
+
+    public BeaconMapJournal(File file, Executor executor) {
+        this.file = file;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a single-thread executor whose thread goes away when there is nothing to write.
+     *
+     * @return a serial {@link Executor} for journal I/O
+     */
+    public static Executor newSerialExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Reads the journal from disk into {@code restored}. Must be called once before the first
+     * {@link #flush(EnteredBeaconTable)}.
+     *
+     * @param restored the table to restore into
+     */
+    void replay(EnteredBeaconTable restored) {
+        int records = 0;
+        boolean corrupted = false;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    corrupted = true;
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                int checksum = in.readInt();
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    corrupted = true;
+                    break;
+                }
+                apply(restored, payload);
+                records++;
+            }
+        } catch (EOFException e) {
+            corrupted = true;
+        } catch (IOException e) {
+            if (file.exists()) {
+                Logger.log.logError("could not read the beacon journal", e);
+                corrupted = true;
+            }
+        } finally {
+            close(in);
+        }
+
+        recordsInFile = records;
+        if (corrupted) {
+            Logger.log.logError("beacon journal has a broken tail, recovered " + restored.size() + " entries");
+            compact(restored);
+        }
+    }
+
+    /**
+     * Writes {@code entries} as the initial contents of the journal, on the calling thread. A journal that exists
+     * already holds a newer state and is kept as it is. Must be called before {@link #replay(EnteredBeaconTable)}.
+     *
+     * @param entries the entries to start with
+     * @return true if the entries are on disk or the journal existed already
+     */
+    boolean seed(EnteredBeaconTable entries) {
+        if (file.length() > 0) {
+            return true;
+        }
+        byte[] snapshot = encodeSnapshot(entries);
+        return snapshot != null && rewrite(snapshot);
+    }
+
+    /**
+     * Remembers that the entry for {@code beaconId} was added, changed or removed.
+     *
+     * @param beaconId the changed beacon
+     */
+    public void markChanged(BeaconId beaconId) {
+        synchronized (pendingMonitor) {
+            pending.add(beaconId);
+        }
+    }
+
+    /**
+     * Remembers that {@code pause} was added to the scan pause time of all entries.
+     *
+     * @param pause the pause in millis
+     */
+    public void addPause(long pause) {
+        synchronized (pendingMonitor) {
+            pendingPause += pause;
+        }
+    }
+
+    /**
+     * Drops all pending changes and truncates the journal.
+     */
+    public void clear() {
+        synchronized (pendingMonitor) {
+            pending.clear();
+            pendingPause = 0;
+            recordsInFile = 0;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        });
+    }
+
+    public boolean hasPendingChanges() {
+        synchronized (pendingMonitor) {
+            return !pending.isEmpty() || pendingPause != 0;
+        }
+    }
+
+    /**
+     * Appends all pending changes to the journal and compacts it if it has grown too large.
+     *
+     * @param liveEntries the current contents of the map. Must not be modified concurrently.
+     */
+    void flush(EnteredBeaconTable liveEntries) {
+        final byte[] records;
+        boolean shouldCompact;
+        synchronized (pendingMonitor) {
+            if (pending.isEmpty() && pendingPause == 0) {
+                return;
+            }
+            records = encodeChanges(liveEntries);
+            recordsInFile += pending.size() + (pendingPause != 0 ? 1 : 0);
+            pending.clear();
+            pendingPause = 0;
+            shouldCompact = recordsInFile > Math.max(MIN_RECORDS_BEFORE_COMPACTION, COMPACTION_FACTOR * liveEntries.size());
+        }
+        if (records == null) {
+            return;
+        }
+        if (shouldCompact) {
+            compact(liveEntries);
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    append(records);
+                }
+            });
+        }
+    }
+
+    private void compact(EnteredBeaconTable liveEntries) {
+        final byte[] snapshot = encodeSnapshot(liveEntries);
+        synchronized (pendingMonitor) {
+            recordsInFile = liveEntries.size();
+        }
+        if (snapshot == null) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                rewrite(snapshot);
+            }
+        });
+    }
+
+    private void append(byte[] records) {
+        long start = System.nanoTime();
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file, true);
+            out.write(records);
+        } catch (IOException e) {
+            Logger.log.logError("could not append to the beacon journal", e);
+        } finally {
+            close(out);
+        }
+        Metrics.BEACON_MAP_APPEND_MICROS.record((System.nanoTime() - start) / 1000);
+    }
+
+    private boolean rewrite(byte[] snapshot) {
+        long start = System.nanoTime();
+        File tempFile = new File(file.getPath() + ".compact");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tempFile, false);
+            out.write(snapshot);
+            out.getFD().sync();
+        } catch (IOException e) {
+            Logger.log.logError("could not compact the beacon journal", e);
+            close(out);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return false;
+        }
+        close(out);
+        if (!tempFile.renameTo(file)) {
+            Logger.log.logError("could not replace the beacon journal with its compacted version");
+            return false;
+        }
+        Metrics.BEACON_MAP_REWRITE_MICROS.record((System.nanoTime() - start) / 1000);
+        return true;
+    }
+
+    private byte[] encodeChanges(EnteredBeaconTable table) {
+        RecordWriter writer = new RecordWriter(pending.size());
+        try {
+            if (pendingPause != 0) {
+                writer.writePause(pendingPause);
+            }
+            for (BeaconId beaconId : pending) {
+                int index = table.indexOf(beaconId);
+                if (index >= 0) {
+                    writer.writePut(table, index);
+                } else {
+                    writer.writeRemove(beaconId);
+                }
+            }
+            return writer.toByteArray();
+        } catch (IOException e) {
+            //writing to a ByteArrayOutputStream does not fail
+            Logger.log.logError("could not encode beacon journal records", e);
+            return null;
+        }
+    }
+
+    private static byte[] encodeSnapshot(EnteredBeaconTable table) {
+        final RecordWriter writer = new RecordWriter(table.size());
+        final IOException[] failure = new IOException[1];
+        table.forEach(new EnteredBeaconTable.Visitor() {
+            @Override
+            public boolean visit(EnteredBeaconTable table, int index) {
+                try {
+                    writer.writePut(table, index);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+                return false;
+            }
+        });
+        if (failure[0] != null) {
+            Logger.log.logError("could not encode beacon journal snapshot", failure[0]);
+            return null;
+        }
+        try {
+            return writer.toByteArray();
+        } catch (IOException e) {
+            Logger.log.logError("could not encode beacon journal snapshot", e);
+            return null;
+        }
+    }
+
+    private static void apply(EnteredBeaconTable target, byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = in.readByte();
+        if (type == RECORD_PAUSE) {
+            target.addPause(in.readLong());
+            return;
+        }
+        byte[] beaconIdBytes = new byte[BEACON_ID_LENGTH];
+        in.readFully(beaconIdBytes);
+        BeaconId beaconId = new BeaconId(beaconIdBytes);
+        if (type == RECORD_PUT) {
+            long lastBeaconTime = in.readLong();
+            long scanPauseTime = in.readLong();
+            int eventMask = in.readInt();
+            String pairingId = in.readBoolean() ? in.readUTF() : null;
+            target.put(beaconId, lastBeaconTime, scanPauseTime, eventMask, pairingId);
+        } else if (type == RECORD_REMOVE) {
+            target.remove(beaconId);
+        } else {
+            throw new IOException("unknown beacon journal record type " + type);
+        }
+    }
+
+    /**
+     * Frames records as {@code [int length][payload][int crc32]}.
+     */
+    private static class RecordWriter {
+
+        private final ByteArrayOutputStream bytes;
+
+        private final DataOutputStream out;
+
+        private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(64);
+
+        private final DataOutputStream payload = new DataOutputStream(payloadBytes);
+
+        private final CRC32 crc = new CRC32();
+
+        RecordWriter(int expectedRecords) {
+            bytes = new ByteArrayOutputStream(Math.max(expectedRecords, 1) * 64);
+            out = new DataOutputStream(bytes);
+        }
+
+        void writePut(EnteredBeaconTable table, int index) throws IOException {
+            payloadBytes.reset();
+            payload.writeByte(RECORD_PUT);
+            payload.write(table.keyAt(index).getBeaconId());
+            payload.writeLong(table.lastBeaconTimeAt(index));
+            payload.writeLong(table.scanPauseTimeAt(index));
+            payload.writeInt(table.eventMaskAt(index));
+            String pairingId = table.pairingIdAt(index);
+            payload.writeBoolean(pairingId != null);
+            if (pairingId != null) {
+                payload.writeUTF(pairingId);
+            }
+            frame();
+        }
+
+        void writeRemove(BeaconId beaconId) throws IOException {
+            payloadBytes.reset();
+            payload.writeByte(RECORD_REMOVE);
+            payload.write(beaconId.getBeaconId());
+            frame();
+        }
+
+        void writePause(long pause) throws IOException {
+            payloadBytes.reset();
+            payload.writeByte(RECORD_PAUSE);
+            payload.writeLong(pause);
+            frame();
+        }
+
+        byte[] toByteArray() throws IOException {
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private void frame() throws IOException {
+            payload.flush();
+            byte[] record = payloadBytes.toByteArray();
+            crc.reset();
+            crc.update(record, 0, record.length);
+            out.writeInt(record.length);
+            out.write(record);
+            out.writeInt((int) crc.getValue());
+        }
+    }
+
+    @SuppressWarnings("EmptyCatchBlock")
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+
+            }
+        }
+    }
+}
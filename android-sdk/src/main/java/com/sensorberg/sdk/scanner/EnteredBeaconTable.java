@@ -0,0 +1,296 @@
+package com.sensorberg.sdk.scanner;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing table holding the state of the entered beacons in parallel primitive arrays. Entries are updated
+ * in place, and the scan pause time of all entries is shifted at once through a global pause offset, so neither
+ * sightings nor scan restarts allocate. Keys are expected to be interned {@link BeaconId}s, which makes the
+ * identity check in {@link #indexOf(BeaconId)} the common case.
+ * <p>
+ * Uses linear probing with backward-shift deletion. Not thread safe.
+ */
+final class EnteredBeaconTable {
+
+    interface Visitor {
+
+        /**
+         * @return true if the entry at {@code index} should be removed
+         */
+        boolean visit(EnteredBeaconTable table, int index);
+    }
+
+    /**
+     * marks an entry that has no pending exit deadline, see {@link #queuedExitKeyAt(int)}
+     */
+    static final long NOT_QUEUED = Long.MAX_VALUE;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private BeaconId[] keys;
+
+    private int[] hashes;
+
+    private long[] lastBeaconTimes;
+
+    private long[] scanPauseTimes;
+
+    private long[] pauseBases;
+
+    private int[] eventMasks;
+
+    private String[] pairingIds;
+
+    private long[] queuedExitKeys;
+
+    private int size;
+
+    private long pauseOffset;
+
+    EnteredBeaconTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(pairingIds, null);
+        size = 0;
+        pauseOffset = 0;
+    }
+
+    /**
+     * @return the slot of {@code beaconId}, or -1 if it is not in the table
+     */
+    int indexOf(BeaconId beaconId) {
+        int hash = beaconId.hashCode();
+        int mask = keys.length - 1;
+        int index = spread(hash) & mask;
+        BeaconId key;
+        while ((key = keys[index]) != null) {
+            if (key == beaconId || (hashes[index] == hash && key.equals(beaconId))) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Inserts or overwrites the entry for {@code beaconId}.
+     *
+     * @return the slot of the entry
+     */
+    int put(BeaconId beaconId, long lastBeaconTime, long scanPauseTime, int eventMask, String pairingId) {
+        int index = indexOf(beaconId);
+        if (index < 0) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            index = insertKey(beaconId, beaconId.hashCode());
+            queuedExitKeys[index] = NOT_QUEUED;
+        }
+        set(index, lastBeaconTime, scanPauseTime, eventMask, pairingId);
+        return index;
+    }
+
+    BeaconId keyAt(int index) {
+        return keys[index];
+    }
+
+    long lastBeaconTimeAt(int index) {
+        return lastBeaconTimes[index];
+    }
+
+    long scanPauseTimeAt(int index) {
+        return scanPauseTimes[index] + pauseOffset - pauseBases[index];
+    }
+
+    int eventMaskAt(int index) {
+        return eventMasks[index];
+    }
+
+    String pairingIdAt(int index) {
+        return pairingIds[index];
+    }
+
+    /**
+     * Returns the exit key of an entry: the time since the beacon was seen, not counting scan pauses, is
+     * {@code now - pauseOffset() - exitKeyAt(index)}. Unlike the scan pause time the key does not change when a
+     * pause is added, so it can be used to order exit deadlines.
+     */
+    long exitKeyAt(int index) {
+        return lastBeaconTimes[index] + scanPauseTimes[index] - pauseBases[index];
+    }
+
+    long pauseOffset() {
+        return pauseOffset;
+    }
+
+    /**
+     * @return the exit key under which the entry is queued for its exit check, or {@link #NOT_QUEUED}
+     */
+    long queuedExitKeyAt(int index) {
+        return queuedExitKeys[index];
+    }
+
+    void setQueuedExitKey(int index, long exitKey) {
+        queuedExitKeys[index] = exitKey;
+    }
+
+    /**
+     * Marks the beacon in {@code index} as seen at {@code now}, keeping its event mask and pairing id.
+     */
+    void touch(int index, long now) {
+        lastBeaconTimes[index] = now;
+        scanPauseTimes[index] = 0;
+        pauseBases[index] = pauseOffset;
+    }
+
+    /**
+     * Adds {@code pause} to the scan pause time of every entry currently in the table, in constant time.
+     */
+    void addPause(long pause) {
+        pauseOffset += pause;
+    }
+
+    boolean remove(BeaconId beaconId) {
+        int index = indexOf(beaconId);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Visits every entry once and removes those for which the visitor returns true, without allocating.
+     */
+    void removeIf(Visitor visitor) {
+        if (size == 0) {
+            return;
+        }
+        int mask = keys.length - 1;
+        // start right after an empty slot: backward shifts then never move an entry into a visited slot
+        int start = 0;
+        while (keys[start] != null) {
+            start++;
+        }
+        int index = (start + 1) & mask;
+        int visited = 0;
+        while (visited < keys.length) {
+            if (keys[index] != null && visitor.visit(this, index)) {
+                removeAt(index);
+                // the slot may now hold a shifted, not yet visited entry
+                continue;
+            }
+            index = (index + 1) & mask;
+            visited++;
+        }
+    }
+
+    /**
+     * Visits every entry once, the visitor's return value is ignored.
+     */
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                visitor.visit(this, i);
+            }
+        }
+    }
+
+    private void set(int index, long lastBeaconTime, long scanPauseTime, int eventMask, String pairingId) {
+        lastBeaconTimes[index] = lastBeaconTime;
+        scanPauseTimes[index] = scanPauseTime;
+        pauseBases[index] = pauseOffset;
+        eventMasks[index] = eventMask;
+        pairingIds[index] = pairingId;
+    }
+
+    private int insertKey(BeaconId beaconId, int hash) {
+        int mask = keys.length - 1;
+        int index = spread(hash) & mask;
+        while (keys[index] != null) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = beaconId;
+        hashes[index] = hash;
+        size++;
+        return index;
+    }
+
+    private void removeAt(int index) {
+        int mask = keys.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (keys[next] != null) {
+            int home = spread(hashes[next]) & mask;
+            // move the entry back if its home slot is not within (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                move(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = null;
+        pairingIds[hole] = null;
+        size--;
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        hashes[to] = hashes[from];
+        lastBeaconTimes[to] = lastBeaconTimes[from];
+        scanPauseTimes[to] = scanPauseTimes[from];
+        pauseBases[to] = pauseBases[from];
+        eventMasks[to] = eventMasks[from];
+        pairingIds[to] = pairingIds[from];
+        queuedExitKeys[to] = queuedExitKeys[from];
+    }
+
+    private void grow() {
+        BeaconId[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        long[] oldLastBeaconTimes = lastBeaconTimes;
+        long[] oldScanPauseTimes = scanPauseTimes;
+        long[] oldPauseBases = pauseBases;
+        int[] oldEventMasks = eventMasks;
+        String[] oldPairingIds = pairingIds;
+        long[] oldQueuedExitKeys = queuedExitKeys;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int index = insertKey(oldKeys[i], oldHashes[i]);
+                lastBeaconTimes[index] = oldLastBeaconTimes[i];
+                scanPauseTimes[index] = oldScanPauseTimes[i];
+                pauseBases[index] = oldPauseBases[i];
+                eventMasks[index] = oldEventMasks[i];
+                pairingIds[index] = oldPairingIds[i];
+                queuedExitKeys[index] = oldQueuedExitKeys[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new BeaconId[capacity];
+        hashes = new int[capacity];
+        lastBeaconTimes = new long[capacity];
+        scanPauseTimes = new long[capacity];
+        pauseBases = new long[capacity];
+        eventMasks = new int[capacity];
+        pairingIds = new String[capacity];
+        queuedExitKeys = new long[capacity];
+        size = 0;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,99 @@
+package com.sensorberg.sdk.scanner;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of (exit key, {@link BeaconId}) pairs, stored in parallel arrays. {@link BeaconMap} queues every
+ * entered beacon once and only re-queues it when its deadline comes up, so sightings never touch the heap.
+ * Entries may be stale; callers validate them against the {@link EnteredBeaconTable} when they are polled.
+ * <p>
+ * Not thread safe.
+ */
+final class ExitDeadlineQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] exitKeys = new long[INITIAL_CAPACITY];
+
+    private BeaconId[] beaconIds = new BeaconId[INITIAL_CAPACITY];
+
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        Arrays.fill(beaconIds, 0, size, null);
+        size = 0;
+    }
+
+    void add(long exitKey, BeaconId beaconId) {
+        if (size == exitKeys.length) {
+            exitKeys = Arrays.copyOf(exitKeys, size * 2);
+            beaconIds = Arrays.copyOf(beaconIds, size * 2);
+        }
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (exitKeys[parent] <= exitKey) {
+                break;
+            }
+            exitKeys[index] = exitKeys[parent];
+            beaconIds[index] = beaconIds[parent];
+            index = parent;
+        }
+        exitKeys[index] = exitKey;
+        beaconIds[index] = beaconId;
+    }
+
+    /**
+     * @return the smallest exit key, only valid if the queue is not empty
+     */
+    long peekExitKey() {
+        return exitKeys[0];
+    }
+
+    /**
+     * @return the {@link BeaconId} with the smallest exit key, only valid if the queue is not empty
+     */
+    BeaconId peekBeaconId() {
+        return beaconIds[0];
+    }
+
+    /**
+     * Removes the head of the queue.
+     */
+    void poll() {
+        int last = --size;
+        long exitKey = exitKeys[last];
+        BeaconId beaconId = beaconIds[last];
+        beaconIds[last] = null;
+        if (last == 0) {
+            return;
+        }
+        int index = 0;
+        int half = last >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < last && exitKeys[right] < exitKeys[child]) {
+                child = right;
+            }
+            if (exitKey <= exitKeys[child]) {
+                break;
+            }
+            exitKeys[index] = exitKeys[child];
+            beaconIds[index] = beaconIds[child];
+            index = child;
+        }
+        exitKeys[index] = exitKey;
+        beaconIds[index] = beaconId;
+    }
+}
@@ -8,10 +8,6 @@ import com.sensorberg.sdk.model.BeaconId;
  * Class {@link ScanHelper} provides convenience methods for {@link com.sensorberg.sdk.scanner.Scanner}. It is intended for internal use only.
  */
 public final class ScanHelper {
-    private static final byte[] ADVERTISEMENT_HEADER = new byte[]{(byte) 0xFF, 0x4C, 0x00, 0x02};
-    private static final int ADVERTISEMENT_HEADER_LENGTH = ADVERTISEMENT_HEADER.length;
-    private static final int MINIMUM_BEACON_PACKET_LENGTH = 26;
-
     // From: http://stackoverflow.com/questions/18906988/what-is-the-ibeacon-bluetooth-profile
     //
     // From: Core Bluetooth Spec v4, Vol 3, Part C, 11
@@ -39,40 +35,18 @@ public final class ScanHelper {
         // Private constructor to make class purely static
     }
 
+    /**
+     * Parses an advertisement into a {@link BeaconId} and its calibrated tx power. This allocates for every call,
+     * the scanner uses {@link BeaconAdvertisementParser} instead.
+     *
+     * @param advertisement the raw scan record
+     * @return the {@link BeaconId} and calibrated tx power, or null if this is not an iBeacon advertisement
+     */
     public static Pair<BeaconId, Integer> getBeaconID(byte[] advertisement) {
-        try {
-            int packetLength;
-            int offset = 0;
-            do {
-                packetLength = advertisement[offset]; //first byte has the length
-                offset++;
-                if (packetLength >= MINIMUM_BEACON_PACKET_LENGTH && matchesBeaconHeader(advertisement, offset)){
-                    return toBeaconData(advertisement, offset + ADVERTISEMENT_HEADER_LENGTH + 1); //ignore one more byte after the header
-                }
-                offset += packetLength; //let` move to the next package
-
-            } while (packetLength > 0 && offset < advertisement.length);
-            return null;
-        } catch (ArrayIndexOutOfBoundsException e){ //let´s be extra safe here in case the beacon advertising is broken.
+        BeaconAdvertisement beacon = new BeaconAdvertisement();
+        if (!BeaconAdvertisementParser.parse(advertisement, beacon)) {
             return null;
         }
-    }
-
-    private static Pair<BeaconId, Integer> toBeaconData(byte[] advertisement, int offset) {
-        byte[] beaconIdBytes = new byte[20];
-        java.lang.System.arraycopy(advertisement, offset, beaconIdBytes, 0, 20);
-        BeaconId beaconId = new BeaconId(beaconIdBytes);
-        int calibratedTXpower = (int) advertisement[offset + 20];
-        return Pair.create(beaconId, calibratedTXpower);
-    }
-
-
-    private static boolean matchesBeaconHeader(byte[] advertisement, int offset) {
-        for (int i = 0 ; i < ADVERTISEMENT_HEADER.length ; i++){
-            if (advertisement[i + offset] != ADVERTISEMENT_HEADER[i]){
-                return false;
-            }
-        }
-        return true;
+        return Pair.create(beacon.toBeaconId(), beacon.getCalibratedTxPower());
     }
 }
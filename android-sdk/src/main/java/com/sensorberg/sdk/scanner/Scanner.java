@@ -41,8 +41,19 @@ public class Scanner extends AbstractScanner {
         return -1000 - type;
     }
 
+    /**
+     * @param index the index a scheduled execution was posted with
+     * @return the {@link ScannerEvent} type of the scheduled execution
+     */
+    static int typeFor(int index) {
+        return -1000 - index;
+    }
+
     public void handlePlatformMessage(Bundle what){
-        int messageId = what.getInt(SCANNER_EVENT, -1);
+        handleScheduledExecution(what.getInt(SCANNER_EVENT, -1));
+    }
+
+    void handleScheduledExecution(int messageId) {
         if (messageId == ScannerEvent.UN_PAUSE_SCAN){
             getRunLoop().sendMessage(ScannerEvent.UN_PAUSE_SCAN);
         } else if(messageId == ScannerEvent.PAUSE_SCAN) {
@@ -8,6 +8,8 @@ public class DefaultSettings {
 
     public static final long DEFAULT_LAYOUT_UPDATE_INTERVAL = TimeConstants.ONE_DAY;
 
+    public static final long DEFAULT_CACHED_LAYOUT_MAX_AGE = 0;
+
     public static final long DEFAULT_HISTORY_UPLOAD_INTERVAL = 30 * TimeConstants.ONE_MINUTE;
 
     public static final long DEFAULT_SETTINGS_UPDATE_INTERVAL = TimeConstants.ONE_DAY;
@@ -22,6 +24,8 @@ public class DefaultSettings {
 
     public static final long DEFAULT_EXIT_TIMEOUT_MILLIS = 40 * TimeConstants.ONE_SECOND;
 
+    public static final long DEFAULT_EXIT_CHECK_RESOLUTION_MILLIS = TimeConstants.ONE_SECOND;
+
     public static final long DEFAULT_EXIT_FOREGROUND_GRACE_MILLIS = DEFAULT_FOREGROUND_SCAN_TIME / 2;
 
     public static final long DEFAULT_EXIT_BACKGROUND_GRACE_MILLIS = DEFAULT_BACKGROUND_SCAN_TIME / 2;
@@ -18,6 +18,14 @@ public class Settings {
     @SerializedName("network.beaconLayoutUpdateInterval")
     private long layoutUpdateInterval = DefaultSettings.DEFAULT_LAYOUT_UPDATE_INTERVAL;
 
+    /**
+     * resolve scan events against the cached layout while it is younger than this, 0 always asks the server
+     */
+    @Getter
+    @Expose
+    @SerializedName("network.cachedLayoutMaxAgeMillis")
+    private long cachedLayoutMaxAge = DefaultSettings.DEFAULT_CACHED_LAYOUT_MAX_AGE;
+
     @Getter
     @Expose
     @SerializedName("presenter.messageDelayWindowLength")
@@ -28,6 +36,14 @@ public class Settings {
     @SerializedName("scanner.exitTimeoutMillis")
     private long exitTimeoutMillis = DefaultSettings.DEFAULT_EXIT_TIMEOUT_MILLIS;
 
+    /**
+     * minimum time between two exit checks, exits that are due within this window are reported together
+     */
+    @Getter
+    @Expose
+    @SerializedName("scanner.exitCheckResolutionMillis")
+    private long exitCheckResolutionMillis = DefaultSettings.DEFAULT_EXIT_CHECK_RESOLUTION_MILLIS;
+
     @Getter
     @Expose
     @SerializedName("scanner.exitForegroundGraceMillis")
@@ -154,6 +170,8 @@ public class Settings {
         if (preferences != null) {
             exitTimeoutMillis = preferences
                     .getLong(SharedPreferencesKeys.Scanner.TIMEOUT_MILLIES, DefaultSettings.DEFAULT_EXIT_TIMEOUT_MILLIS);
+            exitCheckResolutionMillis = preferences
+                    .getLong(SharedPreferencesKeys.Scanner.EXIT_CHECK_RESOLUTION_MILLIS, DefaultSettings.DEFAULT_EXIT_CHECK_RESOLUTION_MILLIS);
             exitForegroundGraceMillis = preferences
                     .getLong(SharedPreferencesKeys.Scanner.TIMEOUT_GRACE_FOREGROUND_MILLIES, DefaultSettings.DEFAULT_EXIT_FOREGROUND_GRACE_MILLIS);
             exitBackgroundGraceMillis = preferences
@@ -193,6 +211,8 @@ public class Settings {
                     .getLong(SharedPreferencesKeys.Network.HISTORY_UPLOAD_INTERVAL, DefaultSettings.DEFAULT_HISTORY_UPLOAD_INTERVAL);
             layoutUpdateInterval = preferences
                     .getLong(SharedPreferencesKeys.Network.BEACON_LAYOUT_UPDATE_INTERVAL, DefaultSettings.DEFAULT_HISTORY_UPLOAD_INTERVAL);
+            cachedLayoutMaxAge = preferences
+                    .getLong(SharedPreferencesKeys.Network.CACHED_LAYOUT_MAX_AGE, DefaultSettings.DEFAULT_CACHED_LAYOUT_MAX_AGE);
             shouldRestoreBeaconStates = preferences.getBoolean(SharedPreferencesKeys.Scanner.SHOULD_RESTORE_BEACON_STATES,
                     DefaultSettings.DEFAULT_SHOULD_RESTORE_BEACON_STATE);
             beaconReportLevel = preferences.getInt(SharedPreferencesKeys.Network.BEACON_REPORT_LEVEL,
@@ -206,6 +226,8 @@ public class Settings {
 
     public Settings(long rev, Settings newSettings, SettingsUpdateCallback settingsUpdateCallback) {
         exitTimeoutMillis = newSettings.getExitTimeoutMillis();
+        cachedLayoutMaxAge = newSettings.getCachedLayoutMaxAge();
+        exitCheckResolutionMillis = newSettings.getExitCheckResolutionMillis();
         exitForegroundGraceMillis = newSettings.getExitForegroundGraceMillis();
         exitBackgroundGraceMillis = newSettings.getExitBackgroundGraceMillis();
         foreGroundScanTime = newSettings.getForeGroundScanTime();
@@ -262,6 +284,7 @@ public class Settings {
             }
 
             editor.putLong(SharedPreferencesKeys.Scanner.TIMEOUT_MILLIES, exitTimeoutMillis);
+            editor.putLong(SharedPreferencesKeys.Scanner.EXIT_CHECK_RESOLUTION_MILLIS, exitCheckResolutionMillis);
             editor.putLong(SharedPreferencesKeys.Scanner.TIMEOUT_GRACE_FOREGROUND_MILLIES, exitForegroundGraceMillis);
             editor.putLong(SharedPreferencesKeys.Scanner.TIMEOUT_GRACE_BACKGROUND_MILLIES, exitBackgroundGraceMillis);
             editor.putLong(SharedPreferencesKeys.Scanner.FORE_GROUND_SCAN_TIME, foreGroundScanTime);
@@ -283,6 +306,7 @@ public class Settings {
             editor.putLong(SharedPreferencesKeys.Network.TIME_BETWEEN_RESOLVE_RETRIES, millisBetweenRetries);
             editor.putLong(SharedPreferencesKeys.Network.HISTORY_UPLOAD_INTERVAL, historyUploadInterval);
             editor.putLong(SharedPreferencesKeys.Network.BEACON_LAYOUT_UPDATE_INTERVAL, layoutUpdateInterval);
+            editor.putLong(SharedPreferencesKeys.Network.CACHED_LAYOUT_MAX_AGE, cachedLayoutMaxAge);
             editor.putInt(SharedPreferencesKeys.Network.BEACON_REPORT_LEVEL, beaconReportLevel);
             editor.putInt(SharedPreferencesKeys.Scanner.MIN_RSSI, scannerMinRssi);
             editor.putInt(SharedPreferencesKeys.Scanner.MAX_DISTANCE, scannerMaxDistance);
@@ -90,6 +90,10 @@ public class SettingsManager {
         return getSettings().getExitTimeoutMillis();
     }
 
+    public long getExitCheckResolutionMillis() {
+        return getSettings().getExitCheckResolutionMillis();
+    }
+
     public long getExitForegroundGraceMillis() {
         return getSettings().getExitForegroundGraceMillis();
     }
@@ -158,6 +162,10 @@ public class SettingsManager {
         return getSettings().getLayoutUpdateInterval();
     }
 
+    public long getCachedLayoutMaxAge() {
+        return getSettings().getCachedLayoutMaxAge();
+    }
+
     public long getSettingsUpdateInterval() {
         return getSettings().getSettingsUpdateInterval();
     }
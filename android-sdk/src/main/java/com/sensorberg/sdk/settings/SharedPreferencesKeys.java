@@ -6,6 +6,8 @@ public final class SharedPreferencesKeys {
 
         public static final String TIMEOUT_MILLIES = "com.sensorberg.preferences.scanner.exitTimeoutMillis";
 
+        public static final String EXIT_CHECK_RESOLUTION_MILLIS = "com.sensorberg.preferences.scanner.exitCheckResolutionMillis";
+
         public static final String TIMEOUT_GRACE_FOREGROUND_MILLIES = "com.sensorberg.preferences.scanner.exitForegroundGraceMillis";
 
         public static final String TIMEOUT_GRACE_BACKGROUND_MILLIES = "com.sensorberg.preferences.scanner.exitBackgroundGraceMillis";
@@ -84,12 +86,16 @@ public final class SharedPreferencesKeys {
 
         public static final String BEACON_LAYOUT_UPDATE_INTERVAL = "com.sensorberg.preferences.settings.timeBetweenBeaconLayoutUpdates";
 
+        public static final String CACHED_LAYOUT_MAX_AGE = "com.sensorberg.preferences.settings.cachedLayoutMaxAgeMillis";
+
         public static final String ADVERTISING_IDENTIFIER = "com.sensorberg.preferences.network.advertisingIdentifier";
 
         public static final String BEACON_REPORT_LEVEL = "com.sensorberg.preferences.network.beaconReportLevel";
 
         public static final String KEY_RESOLVE_RESPONSE = "com.sensorberg.preferences.transport.resolved";
 
+        public static final String KEY_RESOLVE_RESPONSE_TIMESTAMP = "com.sensorberg.preferences.transport.resolvedTimestamp";
+
         private Network() {
             throw new IllegalAccessError("Utility class");
         }
@@ -1,12 +1,17 @@
 package com.sensorberg.sdk.storage;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.location.GeofenceCodec;
 
 public class DBHelper extends SQLiteOpenHelper {
 
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 3;
     public static final String DATABASE_NAME = "sensorberg.db";
 
     private static DBHelper instance = null;
@@ -14,7 +19,23 @@ public class DBHelper extends SQLiteOpenHelper {
     public static final String _ID ="_id";
 
     public static final String TABLE_GEOFENCES = "geofences";
-    public static final String TG_FENCE = "fence";  //Geohash + zero padded radius as received from backend.
+    public static final String TG_CODE = "code";    //Fence packed by GeofenceCodec, it is the rowid.
+
+    public static final String TABLE_HISTORY_SCANS = "history_scans";
+    public static final String TABLE_HISTORY_ACTIONS = "history_actions";
+    public static final String TABLE_HISTORY_CONVERSIONS = "history_conversions";
+    public static final String TABLE_HISTORY_SUPPRESSION = "history_suppression";
+
+    public static final String TH_TRIGGER = "trigger";
+    public static final String TH_PID = "pid";
+    public static final String TH_DT = "dt";
+    public static final String TH_LOCATION = "location";
+    public static final String TH_PAIRING_ID = "pairing_id";
+    public static final String TH_EID = "eid";
+    public static final String TH_UUID = "uuid";
+    public static final String TH_ACTION = "action";
+    public static final String TH_TYPE = "type";
+    public static final String TH_SHOWN_AT = "shown_at";
 
     private DBHelper(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
         super(context, name, factory, version);
@@ -30,13 +51,75 @@ public class DBHelper extends SQLiteOpenHelper {
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(
                 "CREATE TABLE IF NOT EXISTS " + TABLE_GEOFENCES + " (" +
-                        TG_FENCE + " TEXT PRIMARY KEY " +
+                        TG_CODE + " INTEGER PRIMARY KEY " +
+                ")"
+        );
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS " + TABLE_HISTORY_SCANS + " (" +
+                        _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        TH_TRIGGER + " INTEGER, " +
+                        TH_PID + " TEXT, " +
+                        TH_DT + " INTEGER, " +
+                        TH_LOCATION + " TEXT, " +
+                        TH_PAIRING_ID + " TEXT" +
+                ")"
+        );
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS " + TABLE_HISTORY_ACTIONS + " (" +
+                        _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        TH_EID + " TEXT, " +
+                        TH_DT + " INTEGER, " +
+                        TH_TRIGGER + " INTEGER, " +
+                        TH_PID + " TEXT, " +
+                        TH_LOCATION + " TEXT, " +
+                        TH_UUID + " TEXT" +
+                ")"
+        );
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS " + TABLE_HISTORY_CONVERSIONS + " (" +
+                        TH_ACTION + " TEXT PRIMARY KEY, " +
+                        TH_DT + " INTEGER, " +
+                        TH_TYPE + " INTEGER, " +
+                        TH_LOCATION + " TEXT" +
+                ")"
+        );
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS " + TABLE_HISTORY_SUPPRESSION + " (" +
+                        TH_UUID + " TEXT PRIMARY KEY, " +
+                        TH_SHOWN_AT + " INTEGER" +
                 ")"
         );
     }
 
     @Override
-    public void onUpgrade(SQLiteDatabase db, int i, int i1) {
-        //Nuffin yet.
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion != 1) {
+            throw new IllegalStateException("Can not upgrade the database from version " + oldVersion + " to " + newVersion);
+        }
+        //The released version 1 only has the geofences table, with the fences as strings. The table is renamed to
+        //create the current tables next to it, its fences are copied over as codes and it is dropped afterwards.
+        db.execSQL("ALTER TABLE " + TABLE_GEOFENCES + " RENAME TO " + TABLE_GEOFENCES + "_old");
+        onCreate(db);
+        migrateFences(db);
+        db.execSQL("DROP TABLE " + TABLE_GEOFENCES + "_old");
+    }
+
+    private static void migrateFences(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("SELECT fence FROM " + TABLE_GEOFENCES + "_old", null);
+        SQLiteStatement insert = db.compileStatement(
+                "INSERT OR IGNORE INTO " + TABLE_GEOFENCES + " (" + TG_CODE + ") VALUES (?)");
+        try {
+            while (cursor.moveToNext()) {
+                try {
+                    insert.bindLong(1, GeofenceCodec.encode(cursor.getString(0)));
+                    insert.executeInsert();
+                } catch (IllegalArgumentException ex) {
+                    Logger.log.geofenceError("Invalid geofence: " + cursor.getString(0), ex);
+                }
+            }
+        } finally {
+            insert.close();
+            cursor.close();
+        }
     }
 }
@@ -0,0 +1,369 @@
+package com.sensorberg.sdk.storage;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.model.persistence.ActionConversion;
+import com.sensorberg.sdk.model.persistence.BeaconAction;
+import com.sensorberg.sdk.model.persistence.BeaconScan;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Class {@link HistoryStore} keeps the beacon scans, beacon actions and action conversions that still have to be
+ * uploaded, as well as the presentation times used for action suppression, in the sdk database. Every event is a
+ * single row insert, uploads read at most one batch and delete exactly the rows of that batch by id, so neither
+ * memory nor I/O grow with the number of pending events. The pending rows are counted once when the store is opened
+ * and kept up to date on every insert and delete, so the counts never scan the tables.
+ */
+public class HistoryStore {
+
+    private static final int NO_ID = -1;
+
+    private final SQLiteDatabase db;
+
+    private SQLiteStatement insertScan;
+
+    private SQLiteStatement insertAction;
+
+    private int scanCount;
+
+    private int actionCount;
+
+    private int conversionCount;
+
+    public HistoryStore(Context context) {
+        db = DBHelper.getInstance(context).getWritableDatabase();
+        loadCounts();
+    }
+
+    /**
+     * One upload worth of history, see {@link #loadBatch(int)}.
+     */
+    public static class Batch {
+
+        @Getter
+        private final List<BeaconScan> scans;
+
+        @Getter
+        private final List<BeaconAction> actions;
+
+        @Getter
+        private final List<ActionConversion> conversions;
+
+        private final long maxScanId;
+
+        private final long maxActionId;
+
+        Batch(List<BeaconScan> scans, long maxScanId, List<BeaconAction> actions, long maxActionId, List<ActionConversion> conversions) {
+            this.scans = scans;
+            this.maxScanId = maxScanId;
+            this.actions = actions;
+            this.maxActionId = maxActionId;
+            this.conversions = conversions;
+        }
+
+        public boolean isEmpty() {
+            return scans.isEmpty() && actions.isEmpty() && conversions.isEmpty();
+        }
+    }
+
+    public synchronized void addScan(BeaconScan scan) {
+        if (insertScan == null) {
+            insertScan = db.compileStatement("INSERT INTO " + DBHelper.TABLE_HISTORY_SCANS + " ("
+                    + DBHelper.TH_TRIGGER + ", " + DBHelper.TH_PID + ", " + DBHelper.TH_DT + ", "
+                    + DBHelper.TH_LOCATION + ", " + DBHelper.TH_PAIRING_ID + ") VALUES (?, ?, ?, ?, ?)");
+        }
+        insertScan.clearBindings();
+        insertScan.bindLong(1, scan.getTrigger());
+        bind(insertScan, 2, scan.getPid());
+        insertScan.bindLong(3, scan.getCreatedAt());
+        bind(insertScan, 4, scan.getGeohash());
+        bind(insertScan, 5, scan.getPairingId());
+        insertScan.executeInsert();
+        scanCount++;
+    }
+
+    public synchronized void addAction(BeaconAction action) {
+        if (insertAction == null) {
+            insertAction = db.compileStatement("INSERT INTO " + DBHelper.TABLE_HISTORY_ACTIONS + " ("
+                    + DBHelper.TH_EID + ", " + DBHelper.TH_DT + ", " + DBHelper.TH_TRIGGER + ", "
+                    + DBHelper.TH_PID + ", " + DBHelper.TH_LOCATION + ", " + DBHelper.TH_UUID + ") VALUES (?, ?, ?, ?, ?, ?)");
+        }
+        insertAction.clearBindings();
+        bind(insertAction, 1, action.getActionId());
+        insertAction.bindLong(2, action.getTimeOfPresentation());
+        insertAction.bindLong(3, action.getTrigger());
+        bind(insertAction, 4, action.getPid());
+        bind(insertAction, 5, action.getGeohash());
+        bind(insertAction, 6, action.getActionInstanceUuid());
+        insertAction.executeInsert();
+        actionCount++;
+    }
+
+    /**
+     * Stores {@code incoming} unless a conversion of the same or a higher type is already pending for its action.
+     *
+     * @param incoming the conversion
+     * @return true if the conversion was stored
+     */
+    public synchronized boolean putConversion(ActionConversion incoming) {
+        boolean replaced;
+        db.beginTransaction();
+        try {
+            Cursor cursor = db.rawQuery("SELECT " + DBHelper.TH_TYPE + " FROM " + DBHelper.TABLE_HISTORY_CONVERSIONS
+                    + " WHERE " + DBHelper.TH_ACTION + " = ?", new String[]{incoming.getActionInstanceUuid()});
+            try {
+                replaced = cursor.moveToFirst();
+                if (replaced && incoming.getType() <= cursor.getInt(0)) {
+                    if (Logger.isVerboseLoggingEnabled()) {
+                        Logger.verbose("Conversion {} type change rejected. Type can be changed only to higher. "
+                                + "Existing type: {} Incoming type: {}", incoming.getActionInstanceUuid(), cursor.getInt(0), incoming.getType());
+                    }
+                    return false;
+                }
+            } finally {
+                cursor.close();
+            }
+            writeConversion(incoming);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (!replaced) {
+            conversionCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the oldest pending scans and actions and the pending conversions, at most {@code limit} of each. They
+     * are copied into model objects, so {@code limit} bounds the memory of an upload.
+     *
+     * @param limit the maximum number of items per list
+     * @return the batch, to be passed to {@link #deleteBatch(Batch)} once it was uploaded
+     */
+    public synchronized Batch loadBatch(int limit) {
+        List<BeaconScan> scans = new ArrayList<>();
+        long maxScanId = NO_ID;
+        Cursor cursor = db.rawQuery("SELECT " + DBHelper._ID + ", " + DBHelper.TH_TRIGGER + ", " + DBHelper.TH_PID + ", "
+                + DBHelper.TH_DT + ", " + DBHelper.TH_LOCATION + ", " + DBHelper.TH_PAIRING_ID
+                + " FROM " + DBHelper.TABLE_HISTORY_SCANS + " ORDER BY " + DBHelper._ID + " LIMIT " + limit, null);
+        try {
+            while (cursor.moveToNext()) {
+                maxScanId = cursor.getLong(0);
+                BeaconScan scan = new BeaconScan();
+                scan.setTrigger(cursor.getInt(1));
+                scan.setPid(cursor.getString(2));
+                scan.setCreatedAt(cursor.getLong(3));
+                scan.setGeohash(cursor.getString(4));
+                scan.setPairingId(cursor.getString(5));
+                scans.add(scan);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        List<BeaconAction> actions = new ArrayList<>();
+        long maxActionId = NO_ID;
+        cursor = db.rawQuery("SELECT " + DBHelper._ID + ", " + DBHelper.TH_EID + ", " + DBHelper.TH_DT + ", "
+                + DBHelper.TH_TRIGGER + ", " + DBHelper.TH_PID + ", " + DBHelper.TH_LOCATION + ", " + DBHelper.TH_UUID
+                + " FROM " + DBHelper.TABLE_HISTORY_ACTIONS + " ORDER BY " + DBHelper._ID + " LIMIT " + limit, null);
+        try {
+            while (cursor.moveToNext()) {
+                maxActionId = cursor.getLong(0);
+                BeaconAction action = new BeaconAction();
+                action.setActionId(cursor.getString(1));
+                action.setTimeOfPresentation(cursor.getLong(2));
+                action.setTrigger(cursor.getInt(3));
+                action.setPid(cursor.getString(4));
+                action.setGeohash(cursor.getString(5));
+                action.setActionInstanceUuid(cursor.getString(6));
+                actions.add(action);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        List<ActionConversion> conversions = new ArrayList<>();
+        cursor = db.rawQuery("SELECT " + DBHelper.TH_ACTION + ", " + DBHelper.TH_TYPE + ", " + DBHelper.TH_DT + ", "
+                + DBHelper.TH_LOCATION + " FROM " + DBHelper.TABLE_HISTORY_CONVERSIONS + " LIMIT " + limit, null);
+        try {
+            while (cursor.moveToNext()) {
+                ActionConversion conversion = new ActionConversion(cursor.getString(0), cursor.getInt(1), cursor.getLong(2));
+                conversion.setGeohash(cursor.getString(3));
+                conversions.add(conversion);
+            }
+        } finally {
+            cursor.close();
+        }
+        return new Batch(scans, maxScanId, actions, maxActionId, conversions);
+    }
+
+    /**
+     * Deletes the rows of an uploaded batch. Conversions whose type was raised after the batch was loaded are kept,
+     * so the higher type is uploaded as well.
+     *
+     * @param batch a batch returned by {@link #loadBatch(int)}
+     */
+    public synchronized void deleteBatch(Batch batch) {
+        int scans = 0;
+        int actions = 0;
+        int conversions = 0;
+        db.beginTransaction();
+        try {
+            if (batch.maxScanId != NO_ID) {
+                scans = db.delete(DBHelper.TABLE_HISTORY_SCANS, DBHelper._ID + " <= ?", new String[]{String.valueOf(batch.maxScanId)});
+            }
+            if (batch.maxActionId != NO_ID) {
+                actions = db.delete(DBHelper.TABLE_HISTORY_ACTIONS, DBHelper._ID + " <= ?", new String[]{String.valueOf(batch.maxActionId)});
+            }
+            for (ActionConversion conversion : batch.conversions) {
+                conversions += db.delete(DBHelper.TABLE_HISTORY_CONVERSIONS, DBHelper.TH_ACTION + " = ? AND " + DBHelper.TH_TYPE + " = ?",
+                        new String[]{conversion.getActionInstanceUuid(), String.valueOf(conversion.getType())});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        scanCount -= scans;
+        actionCount -= actions;
+        conversionCount -= conversions;
+    }
+
+    /**
+     * Loads the suppression times, dropping those that were recorded at or before {@code oldest}.
+     *
+     * @param oldest the oldest presentation time to keep
+     * @return action uuid to last presentation time
+     */
+    public synchronized HashMap<String, Long> loadSuppressionTimes(long oldest) {
+        db.delete(DBHelper.TABLE_HISTORY_SUPPRESSION, DBHelper.TH_SHOWN_AT + " <= ?", new String[]{String.valueOf(oldest)});
+        HashMap<String, Long> values = new HashMap<>();
+        Cursor cursor = db.rawQuery("SELECT " + DBHelper.TH_UUID + ", " + DBHelper.TH_SHOWN_AT
+                + " FROM " + DBHelper.TABLE_HISTORY_SUPPRESSION, null);
+        try {
+            while (cursor.moveToNext()) {
+                values.put(cursor.getString(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return values;
+    }
+
+    public synchronized void putSuppressionTime(String actionUuid, long shownAt) {
+        db.execSQL("INSERT OR REPLACE INTO " + DBHelper.TABLE_HISTORY_SUPPRESSION + " (" + DBHelper.TH_UUID + ", "
+                + DBHelper.TH_SHOWN_AT + ") VALUES (?, ?)", new Object[]{actionUuid, shownAt});
+    }
+
+    /**
+     * Imports history that was kept elsewhere before, in a single transaction.
+     *
+     * @return true once the transaction is committed, false if nothing was imported
+     */
+    public synchronized boolean importAll(List<BeaconScan> scans, List<BeaconAction> actions,
+                                          Map<String, ActionConversion> conversions, Map<String, Long> suppressionTimes) {
+        try {
+            db.beginTransaction();
+            try {
+                for (BeaconScan scan : scans) {
+                    addScan(scan);
+                }
+                for (BeaconAction action : actions) {
+                    addAction(action);
+                }
+                for (ActionConversion conversion : conversions.values()) {
+                    writeConversion(conversion);
+                }
+                for (Map.Entry<String, Long> entry : suppressionTimes.entrySet()) {
+                    putSuppressionTime(entry.getKey(), entry.getValue());
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                //commits, so it fails too if the commit fails
+                db.endTransaction();
+            }
+            return true;
+        } catch (SQLException e) {
+            Logger.log.logError("could not import the beacon history", e);
+            return false;
+        } finally {
+            //the inserts counted rows that a rollback removed, and replaced conversions were counted twice
+            loadCounts();
+        }
+    }
+
+    public synchronized int getScanCount() {
+        return scanCount;
+    }
+
+    public synchronized int getActionCount() {
+        return actionCount;
+    }
+
+    public synchronized int getConversionCount() {
+        return conversionCount;
+    }
+
+    /**
+     * @return the scans, actions and conversions that wait to be uploaded
+     */
+    public synchronized int getBacklog() {
+        return scanCount + actionCount + conversionCount;
+    }
+
+    public synchronized void clear() {
+        db.beginTransaction();
+        try {
+            db.delete(DBHelper.TABLE_HISTORY_SCANS, null, null);
+            db.delete(DBHelper.TABLE_HISTORY_ACTIONS, null, null);
+            db.delete(DBHelper.TABLE_HISTORY_CONVERSIONS, null, null);
+            db.delete(DBHelper.TABLE_HISTORY_SUPPRESSION, null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        scanCount = 0;
+        actionCount = 0;
+        conversionCount = 0;
+    }
+
+    private void writeConversion(ActionConversion conversion) {
+        db.execSQL("INSERT OR REPLACE INTO " + DBHelper.TABLE_HISTORY_CONVERSIONS + " (" + DBHelper.TH_ACTION + ", "
+                        + DBHelper.TH_DT + ", " + DBHelper.TH_TYPE + ", " + DBHelper.TH_LOCATION + ") VALUES (?, ?, ?, ?)",
+                new Object[]{conversion.getActionInstanceUuid(), conversion.getDate(), conversion.getType(), conversion.getGeohash()});
+    }
+
+    private void loadCounts() {
+        scanCount = count(DBHelper.TABLE_HISTORY_SCANS);
+        actionCount = count(DBHelper.TABLE_HISTORY_ACTIONS);
+        conversionCount = count(DBHelper.TABLE_HISTORY_CONVERSIONS);
+    }
+
+    private int count(String table) {
+        Cursor cursor = db.rawQuery("SELECT count(1) FROM " + table, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.sensorberg.sdk.storage;
+
+import android.content.Context;
+
+import com.google.gson.JsonParseException;
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.model.server.ResolveResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Class {@link LayoutSnapshotStore} keeps the last layout in a file of its own, in the binary format of
+ * {@link ResolveResponse#writeSnapshot(java.io.DataOutput)}. The file starts with a versioned header holding a
+ * checksum of the layout, so a corrupt or outdated snapshot is ignored and a layout with the same content is never
+ * written twice. Nothing is read before {@link #load()} is called.
+ */
+public class LayoutSnapshotStore {
+
+    private static final String FILE_NAME = "com.sensorberg.sdk.layout.snapshot";
+
+    private static final int MAGIC = 0x53424c53;
+
+    private static final int VERSION = 1;
+
+    private static final long UNKNOWN = -1;
+
+    private final File file;
+
+    /**
+     * checksum of the layout in {@link #file}, {@link #UNKNOWN} until the header was read or written
+     */
+    private long checksum = UNKNOWN;
+
+    public LayoutSnapshotStore(Context context) {
+        this(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    public LayoutSnapshotStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the stored layout, or null if there is none or it can not be read
+     */
+    public synchronized ResolveResponse load() {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            long storedChecksum = readHeader(in);
+            if (storedChecksum == UNKNOWN) {
+                Logger.log.verbose("discarding layout snapshot with an unknown format");
+                discard();
+                return null;
+            }
+            int length = in.readInt();
+            byte[] payload = new byte[length < 0 || length > file.length() ? 0 : length];
+            in.readFully(payload);
+            if (payload.length != length || checksum(payload) != storedChecksum) {
+                Logger.log.verbose("discarding corrupt layout snapshot");
+                discard();
+                return null;
+            }
+            checksum = storedChecksum;
+            return ResolveResponse.readSnapshot(new DataInputStream(new ByteArrayInputStream(payload)));
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            Logger.log.logError("could not read the layout snapshot", e);
+            discard();
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Replaces the stored layout with {@code layout} unless it has the same content.
+     *
+     * @return true if the file was written
+     */
+    public synchronized boolean save(ResolveResponse layout) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            layout.writeSnapshot(new DataOutputStream(bytes));
+            byte[] payload = bytes.toByteArray();
+            long newChecksum = checksum(payload);
+            if (newChecksum == storedChecksum()) {
+                return false;
+            }
+
+            File temp = new File(file.getPath() + ".tmp");
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(newChecksum);
+                out.writeInt(payload.length);
+                out.write(payload);
+            } finally {
+                close(out);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("could not rename " + temp + " to " + file);
+            }
+            checksum = newChecksum;
+            return true;
+        } catch (IOException e) {
+            Logger.log.logError("could not write the layout snapshot", e);
+            checksum = UNKNOWN;
+            return false;
+        }
+    }
+
+    public synchronized void clear() {
+        discard();
+    }
+
+    /**
+     * Deletes the file, so an unreadable snapshot is never mistaken for an up to date one by {@link #save(ResolveResponse)}.
+     */
+    private void discard() {
+        if (file.exists() && !file.delete()) {
+            Logger.log.verbose("could not delete the layout snapshot");
+        }
+        checksum = UNKNOWN;
+    }
+
+    private long storedChecksum() {
+        if (checksum == UNKNOWN && file.exists()) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new FileInputStream(file));
+                checksum = readHeader(in);
+            } catch (IOException e) {
+                checksum = UNKNOWN;
+            } finally {
+                close(in);
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * @return the checksum of the payload, or {@link #UNKNOWN} if the file is not a snapshot of this version
+     */
+    private static long readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return UNKNOWN;
+        }
+        return in.readLong();
+    }
+
+    private static long checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return crc.getValue();
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                //nothing left to do
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.sensorberg.sdk;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TheLogRingBufferShould {
+
+    private LogRingBuffer tested;
+
+    private final List<String> written = new ArrayList<>();
+
+    private final LogRingBuffer.Writer writer = new LogRingBuffer.Writer() {
+        @Override
+        public void write(int priority, String message, Throwable cause) {
+            synchronized (written) {
+                written.add(message);
+                written.notifyAll();
+            }
+        }
+    };
+
+    @Before
+    public void setUp() {
+        tested = new LogRingBuffer(4, writer);
+    }
+
+    @Test
+    public void write_lines_in_order() {
+        tested.append(android.util.Log.DEBUG, "one", null);
+        tested.append(android.util.Log.ERROR, "two", null);
+
+        assertThat(tested.drain()).isEqualTo(2);
+
+        assertThat(written).containsExactly("one", "two");
+        assertThat(tested.drain()).isEqualTo(0);
+    }
+
+    @Test
+    public void report_lines_that_were_overwritten() {
+        for (int i = 0; i < 6; i++) {
+            tested.append(android.util.Log.DEBUG, "line " + i, null);
+        }
+
+        assertThat(tested.drain()).isEqualTo(4);
+
+        assertThat(written).hasSize(5);
+        assertThat(written.get(0)).startsWith("2 log lines were dropped");
+        assertThat(written.subList(1, 5)).containsExactly("line 2", "line 3", "line 4", "line 5");
+    }
+
+    @Test
+    public void keep_the_last_lines_after_writing_them() {
+        for (int i = 0; i < 6; i++) {
+            tested.append(i == 5 ? android.util.Log.ERROR : android.util.Log.DEBUG, "line " + i, null);
+        }
+        tested.drain();
+
+        List<String> recent = tested.recent();
+
+        assertThat(recent).hasSize(4);
+        assertThat(recent.get(0)).endsWith(" D line 2");
+        assertThat(recent.get(3)).endsWith(" E line 5");
+    }
+
+    @Test
+    public void write_an_error_and_the_lines_before_it_right_away() {
+        tested.append(android.util.Log.DEBUG, "one", null);
+
+        tested.appendAndDrain(android.util.Log.ERROR, "failed", null);
+
+        assertThat(written).containsExactly("one", "failed");
+        assertThat(tested.drain()).isEqualTo(0);
+    }
+
+    @Test
+    public void write_lines_on_its_own_thread() throws Exception {
+        final CountDownLatch writtenOnOtherThread = new CountDownLatch(1);
+        final Thread caller = Thread.currentThread();
+        LogRingBuffer buffer = new LogRingBuffer(4, new LogRingBuffer.Writer() {
+            @Override
+            public void write(int priority, String message, Throwable cause) {
+                if (Thread.currentThread() != caller) {
+                    writtenOnOtherThread.countDown();
+                }
+            }
+        });
+        buffer.start("test");
+
+        buffer.append(android.util.Log.DEBUG, "line", null);
+
+        assertThat(writtenOnOtherThread.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void fill_in_the_arguments_of_a_template() {
+        assertThat(Logger.format("scanning for {} millis", 10L, null, null)).isEqualTo("scanning for 10 millis");
+        assertThat(Logger.format("{} and {} and {}", "a", 2, true)).isEqualTo("a and 2 and true");
+        assertThat(Logger.format("{} without {}", "one", null, null)).isEqualTo("one without null");
+        assertThat(Logger.format("no placeholder", "unused", null, null)).isEqualTo("no placeholder");
+    }
+}
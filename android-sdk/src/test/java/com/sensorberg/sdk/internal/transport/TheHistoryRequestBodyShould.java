@@ -0,0 +1,98 @@
+package com.sensorberg.sdk.internal.transport;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.sensorberg.sdk.internal.interfaces.Clock;
+import com.sensorberg.sdk.internal.transport.model.HistoryBody;
+import com.sensorberg.sdk.model.ISO8601TypeAdapter;
+import com.sensorberg.sdk.model.persistence.ActionConversion;
+import com.sensorberg.sdk.model.persistence.BeaconAction;
+import com.sensorberg.sdk.model.persistence.BeaconScan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TheHistoryRequestBodyShould {
+
+    private Gson gson;
+
+    private HistoryBody body;
+
+    @Before
+    public void setUp() {
+        gson = new GsonBuilder()
+                .excludeFieldsWithoutExposeAnnotation()
+                .registerTypeAdapter(Date.class, ISO8601TypeAdapter.DATE_ADAPTER)
+                .setLenient()
+                .create();
+
+        List<BeaconScan> scans = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            BeaconScan scan = new BeaconScan();
+            scan.setPid("7367672374000000ffff0000ffff0001000010000" + i);
+            scan.setTrigger(1);
+            scan.setCreatedAt(1000 + i);
+            scan.setGeohash(i == 0 ? null : "u33db8mmzj1t");
+            scans.add(scan);
+        }
+        BeaconAction action = new BeaconAction();
+        action.setActionId("c7d4bd7c-2e9f-4fb7-8ac6-e4dfb1eaf4c9");
+        action.setActionInstanceUuid("3e2b0c80-96f3-4c8e-8b58-3b3b6ec0d5f4");
+        action.setTrigger(2);
+        action.setTimeOfPresentation(2000);
+        ActionConversion conversion = new ActionConversion("3e2b0c80-96f3-4c8e-8b58-3b3b6ec0d5f4", ActionConversion.TYPE_SUCCESS, 3000);
+
+        body = new HistoryBody(scans, Collections.singletonList(action), Collections.singletonList(conversion), new Clock() {
+            @Override
+            public long now() {
+                return 4000;
+            }
+
+            @Override
+            public long elapsedRealtime() {
+                return 4000;
+            }
+        });
+    }
+
+    @Test
+    public void write_the_same_json_as_gson() throws Exception {
+        Buffer buffer = new Buffer();
+
+        new HistoryRequestBody(gson, body, false).writeTo(buffer);
+
+        assertThat(buffer.readUtf8()).isEqualTo(gson.toJson(body));
+    }
+
+    @Test
+    public void write_gzip_compressed_json() throws Exception {
+        Buffer buffer = new Buffer();
+
+        new HistoryRequestBody(gson, body, true).writeTo(buffer);
+
+        assertThat(Okio.buffer(new GzipSource(buffer)).readUtf8()).isEqualTo(gson.toJson(body));
+    }
+
+    @Test
+    public void be_writable_more_than_once() throws Exception {
+        HistoryRequestBody tested = new HistoryRequestBody(gson, body, false);
+        Buffer first = new Buffer();
+        Buffer second = new Buffer();
+
+        tested.writeTo(first);
+        tested.writeTo(second);
+
+        assertThat(second.readUtf8()).isEqualTo(first.readUtf8());
+    }
+}
@@ -0,0 +1,41 @@
+package com.sensorberg.sdk.internal.transport;
+
+import org.junit.Test;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TheMetricsInterceptorShould {
+
+    private static final String API_KEY = "f257de3b91d141aa93b6a9b39c97b83df257de3b91d141aa93b6a9b39c97b83d";
+
+    @Test
+    public void count_the_paths_of_every_backend_version_under_their_endpoint() {
+        assertThat(endpointOf("GET", "/api/v2/sdk/gateways/" + API_KEY + "/interactions.json")).isSameAs(MetricsInterceptor.LAYOUT);
+        assertThat(endpointOf("GET", "/api/v1/sdk/gateways/" + API_KEY + "/interactions.json")).isSameAs(MetricsInterceptor.LAYOUT);
+        assertThat(endpointOf("GET", "/layout")).isSameAs(MetricsInterceptor.LAYOUT);
+        assertThat(endpointOf("POST", "/api/v2/sdk/gateways/" + API_KEY + "/analytics.json")).isSameAs(MetricsInterceptor.HISTORY);
+        assertThat(endpointOf("POST", "/api/v1/sdk/events.json")).isSameAs(MetricsInterceptor.HISTORY);
+        assertThat(endpointOf("POST", "/layout")).isSameAs(MetricsInterceptor.HISTORY);
+        assertThat(endpointOf("GET", "/api/v2/sdk/gateways/" + API_KEY + "/settings.json")).isSameAs(MetricsInterceptor.SETTINGS);
+        assertThat(endpointOf("GET", "/applications/" + API_KEY + "/settings/android")).isSameAs(MetricsInterceptor.SETTINGS);
+    }
+
+    @Test
+    public void count_any_other_path_as_one_endpoint() {
+        assertThat(endpointOf("GET", "/")).isSameAs(MetricsInterceptor.OTHER);
+        assertThat(endpointOf("GET", "/beacons/1337")).isSameAs(MetricsInterceptor.OTHER);
+        assertThat(endpointOf("GET", "/beacons/1338")).isSameAs(MetricsInterceptor.OTHER);
+    }
+
+    private static MetricsInterceptor.Endpoint endpointOf(String method, String path) {
+        RequestBody body = "POST".equals(method) ? RequestBody.create(MediaType.parse("application/json"), "{}") : null;
+        return MetricsInterceptor.endpointOf(new Request.Builder()
+                .url("https://portal.sensorberg-cdn.com" + path)
+                .method(method, body)
+                .build());
+    }
+}
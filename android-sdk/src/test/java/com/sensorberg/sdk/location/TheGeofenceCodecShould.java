@@ -0,0 +1,77 @@
+package com.sensorberg.sdk.location;
+
+import com.sensorberg.sdk.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ch.hsr.geohash.GeoHash;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.offset;
+
+public class TheGeofenceCodecShould {
+
+    @Before
+    public void setUp() throws Exception {
+        Logger.log = Logger.QUIET_LOG;
+    }
+
+    @Test
+    public void decode_the_fence_it_encoded() {
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            String fence = GeoHash.withCharacterPrecision(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, 8)
+                    .toBase32() + String.format("%06d", 1 + random.nextInt(999999));
+
+            long code = GeofenceCodec.encode(fence);
+
+            assertThat(GeofenceCodec.decode(code)).isEqualTo(fence);
+            assertThat(GeofenceCodec.getGeohash(code)).isEqualTo(fence.substring(0, 8));
+            assertThat(GeofenceCodec.getRadius(code)).isEqualTo(Integer.parseInt(fence.substring(8)));
+        }
+    }
+
+    @Test
+    public void find_the_center_of_the_geohash() {
+        Random random = new Random(5);
+        for (int i = 0; i < 1000; i++) {
+            GeoHash hash = GeoHash.fromGeohashString(
+                    GeoHash.withCharacterPrecision(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, 8).toBase32());
+
+            long code = GeofenceCodec.encode(hash.toBase32() + "000100");
+
+            assertThat(GeofenceCodec.getLatitude(code)).isEqualTo(hash.getPoint().getLatitude(), offset(1e-9));
+            assertThat(GeofenceCodec.getLongitude(code)).isEqualTo(hash.getPoint().getLongitude(), offset(1e-9));
+        }
+    }
+
+    @Test
+    public void ignore_the_case_of_the_geohash() {
+        assertThat(GeofenceCodec.encode("S252W7M5999999")).isEqualTo(GeofenceCodec.encode("s252w7m5999999"));
+        assertThat(GeofenceCodec.decode(GeofenceCodec.encode("S252W7M5999999"))).isEqualTo("s252w7m5999999");
+    }
+
+    @Test
+    public void reject_invalid_fences() {
+        for (String invalid : Arrays.asList(null, "", "bbccddeef001122", "ccddeeff0022333", "ccddeeff000000",
+                "aaccddee000100", "ccddeeff00010x", "ccddéeff000100")) {
+            try {
+                GeofenceCodec.encode(invalid);
+                throw new AssertionError("accepted " + invalid);
+            } catch (IllegalArgumentException expected) {
+                //expected
+            }
+        }
+    }
+
+    @Test
+    public void encode_a_layout_sorted_without_duplicates_and_invalid_fences() {
+        long[] codes = GeofenceCodec.encodeAll(Arrays.asList("u33dc0cp000100", "s252w7m5999999", "invalid", "U33DC0CP000100"));
+
+        assertThat(codes).isEqualTo(new long[]{GeofenceCodec.encode("s252w7m5999999"), GeofenceCodec.encode("u33dc0cp000100")});
+    }
+}
@@ -0,0 +1,150 @@
+package com.sensorberg.sdk.location;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.offset;
+
+public class TheGeofenceIndexShould {
+
+    @Test
+    public void find_the_same_fences_as_comparing_all_of_them() {
+        Random random = new Random(7);
+        double[][] fences = new double[20000][];
+        GeofenceIndex.Builder builder = new GeofenceIndex.Builder(10);
+        for (int i = 0; i < fences.length; i++) {
+            //dense around a city, sparse everywhere else
+            fences[i] = i % 2 == 0
+                    ? new double[]{52.52 + random.nextGaussian() * 0.05, 13.40 + random.nextGaussian() * 0.08}
+                    : new double[]{random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180};
+            builder.add(i, fences[i][0], fences[i][1], 100);
+        }
+        GeofenceIndex tested = builder.build();
+
+        for (int query = 0; query < 50; query++) {
+            double latitude = query % 2 == 0 ? 52.5 + random.nextDouble() * 0.1 : random.nextDouble() * 180 - 90;
+            double longitude = query % 2 == 0 ? 13.3 + random.nextDouble() * 0.2 : random.nextDouble() * 360 - 180;
+
+            GeofenceIndex.Neighbours nearest = tested.nearest(latitude, longitude, 100);
+
+            List<Integer> expected = closest(fences, latitude, longitude, 100);
+            assertThat(nearest.size()).isEqualTo(100);
+            for (int i = 0; i < nearest.size(); i++) {
+                double expectedDistance = distance(fences[expected.get(i)], latitude, longitude);
+                assertThat(nearest.getDistance(i)).isEqualTo(expectedDistance, offset(1.0));
+            }
+        }
+    }
+
+    @Test
+    public void find_the_same_closest_edge_as_comparing_all_fences() {
+        Random random = new Random(11);
+        double[][] fences = new double[5000][];
+        int[] radii = new int[fences.length];
+        GeofenceIndex.Builder builder = new GeofenceIndex.Builder(fences.length);
+        for (int i = 0; i < fences.length; i++) {
+            fences[i] = new double[]{52.52 + random.nextGaussian() * 0.05, 13.40 + random.nextGaussian() * 0.08};
+            //a few large fences that reach over many small ones
+            radii[i] = i % 500 == 0 ? 5000 + random.nextInt(5000) : 100 + random.nextInt(400);
+            builder.add(i, fences[i][0], fences[i][1], radii[i]);
+        }
+        GeofenceIndex tested = builder.build();
+
+        for (int query = 0; query < 50; query++) {
+            double latitude = 52.4 + random.nextDouble() * 0.25;
+            double longitude = 13.2 + random.nextDouble() * 0.4;
+            GeofenceIndex.Neighbours nearest = tested.nearest(latitude, longitude, 100);
+            List<Integer> selected = closest(fences, latitude, longitude, 100);
+
+            double expected = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < fences.length; i++) {
+                if (!selected.contains(i)) {
+                    expected = Math.min(expected, distance(fences[i], latitude, longitude) - radii[i]);
+                }
+            }
+            assertThat(tested.nearestEdge(latitude, longitude, nearest)).isEqualTo(expected, offset(1.0));
+        }
+    }
+
+    @Test
+    public void find_no_edge_when_all_fences_are_excluded() {
+        GeofenceIndex tested = new GeofenceIndex.Builder(2)
+                .add(1, 0, 0, 100)
+                .add(2, 0, 1, 100)
+                .build();
+
+        GeofenceIndex.Neighbours nearest = tested.nearest(0, 0, 100);
+
+        assertThat(tested.nearestEdge(0, 0, nearest)).isEqualTo(Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void find_fences_across_the_antimeridian() {
+        GeofenceIndex tested = new GeofenceIndex.Builder(3)
+                .add(1, 0, 179.999, 100)
+                .add(2, 0, -179.999, 100)
+                .add(3, 0, 170, 100)
+                .build();
+
+        GeofenceIndex.Neighbours nearest = tested.nearest(0, -179.9995, 2);
+
+        assertThat(nearest.size()).isEqualTo(2);
+        assertThat(nearest.getId(0)).isEqualTo(2);
+        assertThat(nearest.getId(1)).isEqualTo(1);
+        assertThat(nearest.getDistance(1)).isEqualTo(167, offset(2.0));
+    }
+
+    @Test
+    public void return_all_fences_when_there_are_fewer_than_asked_for() {
+        GeofenceIndex tested = new GeofenceIndex.Builder(0)
+                .add(5, 10, 10, 100)
+                .add(6, 10, 10, 100)
+                .build();
+
+        GeofenceIndex.Neighbours nearest = tested.nearest(0, 0, 100);
+
+        assertThat(nearest.size()).isEqualTo(2);
+        long[] ids = {nearest.getId(0), nearest.getId(1)};
+        Arrays.sort(ids);
+        assertThat(ids).isEqualTo(new long[]{5, 6});
+    }
+
+    @Test
+    public void be_empty_without_fences() {
+        GeofenceIndex tested = new GeofenceIndex.Builder(0).build();
+
+        assertThat(tested.nearest(0, 0, 100).size()).isEqualTo(0);
+    }
+
+    private static List<Integer> closest(final double[][] fences, final double latitude, final double longitude, int count) {
+        List<Integer> all = new ArrayList<>(fences.length);
+        for (int i = 0; i < fences.length; i++) {
+            all.add(i);
+        }
+        Collections.sort(all, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer left, Integer right) {
+                return Double.compare(distance(fences[left], latitude, longitude), distance(fences[right], latitude, longitude));
+            }
+        });
+        return all.subList(0, count);
+    }
+
+    /**
+     * haversine distance in meters
+     */
+    private static double distance(double[] fence, double latitude, double longitude) {
+        double dLat = Math.toRadians(fence[0] - latitude);
+        double dLng = Math.toRadians(fence[1] - longitude);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(fence[0])) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * GeofenceIndex.EARTH_RADIUS * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,222 @@
+package com.sensorberg.sdk.location;
+
+import com.google.android.gms.location.Geofence;
+import com.sensorberg.sdk.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TheGeofenceRegistrarShould {
+
+    private FakeApi api;
+
+    private List<String> results;
+
+    private GeofenceRegistrar tested;
+
+    @Before
+    public void setUp() throws Exception {
+        Logger.log = Logger.QUIET_LOG;
+        api = new FakeApi();
+        results = new ArrayList<>();
+        tested = new GeofenceRegistrar(api, new GeofenceRegistrar.Listener() {
+            @Override
+            public void onRegistered(GeofenceRegistrar.Target target, int added, int removed) {
+                results.add("registered " + target.geofences.size() + " +" + added + " -" + removed);
+            }
+
+            @Override
+            public void onFailed(GeofenceRegistrar.Target target, int status) {
+                results.add("failed " + status);
+            }
+        });
+    }
+
+    @Test
+    public void remove_all_geofences_before_the_first_registration() {
+        tested.submit(target("a", "b"));
+
+        assertThat(api.calls).containsExactly("removeAll");
+        api.answer(true);
+
+        assertThat(api.calls).containsExactly("add enter [a, b]");
+        api.answer(true);
+
+        assertThat(results).containsExactly("registered 2 +2 -0");
+        assertThat(tested.getRegisteredCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void only_send_the_difference_to_the_registered_geofences() {
+        register(target("a", "b", "c"));
+
+        tested.submit(target("b", "c", "d", "e"));
+
+        assertThat(api.calls).containsExactly("remove [a]", "add enter [d, e]");
+        api.answer(true);
+        assertThat(results).isEmpty();
+        api.answer(true);
+
+        assertThat(results).containsExactly("registered 4 +2 -1");
+    }
+
+    @Test
+    public void register_fences_the_device_is_inside_to_trigger_the_exit() {
+        register(target("a"));
+
+        tested.submit(new GeofenceRegistrar.Target(null, geofences("a", "b", "c"), new HashSet<>(Collections.singletonList("c"))));
+
+        assertThat(api.calls).containsExactly("add enter [b]", "add exit [c]");
+    }
+
+    @Test
+    public void finish_without_calls_when_nothing_changed() {
+        register(target("a", "b"));
+
+        tested.submit(target("b", "a"));
+
+        assertThat(api.calls).isEmpty();
+        assertThat(results).containsExactly("registered 2 +0 -0");
+    }
+
+    @Test
+    public void only_register_the_latest_target_submitted_while_registering() {
+        register(target("a"));
+
+        tested.submit(target("b"));
+        tested.submit(target("c"));
+        tested.submit(target("d"));
+
+        assertThat(api.calls).containsExactly("remove [a]", "add enter [b]");
+        api.answer(true);
+        api.answer(true);
+
+        assertThat(api.calls).containsExactly("remove [b]", "add enter [d]");
+        api.answer(true);
+        api.answer(true);
+
+        assertThat(results).containsExactly("registered 1 +1 -1", "registered 1 +1 -1");
+        assertThat(api.calls).isEmpty();
+    }
+
+    @Test
+    public void fail_once_all_calls_answered_and_remove_all_next_time() {
+        register(target("a"));
+
+        tested.submit(target("b", "c"));
+        api.answer(false);
+        assertThat(results).isEmpty();
+        api.answer(true);
+
+        assertThat(results).containsExactly("failed 13");
+        assertThat(tested.getRegisteredCount()).isEqualTo(-1);
+
+        tested.submit(target("b", "c"));
+
+        assertThat(api.calls).containsExactly("removeAll");
+    }
+
+    @Test
+    public void fail_when_play_services_is_not_connected() {
+        register(target("a"));
+        api.connected = false;
+
+        tested.submit(target("b"));
+
+        assertThat(results).containsExactly("failed 0");
+        assertThat(tested.isRegistering()).isFalse();
+    }
+
+    @Test
+    public void not_trust_a_registration_that_was_forgotten_while_running() {
+        register(target("a"));
+
+        tested.submit(target("a", "b"));
+        tested.forget();
+        api.answer(true);
+
+        assertThat(results).containsExactly("registered 2 +1 -0");
+        assertThat(tested.getRegisteredCount()).isEqualTo(-1);
+    }
+
+    private void register(GeofenceRegistrar.Target target) {
+        tested.submit(target);
+        while (!api.calls.isEmpty()) {
+            api.answer(true);
+        }
+        results.clear();
+    }
+
+    private static GeofenceRegistrar.Target target(String... fences) {
+        return new GeofenceRegistrar.Target(null, geofences(fences), new HashSet<String>());
+    }
+
+    private static Map<String, Geofence> geofences(String... fences) {
+        Map<String, Geofence> geofences = new HashMap<>();
+        for (final String fence : fences) {
+            geofences.put(fence, new Geofence() {
+                @Override
+                public String getRequestId() {
+                    return fence;
+                }
+            });
+        }
+        return geofences;
+    }
+
+    /**
+     * Keeps the calls until they are answered, oldest first.
+     */
+    private static class FakeApi implements GeofenceRegistrar.Api {
+
+        private final List<String> calls = new ArrayList<>();
+
+        private final List<GeofenceRegistrar.Callback> callbacks = new ArrayList<>();
+
+        private boolean connected = true;
+
+        void answer(boolean success) {
+            calls.remove(0);
+            callbacks.remove(0).onResult(success, success ? 0 : 13);
+        }
+
+        @Override
+        public void removeAll(GeofenceRegistrar.Callback callback) {
+            call("removeAll", callback);
+        }
+
+        @Override
+        public void remove(List<String> fences, GeofenceRegistrar.Callback callback) {
+            List<String> sorted = new ArrayList<>(fences);
+            Collections.sort(sorted);
+            call("remove " + sorted, callback);
+        }
+
+        @Override
+        public void add(List<Geofence> fences, int initialTrigger, GeofenceRegistrar.Callback callback) {
+            List<String> sorted = new ArrayList<>();
+            for (Geofence fence : fences) {
+                sorted.add(fence.getRequestId());
+            }
+            Collections.sort(sorted);
+            call("add " + (initialTrigger == GeofenceRegistrar.INITIAL_TRIGGER_ENTER ? "enter " : "exit ") + sorted, callback);
+        }
+
+        private void call(String call, GeofenceRegistrar.Callback callback) {
+            if (!connected) {
+                throw new IllegalStateException("GoogleApiClient is not connected yet.");
+            }
+            calls.add(call);
+            callbacks.add(callback);
+        }
+    }
+}
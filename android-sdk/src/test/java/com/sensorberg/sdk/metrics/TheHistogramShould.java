@@ -0,0 +1,109 @@
+package com.sensorberg.sdk.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TheHistogramShould {
+
+    private Histogram tested;
+
+    @Before
+    public void setUp() {
+        tested = new Histogram("test");
+    }
+
+    @Test
+    public void give_every_value_a_bucket_within_the_precision() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 100, 1000, 123456789L, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = Histogram.indexOf(value);
+            assertThat(index).isGreaterThanOrEqualTo(0).isLessThan(Histogram.BUCKETS);
+            assertThat(Histogram.upperBoundOf(index)).isGreaterThanOrEqualTo(value);
+            assertThat(Histogram.upperBoundOf(index) - value).isLessThanOrEqualTo(value / Histogram.SUB_BUCKETS);
+            if (index > 0) {
+                assertThat(Histogram.upperBoundOf(index - 1)).isLessThan(value);
+            }
+        }
+    }
+
+    @Test
+    public void number_the_buckets_without_gaps() {
+        for (int index = 1; index < Histogram.BUCKETS; index++) {
+            assertThat(Histogram.indexOf(Histogram.upperBoundOf(index - 1) + 1)).isEqualTo(index);
+        }
+    }
+
+    @Test
+    public void estimate_percentiles() {
+        for (int value = 1; value <= 1000; value++) {
+            tested.record(value);
+        }
+
+        HistogramSnapshot snapshot = tested.snapshot();
+
+        assertThat(snapshot.getCount()).isEqualTo(1000);
+        assertThat(snapshot.getMax()).isEqualTo(1000);
+        assertThat(snapshot.getMean()).isEqualTo(500.5);
+        assertThat(snapshot.getPercentile(50)).isGreaterThanOrEqualTo(500).isLessThanOrEqualTo(500 + 500 / Histogram.SUB_BUCKETS);
+        assertThat(snapshot.getPercentile(99)).isGreaterThanOrEqualTo(990).isLessThanOrEqualTo(1000);
+        assertThat(snapshot.getPercentile(100)).isEqualTo(1000);
+    }
+
+    @Test
+    public void record_negative_values_as_zero() {
+        tested.record(-5);
+
+        assertThat(tested.snapshot().getPercentile(100)).isEqualTo(0);
+        assertThat(tested.snapshot().getSum()).isEqualTo(0);
+    }
+
+    @Test
+    public void not_lose_values_recorded_concurrently() throws Exception {
+        final int threads = 4;
+        final int values = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] recorders = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            recorders[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int value = 1; value <= values; value++) {
+                        tested.record(value);
+                    }
+                }
+            });
+            recorders[i].start();
+        }
+        start.countDown();
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+
+        HistogramSnapshot snapshot = tested.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(threads * values);
+        assertThat(snapshot.getSum()).isEqualTo(threads * (long) values * (values + 1) / 2);
+        assertThat(snapshot.getMax()).isEqualTo(values);
+    }
+
+    @Test
+    public void export_a_summary_with_the_snapshot() {
+        Metrics.reset();
+        Metrics.histogram("test.millis").record(42);
+        Metrics.counter("test.count").add(3);
+
+        MetricsSnapshot snapshot = Metrics.snapshot();
+
+        assertThat(snapshot.getCount("test.count")).isEqualTo(3);
+        assertThat(snapshot.toJson().getAsJsonObject("counters").get("test.count").getAsLong()).isEqualTo(3);
+        assertThat(snapshot.toJson().getAsJsonObject("histograms").getAsJsonObject("test.millis").get("max").getAsLong()).isEqualTo(42);
+    }
+}
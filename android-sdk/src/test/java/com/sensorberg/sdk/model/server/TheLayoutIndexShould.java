@@ -0,0 +1,66 @@
+package com.sensorberg.sdk.model.server;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TheLayoutIndexShould {
+
+    private static final int ENTRY = 1;
+
+    private static final int EXIT = 2;
+
+    private static final BeaconId BEACON = new BeaconId(UUID.fromString("73676723-7400-0000-ffff-0000ffff0001"), 1, 1);
+
+    private static final BeaconId OTHER_BEACON = new BeaconId(UUID.fromString("73676723-7400-0000-ffff-0000ffff0001"), 1, 2);
+
+    @Test
+    public void match_pids_regardless_of_case_and_dashes() {
+        ResolveAction action = action(ENTRY, "73676723-7400-0000-FFFF-0000FFFF0001-00001-00001");
+
+        LayoutIndex tested = new LayoutIndex(Collections.singletonList(action));
+
+        assertThat(tested.resolve(BEACON, ENTRY, 0)).containsExactly(action);
+        assertThat(tested.resolve(OTHER_BEACON, ENTRY, 0)).isEmpty();
+    }
+
+    @Test
+    public void only_return_actions_with_a_matching_trigger() {
+        ResolveAction entry = action(ENTRY, BEACON.getPid());
+        ResolveAction exit = action(EXIT, BEACON.getPid());
+        ResolveAction both = action(ENTRY | EXIT, BEACON.getPid());
+
+        LayoutIndex tested = new LayoutIndex(Arrays.asList(entry, exit, both));
+
+        assertThat(tested.resolve(BEACON, ENTRY, 0)).containsExactly(entry, both);
+        assertThat(tested.resolve(BEACON, EXIT, 0)).containsExactly(exit, both);
+    }
+
+    @Test
+    public void keep_the_layout_order_and_return_an_action_once() {
+        ResolveAction first = action(ENTRY, OTHER_BEACON.getPid(), BEACON.getPid(), BEACON.getPid());
+        ResolveAction second = action(ENTRY, BEACON.getPid());
+
+        LayoutIndex tested = new LayoutIndex(Arrays.asList(first, second));
+
+        assertThat(tested.resolve(BEACON, ENTRY, 0)).containsExactly(first, second);
+    }
+
+    @Test
+    public void handle_a_layout_without_actions() {
+        assertThat(new LayoutIndex(null).resolve(BEACON, ENTRY, 0)).isEmpty();
+    }
+
+    private static ResolveAction action(int trigger, String... beacons) {
+        return new ResolveAction.Builder()
+                .withTrigger(trigger)
+                .withBeacons(Arrays.asList(beacons))
+                .build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.sensorberg.sdk.scanner;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TheAdvertisementRingBufferShould {
+
+    private AdvertisementRingBuffer tested;
+
+    private final List<Integer> firstBytes = new ArrayList<>();
+
+    private final List<Integer> rssis = new ArrayList<>();
+
+    private final AdvertisementRingBuffer.Consumer consumer = new AdvertisementRingBuffer.Consumer() {
+        @Override
+        public void onAdvertisement(String address, int rssi, byte[] record, int offset, int length, long timestamp) {
+            firstBytes.add(length > 0 ? (int) record[offset] : -1);
+            rssis.add(rssi);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        tested = new AdvertisementRingBuffer(4);
+    }
+
+    @Test
+    public void hand_out_advertisements_in_order() {
+        tested.offer("a", -50, new byte[]{1, 2}, 10);
+        tested.offer("b", -60, new byte[]{3}, 20);
+
+        assertThat(tested.drain(consumer)).isEqualTo(2);
+
+        assertThat(firstBytes).containsExactly(1, 3);
+        assertThat(rssis).containsExactly(-50, -60);
+        assertThat(tested.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void drop_advertisements_when_full() {
+        for (int i = 0; i < 6; i++) {
+            tested.offer(null, i, new byte[]{(byte) i}, i);
+        }
+
+        assertThat(tested.takeDroppedCount()).isEqualTo(2);
+        assertThat(tested.takeDroppedCount()).isEqualTo(0);
+        tested.drain(consumer);
+        assertThat(rssis).containsExactly(0, 1, 2, 3);
+    }
+
+    @Test
+    public void reuse_slots_after_draining() {
+        for (int round = 0; round < 10; round++) {
+            assertThat(tested.offer(null, round, new byte[]{(byte) round}, round)).isTrue();
+            assertThat(tested.offer(null, round, new byte[]{(byte) round}, round)).isTrue();
+            tested.drain(consumer);
+        }
+
+        assertThat(rssis).hasSize(20);
+        assertThat(tested.takeDroppedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void truncate_and_accept_empty_records() {
+        tested.offer(null, 0, new byte[AdvertisementRingBuffer.MAX_RECORD_LENGTH + 10], 0);
+        tested.offer(null, 0, null, 0);
+
+        final List<Integer> lengths = new ArrayList<>();
+        tested.drain(new AdvertisementRingBuffer.Consumer() {
+            @Override
+            public void onAdvertisement(String address, int rssi, byte[] record, int offset, int length, long timestamp) {
+                lengths.add(length);
+            }
+        });
+
+        assertThat(lengths).containsExactly(AdvertisementRingBuffer.MAX_RECORD_LENGTH, 0);
+    }
+
+    @Test
+    public void pass_every_advertisement_from_another_thread_in_order() throws InterruptedException {
+        final int count = 100000;
+        final AdvertisementRingBuffer buffer = new AdvertisementRingBuffer(64);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] record = new byte[1];
+                for (int i = 0; i < count; i++) {
+                    while (!buffer.offer(null, i, record, i)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        final int[] next = new int[1];
+        final boolean[] outOfOrder = new boolean[1];
+        AdvertisementRingBuffer.Consumer checker = new AdvertisementRingBuffer.Consumer() {
+            @Override
+            public void onAdvertisement(String address, int rssi, byte[] record, int offset, int length, long timestamp) {
+                if (rssi != next[0] || timestamp != next[0]) {
+                    outOfOrder[0] = true;
+                }
+                next[0]++;
+            }
+        };
+
+        producer.start();
+        while (next[0] < count) {
+            buffer.drain(checker);
+        }
+        producer.join();
+
+        assertThat(outOfOrder[0]).isFalse();
+    }
+}
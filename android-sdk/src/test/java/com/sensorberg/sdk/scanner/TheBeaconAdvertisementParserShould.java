@@ -0,0 +1,97 @@
+package com.sensorberg.sdk.scanner;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TheBeaconAdvertisementParserShould {
+
+    private static final String FLAGS = "020106";
+    private static final String IBEACON_HEADER = "1aff4c000215";
+    private static final String ACCENT_SYSTEMS_IBEACON_HEADER = "1bff4c000215";
+    private static final String ALTBEACON_HEADER = "1bffc300beac";
+    private static final String PROXIMITY_UUID = "7367672374000000FFFF0000FFFF0000";
+    private static final String MAJOR_MINOR = "0111" + "FFFE"; //DEC: 273, 65534
+    private static final String CALIBRATED_TX_VALUE = "C6"; //DEC: -58
+
+    private BeaconAdvertisement advertisement;
+
+    @Before
+    public void setUp() {
+        advertisement = new BeaconAdvertisement();
+    }
+
+    @Test
+    public void find_a_beacon() {
+        boolean found = BeaconAdvertisementParser.parse(bytes(FLAGS + IBEACON_HEADER + PROXIMITY_UUID + MAJOR_MINOR + CALIBRATED_TX_VALUE), advertisement);
+
+        assertThat(found).isTrue();
+        assertThat(advertisement.getUuidMostSignificantBits()).isEqualTo(0x7367672374000000L);
+        assertThat(advertisement.getUuidLeastSignificantBits()).isEqualTo(0xFFFF0000FFFF0000L);
+        assertThat(advertisement.getMajorId()).isEqualTo(273);
+        assertThat(advertisement.getMinorId()).isEqualTo(65534);
+        assertThat(advertisement.getCalibratedTxPower()).isEqualTo(-58);
+    }
+
+    @Test
+    public void find_a_beacon_without_flags() {
+        assertThat(BeaconAdvertisementParser.parse(bytes(IBEACON_HEADER + PROXIMITY_UUID + MAJOR_MINOR + CALIBRATED_TX_VALUE), advertisement)).isTrue();
+        assertThat(advertisement.getMajorId()).isEqualTo(273);
+    }
+
+    @Test
+    public void find_a_beacon_with_battery_value() {
+        assertThat(BeaconAdvertisementParser.parse(bytes(FLAGS + ACCENT_SYSTEMS_IBEACON_HEADER + PROXIMITY_UUID + MAJOR_MINOR + CALIBRATED_TX_VALUE + "42"), advertisement)).isTrue();
+        assertThat(advertisement.getCalibratedTxPower()).isEqualTo(-58);
+    }
+
+    @Test
+    public void reuse_the_record() {
+        BeaconAdvertisementParser.parse(bytes(FLAGS + IBEACON_HEADER + PROXIMITY_UUID + "00010002" + CALIBRATED_TX_VALUE), advertisement);
+        BeaconAdvertisementParser.parse(bytes(FLAGS + IBEACON_HEADER + PROXIMITY_UUID + "00030004" + CALIBRATED_TX_VALUE), advertisement);
+
+        assertThat(advertisement.getMajorId()).isEqualTo(3);
+        assertThat(advertisement.getMinorId()).isEqualTo(4);
+    }
+
+    @Test
+    public void find_a_beacon_inside_a_larger_buffer() {
+        byte[] record = bytes(FLAGS + IBEACON_HEADER + PROXIMITY_UUID + MAJOR_MINOR + CALIBRATED_TX_VALUE);
+        byte[] buffer = new byte[record.length + 20];
+        System.arraycopy(record, 0, buffer, 10, record.length);
+
+        assertThat(BeaconAdvertisementParser.parse(buffer, 10, record.length, advertisement)).isTrue();
+        assertThat(advertisement.getMinorId()).isEqualTo(65534);
+        assertThat(BeaconAdvertisementParser.parse(buffer, 10, record.length - 1, advertisement)).isFalse();
+    }
+
+    @Test
+    public void not_find_an_altbeacon() {
+        assertThat(BeaconAdvertisementParser.parse(bytes(FLAGS + ALTBEACON_HEADER + PROXIMITY_UUID + MAJOR_MINOR + CALIBRATED_TX_VALUE + "23"), advertisement)).isFalse();
+    }
+
+    @Test
+    public void not_find_other_bluetooth_devices() {
+        assertThat(BeaconAdvertisementParser.parse(bytes("1DF5E591493F40F8B8FD716280C66358F52289B9C58C460692340DE138CE"), advertisement)).isFalse();
+        assertThat(BeaconAdvertisementParser.parse(bytes("0201120100"), advertisement)).isFalse();
+        assertThat(BeaconAdvertisementParser.parse(bytes("02011A14FF4C0001000000000000000000000004"), advertisement)).isFalse();
+        assertThat(BeaconAdvertisementParser.parse(bytes("02011A0BFF4C0009060190AC110733"), advertisement)).isFalse();
+    }
+
+    @Test
+    public void not_fail_on_broken_packages() {
+        assertThat(BeaconAdvertisementParser.parse(bytes("0201061aff4c000215010203"), advertisement)).isFalse();
+        assertThat(BeaconAdvertisementParser.parse(bytes("02011aff"), advertisement)).isFalse();
+        assertThat(BeaconAdvertisementParser.parse(new byte[0], advertisement)).isFalse();
+        assertThat(BeaconAdvertisementParser.parse(null, advertisement)).isFalse();
+    }
+
+    private static byte[] bytes(String hex) {
+        byte[] data = new byte[hex.length() / 2];
+        for (int i = 0; i < hex.length(); i += 2) {
+            data[i / 2] = (byte) Integer.parseInt(hex.substring(i, i + 2), 16);
+        }
+        return data;
+    }
+}
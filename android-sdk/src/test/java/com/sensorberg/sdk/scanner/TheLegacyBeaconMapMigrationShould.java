@@ -0,0 +1,100 @@
+package com.sensorberg.sdk.scanner;
+
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.internal.AndroidFileManager;
+import com.sensorberg.sdk.model.BeaconId;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TheLegacyBeaconMapMigrationShould {
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AndroidFileManager fileManager;
+
+    private File legacyFile;
+
+    private File journalFile;
+
+    @Before
+    public void setUp() throws Exception {
+        Logger.log = Logger.QUIET_LOG;
+        fileManager = new AndroidFileManager(null) {
+            @Override
+            public File getFile(String fileName) {
+                return new File(folder.getRoot(), fileName);
+            }
+        };
+        legacyFile = fileManager.getFile("enteredBeaconsCache");
+        journalFile = fileManager.getFile("enteredBeaconsJournal");
+    }
+
+    @Test
+    public void restore_the_entries_of_the_legacy_cache_from_the_journal() {
+        HashMap<BeaconId, EventEntry> legacy = new HashMap<>();
+        legacy.put(getBeaconId(1), new EventEntry(1000, 20, ScanEventType.ENTRY.getMask(), "pairing"));
+        legacy.put(getBeaconId(2), new EventEntry(2000, 0, ScanEventType.ENTRY.getMask(), null));
+        assertThat(fileManager.write(legacy, legacyFile)).isTrue();
+
+        assertThat(BeaconMap.migrate(fileManager, legacyFile, new BeaconMapJournal(journalFile, SAME_THREAD))).isTrue();
+
+        assertThat(legacyFile.exists()).isFalse();
+        BeaconMap tested = new BeaconMap(new BeaconMapJournal(journalFile, SAME_THREAD));
+        assertThat(tested.size()).isEqualTo(2);
+        assertThat(tested.get(getBeaconId(1)).getLastBeaconTime()).isEqualTo(1000);
+        assertThat(tested.get(getBeaconId(1)).getScanPauseTime()).isEqualTo(20);
+        assertThat(tested.get(getBeaconId(1)).getPairingId()).isEqualTo("pairing");
+        assertThat(tested.get(getBeaconId(2)).getPairingId()).isNull();
+    }
+
+    @Test
+    public void keep_the_legacy_cache_if_the_journal_can_not_be_written() {
+        HashMap<BeaconId, EventEntry> legacy = new HashMap<>();
+        legacy.put(getBeaconId(1), new EventEntry(1000, 0, ScanEventType.ENTRY.getMask(), "pairing"));
+        fileManager.write(legacy, legacyFile);
+        File unwritable = new File(new File(folder.getRoot(), "missing"), "enteredBeaconsJournal");
+
+        assertThat(BeaconMap.migrate(fileManager, legacyFile, new BeaconMapJournal(unwritable, SAME_THREAD))).isFalse();
+
+        assertThat(legacyFile.exists()).isTrue();
+    }
+
+    @Test
+    public void prefer_an_existing_journal_over_the_legacy_cache() {
+        BeaconMap current = new BeaconMap(new BeaconMapJournal(journalFile, SAME_THREAD));
+        current.put(getBeaconId(3), new EventEntry(3000, 0, ScanEventType.ENTRY.getMask(), null));
+        current.flush();
+        HashMap<BeaconId, EventEntry> legacy = new HashMap<>();
+        legacy.put(getBeaconId(1), new EventEntry(1000, 0, ScanEventType.ENTRY.getMask(), "pairing"));
+        fileManager.write(legacy, legacyFile);
+
+        assertThat(BeaconMap.migrate(fileManager, legacyFile, new BeaconMapJournal(journalFile, SAME_THREAD))).isTrue();
+
+        assertThat(legacyFile.exists()).isFalse();
+        BeaconMap tested = new BeaconMap(new BeaconMapJournal(journalFile, SAME_THREAD));
+        assertThat(tested.size()).isEqualTo(1);
+        assertThat(tested.get(getBeaconId(3))).isNotNull();
+    }
+
+    private static BeaconId getBeaconId(int minor) {
+        return new BeaconId(UUID.fromString("D57092AC-DFAA-446C-8EF3-C81AA22815B5"), 1, minor);
+    }
+}
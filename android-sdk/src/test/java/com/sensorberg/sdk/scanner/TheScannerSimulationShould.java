@@ -0,0 +1,307 @@
+package com.sensorberg.sdk.scanner;
+
+import android.content.SharedPreferences;
+import android.os.Parcelable;
+
+import com.sensorberg.BackgroundDetector;
+import com.sensorberg.SensorbergSdk;
+import com.sensorberg.di.Component;
+import com.sensorberg.sdk.InternalApplicationBootstrapper;
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.SensorbergService;
+import com.sensorberg.sdk.SensorbergServiceMessage;
+import com.sensorberg.sdk.internal.AndroidPlatform;
+import com.sensorberg.sdk.internal.PendingIntentStorage;
+import com.sensorberg.sdk.internal.transport.interfaces.Transport;
+import com.sensorberg.sdk.location.LocationHelper;
+import com.sensorberg.sdk.settings.DefaultSettings;
+import com.sensorberg.sdk.settings.SettingsManager;
+import com.sensorberg.sdk.settings.TimeConstants;
+import com.sensorberg.sdk.testUtils.InMemorySharedPreferences;
+import com.sensorberg.sdk.testUtils.ReplayBluetoothPlatform;
+import com.sensorberg.sdk.testUtils.VirtualHandlerManager;
+import com.sensorberg.sdk.testUtils.VirtualServiceScheduler;
+import com.sensorberg.sdk.testUtils.VirtualTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * Replays hours of advertisements of beacons that come and go through the {@link Scanner}, on virtual time. The scan
+ * windows are scheduled through a {@link VirtualServiceScheduler} like they are through the service on a device.
+ */
+public class TheScannerSimulationShould {
+
+    private static final long START = 1500000000000L;
+
+    private static final long DURATION = 4 * TimeConstants.ONE_HOUR;
+
+    private static final int BEACONS = 20;
+
+    private static final long ADVERTISING_INTERVAL = TimeConstants.ONE_SECOND;
+
+    private static final String IBEACON_PREFIX = "0201061aff4c000215" + "7367672374000000FFFF0000FFFF0000";
+
+    /**
+     * a beacon that shows up while the scanner waits is seen once the next scan starts
+     */
+    private static final long MAX_ENTRY_LATENCY = DefaultSettings.DEFAULT_FOREGROUND_WAIT_TIME + ADVERTISING_INTERVAL;
+
+    /**
+     * only scan time counts towards the exit timeout, which is half of the time while in the foreground, and a beacon
+     * that timed out during a pause exits after the grace time of the next scan
+     */
+    private static final long MAX_EXIT_LATENCY = 2 * DefaultSettings.DEFAULT_EXIT_TIMEOUT_MILLIS
+            + DefaultSettings.DEFAULT_FOREGROUND_WAIT_TIME + DefaultSettings.DEFAULT_EXIT_FOREGROUND_GRACE_MILLIS
+            + DefaultSettings.DEFAULT_EXIT_CHECK_RESOLUTION_MILLIS;
+
+    private List<Visit> visits;
+
+    private List<ReplayBluetoothPlatform.Advertisement> recording;
+
+    @Before
+    public void setUp() throws Exception {
+        Logger.log = Logger.QUIET_LOG;
+
+        Random random = new Random(42);
+        visits = new ArrayList<>();
+        recording = new ArrayList<>();
+        for (int minor = 1; minor <= BEACONS; minor++) {
+            byte[] record = record(minor);
+            long phase = random.nextInt((int) ADVERTISING_INTERVAL);
+            long time = START + phase + random.nextInt((int) (30 * TimeConstants.ONE_MINUTE));
+            //the last visit ends early enough for its exit to be seen
+            while (time < START + DURATION - 30 * TimeConstants.ONE_MINUTE) {
+                long end = time + (3 + random.nextInt(17)) * TimeConstants.ONE_MINUTE;
+                visits.add(new Visit(minor, time, end));
+                for (long seen = time; seen <= end; seen += ADVERTISING_INTERVAL) {
+                    recording.add(new ReplayBluetoothPlatform.Advertisement(seen, -60 - random.nextInt(20), record));
+                }
+                time = end + (10 + random.nextInt(20)) * TimeConstants.ONE_MINUTE;
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SensorbergSdk.setComponent(null);
+    }
+
+    @Test
+    public void see_every_visit_of_a_beacon_as_one_entry_and_one_exit() throws Exception {
+        Simulation simulation = new Simulation(recording);
+        simulation.run();
+
+        //the scanner is scanning half of the time in the foreground
+        assertThat(simulation.platform.getDelivered()).isGreaterThan(recording.size() / 3);
+        for (Visit visit : visits) {
+            List<ScanEvent> events = simulation.eventsOf(visit);
+            assertThat(events).hasSize(2);
+            assertThat(events.get(0).isEntry()).isTrue();
+            assertThat(events.get(0).getEventTime() - visit.start).isLessThanOrEqualTo(MAX_ENTRY_LATENCY);
+            assertThat(events.get(1).isEntry()).isFalse();
+            assertThat(events.get(1).getEventTime()).isGreaterThan(visit.end);
+            assertThat(events.get(1).getEventTime() - visit.end).isLessThanOrEqualTo(MAX_EXIT_LATENCY);
+        }
+        assertThat(simulation.events).hasSize(2 * visits.size());
+    }
+
+    @Test
+    public void give_the_same_result_on_every_run() throws Exception {
+        Simulation first = new Simulation(recording);
+        first.run();
+        Simulation second = new Simulation(recording);
+        second.run();
+
+        assertThat(second.log()).isEqualTo(first.log());
+    }
+
+    @Test
+    public void report_an_exit_that_is_pending_when_the_scan_stops() throws Exception {
+        //both time out in the fifth foreground scan, the second one less than the exit check resolution after the first
+        Simulation simulation = new Simulation(Arrays.asList(
+                new ReplayBluetoothPlatform.Advertisement(START + 9000, -60, record(1)),
+                new ReplayBluetoothPlatform.Advertisement(START + 9500, -60, record(2))));
+        simulation.scanner.hostApplicationInForeground();
+        simulation.scanner.start();
+        simulation.time.advanceTo(START + 95 * TimeConstants.ONE_SECOND);
+
+        assertThat(simulation.exitsOf(1)).hasSize(1);
+        assertThat(simulation.exitsOf(2)).isEmpty();
+
+        simulation.scanner.stop();
+        simulation.time.advanceBy(0);
+
+        assertThat(simulation.exitsOf(2)).hasSize(1);
+        assertThat(simulation.exitsOf(2).get(0).getEventTime()).isEqualTo(START + 95 * TimeConstants.ONE_SECOND);
+    }
+
+    private static byte[] record(int minor) {
+        return bytes(IBEACON_PREFIX + String.format("%04x%04x", 1, minor) + "C6");
+    }
+
+    private static byte[] bytes(String hex) {
+        byte[] data = new byte[hex.length() / 2];
+        for (int i = 0; i < hex.length(); i += 2) {
+            data[i / 2] = (byte) Integer.parseInt(hex.substring(i, i + 2), 16);
+        }
+        return data;
+    }
+
+    private static class Visit {
+
+        private final int minor;
+
+        private final long start;
+
+        private final long end;
+
+        Visit(int minor, long start, long end) {
+            this.minor = minor;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static class Simulation implements ScannerListener, VirtualServiceScheduler.Service {
+
+        private final VirtualTime time = new VirtualTime(START);
+
+        private final ReplayBluetoothPlatform platform;
+
+        private final Scanner scanner;
+
+        private final List<ScanEvent> events = new ArrayList<>();
+
+        Simulation(List<ReplayBluetoothPlatform.Advertisement> recording) {
+            SharedPreferences preferences = new InMemorySharedPreferences();
+            SensorbergSdk.setComponent(new ScannerComponent(preferences));
+            Transport transport = (Transport) Proxy.newProxyInstance(Transport.class.getClassLoader(), new Class<?>[]{Transport.class},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            return null;
+                        }
+                    });
+            VirtualServiceScheduler scheduler = new VirtualServiceScheduler(time);
+            scheduler.setService(this);
+            platform = new ReplayBluetoothPlatform(time, recording);
+            scanner = new Scanner(new SettingsManager(transport, preferences), false, time, null, scheduler,
+                    new VirtualHandlerManager(time), platform);
+            scanner.addScannerListener(this);
+        }
+
+        @Override
+        public void handleMessage(int type, Parcelable what, int index) {
+            if (type == SensorbergServiceMessage.MSG_SDK_SCANNER_MESSAGE) {
+                //the Bundle is only a stub on the JVM, the index tells which execution it is as well
+                scanner.handleScheduledExecution(Scanner.typeFor(index));
+            }
+        }
+
+        void run() {
+            scanner.hostApplicationInForeground();
+            scanner.start();
+            time.advanceTo(START + DURATION);
+            scanner.stop();
+            time.advanceBy(0);
+        }
+
+        @Override
+        public void onScanEventDetected(ScanEvent event) {
+            events.add(event);
+        }
+
+        List<ScanEvent> eventsOf(Visit visit) {
+            List<ScanEvent> found = new ArrayList<>();
+            for (ScanEvent event : events) {
+                if (event.getBeaconId().getMinorId() == visit.minor
+                        && event.getEventTime() >= visit.start && event.getEventTime() <= visit.end + MAX_EXIT_LATENCY) {
+                    found.add(event);
+                }
+            }
+            return found;
+        }
+
+        List<ScanEvent> exitsOf(int minor) {
+            List<ScanEvent> found = new ArrayList<>();
+            for (ScanEvent event : events) {
+                if (event.getBeaconId().getMinorId() == minor && !event.isEntry()) {
+                    found.add(event);
+                }
+            }
+            return found;
+        }
+
+        List<String> log() {
+            List<String> log = new ArrayList<>();
+            for (ScanEvent event : events) {
+                log.add(event.getEventTime() + " " + event.getBeaconId() + " " + event.isEntry());
+            }
+            return log;
+        }
+    }
+
+    /**
+     * Injects what the {@link SensorbergSdk} would inject into the scanner. Nothing else is injected in the simulation,
+     * the other injects leave their target alone.
+     */
+    private static class ScannerComponent implements Component {
+
+        private final SharedPreferences preferences;
+
+        ScannerComponent(SharedPreferences preferences) {
+            this.preferences = preferences;
+        }
+
+        @Override
+        public void inject(AbstractScanner scanner) {
+            scanner.prefs = preferences;
+            scanner.locationHelper = new LocationHelper(null, null) {
+                @Override
+                public String getGeohash() {
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public void inject(InternalApplicationBootstrapper bootstrapper) {
+        }
+
+        @Override
+        public void inject(PendingIntentStorage pendingIntentStorage) {
+        }
+
+        @Override
+        public void inject(AndroidPlatform androidPlatform) {
+        }
+
+        @Override
+        public void inject(SensorbergService sensorbergService) {
+        }
+
+        @Override
+        public void inject(BeaconMap beaconMap) {
+        }
+
+        @Override
+        public void inject(SensorbergSdk sensorbergSdk) {
+        }
+
+        @Override
+        public void inject(BackgroundDetector backgroundDetector) {
+        }
+    }
+}
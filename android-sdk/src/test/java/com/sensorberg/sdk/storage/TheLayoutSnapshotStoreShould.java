@@ -0,0 +1,95 @@
+package com.sensorberg.sdk.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sensorberg.sdk.model.server.ResolveAction;
+import com.sensorberg.sdk.model.server.ResolveResponse;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TheLayoutSnapshotStoreShould {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    private ResolveResponse layout;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(folder.getRoot(), "layout.snapshot");
+
+        JsonObject content = new JsonObject();
+        content.addProperty("subject", "Grüße");
+        content.addProperty("url", "https://sensorberg.com");
+        ResolveAction action = new ResolveAction.Builder()
+                .withUuid("c7d4bd7c2e9f4fb78ac6e4dfb1eaf4c9")
+                .withTrigger(3)
+                .withType(0x8001)
+                .withBeacons(Arrays.asList("7367672374000000ffff0000ffff00030000200747", "u33db8mm1000"))
+                .withSuppressionTime(30)
+                .withContent(content)
+                .withDeliverAt(new Date(1500000000000L))
+                .build();
+        ResolveAction instantAction = new ResolveAction.Builder()
+                .withUuid("3e2b0c8096f34c8e8b583b3b6ec0d5f4")
+                .withTrigger(1)
+                .build();
+        layout = new ResolveResponse.Builder()
+                .withAccountProximityUUIDs(Collections.singletonList("7367672374000000ffff0000ffff0003"))
+                .withActions(Collections.singletonList(action))
+                .withInstantActions(Collections.singletonList(instantAction))
+                .withReportTrigger(60)
+                .build();
+    }
+
+    @Test
+    public void load_what_was_saved() {
+        new LayoutSnapshotStore(file).save(layout);
+
+        ResolveResponse loaded = new LayoutSnapshotStore(file).load();
+
+        assertThat(new Gson().toJson(loaded)).isEqualTo(new Gson().toJson(layout));
+    }
+
+    @Test
+    public void not_write_the_same_layout_twice() {
+        assertThat(new LayoutSnapshotStore(file).save(layout)).isTrue();
+        long written = file.lastModified();
+
+        assertThat(new LayoutSnapshotStore(file).save(layout)).isFalse();
+        assertThat(file.lastModified()).isEqualTo(written);
+    }
+
+    @Test
+    public void discard_a_corrupt_snapshot() throws Exception {
+        LayoutSnapshotStore tested = new LayoutSnapshotStore(file);
+        tested.save(layout);
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.seek(raw.length() - 1);
+        int last = raw.read();
+        raw.seek(raw.length() - 1);
+        raw.write(last ^ 0xff);
+        raw.close();
+
+        assertThat(new LayoutSnapshotStore(file).load()).isNull();
+        assertThat(new LayoutSnapshotStore(file).save(layout)).isTrue();
+    }
+
+    @Test
+    public void load_nothing_without_a_snapshot() {
+        assertThat(new LayoutSnapshotStore(file).load()).isNull();
+    }
+}
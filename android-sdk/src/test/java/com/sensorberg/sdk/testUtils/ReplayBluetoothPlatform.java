@@ -0,0 +1,116 @@
+package com.sensorberg.sdk.testUtils;
+
+import android.bluetooth.BluetoothAdapter;
+
+import com.sensorberg.sdk.internal.interfaces.BluetoothPlatform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * {@link BluetoothPlatform} that replays recorded advertisements on {@link VirtualTime}. Every advertisement is
+ * delivered at its recorded time if a scan is running then, advertisements recorded while no scan is running are
+ * missed, like they are on a device.
+ */
+public class ReplayBluetoothPlatform implements BluetoothPlatform {
+
+    private final VirtualTime time;
+
+    private final List<Advertisement> recording;
+
+    private int next;
+
+    private BluetoothAdapter.LeScanCallback callback;
+
+    private VirtualTime.Task delivery;
+
+    @Getter
+    private int delivered;
+
+    @Getter
+    private int missed;
+
+    private final Runnable deliver = new Runnable() {
+        @Override
+        public void run() {
+            Advertisement advertisement = recording.get(next++);
+            delivered++;
+            callback.onLeScan(null, advertisement.rssi, advertisement.record);
+            if (callback != null) {
+                scheduleNext();
+            }
+        }
+    };
+
+    public ReplayBluetoothPlatform(VirtualTime time, List<Advertisement> recording) {
+        this.time = time;
+        this.recording = new ArrayList<>(recording);
+        Collections.sort(this.recording, new Comparator<Advertisement>() {
+            @Override
+            public int compare(Advertisement left, Advertisement right) {
+                return left.time < right.time ? -1 : (left.time == right.time ? 0 : 1);
+            }
+        });
+    }
+
+    private void scheduleNext() {
+        while (next < recording.size() && recording.get(next).time < time.now()) {
+            next++;
+            missed++;
+        }
+        delivery = next < recording.size() ? time.schedule(deliver, recording.get(next).time - time.now()) : null;
+    }
+
+    @Override
+    public boolean isBluetoothLowEnergyDeviceTurnedOn() {
+        return true;
+    }
+
+    @Override
+    public boolean isBluetoothLowEnergySupported() {
+        return true;
+    }
+
+    @Override
+    public void startLeScan(BluetoothAdapter.LeScanCallback scanCallback) {
+        time.cancel(delivery);
+        callback = scanCallback;
+        scheduleNext();
+    }
+
+    @Override
+    public void stopLeScan() {
+        time.cancel(delivery);
+        delivery = null;
+        callback = null;
+    }
+
+    @Override
+    public boolean isLeScanRunning() {
+        return callback != null;
+    }
+
+    public static class Advertisement {
+
+        private final long time;
+
+        private final int rssi;
+
+        private final byte[] record;
+
+        /**
+         * @param time the time the advertisement was received at, on the {@link VirtualTime}
+         * @param rssi the received signal strength
+         * @param record the raw scan record
+         */
+        public Advertisement(long time, int rssi, byte[] record) {
+            this.time = time;
+            this.rssi = rssi;
+            this.record = record;
+        }
+    }
+}
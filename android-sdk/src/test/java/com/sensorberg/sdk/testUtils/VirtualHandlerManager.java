@@ -0,0 +1,28 @@
+package com.sensorberg.sdk.testUtils;
+
+import com.sensorberg.sdk.internal.interfaces.HandlerManager;
+import com.sensorberg.sdk.internal.interfaces.RunLoop;
+
+public class VirtualHandlerManager implements HandlerManager {
+
+    private final VirtualTime time;
+
+    public VirtualHandlerManager(VirtualTime time) {
+        this.time = time;
+    }
+
+    @Override
+    public RunLoop getScannerRunLoop(RunLoop.MessageHandlerCallback callback) {
+        return new VirtualRunLoop(time, callback);
+    }
+
+    @Override
+    public RunLoop getResolverRunLoop(RunLoop.MessageHandlerCallback callback) {
+        return new VirtualRunLoop(time, callback);
+    }
+
+    @Override
+    public RunLoop getBeaconPublisherRunLoop(RunLoop.MessageHandlerCallback callback) {
+        return new VirtualRunLoop(time, callback);
+    }
+}
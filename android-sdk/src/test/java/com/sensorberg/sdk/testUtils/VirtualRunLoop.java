@@ -0,0 +1,110 @@
+package com.sensorberg.sdk.testUtils;
+
+import android.os.Message;
+
+import com.sensorberg.sdk.internal.interfaces.RunLoop;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@link RunLoop} on {@link VirtualTime}. Messages are handled when the time is advanced, in the order they were
+ * sent, and {@link #clearScheduledExecutions()} drops pending messages and executions but keeps the timer, like the
+ * {@link com.sensorberg.sdk.internal.AndroidHandler} does.
+ */
+public class VirtualRunLoop implements RunLoop {
+
+    private final VirtualTime time;
+
+    private final MessageHandlerCallback messageHandlerCallback;
+
+    private final Set<VirtualTime.Task> pending = new HashSet<>();
+
+    private VirtualTime.Task timer;
+
+    public VirtualRunLoop(VirtualTime time, MessageHandlerCallback messageHandlerCallback) {
+        this.time = time;
+        this.messageHandlerCallback = messageHandlerCallback;
+    }
+
+    @Override
+    public void add(final Message event) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                messageHandlerCallback.handleMessage(event);
+            }
+        }, 0);
+    }
+
+    @Override
+    public void clearScheduledExecutions() {
+        for (VirtualTime.Task task : pending) {
+            time.cancel(task);
+        }
+        pending.clear();
+    }
+
+    @Override
+    public void scheduleExecution(Runnable runnable, long wait_time) {
+        if (wait_time > 0) {
+            post(runnable, wait_time);
+        } else {
+            runnable.run();
+        }
+    }
+
+    private void post(final Runnable runnable, long delay) {
+        final VirtualTime.Task[] task = new VirtualTime.Task[1];
+        task[0] = time.schedule(new Runnable() {
+            @Override
+            public void run() {
+                pending.remove(task[0]);
+                runnable.run();
+            }
+        }, delay);
+        pending.add(task[0]);
+    }
+
+    @Override
+    public void scheduleTimer(final Runnable runnable, long delay) {
+        cancelTimer();
+        timer = time.schedule(new Runnable() {
+            @Override
+            public void run() {
+                timer = null;
+                runnable.run();
+            }
+        }, delay);
+    }
+
+    @Override
+    public void cancelTimer() {
+        time.cancel(timer);
+        timer = null;
+    }
+
+    @Override
+    public Message obtainMessage(int what) {
+        return obtainMessage(what, null);
+    }
+
+    @Override
+    public Message obtainMessage(int what, Object obj) {
+        //Message.obtain() is only a stub on the JVM
+        Message message = new Message();
+        message.what = what;
+        message.obj = obj;
+        return message;
+    }
+
+    @Override
+    public void sendMessage(int what) {
+        add(obtainMessage(what));
+    }
+
+    @Override
+    public void sendMessage(int what, Object obj) {
+        add(obtainMessage(what, obj));
+    }
+}
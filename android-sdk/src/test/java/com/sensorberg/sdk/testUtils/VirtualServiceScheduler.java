@@ -0,0 +1,119 @@
+package com.sensorberg.sdk.testUtils;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import com.sensorberg.sdk.internal.interfaces.ServiceScheduler;
+import com.sensorberg.sdk.resolver.BeaconEvent;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ServiceScheduler} on {@link VirtualTime}. Messages posted to the service are handed to the {@link Service}
+ * when they are due, a message posted with an index replaces the pending one with the same index, like the
+ * {@link android.app.PendingIntent}s of the {@link com.sensorberg.sdk.internal.AndroidServiceScheduler} do. Only the
+ * service messages are supported, the scanner does not use anything else.
+ */
+public class VirtualServiceScheduler implements ServiceScheduler {
+
+    /**
+     * Stands in for the {@link com.sensorberg.sdk.SensorbergService}.
+     */
+    public interface Service {
+
+        /**
+         * @param index the index the message was posted with, it is delivered to the service too
+         */
+        void handleMessage(int type, Parcelable what, int index);
+    }
+
+    private final VirtualTime time;
+
+    private final Map<Integer, VirtualTime.Task> pending = new HashMap<>();
+
+    private Service service;
+
+    private int nextIndex;
+
+    public VirtualServiceScheduler(VirtualTime time) {
+        this.time = time;
+    }
+
+    public void setService(Service service) {
+        this.service = service;
+    }
+
+    @Override
+    public void postToServiceDelayed(long delay, int type, Parcelable what, boolean surviveReboot) {
+        postToServiceDelayed(delay, type, what, surviveReboot, nextIndex++);
+    }
+
+    @Override
+    public void postToServiceDelayed(long delay, int type, Parcelable what, boolean surviveReboot, int index) {
+        cancelServiceMessage(index);
+        pending.put(index, deliver(type, what, index, delay));
+    }
+
+    @Override
+    public void cancelServiceMessage(int index) {
+        time.cancel(pending.remove(index));
+    }
+
+    private VirtualTime.Task deliver(final int type, final Parcelable what, final int index, long delay) {
+        return time.schedule(new Runnable() {
+            @Override
+            public void run() {
+                pending.remove(index);
+                service.handleMessage(type, what, index);
+            }
+        }, delay);
+    }
+
+    @Override
+    public void scheduleIntent(long key, long delayInMillis, Bundle content) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unscheduleIntent(int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void cancelIntent(int message) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void cancelAllScheduledTimer() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void scheduleRepeating(int MSG_index, long value, TimeUnit timeUnit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postDeliverAtOrUpdate(Date deliverAt, BeaconEvent beaconEvent) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clearAllPendingIntents() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void restorePendingIntents() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void removeStoredPendingIntent(int index) {
+        throw new UnsupportedOperationException();
+    }
+}
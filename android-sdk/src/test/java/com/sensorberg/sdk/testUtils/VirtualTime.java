@@ -0,0 +1,92 @@
+package com.sensorberg.sdk.testUtils;
+
+import com.sensorberg.sdk.internal.interfaces.Clock;
+
+import java.util.PriorityQueue;
+
+/**
+ * {@link Clock} that only moves when it is told to, together with the tasks that are due on it. Tasks run on the
+ * calling thread, ordered by their due time and, for the same due time, by the order they were scheduled in, so a
+ * simulation driven by it gives the same result on every run, however long the simulated time is.
+ */
+public class VirtualTime implements Clock {
+
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+
+    private long now;
+
+    private long sequence;
+
+    public VirtualTime(long start) {
+        now = start;
+    }
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+        return now;
+    }
+
+    /**
+     * Schedules {@code runnable} to run {@code delay} millis from now, a negative delay is treated as zero.
+     */
+    public Task schedule(Runnable runnable, long delay) {
+        Task task = new Task(now + Math.max(0, delay), sequence++, runnable);
+        tasks.add(task);
+        return task;
+    }
+
+    public void cancel(Task task) {
+        if (task != null) {
+            tasks.remove(task);
+        }
+    }
+
+    /**
+     * Runs all tasks that are due within the next {@code millis}, including the ones they schedule, and leaves the
+     * clock {@code millis} later.
+     */
+    public void advanceBy(long millis) {
+        advanceTo(now + millis);
+    }
+
+    public void advanceTo(long time) {
+        while (!tasks.isEmpty() && tasks.peek().due <= time) {
+            Task task = tasks.poll();
+            now = task.due;
+            task.runnable.run();
+        }
+        now = Math.max(now, time);
+    }
+
+    public int pendingTasks() {
+        return tasks.size();
+    }
+
+    public static final class Task implements Comparable<Task> {
+
+        private final long due;
+
+        private final long sequence;
+
+        private final Runnable runnable;
+
+        private Task(long due, long sequence, Runnable runnable) {
+            this.due = due;
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (due != other.due) {
+                return due < other.due ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
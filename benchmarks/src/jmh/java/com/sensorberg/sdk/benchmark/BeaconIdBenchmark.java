@@ -0,0 +1,58 @@
+package com.sensorberg.sdk.benchmark;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@State(Scope.Thread)
+public class BeaconIdBenchmark {
+
+    private static final long MOST_SIGNIFICANT_BITS = 0x7367672374000000L;
+
+    private static final long LEAST_SIGNIFICANT_BITS = 0xFFFF0000FFFF0000L;
+
+    private final String hex = Records.PROXIMITY_UUID + "01110111";
+
+    private final Map<BeaconId, Integer> map = new HashMap<>();
+
+    private BeaconId lookup;
+
+    @Setup
+    public void setUp() {
+        for (int minor = 0; minor < 256; minor++) {
+            map.put(new BeaconId(MOST_SIGNIFICANT_BITS, LEAST_SIGNIFICANT_BITS, 1, minor), minor);
+        }
+        lookup = new BeaconId(MOST_SIGNIFICANT_BITS, LEAST_SIGNIFICANT_BITS, 1, 128);
+    }
+
+    @Benchmark
+    public BeaconId constructFromBits() {
+        return new BeaconId(MOST_SIGNIFICANT_BITS, LEAST_SIGNIFICANT_BITS, 273, 273);
+    }
+
+    @Benchmark
+    public BeaconId constructFromHex() {
+        return new BeaconId(hex);
+    }
+
+    @Benchmark
+    public int hashCodeOfANewBeaconId() {
+        return new BeaconId(MOST_SIGNIFICANT_BITS, LEAST_SIGNIFICANT_BITS, 273, 273).hashCode();
+    }
+
+    @Benchmark
+    public Integer lookUpInAHashMap() {
+        return map.get(lookup);
+    }
+
+    @Benchmark
+    public String getPidOfANewBeaconId() {
+        return new BeaconId(MOST_SIGNIFICANT_BITS, LEAST_SIGNIFICANT_BITS, 273, 273).getPid();
+    }
+}
@@ -0,0 +1,78 @@
+package com.sensorberg.sdk.benchmark;
+
+import com.sensorberg.sdk.internal.interfaces.FileManager;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Stand-in for the {@link com.sensorberg.sdk.internal.AndroidFileManager}, which needs a Context for its directory
+ * but otherwise serializes the same way.
+ */
+public class FileSystemFileManager implements FileManager {
+
+    private final File directory;
+
+    public FileSystemFileManager(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public File getFile(String fileName) {
+        return new File(directory, fileName);
+    }
+
+    @Override
+    public void write(Serializable serializableObject, String fileName) {
+        write(serializableObject, getFile(fileName));
+    }
+
+    @Override
+    public boolean write(Serializable serializableObject, File file) {
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(new FileOutputStream(file));
+            out.writeObject(serializableObject);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            close(out);
+        }
+    }
+
+    @Override
+    public Object getContentsOfFileOrNull(File file) {
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new FileInputStream(file));
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    @Override
+    public void removeFile(String fileName) {
+        //noinspection ResultOfMethodCallIgnored
+        getFile(fileName).delete();
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                //nothing left to do
+            }
+        }
+    }
+}
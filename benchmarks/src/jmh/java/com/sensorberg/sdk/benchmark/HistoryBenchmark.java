@@ -0,0 +1,105 @@
+package com.sensorberg.sdk.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.sensorberg.sdk.internal.interfaces.Clock;
+import com.sensorberg.sdk.internal.transport.HistoryRequestBody;
+import com.sensorberg.sdk.internal.transport.model.HistoryBody;
+import com.sensorberg.sdk.model.BeaconId;
+import com.sensorberg.sdk.model.ISO8601TypeAdapter;
+import com.sensorberg.sdk.model.persistence.ActionConversion;
+import com.sensorberg.sdk.model.persistence.BeaconAction;
+import com.sensorberg.sdk.model.persistence.BeaconScan;
+import com.sensorberg.sdk.scanner.ScanEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import okio.Buffer;
+
+/**
+ * Turns scan events into the history the publisher keeps and writes the request body of an upload of {@link #scans}
+ * scans, with the {@link Gson} configuration of the SDK, the way OkHttp writes it to the connection.
+ */
+@State(Scope.Thread)
+public class HistoryBenchmark {
+
+    private static final long NOW = 1500000000000L;
+
+    @Param({"100", "2000"})
+    public int scans;
+
+    private final Gson gson = new GsonBuilder()
+            .excludeFieldsWithoutExposeAnnotation()
+            .registerTypeAdapter(Date.class, ISO8601TypeAdapter.DATE_ADAPTER)
+            .setLenient()
+            .create();
+
+    private final Clock clock = new Clock() {
+        @Override
+        public long now() {
+            return NOW;
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return NOW;
+        }
+    };
+
+    private List<ScanEvent> scanEvents;
+
+    private HistoryRequestBody plainBody;
+
+    private HistoryRequestBody gzippedBody;
+
+    @Setup
+    public void setUp() {
+        scanEvents = new ArrayList<>(scans);
+        for (int i = 0; i < scans; i++) {
+            BeaconId beaconId = Records.beaconId(1, i % 100);
+            scanEvents.add(new ScanEvent(beaconId, NOW + i, i % 2 == 0, null, -60, -58, "u33db8mm", "pairing-" + i / 2));
+        }
+        HistoryBody body = new HistoryBody(toBeaconScans(), Collections.<BeaconAction>emptyList(), Collections.<ActionConversion>emptyList(), clock);
+        plainBody = new HistoryRequestBody(gson, body, false);
+        gzippedBody = new HistoryRequestBody(gson, body, true);
+    }
+
+    private List<BeaconScan> toBeaconScans() {
+        List<BeaconScan> beaconScans = new ArrayList<>(scanEvents.size());
+        for (ScanEvent scanEvent : scanEvents) {
+            beaconScans.add(BeaconScan.from(scanEvent));
+        }
+        return beaconScans;
+    }
+
+    @Benchmark
+    public List<BeaconScan> convertScanEvents() {
+        return toBeaconScans();
+    }
+
+    @Benchmark
+    public long writeHistoryRequestBody() throws IOException {
+        return write(plainBody);
+    }
+
+    @Benchmark
+    public long writeGzippedHistoryRequestBody() throws IOException {
+        return write(gzippedBody);
+    }
+
+    private static long write(HistoryRequestBody requestBody) throws IOException {
+        Buffer sink = new Buffer();
+        requestBody.writeTo(sink);
+        return sink.size();
+    }
+}
@@ -0,0 +1,30 @@
+package com.sensorberg.sdk.benchmark;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+/**
+ * Raw scan records of the benchmarks.
+ */
+final class Records {
+
+    static final String PROXIMITY_UUID = "7367672374000000FFFF0000FFFF0000";
+
+    private Records() {
+    }
+
+    static byte[] iBeacon(int major, int minor) {
+        return bytes("0201061aff4c000215" + PROXIMITY_UUID + String.format("%04x%04x", major, minor) + "C6");
+    }
+
+    static BeaconId beaconId(int major, int minor) {
+        return new BeaconId(0x7367672374000000L, 0xFFFF0000FFFF0000L, major, minor);
+    }
+
+    static byte[] bytes(String hex) {
+        byte[] data = new byte[hex.length() / 2];
+        for (int i = 0; i < hex.length(); i += 2) {
+            data[i / 2] = (byte) Integer.parseInt(hex.substring(i, i + 2), 16);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,81 @@
+package com.sensorberg.sdk.benchmark;
+
+import com.sensorberg.sdk.model.BeaconId;
+import com.sensorberg.sdk.model.server.ResolveAction;
+import com.sensorberg.sdk.model.server.ResolveResponse;
+import com.sensorberg.sdk.scanner.ScanEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resolves a scan event against a layout of {@link #actions} actions with {@link #beaconsPerAction} beacons each.
+ */
+@State(Scope.Thread)
+public class ResolveBenchmark {
+
+    private static final long NOW = 1500000000000L;
+
+    @Param({"10", "200"})
+    public int actions;
+
+    @Param({"1", "20"})
+    public int beaconsPerAction;
+
+    private ResolveResponse layout;
+
+    private ResolveAction widestAction;
+
+    private ScanEvent scanEvent;
+
+    private BeaconId unknownBeacon;
+
+    @Setup
+    public void setUp() {
+        List<ResolveAction> resolveActions = new ArrayList<>(actions);
+        for (int i = 0; i < actions; i++) {
+            List<String> beacons = new ArrayList<>(beaconsPerAction);
+            for (int j = 0; j < beaconsPerAction; j++) {
+                beacons.add(Records.beaconId(i, j).getPid());
+            }
+            resolveActions.add(new ResolveAction.Builder()
+                    .withUuid(String.format("%032x", i))
+                    .withTrigger(3)
+                    .withType(0x8001)
+                    .withBeacons(beacons)
+                    .build());
+        }
+        widestAction = resolveActions.get(actions - 1);
+        layout = new ResolveResponse.Builder()
+                .withActions(resolveActions)
+                .withInstantActions(Collections.<ResolveAction>emptyList())
+                .build();
+        layout.compile();
+
+        BeaconId beaconId = Records.beaconId(actions / 2, beaconsPerAction - 1);
+        scanEvent = new ScanEvent(beaconId, NOW, true, null, -60, -58, null, "pairing");
+        unknownBeacon = Records.beaconId(actions + 1, 0);
+    }
+
+    @Benchmark
+    public List<ResolveAction> resolve() {
+        return layout.resolve(scanEvent, NOW);
+    }
+
+    @Benchmark
+    public boolean containsBeacon() {
+        return widestAction.containsBeacon(scanEvent.getBeaconId());
+    }
+
+    @Benchmark
+    public boolean containsNoBeacon() {
+        return widestAction.containsBeacon(unknownBeacon);
+    }
+}
@@ -0,0 +1,37 @@
+package com.sensorberg.sdk.benchmark;
+
+import android.util.Pair;
+
+import com.sensorberg.sdk.model.BeaconId;
+import com.sensorberg.sdk.scanner.BeaconAdvertisement;
+import com.sensorberg.sdk.scanner.BeaconAdvertisementParser;
+import com.sensorberg.sdk.scanner.ScanHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class ScanHelperBenchmark {
+
+    private final byte[] iBeacon = Records.iBeacon(1, 2);
+
+    private final byte[] other = Records.bytes("0201061bffc300beac" + Records.PROXIMITY_UUID + "00010002" + "C6" + "23");
+
+    private final BeaconAdvertisement advertisement = new BeaconAdvertisement();
+
+    @Benchmark
+    public Pair<BeaconId, Integer> getBeaconID() {
+        return ScanHelper.getBeaconID(iBeacon);
+    }
+
+    @Benchmark
+    public Pair<BeaconId, Integer> getBeaconIDOfAnotherAdvertisement() {
+        return ScanHelper.getBeaconID(other);
+    }
+
+    @Benchmark
+    public boolean parseIntoAReusedAdvertisement() {
+        return BeaconAdvertisementParser.parse(iBeacon, advertisement);
+    }
+}
@@ -0,0 +1,16 @@
+package com.sensorberg.sdk.location;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class GeofenceDataBenchmark {
+
+    private final String fence = "u33db8mm000100";
+
+    @Benchmark
+    public GeofenceData parse() {
+        return new GeofenceData(fence);
+    }
+}
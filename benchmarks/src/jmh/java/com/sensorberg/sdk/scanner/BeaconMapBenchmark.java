@@ -0,0 +1,111 @@
+package com.sensorberg.sdk.scanner;
+
+import com.sensorberg.sdk.benchmark.FileSystemFileManager;
+import com.sensorberg.sdk.model.BeaconId;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Puts a beacon into a {@link BeaconMap} of {@link #beacons} entered beacons and persists the change, either by
+ * rewriting the whole map or by appending to the journal. The journal writes on the calling thread here, so its
+ * disk I/O is part of the measurement.
+ */
+@State(Scope.Thread)
+public class BeaconMapBenchmark {
+
+    private static final long MOST_SIGNIFICANT_BITS = 0x7367672374000000L;
+
+    private static final long LEAST_SIGNIFICANT_BITS = 0xFFFF0000FFFF0000L;
+
+    @Param({"10", "100"})
+    public int beacons;
+
+    private File directory;
+
+    private BeaconMap inMemory;
+
+    private BeaconMap rewritten;
+
+    private BeaconMap journaled;
+
+    private BeaconId[] beaconIds;
+
+    private int next;
+
+    private long now;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = File.createTempFile("beaconmap", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("could not create " + directory);
+        }
+        Executor sameThread = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        inMemory = new BeaconMap(null, null);
+        rewritten = new BeaconMap(new FileSystemFileManager(directory), new File(directory, "enteredBeaconsCache"));
+        journaled = new BeaconMap(new BeaconMapJournal(new File(directory, "enteredBeaconsJournal"), sameThread));
+        beaconIds = new BeaconId[beacons];
+        for (int i = 0; i < beacons; i++) {
+            beaconIds[i] = new BeaconId(MOST_SIGNIFICANT_BITS, LEAST_SIGNIFICANT_BITS, 1, i);
+            EventEntry entry = new EventEntry(now, 0, ScanEventType.ENTRY.getMask(), "pairing-" + i);
+            inMemory.put(beaconIds[i], entry);
+            rewritten.put(beaconIds[i], entry);
+            journaled.put(beaconIds[i], entry);
+        }
+        journaled.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.delete();
+    }
+
+    private EventEntry nextEntry() {
+        now += 100;
+        return new EventEntry(now, 0, ScanEventType.ENTRY.getMask(), "pairing");
+    }
+
+    private BeaconId nextBeaconId() {
+        next = (next + 1) % beacons;
+        return beaconIds[next];
+    }
+
+    @Benchmark
+    public void putInMemory() {
+        inMemory.put(nextBeaconId(), nextEntry());
+    }
+
+    @Benchmark
+    public void putAndRewriteTheFile() {
+        rewritten.put(nextBeaconId(), nextEntry());
+    }
+
+    @Benchmark
+    public void putAndFlushTheJournal() {
+        journaled.put(nextBeaconId(), nextEntry());
+        journaled.flush();
+    }
+}
@@ -0,0 +1,10 @@
+package android.os;
+
+/**
+ * Stand-in for the framework class. The benchmarks never parcel anything, so it has no methods.
+ */
+public final class Parcel {
+
+    private Parcel() {
+    }
+}
@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * Stand-in for the framework interface, so the SDK's parcelable models can be loaded on the JVM.
+ */
+public interface Parcelable {
+
+    int describeContents();
+
+    void writeToParcel(Parcel dest, int flags);
+
+    interface Creator<T> {
+
+        T createFromParcel(Parcel source);
+
+        T[] newArray(int size);
+    }
+}
@@ -0,0 +1,35 @@
+package android.util;
+
+/**
+ * Stand-in for the framework class, with the same fields and equality.
+ */
+public class Pair<F, S> {
+
+    public final F first;
+
+    public final S second;
+
+    public Pair(F first, S second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    public static <A, B> Pair<A, B> create(A a, B b) {
+        return new Pair<>(a, b);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Pair)) {
+            return false;
+        }
+        Pair<?, ?> other = (Pair<?, ?>) o;
+        return (first == null ? other.first == null : first.equals(other.first))
+                && (second == null ? other.second == null : second.equals(other.second));
+    }
+
+    @Override
+    public int hashCode() {
+        return (first == null ? 0 : first.hashCode()) ^ (second == null ? 0 : second.hashCode());
+    }
+}